@@ -0,0 +1,60 @@
+-- 媒体处理流水线相关的增量表结构变更
+-- 按版本顺序执行，已执行过的语句可重复执行（IF NOT EXISTS）
+
+-- 抖动算法（上传时可选，空值视为 FLOYD_STEINBERG）
+ALTER TABLE sys_image ADD COLUMN IF NOT EXISTS dither_type VARCHAR(32);
+ALTER TABLE sys_video ADD COLUMN IF NOT EXISTS dither_type VARCHAR(32);
+
+-- 设备面板参数（为空时使用 media.panel.* 默认面板）
+ALTER TABLE sys_device ADD COLUMN IF NOT EXISTS panel_width INT;
+ALTER TABLE sys_device ADD COLUMN IF NOT EXISTS panel_height INT;
+ALTER TABLE sys_device ADD COLUMN IF NOT EXISTS panel_bit_depth INT;
+ALTER TABLE sys_device ADD COLUMN IF NOT EXISTS panel_palette VARCHAR(16);
+ALTER TABLE sys_device ADD COLUMN IF NOT EXISTS panel_rotation INT;
+ALTER TABLE sys_device ADD COLUMN IF NOT EXISTS dither_type VARCHAR(32);
+
+-- 图片异步处理状态（为空视为历史数据，按 SUCCESS 处理）
+ALTER TABLE sys_image ADD COLUMN IF NOT EXISTS processing_status VARCHAR(16);
+ALTER TABLE sys_image ADD COLUMN IF NOT EXISTS fail_reason VARCHAR(255);
+
+-- 内容寻址秒传：按 SHA-256 + 抖动算法查找已处理成功的图片/视频
+ALTER TABLE sys_image ADD COLUMN IF NOT EXISTS sha256 CHAR(64);
+ALTER TABLE sys_video ADD COLUMN IF NOT EXISTS sha256 CHAR(64);
+CREATE INDEX IF NOT EXISTS idx_sys_image_sha256 ON sys_image (sha256, dither_type);
+CREATE INDEX IF NOT EXISTS idx_sys_video_sha256 ON sys_video (sha256, dither_type);
+-- 删除时判断文件是否仍被其他（秒传）记录引用
+CREATE INDEX IF NOT EXISTS idx_sys_image_original_url ON sys_image (original_url);
+CREATE INDEX IF NOT EXISTS idx_sys_image_processed_url ON sys_image (processed_url);
+CREATE INDEX IF NOT EXISTS idx_sys_video_original_url ON sys_video (original_url);
+CREATE INDEX IF NOT EXISTS idx_sys_video_processed_url ON sys_video (processed_url);
+
+-- 设备视频下发格式：RAW（默认）/ EVC 压缩容器
+ALTER TABLE sys_device ADD COLUMN IF NOT EXISTS video_codec VARCHAR(8);
+
+-- 持久化的媒体处理任务：实例重启后可恢复，多个后端实例按租约共同认领
+CREATE TABLE IF NOT EXISTS sys_media_job (
+    id          BIGSERIAL PRIMARY KEY,
+    job_type    VARCHAR(16)  NOT NULL,              -- VIDEO
+    content_id  BIGINT       NOT NULL,              -- sys_video.id
+    user_id     BIGINT,
+    priority    INT          NOT NULL DEFAULT 1,    -- 0 管理员上传, 1 游客上传
+    status      VARCHAR(16)  NOT NULL DEFAULT 'PENDING', -- PENDING, RUNNING, DONE, FAILED
+    attempts    INT          NOT NULL DEFAULT 0,
+    owner       VARCHAR(128),
+    lease_until TIMESTAMP,
+    last_error  VARCHAR(255),
+    create_time TIMESTAMP    NOT NULL DEFAULT NOW(),
+    update_time TIMESTAMP    NOT NULL DEFAULT NOW()
+);
+CREATE UNIQUE INDEX IF NOT EXISTS uk_sys_media_job_content ON sys_media_job (job_type, content_id);
+CREATE INDEX IF NOT EXISTS idx_sys_media_job_claim ON sys_media_job (job_type, status, priority, id);
+
+-- 处理结果（抖动图 / BIN）的 MD5 和大小，随推送下发给设备校验；为空视为历史数据，不下发 MD5
+ALTER TABLE sys_image ADD COLUMN IF NOT EXISTS processed_md5 CHAR(32);
+ALTER TABLE sys_image ADD COLUMN IF NOT EXISTS processed_size BIGINT;
+ALTER TABLE sys_video ADD COLUMN IF NOT EXISTS processed_md5 CHAR(32);
+ALTER TABLE sys_video ADD COLUMN IF NOT EXISTS processed_size BIGINT;
+
+-- 推送状态新增 RENDERING（等待按设备面板渲染，完成后转为 PENDING 再下发）；
+-- 恢复任务按状态 + 更新时间查找实例重启后遗留的等待渲染推送
+CREATE INDEX IF NOT EXISTS idx_sys_content_push_status ON sys_content_push (push_status, update_time);
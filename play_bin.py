@@ -2,37 +2,105 @@ import numpy as np
 import cv2
 import time
 import os
+import struct
+import sys
 
 # 播放.bin视频脚本
+# 用法: python play_bin.py [bin文件] [宽] [高] [位深]
+# 例如: python play_bin.py video.bin 800 480 1
+# 也支持 EVC 压缩容器（.evc），分辨率和位深从文件头读取，无需传参: python play_bin.py video.evc
 
 # ================= 配置区域 =================
 # 1. 你的 .bin 文件路径
-BIN_FILE_PATH = 'video.bin'
+BIN_FILE_PATH = sys.argv[1] if len(sys.argv) > 1 else 'video.bin'
 
-# 2. 屏幕分辨率
-WIDTH = 400
-HEIGHT = 300
+# 2. 屏幕分辨率（帧缓冲方向，即设备的 panelWidth x panelHeight）
+WIDTH = int(sys.argv[2]) if len(sys.argv) > 2 else 400
+HEIGHT = int(sys.argv[3]) if len(sys.argv) > 3 else 300
+
+# 每像素位深（1 黑白 / 2 黑白红 / 4 七色），每行按字节对齐
+BIT_DEPTH = int(sys.argv[4]) if len(sys.argv) > 4 else 1
+
+
+def palette_for(bit_depth):
+    """颜色索引 -> BGR（与 Java 端 PanelPalette 一致：0 黑、1 白、2 绿/红、3 蓝、4 红、5 黄、6 橙）"""
+    if bit_depth == 2:
+        return np.array([[0, 0, 0], [255, 255, 255], [0, 0, 255]], dtype=np.uint8)
+    return np.array([[0, 0, 0], [255, 255, 255], [0, 255, 0], [255, 0, 0],
+                     [0, 0, 255], [0, 255, 255], [0, 128, 255]], dtype=np.uint8)
 
 # 3. 播放速度 (帧间隔，单位秒)
 FRAME_INTERVAL = 0.2  # 5fps -> 0.2s
 # ===========================================
 
+def rle_decode(payload, frame_size):
+    """EVC 的 RLE 解码（PackBits 变体）：c < 128 后跟 c+1 个原样字节，c >= 128 后跟 1 个字节重复 c-125 次"""
+    out = bytearray()
+    i = 0
+    while i < len(payload):
+        c = payload[i]
+        i += 1
+        if c < 128:
+            out += payload[i:i + c + 1]
+            i += c + 1
+        else:
+            out += bytes([payload[i]]) * (c - 125)
+            i += 1
+    if len(out) != frame_size:
+        raise ValueError("EVC 数据损坏：帧长度不符")
+    return np.frombuffer(bytes(out), dtype=np.uint8)
+
+
+def decode_evc(data):
+    """把 EVC 容器解码成原始帧依次拼接的数据，返回 (宽, 高, 位深, fps, 数据)"""
+    _, version, width, height, bit_depth, fps, _, frame_count, frame_size, _ = \
+        struct.unpack('<3sBHHBBHIII', data[:24])
+    if version != 1:
+        raise ValueError(f"不支持的 EVC 版本: {version}")
+    frames = []
+    previous = np.zeros(frame_size, dtype=np.uint8)
+    pos = 24
+    for _ in range(frame_count):
+        frame_type, length = struct.unpack('<BI', data[pos:pos + 5])
+        pos += 5
+        payload = data[pos:pos + length]
+        pos += length
+        if frame_type == 0:    # KEY
+            current = rle_decode(payload, frame_size)
+        elif frame_type == 1:  # DELTA: 与上一帧异或
+            current = np.bitwise_xor(previous, rle_decode(payload, frame_size))
+        else:                  # REPEAT
+            current = previous
+        frames.append(current)
+        previous = current
+    return width, height, bit_depth, fps, np.concatenate(frames) if frames else np.zeros(0, dtype=np.uint8)
+
+
 def play_bin_video():
+    global WIDTH, HEIGHT, BIT_DEPTH, FRAME_INTERVAL
+
     if not os.path.exists(BIN_FILE_PATH):
         print(f"错误: 找不到文件 {BIN_FILE_PATH}")
         return
 
-    # 1. 计算每一帧的字节数
-    # 逻辑: (宽 x 高) / 8 bit
-    frame_size = (WIDTH * HEIGHT) // 8
-    print(f"分辨率: {WIDTH}x{HEIGHT}, 每帧大小: {frame_size} bytes")
-
-    # 2. 读取整个文件
+    # 1. 读取整个文件
     try:
         # 以 uint8 (字节) 格式读取所有数据
         raw_data = np.fromfile(BIN_FILE_PATH, dtype=np.uint8)
         print(f"文件总大小: {len(raw_data)} bytes")
 
+        # EVC 容器：先解码成原始帧，分辨率/位深/帧率以文件头为准
+        if raw_data[:3].tobytes() == b'EVC':
+            WIDTH, HEIGHT, BIT_DEPTH, fps, raw_data = decode_evc(raw_data.tobytes())
+            FRAME_INTERVAL = 1.0 / fps if fps > 0 else FRAME_INTERVAL
+            print(f"EVC 解码完成: 原始数据 {len(raw_data)} bytes")
+
+        # 2. 计算每一帧的字节数
+        # 逻辑: 每行 ceil(宽 x 位深 / 8) 字节，乘以高
+        row_bytes = (WIDTH * BIT_DEPTH + 7) // 8
+        frame_size = row_bytes * HEIGHT
+        print(f"分辨率: {WIDTH}x{HEIGHT}, 位深: {BIT_DEPTH}, 每帧大小: {frame_size} bytes")
+
         # 计算总帧数
         total_frames = len(raw_data) // frame_size
         print(f"估算总帧数: {total_frames}")
@@ -45,6 +113,8 @@ def play_bin_video():
         print(f"读取文件失败: {e}")
         return
 
+    palette = palette_for(BIT_DEPTH)
+
     # 3. 循环播放
     current_frame = 0
 
@@ -61,20 +131,16 @@ def play_bin_video():
 
         # B. 核心解包: 把 1个byte 拆成 8个bit (0或1)
         # unpackbits 默认是从高位到低位解析 (big-endian)，这符合通常的移位逻辑
-        bits = np.unpackbits(frame_bytes)
-
-        # C. 此时 bits 是一个一维数组，包含了 0 和 1
-        # 我们把它变回 (Height, Width) 的二维矩阵
-        # 注意: 这里的 reshape 顺序要看你 Java 是怎么写的，通常是先 Y 后 X
-        try:
-            image_buffer = bits.reshape(HEIGHT, WIDTH)
-        except ValueError:
-            print(f"错误: 数据无法 reshape 成 {WIDTH}x{HEIGHT}，请检查分辨率配置！")
-            break
+        # 先按行拆开，去掉每行末尾补齐用的 bit
+        bits = np.unpackbits(frame_bytes.reshape(HEIGHT, row_bytes), axis=1)[:, :WIDTH * BIT_DEPTH]
+
+        # C. 每 BIT_DEPTH 个 bit 合成一个颜色索引，变回 (Height, Width) 的二维矩阵
+        bits = bits.reshape(HEIGHT, WIDTH, BIT_DEPTH)
+        weights = 1 << np.arange(BIT_DEPTH - 1, -1, -1)
+        image_buffer = (bits * weights).sum(axis=2)
 
-        # D. 转换成可视化的图片 (0->0黑色, 1->255白色)
-        #astype(np.uint8) 是必须的，cv2 需要 uint8 类型
-        display_img = (image_buffer * 255).astype(np.uint8)
+        # D. 转换成可视化的图片 (颜色索引 -> BGR)
+        display_img = palette[np.clip(image_buffer, 0, len(palette) - 1)]
 
         # E. 显示
         cv2.imshow('E-Ink Preview Player', display_img)
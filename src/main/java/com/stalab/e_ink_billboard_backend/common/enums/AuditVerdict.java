@@ -0,0 +1,10 @@
+package com.stalab.e_ink_billboard_backend.common.enums;
+
+/**
+ * 自动内容审核结论枚举
+ */
+public enum AuditVerdict {
+    APPROVED,    // 合规
+    REJECTED,    // 违规
+    UNAVAILABLE; // 审核服务不可用（超时、报错或熔断中），稍后自动重审
+}
@@ -0,0 +1,33 @@
+package com.stalab.e_ink_billboard_backend.common.enums;
+
+import cn.hutool.core.util.StrUtil;
+import com.stalab.e_ink_billboard_backend.common.exception.BusinessException;
+
+import java.util.Locale;
+
+/**
+ * 抖动算法类型枚举
+ */
+public enum DitherType {
+    FLOYD_STEINBERG, // Floyd-Steinberg 误差扩散（默认，静态图细节最好）
+    ATKINSON,        // Atkinson 误差扩散（只扩散 3/4 误差，对比度高，适合文字/线稿）
+    BAYER,           // 8x8 Bayer 有序抖动（逐像素独立，帧间稳定，适合视频）
+    BLUE_NOISE;      // 蓝噪声阈值抖动（逐像素独立，颗粒比 Bayer 更自然）
+
+    /**
+     * 解析请求参数中的抖动算法（不区分大小写）
+     *
+     * @return 参数为空时返回 null（使用默认算法）
+     * @throws BusinessException 400 参数无效
+     */
+    public static DitherType parse(String value) {
+        if (StrUtil.isBlank(value)) {
+            return null;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BusinessException(400, "抖动算法参数无效");
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.stalab.e_ink_billboard_backend.common.enums;
+
+/**
+ * 媒体处理任务状态枚举
+ */
+public enum MediaJobStatus {
+    PENDING, // 等待认领
+    RUNNING, // 已被某个实例认领（租约有效期内）
+    DONE,    // 处理结束（成功或失败已写回内容记录）
+    FAILED;  // 多次中断后放弃
+}
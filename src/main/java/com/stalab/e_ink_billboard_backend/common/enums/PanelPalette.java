@@ -0,0 +1,50 @@
+package com.stalab.e_ink_billboard_backend.common.enums;
+
+import lombok.Getter;
+
+/**
+ * 墨水屏调色板枚举
+ * colors 的下标即屏幕驱动的原生颜色索引（黑 0、白 1 在所有调色板中保持一致）
+ */
+@Getter
+public enum PanelPalette {
+    BW("黑白", 1, new int[]{0x000000, 0xFFFFFF}),
+    BWR("黑白红", 2, new int[]{0x000000, 0xFFFFFF, 0xFF0000}),
+    ACEP_7("7色 ACeP", 4, new int[]{0x000000, 0xFFFFFF, 0x00FF00, 0x0000FF, 0xFF0000, 0xFFFF00, 0xFF8000});
+
+    /**
+     * 黑色的颜色索引
+     */
+    public static final int BLACK = 0;
+
+    /**
+     * 白色的颜色索引
+     */
+    public static final int WHITE = 1;
+
+    private final String desc;
+
+    /**
+     * 每个像素的原生位深（BIN 帧按此打包）
+     */
+    private final int bitsPerPixel;
+
+    private final int[] colors;
+
+    PanelPalette(String desc, int bitsPerPixel, int[] colors) {
+        this.desc = desc;
+        this.bitsPerPixel = bitsPerPixel;
+        this.colors = colors;
+    }
+
+    /**
+     * 颜色索引对应的 RGB 值
+     */
+    public int getColor(int index) {
+        return colors[index];
+    }
+
+    public int size() {
+        return colors.length;
+    }
+}
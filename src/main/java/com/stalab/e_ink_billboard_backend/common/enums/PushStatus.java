@@ -4,6 +4,7 @@ package com.stalab.e_ink_billboard_backend.common.enums;
  * 推送状态枚举
  */
 public enum PushStatus {
+    RENDERING, // 等待按设备面板渲染，完成后转为待发送
     PENDING, // 待发送
     SENT,    // 已发送
     SUCCESS, // 成功
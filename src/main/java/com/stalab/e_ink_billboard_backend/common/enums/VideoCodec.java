@@ -0,0 +1,9 @@
+package com.stalab.e_ink_billboard_backend.common.enums;
+
+/**
+ * 视频下发格式枚举
+ */
+public enum VideoCodec {
+    RAW, // 原始帧依次拼接（默认，所有固件都支持）
+    EVC; // EVC 容器：关键帧 + XOR 差分帧，RLE 压缩（需固件支持，见 EvcFormat）
+}
@@ -1,8 +1,11 @@
 package com.stalab.e_ink_billboard_backend.common.exception;
 
 import com.stalab.e_ink_billboard_backend.common.Response;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -33,6 +36,21 @@ public class GlobalExceptionHandler {
     }
 
 
+    /**
+     * 媒体处理队列已满
+     * 场景：转码/图片处理队列排满，HTTP 状态 429 并带 Retry-After 头，前端按提示的秒数后重试
+     */
+    @ExceptionHandler(MediaJobRejectedException.class)
+    public Response<?> handleMediaJobRejectedException(MediaJobRejectedException e, HttpServletResponse response) {
+        log.warn("媒体处理队列已满: {}, retryAfter={}s", e.getMessage(), e.getRetryAfterSeconds());
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+        return Response.builder()
+                .code(e.getCode())
+                .info(e.getMessage())
+                .build();
+    }
+
     /**
      * 3. 拦截参数校验异常 (@Valid / @Validated)
      * 场景：DTO 里写了 @NotNull，但前端没传值，Spring 会抛出这个异常
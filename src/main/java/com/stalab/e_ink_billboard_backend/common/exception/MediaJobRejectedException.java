@@ -0,0 +1,21 @@
+package com.stalab.e_ink_billboard_backend.common.exception;
+
+import lombok.Getter;
+
+/**
+ * 媒体处理队列已满，拒绝新任务
+ * 返回 429，并通过 Retry-After 告诉前端多久后重试
+ */
+@Getter
+public class MediaJobRejectedException extends BusinessException {
+
+    /**
+     * 建议的重试间隔（秒）
+     */
+    private final long retryAfterSeconds;
+
+    public MediaJobRejectedException(String message, long retryAfterSeconds) {
+        super(429, message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
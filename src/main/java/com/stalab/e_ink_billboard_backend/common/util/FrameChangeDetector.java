@@ -0,0 +1,71 @@
+package com.stalab.e_ink_billboard_backend.common.util;
+
+/**
+ * 视频帧变化检测
+ * 把帧缩成 GRID x GRID 的亮度网格（每格取若干点平均），与上一次渲染的帧逐格比较亮度差。
+ * 所有网格的差值都低于阈值时视为近似重复帧（只有编码噪声），不再渲染，直接沿用上一帧；
+ * 按单格最大差值而不是全帧平均判断，画面中的小物体移动也能触发刷新。
+ * 始终与“上一次渲染的帧”比较，缓慢的渐变累积到阈值后仍会刷新。
+ * 每个视频使用一个实例，非线程安全
+ */
+public class FrameChangeDetector {
+
+    private static final int GRID = 32;
+    /**
+     * 每个网格单元在每个方向上的采样点数
+     */
+    private static final int SAMPLES = 4;
+
+    private final int threshold;
+    private final int[] current = new int[GRID * GRID];
+    private final int[] reference = new int[GRID * GRID];
+    private boolean hasReference;
+
+    /**
+     * @param threshold 单个网格的亮度差阈值（0-255），小于等于 0 时每帧都视为变化
+     */
+    public FrameChangeDetector(int threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * 判断该帧相对上一次渲染的帧是否有明显变化；有变化时把该帧记为新的参照帧
+     *
+     * @param rgb 像素 0xRRGGBB，行优先
+     */
+    public boolean changed(int[] rgb, int width, int height) {
+        if (threshold <= 0) {
+            return true;
+        }
+        computeGrid(rgb, width, height, current);
+        if (hasReference) {
+            int maxDiff = 0;
+            for (int i = 0; i < current.length; i++) {
+                maxDiff = Math.max(maxDiff, Math.abs(current[i] - reference[i]));
+            }
+            if (maxDiff < threshold) {
+                return false;
+            }
+        }
+        System.arraycopy(current, 0, reference, 0, current.length);
+        hasReference = true;
+        return true;
+    }
+
+    private static void computeGrid(int[] rgb, int w, int h, int[] grid) {
+        int points = GRID * SAMPLES;
+        for (int gy = 0; gy < GRID; gy++) {
+            for (int gx = 0; gx < GRID; gx++) {
+                int sum = 0;
+                for (int sy = 0; sy < SAMPLES; sy++) {
+                    int row = (int) ((long) (gy * SAMPLES + sy) * h / points) * w;
+                    for (int sx = 0; sx < SAMPLES; sx++) {
+                        int x = (int) ((long) (gx * SAMPLES + sx) * w / points);
+                        sum += ImageProcessingEngine.luma(rgb[row + x]);
+                    }
+                }
+                grid[gy * GRID + gx] = sum / (SAMPLES * SAMPLES);
+            }
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.stalab.e_ink_billboard_backend.common.util;
+
+import com.stalab.e_ink_billboard_backend.common.exception.BusinessException;
+import lombok.extern.slf4j.Slf4j;
+import net.coobird.thumbnailator.util.exif.ExifFilterUtils;
+import net.coobird.thumbnailator.util.exif.ExifUtils;
+import net.coobird.thumbnailator.util.exif.Orientation;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 图片解码与缩放引擎
+ * 1. 解码时按目标尺寸做降采样（ImageIO setSourceSubsampling），大图不必完整解码到内存
+ * 2. 缩放 + 灰度在一次遍历中完成，按目标行带拆成 fork-join 子任务并行
+ * 3. 用信号量限制同时解码的图片数量，突发上传时排队而不是把堆撑爆
+ */
+@Slf4j
+@Component
+public class ImageProcessingEngine {
+
+    // 每个 fork-join 子任务负责的目标行数
+    private static final int ROWS_PER_BAND = 16;
+
+    // 降采样后保留目标尺寸的倍数，留给面积平均缩放抗锯齿
+    private static final int OVERSAMPLE = 2;
+
+    private final ForkJoinPool pool;
+    private final Semaphore decodePermits;
+
+    /**
+     * 等待解码许可的最长时间（秒）
+     */
+    @Value("${media.processing.decode-wait-seconds:30}")
+    private long decodeWaitSeconds;
+
+    public ImageProcessingEngine(@Qualifier("imageProcessingPool") ForkJoinPool pool,
+                                 @Value("${media.processing.max-concurrent-decodes:4}") int maxConcurrentDecodes) {
+        this.pool = pool;
+        this.decodePermits = new Semaphore(maxConcurrentDecodes, true);
+        // 上传内容已由 UploadIngestService 缓冲在内存/临时文件中，
+        // 关闭 ImageIO 的磁盘缓存，避免解码流时再写一份临时文件
+        ImageIO.setUseCache(false);
+    }
+
+    /**
+     * 获取解码许可，处理完成后关闭以归还
+     * 超时未获取到时抛出 503，提示客户端稍后重试
+     */
+    public DecodePermit acquireDecodePermit() {
+        try {
+            if (!decodePermits.tryAcquire(decodeWaitSeconds, TimeUnit.SECONDS)) {
+                log.warn("图片解码排队超时: waitSeconds={}", decodeWaitSeconds);
+                throw new BusinessException(503, "图片处理繁忙，请稍后重试");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(503, "图片处理被中断");
+        }
+        return new DecodePermit();
+    }
+
+    /**
+     * 解码图片：按目标尺寸降采样 + 按 EXIF 方向校正
+     *
+     * @param targetWidth  最终需要的宽度（校正方向后）
+     * @param targetHeight 最终需要的高度（校正方向后）
+     */
+    public BufferedImage decode(InputStream input, int targetWidth, int targetHeight) throws IOException {
+        try (ImageInputStream iis = ImageIO.createImageInputStream(input)) {
+            if (iis == null) {
+                throw new IOException("无法读取图片");
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) {
+                throw new IOException("不支持的图片格式");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, false);
+                Orientation orientation = readOrientation(reader);
+
+                // EXIF 要求旋转 90/270 度时，解码出的宽高和最终画面相反
+                boolean swapped = orientation == Orientation.LEFT_TOP || orientation == Orientation.RIGHT_TOP
+                        || orientation == Orientation.RIGHT_BOTTOM || orientation == Orientation.LEFT_BOTTOM;
+                int decodeWidth = swapped ? targetHeight : targetWidth;
+                int decodeHeight = swapped ? targetWidth : targetHeight;
+
+                int srcWidth = reader.getWidth(0);
+                int srcHeight = reader.getHeight(0);
+                int factor = Math.max(1, Math.min(srcWidth / (decodeWidth * OVERSAMPLE), srcHeight / (decodeHeight * OVERSAMPLE)));
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                if (factor > 1) {
+                    param.setSourceSubsampling(factor, factor, 0, 0);
+                }
+                BufferedImage image = reader.read(0, param);
+                log.debug("图片解码完成: 原始={}x{}, 降采样={}, 解码={}x{}",
+                        srcWidth, srcHeight, factor, image.getWidth(), image.getHeight());
+
+                if (orientation != null && orientation != Orientation.TOP_LEFT) {
+                    image = ExifFilterUtils.getFilterForOrientation(orientation).apply(image);
+                }
+                return image;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 缩放 + 灰度（sRGB 亮度 0-255），行优先
+     */
+    public int[] resizeToGray(BufferedImage src, int width, int height) {
+        return resize(src, width, height, true);
+    }
+
+    /**
+     * 缩放为 RGB 像素（0xRRGGBB），行优先
+     */
+    public int[] resizeToRgb(BufferedImage src, int width, int height) {
+        return resize(src, width, height, false);
+    }
+
+    private int[] resize(BufferedImage src, int width, int height, boolean gray) {
+        int[] out = new int[width * height];
+
+        // 源图比目标小（放大）时面积平均退化为最近邻，交给 Java2D 双线性插值，源图小所以开销可忽略
+        if (src.getWidth() < width || src.getHeight() < height) {
+            BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = scaled.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(src, 0, 0, width, height, null);
+            g.dispose();
+            scaled.getRGB(0, 0, width, height, out, 0, width);
+            if (gray) {
+                for (int i = 0; i < out.length; i++) {
+                    out[i] = luma(out[i]);
+                }
+            }
+            return out;
+        }
+
+        pool.invoke(new BandTask(src, out, width, height, gray, 0, height));
+        return out;
+    }
+
+    /**
+     * BT.601 亮度（图片缩放与视频帧共用）
+     */
+    static int luma(int rgb) {
+        return (((rgb >> 16) & 0xFF) * 299 + ((rgb >> 8) & 0xFF) * 587 + (rgb & 0xFF) * 114 + 500) / 1000;
+    }
+
+    private static Orientation readOrientation(ImageReader reader) {
+        try {
+            return ExifUtils.getExifOrientation(reader, 0);
+        } catch (Exception e) {
+            // EXIF 损坏时按原方向处理
+            log.debug("读取EXIF方向失败，按原方向处理", e);
+            return null;
+        }
+    }
+
+    /**
+     * 面积平均缩放的行带任务：每个目标像素取其覆盖的源像素平均值
+     */
+    private static class BandTask extends RecursiveAction {
+        private final BufferedImage src;
+        private final int[] out;
+        private final int width;
+        private final int height;
+        private final boolean gray;
+        private final int fromRow;
+        private final int toRow;
+
+        BandTask(BufferedImage src, int[] out, int width, int height, boolean gray, int fromRow, int toRow) {
+            this.src = src;
+            this.out = out;
+            this.width = width;
+            this.height = height;
+            this.gray = gray;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        @Override
+        protected void compute() {
+            if (toRow - fromRow > ROWS_PER_BAND) {
+                int mid = (fromRow + toRow) >>> 1;
+                invokeAll(new BandTask(src, out, width, height, gray, fromRow, mid),
+                        new BandTask(src, out, width, height, gray, mid, toRow));
+                return;
+            }
+
+            int srcWidth = src.getWidth();
+            int srcHeight = src.getHeight();
+            int[] rowBuffer = new int[srcWidth];
+            long[] sumR = new long[width];
+            long[] sumG = new long[width];
+            long[] sumB = new long[width];
+
+            for (int y = fromRow; y < toRow; y++) {
+                int sy0 = (int) ((long) y * srcHeight / height);
+                int sy1 = Math.max(sy0 + 1, (int) ((long) (y + 1) * srcHeight / height));
+                Arrays.fill(sumR, 0);
+                Arrays.fill(sumG, 0);
+                Arrays.fill(sumB, 0);
+
+                // 1. 按列累加本行覆盖的源像素
+                for (int sy = sy0; sy < sy1; sy++) {
+                    src.getRGB(0, sy, srcWidth, 1, rowBuffer, 0, srcWidth);
+                    for (int x = 0; x < width; x++) {
+                        int sx0 = (int) ((long) x * srcWidth / width);
+                        int sx1 = Math.max(sx0 + 1, (int) ((long) (x + 1) * srcWidth / width));
+                        long r = 0;
+                        long g = 0;
+                        long b = 0;
+                        for (int sx = sx0; sx < sx1; sx++) {
+                            int rgb = rowBuffer[sx];
+                            r += (rgb >> 16) & 0xFF;
+                            g += (rgb >> 8) & 0xFF;
+                            b += rgb & 0xFF;
+                        }
+                        sumR[x] += r;
+                        sumG[x] += g;
+                        sumB[x] += b;
+                    }
+                }
+
+                // 2. 求平均，按需转灰度
+                int rows = sy1 - sy0;
+                int row = y * width;
+                for (int x = 0; x < width; x++) {
+                    int sx0 = (int) ((long) x * srcWidth / width);
+                    int sx1 = Math.max(sx0 + 1, (int) ((long) (x + 1) * srcWidth / width));
+                    long count = (long) rows * (sx1 - sx0);
+                    int r = (int) ((sumR[x] + count / 2) / count);
+                    int g = (int) ((sumG[x] + count / 2) / count);
+                    int b = (int) ((sumB[x] + count / 2) / count);
+                    int rgb = (r << 16) | (g << 8) | b;
+                    out[row + x] = gray ? luma(rgb) : rgb;
+                }
+            }
+        }
+    }
+
+    /**
+     * 解码许可，close 时归还（重复关闭无副作用）
+     */
+    public final class DecodePermit implements AutoCloseable {
+        private boolean released;
+
+        private DecodePermit() {
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                decodePermits.release();
+            }
+        }
+    }
+}
@@ -1,126 +1,245 @@
 package com.stalab.e_ink_billboard_backend.common.util;
 
-import net.coobird.thumbnailator.Thumbnails;
+import com.stalab.e_ink_billboard_backend.common.enums.DitherType;
+import com.stalab.e_ink_billboard_backend.common.enums.PanelPalette;
+import com.stalab.e_ink_billboard_backend.common.util.dither.DitherAlgorithm;
+import com.stalab.e_ink_billboard_backend.common.util.dither.PaletteQuantizer;
+import com.stalab.e_ink_billboard_backend.model.dto.PanelProfile;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.imageio.ImageIO;
-import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.awt.image.WritableRaster;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 
 @Component
 public class ImageUtils {
 
-    // 墨水屏的标准分辨率 (根据实际的屏幕型号修改，这里假设是 4.2寸 400x300 或 800x480)
-    private static final int TARGET_WIDTH = 400;
-    private static final int TARGET_HEIGHT = 300;
+    /**
+     * 已注册的抖动算法（按类型索引）
+     */
+    private final Map<DitherType, DitherAlgorithm> ditherAlgorithms = new EnumMap<>(DitherType.class);
+
+    private final PaletteQuantizer paletteQuantizer;
+    private final ImageProcessingEngine processingEngine;
+
+    /**
+     * 图片默认抖动算法（上传时未指定则使用）
+     */
+    @Value("${media.dither.image-default:FLOYD_STEINBERG}")
+    private DitherType defaultImageDither;
+
+    // 墨水屏的默认面板参数（设备未单独配置时使用，4.2寸 400x300 黑白屏）
+    @Value("${media.panel.width:400}")
+    private int defaultPanelWidth;
+
+    @Value("${media.panel.height:300}")
+    private int defaultPanelHeight;
+
+    @Value("${media.panel.palette:BW}")
+    private PanelPalette defaultPanelPalette;
+
+    @Value("${media.panel.rotation:0}")
+    private int defaultPanelRotation;
+
+    public ImageUtils(List<DitherAlgorithm> algorithms, PaletteQuantizer paletteQuantizer,
+                      ImageProcessingEngine processingEngine) {
+        this.paletteQuantizer = paletteQuantizer;
+        this.processingEngine = processingEngine;
+        for (DitherAlgorithm algorithm : algorithms) {
+            DitherAlgorithm previous = ditherAlgorithms.put(algorithm.type(), algorithm);
+            if (previous != null) {
+                throw new IllegalStateException("抖动算法重复注册: " + algorithm.type());
+            }
+        }
+    }
 
     /**
-     * 核心处理流程：缩放 -> 灰度 -> 抖动 -> 转字节数组
+     * 核心处理流程：缩放 -> 灰度 -> 抖动 -> 转字节数组（使用默认抖动算法）
      */
     public ByteArrayInputStream processImage(InputStream input) throws IOException {
-        // 1. 强制缩放 (使用 Thumbnailator)
-        // 会自动处理 jpg/png 的旋转问题，并强制拉伸到指定分辨率
-        BufferedImage resizedImage = Thumbnails.of(input)
-                .forceSize(TARGET_WIDTH, TARGET_HEIGHT)
-                .outputFormat("png")
-                .asBufferedImage();
-
-        // 2. 转为灰度图 (去色)
-        BufferedImage grayImage = new BufferedImage(TARGET_WIDTH, TARGET_HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
-        Graphics g = grayImage.getGraphics();
-        g.drawImage(resizedImage, 0, 0, null);
-        g.dispose();
-
-        // 3. 应用 Floyd-Steinberg 抖动算法 (变成纯黑白)
-        BufferedImage ditheredImage = applyFloydSteinbergDithering(grayImage);
-
-        // 4. 输出为流 (准备上传到 MinIO)
-        ByteArrayOutputStream os = new ByteArrayOutputStream();
-        ImageIO.write(ditheredImage, "png", os);
-        return new ByteArrayInputStream(os.toByteArray());
+        return processImage(input, (DitherType) null);
     }
 
     /**
-     * Floyd-Steinberg 抖动算法实现
+     * 核心处理流程：缩放 -> 灰度 -> 抖动 -> 转字节数组（默认面板）
+     *
+     * @param ditherType 抖动算法，为空时使用 media.dither.image-default
      */
-    private BufferedImage applyFloydSteinbergDithering(BufferedImage img) {
-        int w = img.getWidth();
-        int h = img.getHeight();
+    public ByteArrayInputStream processImage(InputStream input, DitherType ditherType) throws IOException {
+        return processImage(input, defaultProfile(resolveImageDither(ditherType)));
+    }
 
-        // 为了防止处理越界，且方便计算，先把像素读到一个二维数组里
-        // 这里的 range 是 0-255
-        int[][] pixels = new int[h][w];
-        for (int y = 0; y < h; y++) {
-            for (int x = 0; x < w; x++) {
-                // 获取 RGB 的 Blue 分量作为灰度值 (因为是灰度图，RGB一样)
-                pixels[y][x] = img.getRGB(x, y) & 0xFF;
-            }
+    /**
+     * 核心处理流程：解码 -> 缩放 -> 旋转 -> 抖动/调色板量化 -> 按面板调色板输出 PNG
+     * 同时处理的图片数受 media.processing.max-concurrent-decodes 限制
+     */
+    public ByteArrayInputStream processImage(InputStream input, PanelProfile profile) throws IOException {
+        try (ImageProcessingEngine.DecodePermit permit = processingEngine.acquireDecodePermit()) {
+            // 1. 解码：按内容画面分辨率降采样，并处理 jpg 的 EXIF 旋转
+            BufferedImage decodedImage = processingEngine.decode(input, profile.contentWidth(), profile.contentHeight());
+
+            // 2. 缩放 + 旋转 + 抖动，得到帧缓冲方向的颜色索引
+            int[] indices = toPanelIndices(decodedImage, profile);
+
+            // 3. 输出为流 (准备上传到 MinIO)
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            ImageIO.write(toIndexedImage(indices, profile), "png", os);
+            return new ByteArrayInputStream(os.toByteArray());
         }
+    }
 
-        // 开始遍历 (从左到右，从上到下)
-        for (int y = 0; y < h; y++) {
-            for (int x = 0; x < w; x++) {
-                int oldPixel = pixels[y][x];
-
-                // 1. 阈值量化: 超过128变白(255)，否则变黑(0)
-                int newPixel = oldPixel < 128 ? 0 : 255;
-                pixels[y][x] = newPixel; // 更新当前像素
+    /**
+     * 缩放 + 旋转 + 抖动（图片和视频逐帧共用）
+     * 黑白屏走灰度抖动；彩色屏在 Lab 空间按调色板量化
+     *
+     * @return 帧缓冲方向（profile.width x profile.height）的调色板颜色索引，行优先
+     */
+    public int[] toPanelIndices(BufferedImage srcImg, PanelProfile profile) {
+        int w = profile.contentWidth();
+        int h = profile.contentHeight();
 
-                // 2. 计算误差
-                int quantError = oldPixel - newPixel;
+        // 1. 缩放（黑白屏同时转为灰度），按行带并行
+        if (profile.getPalette() == PanelPalette.BW) {
+            return toMonochromeIndices(processingEngine.resizeToGray(srcImg, w, h), profile);
+        }
+        return toColorIndices(processingEngine.resizeToRgb(srcImg, w, h), profile);
+    }
 
-                // 3. 扩散误差 (四个方向)
-                // 右边 (x+1, y) : 7/16
-                if (x + 1 < w) {
-                    pixels[y][x + 1] = clamp(pixels[y][x + 1] + (int)(quantError * 7.0 / 16));
-                }
-                // 左下 (x-1, y+1) : 3/16
-                if (x - 1 >= 0 && y + 1 < h) {
-                    pixels[y + 1][x - 1] = clamp(pixels[y + 1][x - 1] + (int)(quantError * 3.0 / 16));
-                }
-                // 正下 (x, y+1) : 5/16
-                if (y + 1 < h) {
-                    pixels[y + 1][x] = clamp(pixels[y + 1][x] + (int)(quantError * 5.0 / 16));
-                }
-                // 右下 (x+1, y+1) : 1/16
-                if (x + 1 < w && y + 1 < h) {
-                    pixels[y + 1][x + 1] = clamp(pixels[y + 1][x + 1] + (int)(quantError * 1.0 / 16));
-                }
+    /**
+     * 旋转 + 抖动，输入已经是内容分辨率（profile.contentWidth x contentHeight）的 RGB 像素
+     * 视频帧由 FFmpeg 解码时直接缩放到该分辨率，省去整帧 BufferedImage 和 Java 侧缩放
+     *
+     * @param rgb 像素 0xRRGGBB，行优先；黑白屏会就地转为灰度，调用方不能再使用
+     */
+    public int[] toPanelIndices(int[] rgb, PanelProfile profile) {
+        if (profile.getPalette() == PanelPalette.BW) {
+            for (int i = 0; i < rgb.length; i++) {
+                rgb[i] = ImageProcessingEngine.luma(rgb[i]);
             }
+            return toMonochromeIndices(rgb, profile);
         }
+        return toColorIndices(rgb, profile);
+    }
 
-        // 将处理后的数组写回 BufferedImage
-        BufferedImage result = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_BINARY); // 注意这里是 BINARY
-        for (int y = 0; y < h; y++) {
-            for (int x = 0; x < w; x++) {
-                int val = pixels[y][x];
-                // 还原成 RGB 格式 (黑:0x000000, 白:0xFFFFFF)
-                int rgb = (val == 0) ? 0x000000 : 0xFFFFFF;
-                result.setRGB(x, y, rgb);
-            }
+    private int[] toColorIndices(int[] pixels, PanelProfile profile) {
+        // 2. 按安装角度旋转到帧缓冲方向
+        pixels = rotate(pixels, profile.contentWidth(), profile.contentHeight(), profile.getRotation());
+
+        // 3. 调色板量化
+        return paletteQuantizer.quantize(pixels, profile.getWidth(), profile.getHeight(),
+                profile.getPalette(), getDitherAlgorithm(profile.getDitherType()));
+    }
+
+    private int[] toMonochromeIndices(int[] pixels, PanelProfile profile) {
+        // 2. 按安装角度旋转到帧缓冲方向（在帧缓冲上抖动，有序抖动的网格才能和物理像素对齐）
+        pixels = rotate(pixels, profile.contentWidth(), profile.contentHeight(), profile.getRotation());
+
+        // 3. 抖动 (变成纯黑白)
+        getDitherAlgorithm(profile.getDitherType()).dither(pixels, profile.getWidth(), profile.getHeight());
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = pixels[i] == 0 ? PanelPalette.BLACK : PanelPalette.WHITE;
         }
-        return result;
+        return pixels;
+    }
+
+    /**
+     * 默认面板参数
+     *
+     * @param ditherType 抖动算法，不能为空
+     */
+    public PanelProfile defaultProfile(DitherType ditherType) {
+        return PanelProfile.builder()
+                .width(defaultPanelWidth)
+                .height(defaultPanelHeight)
+                .bitDepth(defaultPanelPalette.getBitsPerPixel())
+                .palette(defaultPanelPalette)
+                .rotation(defaultPanelRotation)
+                .ditherType(ditherType)
+                .build();
+    }
+
+    /**
+     * 图片实际使用的抖动算法（未指定时取默认值）
+     */
+    public DitherType resolveImageDither(DitherType requested) {
+        return requested == null ? defaultImageDither : requested;
     }
 
-    public BufferedImage toDitheredImage(BufferedImage srcImg) {
-        // 1. 强制缩放
-        BufferedImage resized = new BufferedImage(TARGET_WIDTH, TARGET_HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
-        Graphics2D g = resized.createGraphics();
-        g.drawImage(srcImg, 0, 0, TARGET_WIDTH, TARGET_HEIGHT, null);
-        g.dispose();
+    /**
+     * 获取指定类型的抖动算法
+     */
+    public DitherAlgorithm getDitherAlgorithm(DitherType ditherType) {
+        DitherAlgorithm algorithm = ditherAlgorithms.get(ditherType);
+        if (algorithm == null) {
+            throw new IllegalArgumentException("不支持的抖动算法: " + ditherType);
+        }
+        return algorithm;
+    }
 
-        // 2. 调用之前的抖动算法逻辑 applyFloydSteinbergDithering(resized)
-        return applyFloydSteinbergDithering(resized);
+    /**
+     * 颜色索引 -> PNG 用的索引色图像
+     * 1-bit 黑白屏保持原来的 TYPE_BYTE_BINARY 输出 (黑:0, 白:1)
+     */
+    private BufferedImage toIndexedImage(int[] indices, PanelProfile profile) {
+        int w = profile.getWidth();
+        int h = profile.getHeight();
+        PanelPalette palette = profile.getPalette();
+
+        BufferedImage result;
+        if (palette == PanelPalette.BW && profile.getBitDepth() == 1) {
+            result = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_BINARY); // 注意这里是 BINARY
+        } else {
+            byte[] r = new byte[palette.size()];
+            byte[] g = new byte[palette.size()];
+            byte[] b = new byte[palette.size()];
+            for (int i = 0; i < palette.size(); i++) {
+                int rgb = palette.getColor(i);
+                r[i] = (byte) (rgb >> 16);
+                g[i] = (byte) (rgb >> 8);
+                b[i] = (byte) rgb;
+            }
+            IndexColorModel colorModel = new IndexColorModel(profile.getBitDepth(), palette.size(), r, g, b);
+            result = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_BINARY, colorModel);
+        }
+        WritableRaster raster = result.getRaster();
+        raster.setSamples(0, 0, w, h, 0, indices);
+        return result;
     }
 
     /**
-     * 辅助方法：确保像素值在 0-255 之间
+     * 行优先像素数组顺时针旋转
+     *
+     * @param w 旋转前宽度
+     * @param h 旋转前高度
      */
-    private int clamp(int value) {
-        return Math.max(0, Math.min(255, value));
+    private int[] rotate(int[] pixels, int w, int h, int rotation) {
+        if (rotation == 0) {
+            return pixels;
+        }
+        int[] rotated = new int[pixels.length];
+        for (int y = 0; y < h; y++) {
+            int row = y * w;
+            for (int x = 0; x < w; x++) {
+                int target;
+                if (rotation == 90) {
+                    target = x * h + (h - 1 - y);
+                } else if (rotation == 180) {
+                    target = (h - 1 - y) * w + (w - 1 - x);
+                } else {
+                    target = (w - 1 - x) * h + y;
+                }
+                rotated[target] = pixels[row + x];
+            }
+        }
+        return rotated;
     }
 }
@@ -0,0 +1,140 @@
+package com.stalab.e_ink_billboard_backend.common.util;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * 感知哈希（pHash）
+ * 图片缩成 32x32 灰度图，做二维 DCT，取左上角 8x8 低频系数，大于中位数记 1，得到 64 位哈希。
+ * 缩放、重新压缩、轻微调色后的图片哈希只差几位，用汉明距离判断是否近似重复
+ */
+public final class PerceptualHash {
+
+    private static final int SIZE = 32;
+    private static final int LOW = 8;
+    /**
+     * 每个缩略图像素在每个方向上的采样点数
+     */
+    private static final int SAMPLES = 4;
+    /**
+     * 从文件解码时，降采样后的短边不小于该值
+     */
+    private static final int DECODE_MIN_SIDE = 512;
+
+    private static final double[][] COS = new double[LOW][SIZE];
+
+    static {
+        for (int u = 0; u < LOW; u++) {
+            for (int x = 0; x < SIZE; x++) {
+                COS[u][x] = Math.cos((2 * x + 1) * u * Math.PI / (2 * SIZE));
+            }
+        }
+    }
+
+    private PerceptualHash() {
+    }
+
+    /**
+     * 计算图片的 64 位感知哈希
+     */
+    public static long hash(BufferedImage image) {
+        double[][] gray = thumbnail(image);
+
+        // 先按行再按列做 DCT，只算需要的 8x8 低频部分
+        double[][] rows = new double[SIZE][LOW];
+        for (int y = 0; y < SIZE; y++) {
+            for (int u = 0; u < LOW; u++) {
+                double sum = 0;
+                for (int x = 0; x < SIZE; x++) {
+                    sum += gray[y][x] * COS[u][x];
+                }
+                rows[y][u] = sum;
+            }
+        }
+        double[] coefficients = new double[LOW * LOW];
+        for (int v = 0; v < LOW; v++) {
+            for (int u = 0; u < LOW; u++) {
+                double sum = 0;
+                for (int y = 0; y < SIZE; y++) {
+                    sum += rows[y][u] * COS[v][y];
+                }
+                coefficients[v * LOW + u] = sum;
+            }
+        }
+
+        // 中位数不含直流分量（整体亮度），避免它拉偏阈值
+        double[] sorted = Arrays.copyOfRange(coefficients, 1, coefficients.length);
+        Arrays.sort(sorted);
+        double median = (sorted[sorted.length / 2 - 1] + sorted[sorted.length / 2]) / 2;
+        long hash = 0;
+        for (int i = 0; i < coefficients.length; i++) {
+            if (coefficients[i] > median) {
+                hash |= 1L << i;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * 从图片文件计算感知哈希，解码时按比例降采样，大图不必完整解码
+     *
+     * @throws IOException 不是可识别的图片
+     */
+    public static long hash(File file) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+            Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("无法识别的图片格式: " + file.getName());
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int minSide = Math.min(reader.getWidth(0), reader.getHeight(0));
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, minSide / DECODE_MIN_SIDE);
+                param.setSourceSubsampling(step, step, 0, 0);
+                return hash(reader.read(0, param));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 两个哈希的汉明距离
+     */
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    /**
+     * 缩成 SIZE x SIZE 的亮度图，每个像素取若干采样点的平均
+     */
+    private static double[][] thumbnail(BufferedImage image) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        int points = SIZE * SAMPLES;
+        double[][] gray = new double[SIZE][SIZE];
+        for (int gy = 0; gy < SIZE; gy++) {
+            for (int gx = 0; gx < SIZE; gx++) {
+                int sum = 0;
+                for (int sy = 0; sy < SAMPLES; sy++) {
+                    int y = (int) ((long) (gy * SAMPLES + sy) * h / points);
+                    for (int sx = 0; sx < SAMPLES; sx++) {
+                        int x = (int) ((long) (gx * SAMPLES + sx) * w / points);
+                        sum += ImageProcessingEngine.luma(image.getRGB(x, y));
+                    }
+                }
+                gray[gy][gx] = (double) sum / (SAMPLES * SAMPLES);
+            }
+        }
+        return gray;
+    }
+}
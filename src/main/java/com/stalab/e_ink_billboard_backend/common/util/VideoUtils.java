@@ -1,126 +1,329 @@
 package com.stalab.e_ink_billboard_backend.common.util;
 
+import com.stalab.e_ink_billboard_backend.common.enums.DitherType;
+import com.stalab.e_ink_billboard_backend.common.util.evc.EvcWriter;
+import com.stalab.e_ink_billboard_backend.model.dto.PanelProfile;
 import com.stalab.e_ink_billboard_backend.model.dto.VideoProcessResult;
+import lombok.extern.slf4j.Slf4j;
+import org.bytedeco.ffmpeg.global.avutil;
+import org.bytedeco.ffmpeg.global.swscale;
 import org.bytedeco.javacv.FFmpegFrameGrabber;
-import org.bytedeco.javacv.Java2DFrameConverter;
+import org.bytedeco.javacv.Frame;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Component;
 
-import java.awt.Graphics;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
 
+@Slf4j
 @Component
 public class VideoUtils {
 
 
     private final ImageUtils imageUtils;
 
+    /**
+     * 逐帧渲染的工作线程池
+     */
+    private final ThreadPoolTaskExecutor frameExecutor;
+
+    private final int frameWindow;
+
     // 目标帧率
     private static final int TARGET_FPS = 5;
 
-    public VideoUtils(ImageUtils imageUtils) {
+    /**
+     * 视频默认抖动算法（上传时未指定则使用）
+     * 有序抖动（BAYER / BLUE_NOISE）帧间稳定，画面静止区域不会闪烁
+     */
+    @Value("${media.dither.video-default:BAYER}")
+    private DitherType defaultVideoDither;
+
+    /**
+     * EVC 关键帧间隔（帧），默认 10 秒一个关键帧
+     */
+    @Value("${media.video.evc-key-interval:50}")
+    private int evcKeyInterval;
+
+    /**
+     * 近似重复帧阈值：采样帧与上一次渲染的帧在亮度网格上的最大差值（0-255）低于该值时不再渲染，沿用上一帧
+     * 0 表示关闭，每个采样帧都渲染
+     */
+    @Value("${media.video.scene-change-threshold:8}")
+    private int sceneChangeThreshold;
+
+    /**
+     * 每个视频的 FFmpeg 解码线程数，0 表示由 FFmpeg 按 CPU 核数自动决定
+     * 多个视频同时转码时可调小，避免解码线程与逐帧渲染线程争抢 CPU
+     */
+    @Value("${media.video.decode-threads:0}")
+    private int decodeThreads;
+
+    public VideoUtils(ImageUtils imageUtils,
+                      @Qualifier("videoFrameExecutor") ThreadPoolTaskExecutor frameExecutor) {
         this.imageUtils = imageUtils;
+        this.frameExecutor = frameExecutor;
+        // 每个视频最多同时在途的帧数：保证每个工作线程手头有一帧、队列里还有一帧
+        this.frameWindow = frameExecutor.getMaxPoolSize() * 2;
     }
 
     /**
-     * 处理视频：抽帧 -> 抖动 -> 打包成 BIN
+     * 处理视频：抽帧 -> 抖动 -> 打包成 BIN（默认面板）
      * 同时收集采样帧用于审核
-     * @return VideoProcessResult (BIN流 + 采样帧)
+     * @param source 视频文件
+     * @param binOut BIN 输出，每处理一帧写入一帧
+     * @param ditherType 抖动算法，为空时使用 media.dither.video-default
+     * @return VideoProcessResult (采样帧 + 帧数/时长)
+     */
+    public VideoProcessResult processVideo(File source, DitherType ditherType, OutputStream binOut) throws Exception {
+        return processVideo(source, imageUtils.defaultProfile(resolveVideoDither(ditherType)), binOut);
+    }
+
+    /**
+     * 处理视频：抽帧 -> 抖动 -> 按面板参数打包成 BIN
+     * 流水线：当前线程顺序解码，FFmpeg 在解码时直接缩放到面板内容分辨率（swscale 面积平均，BGR24），
+     * 非采样帧只解码不做像素转换；每个采样帧拷贝成 RGB 像素后交给 videoFrameExecutor 并行做 旋转 + 抖动 + 打包，
+     * 在途帧数不超过 frameWindow（有界环形窗口），再按帧序写出，保证 BIN 中帧顺序与视频一致。
+     * 采样帧先经 FrameChangeDetector 比较亮度网格，画面静止时跳过渲染，直接重复写出上一帧：
+     * BIN 仍是固定 5fps（兼容现有固件），EVC 中这些帧编码为几乎不占空间的重复帧。
+     * 逐帧写出，内存占用与窗口内的帧数相关而与视频长度无关；
+     * 从文件读取使 FFmpeg 可以直接 seek（moov 在文件末尾的 MP4 也无需把整段视频缓冲在内存里）
+     * @return VideoProcessResult (采样帧 + 帧数/时长)
      */
-    public VideoProcessResult processVideo(InputStream inputStream) throws Exception {
-        FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(inputStream);
-        grabber.start();
+    public VideoProcessResult processVideo(File source, PanelProfile profile, OutputStream binOut) throws Exception {
+        int processedCount = 0;
+        LongAdder renderNanos = new LongAdder();
+        List<BufferedImage> sampleFrames = new ArrayList<>();
+        int renderedCount = 0;
+        FrameChangeDetector changeDetector = new FrameChangeDetector(sceneChangeThreshold);
+        Future<byte[]> lastRendered = null;
+        Deque<Future<byte[]>> window = new ArrayDeque<>(frameWindow);
+        Integer duration;
+        long start = System.nanoTime();
 
-        // 原始帧率
-        double frameRate = grabber.getFrameRate();
-        // 计算采样步长：比如原视频30fps，我们要5fps，那就每隔6帧采一次
-        int step = (int) Math.max(1, frameRate / TARGET_FPS);
+        int w = profile.contentWidth();
+        int h = profile.contentHeight();
 
-        Java2DFrameConverter converter = new Java2DFrameConverter();
-        ByteArrayOutputStream binOutputStream = new ByteArrayOutputStream();
+        try (FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(source)) {
+            grabber.setImageWidth(w);
+            grabber.setImageHeight(h);
+            grabber.setPixelFormat(avutil.AV_PIX_FMT_BGR24);
+            grabber.setImageScalingFlags(swscale.SWS_AREA);
+            if (decodeThreads > 0) {
+                grabber.setVideoOption("threads", String.valueOf(decodeThreads));
+            }
+            grabber.start();
+            duration = grabber.getLengthInTime() > 0 ? (int) Math.round(grabber.getLengthInTime() / 1e6) : null;
 
-        int frameIndex = 0;
-        int processedCount = 0;
-        org.bytedeco.javacv.Frame frame;
+            // 原始帧率
+            double frameRate = grabber.getFrameRate();
+            // 计算采样步长：比如原视频30fps，我们要5fps，那就每隔6帧采一次
+            int step = (int) Math.max(1, frameRate / TARGET_FPS);
 
-        List<BufferedImage> sampleFrames = new ArrayList<>();
+            int frameIndex = 0;
+            int nextSampleAt = 0;
+            Frame frame;
 
-        while ((frame = grabber.grabImage()) != null) {
-            // 抽帧逻辑
-            if (frameIndex % step == 0) {
-                // 1. 转成 Java 图片对象
-                BufferedImage srcImage = converter.getBufferedImage(frame);
-                if (srcImage != null) {
-                    // 收集采样帧 (每隔10个处理帧收集一次，即每2秒收集一次，最多5张)
-                    // 注意：必须深拷贝，因为converter返回的对象复用buffer
-                    if (processedCount % 10 == 0 && sampleFrames.size() < 5) {
-                        sampleFrames.add(copyImage(srcImage));
-                    }
+            // 只有采样帧需要 swscale 缩放和像素格式转换
+            while ((frame = grabber.grabFrame(false, true, frameIndex % step == 0, false, false)) != null) {
+                // 抽帧逻辑
+                if (frameIndex % step == 0 && frame.image != null) {
+                    // 1. 拷贝成 RGB 像素：grabber 复用帧缓冲，而渲染在其他线程进行
+                    int[] rgb = toRgbPixels(frame, w, h);
 
-                    // 2. 核心算法：缩放 + 抖动 (复用 ImageUtils)
-                    BufferedImage dithered = imageUtils.toDitheredImage(srcImage);
+                    // 2. 画面有明显变化才渲染，否则沿用上一帧
+                    if (changeDetector.changed(rgb, w, h)) {
+                        // 收集采样帧 (间隔至少10个处理帧即2秒，最多5张)，须在渲染就地修改像素之前
+                        if (processedCount >= nextSampleAt && sampleFrames.size() < 5) {
+                            sampleFrames.add(toImage(rgb, w, h));
+                            nextSampleAt = processedCount + 10;
+                        }
+                        lastRendered = frameExecutor.submit(() -> renderFrame(rgb, profile, renderNanos));
+                        renderedCount++;
+                    }
 
-                    // 3. 提取纯像素数据 (1-bit 打包)
-                    byte[] frameBytes = convertTo1BitRawData(dithered);
-                    binOutputStream.write(frameBytes);
+                    // 3. 窗口已满时先按顺序写出最早的一帧，再放入新帧（重复帧与上一帧共用同一个结果）
+                    if (window.size() >= frameWindow) {
+                        binOut.write(awaitFrame(window.pollFirst()));
+                    }
+                    window.addLast(lastRendered);
 
                     processedCount++;
                 }
+                frameIndex++;
+            }
+            grabber.stop();
+
+            // 4. 写出剩余的帧
+            while (!window.isEmpty()) {
+                binOut.write(awaitFrame(window.pollFirst()));
             }
-            frameIndex++;
+        } finally {
+            // 出错时取消还没开始的帧
+            window.forEach(f -> f.cancel(true));
         }
 
-        grabber.stop();
+        if (processedCount > 0) {
+            log.info("视频帧渲染完成: 面板={}, 帧数={}, 实际渲染={}, 平均每帧耗时={}ms, 总耗时={}ms",
+                    profile.cacheKey(), processedCount, renderedCount,
+                    String.format("%.2f", renderNanos.sum() / 1e6 / renderedCount),
+                    (System.nanoTime() - start) / 1_000_000);
+        }
 
         return VideoProcessResult.builder()
-                .binStream(new ByteArrayInputStream(binOutputStream.toByteArray()))
                 .sampleFrames(sampleFrames)
+                .frameCount(processedCount)
+                .duration(duration)
                 .build();
     }
 
-    private BufferedImage copyImage(BufferedImage source) {
-        BufferedImage b = new BufferedImage(source.getWidth(), source.getHeight(), source.getType());
-        Graphics g = b.getGraphics();
-        g.drawImage(source, 0, 0, null);
-        g.dispose();
-        return b;
+    /**
+     * 单独抽取审核用的采样帧（审核服务恢复后重审已转码的视频时使用）
+     * 按时长等分 seek 到各段中点取一帧，不解码整段视频；分辨率与转码时的采样帧一致
+     * @param count 采样帧数
+     */
+    public List<BufferedImage> sampleFrames(File source, int count) throws Exception {
+        PanelProfile profile = imageUtils.defaultProfile(resolveVideoDither(null));
+        int w = profile.contentWidth();
+        int h = profile.contentHeight();
+        List<BufferedImage> samples = new ArrayList<>(count);
+        try (FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(source)) {
+            grabber.setImageWidth(w);
+            grabber.setImageHeight(h);
+            grabber.setPixelFormat(avutil.AV_PIX_FMT_BGR24);
+            grabber.setImageScalingFlags(swscale.SWS_AREA);
+            grabber.start();
+            long length = grabber.getLengthInTime();
+            for (int i = 0; i < count; i++) {
+                if (length > 0) {
+                    grabber.setVideoTimestamp(length * (2L * i + 1) / (2L * count));
+                }
+                Frame frame = grabber.grabImage();
+                if (frame == null) {
+                    break;
+                }
+                samples.add(toImage(toRgbPixels(frame, w, h), w, h));
+            }
+            grabber.stop();
+        }
+        return samples;
+    }
+
+    /**
+     * 单帧渲染：旋转 + 抖动/调色板量化 (复用 ImageUtils)，再按面板位深打包
+     */
+    private byte[] renderFrame(int[] rgb, PanelProfile profile, LongAdder renderNanos) {
+        long renderStart = System.nanoTime();
+        byte[] frameBytes = convertToRawData(imageUtils.toPanelIndices(rgb, profile), profile);
+        renderNanos.add(System.nanoTime() - renderStart);
+        return frameBytes;
+    }
+
+    private static byte[] awaitFrame(Future<byte[]> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 把原始 BIN（帧依次拼接）转成 EVC 容器
+     * 顺序读取、逐帧编码，只需保留当前帧和上一帧
+     * @param rawBin 按 profile 打包的原始 BIN
+     * @param target 输出文件（帧数在结束时回写到文件头）
+     * @return 帧数
+     */
+    public int encodeEvc(InputStream rawBin, PanelProfile profile, File target) throws IOException {
+        try (EvcWriter writer = new EvcWriter(target, profile.getWidth(), profile.getHeight(),
+                profile.getBitDepth(), TARGET_FPS, evcKeyInterval)) {
+            byte[] frame = new byte[writer.getFrameBytes()];
+            int n;
+            while ((n = rawBin.readNBytes(frame, 0, frame.length)) == frame.length) {
+                writer.writeFrame(frame);
+            }
+            if (n > 0) {
+                log.warn("原始BIN末尾存在不完整的帧，已忽略: {} bytes", n);
+            }
+            log.info("EVC编码完成: 面板={}, 帧数={}, 压缩率={}%",
+                    profile.cacheKey(), writer.getFrameCount(), String.format("%.1f", writer.getRatio() * 100));
+            return writer.getFrameCount();
+        }
+    }
+
+    /**
+     * 视频实际使用的抖动算法（未指定时取默认值）
+     */
+    public DitherType resolveVideoDither(DitherType requested) {
+        return requested == null ? defaultVideoDither : requested;
     }
 
     /**
-     * 将抖动后的黑白 BufferedImage 转成 1-bit 的 byte[]
-     * 假设屏幕宽是 8 的倍数
+     * BGR24 帧缓冲 -> RGB 像素（0xRRGGBB），按行跨度读取
      */
-    private byte[] convertTo1BitRawData(BufferedImage img) {
-        int w = img.getWidth();
-        int h = img.getHeight();
-        // 每一帧的大小 = 宽 * 高 / 8 (bit转byte)
-        byte[] data = new byte[w * h / 8];
+    private static int[] toRgbPixels(Frame frame, int w, int h) {
+        if (frame.imageWidth != w || frame.imageHeight != h) {
+            throw new IllegalStateException("FFmpeg 输出尺寸不符: " + frame.imageWidth + "x" + frame.imageHeight);
+        }
+        ByteBuffer buffer = (ByteBuffer) frame.image[0];
+        int stride = frame.imageStride;
+        int[] rgb = new int[w * h];
+        for (int y = 0; y < h; y++) {
+            int p = y * stride;
+            int row = y * w;
+            for (int x = 0; x < w; x++, p += 3) {
+                rgb[row + x] = (buffer.get(p + 2) & 0xFF) << 16 | (buffer.get(p + 1) & 0xFF) << 8 | (buffer.get(p) & 0xFF);
+            }
+        }
+        return rgb;
+    }
+
+    /**
+     * 审核用的采样帧（面板内容分辨率）
+     */
+    private static BufferedImage toImage(int[] rgb, int w, int h) {
+        BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, w, h, rgb, 0, w);
+        return image;
+    }
 
-        int byteIndex = 0;
-        int bitIndex = 0;
-        byte currentByte = 0;
+    /**
+     * 将颜色索引按面板位深打包成 byte[]
+     * 高位在前，每行按字节对齐（宽度是 8 的倍数的 1-bit 屏与原来的连续打包完全一致）
+     * 黑色 -> 0, 白色 -> 1（调色板索引即屏幕驱动的颜色编码）
+     */
+    private byte[] convertToRawData(int[] indices, PanelProfile profile) {
+        int w = profile.getWidth();
+        int h = profile.getHeight();
+        int bits = profile.getBitDepth();
+        int rowBytes = (w * bits + 7) / 8;
+        // 每一帧的大小 = 每行字节数 * 高
+        byte[] data = new byte[rowBytes * h];
 
         for (int y = 0; y < h; y++) {
+            int row = y * w;
+            int rowStart = y * rowBytes;
             for (int x = 0; x < w; x++) {
-                // 获取颜色，黑色为0，白色为1 (或者反过来，看你屏幕驱动要求)
-                // 这里假设：黑色(0x000000) -> bit 0, 白色(0xFFFFFF) -> bit 1
-                int rgb = img.getRGB(x, y) & 0xFFFFFF;
-                int bit = (rgb == 0) ? 0 : 1;
-
-                // 拼凑 bit 到 byte 中
-                // 移位操作：把 bit 塞进去
-                currentByte = (byte) ((currentByte << 1) | bit);
-                bitIndex++;
-
-                if (bitIndex == 8) {
-                    data[byteIndex++] = currentByte;
-                    bitIndex = 0;
-                    currentByte = 0;
-                }
+                // 拼凑 bits 到 byte 中：第 x 个像素落在 (x * bits) 位处
+                int bitOffset = x * bits;
+                int shift = 8 - bits - (bitOffset & 7);
+                data[rowStart + (bitOffset >> 3)] |= (byte) (indices[row + x] << shift);
             }
         }
         return data;
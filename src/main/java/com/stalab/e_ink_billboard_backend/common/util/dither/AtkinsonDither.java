@@ -0,0 +1,65 @@
+package com.stalab.e_ink_billboard_backend.common.util.dither;
+
+import com.stalab.e_ink_billboard_backend.common.enums.DitherType;
+import org.springframework.stereotype.Component;
+
+/**
+ * Atkinson 误差扩散
+ * 误差的 1/8 分别扩散到 6 个邻居，剩余 2/8 直接丢弃，
+ * 因此高光和暗部更干净，对比度比 Floyd-Steinberg 高
+ */
+@Component
+public class AtkinsonDither implements ErrorDiffusionDither {
+
+    // 扩散邻居偏移 {dx, dy}
+    private static final int[][] NEIGHBORS = {
+            {1, 0}, {2, 0},
+            {-1, 1}, {0, 1}, {1, 1},
+            {0, 2}
+    };
+
+    // 彩色量化使用的扩散核 {dx, dy, 权重}
+    private static final float[][] KERNEL = new float[NEIGHBORS.length][];
+
+    static {
+        for (int i = 0; i < NEIGHBORS.length; i++) {
+            KERNEL[i] = new float[]{NEIGHBORS[i][0], NEIGHBORS[i][1], 1f / 8};
+        }
+    }
+
+    @Override
+    public DitherType type() {
+        return DitherType.ATKINSON;
+    }
+
+    @Override
+    public void dither(int[] pixels, int width, int height) {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int index = y * width + x;
+                int oldPixel = pixels[index];
+                int newPixel = oldPixel < 128 ? 0 : 255;
+                pixels[index] = newPixel;
+
+                int error = (oldPixel - newPixel) / 8;
+                if (error == 0) {
+                    continue;
+                }
+
+                for (int[] offset : NEIGHBORS) {
+                    int nx = x + offset[0];
+                    int ny = y + offset[1];
+                    if (nx >= 0 && nx < width && ny < height) {
+                        int n = ny * width + nx;
+                        pixels[n] = Math.max(0, Math.min(255, pixels[n] + error));
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public float[][] diffusionKernel() {
+        return KERNEL;
+    }
+}
@@ -0,0 +1,170 @@
+package com.stalab.e_ink_billboard_backend.common.util.dither;
+
+import com.stalab.e_ink_billboard_backend.common.enums.DitherType;
+import org.springframework.stereotype.Component;
+
+import java.util.Random;
+
+/**
+ * 蓝噪声阈值抖动
+ * 和 Bayer 一样是逐像素比较阈值（可并行、帧间稳定），
+ * 但阈值矩阵用 void-and-cluster 算法生成，没有 Bayer 的十字网格纹理
+ */
+@Component
+public class BlueNoiseDither implements OrderedDither {
+
+    // 阈值矩阵边长（64x64 平铺）
+    private static final int SIZE = 64;
+    private static final int MASK = SIZE - 1;
+
+    // 高斯能量函数的标准差（Ulichney 推荐 1.5）
+    private static final double SIGMA = 1.5;
+
+    // 固定随机种子，保证每次启动生成的矩阵一致
+    private static final long SEED = 0x5EED_B10EL;
+
+    /**
+     * 0-255 的阈值矩阵，首次使用时生成
+     */
+    private volatile int[] thresholds;
+
+    @Override
+    public DitherType type() {
+        return DitherType.BLUE_NOISE;
+    }
+
+    @Override
+    public void dither(int[] pixels, int width, int height) {
+        int[] matrix = getThresholds();
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            int thresholdRow = (y & MASK) * SIZE;
+            for (int x = 0; x < width; x++) {
+                pixels[row + x] = pixels[row + x] < matrix[thresholdRow + (x & MASK)] ? 0 : 255;
+            }
+        }
+    }
+
+    @Override
+    public int threshold(int x, int y) {
+        return getThresholds()[(y & MASK) * SIZE + (x & MASK)];
+    }
+
+    private int[] getThresholds() {
+        int[] result = thresholds;
+        if (result == null) {
+            synchronized (this) {
+                result = thresholds;
+                if (result == null) {
+                    int[] rank = generateRankMatrix();
+                    result = new int[rank.length];
+                    for (int i = 0; i < rank.length; i++) {
+                        // 排名 -> 1-255 阈值（取区间中点）：阈值不为 0，纯黑像素不会被点亮
+                        result[i] = 1 + (int) ((rank[i] + 0.5) * 255 / rank.length);
+                    }
+                    thresholds = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * void-and-cluster 生成蓝噪声排名矩阵
+     * 1. 随机撒 10% 的点，反复把"最密集的点"挪到"最大空洞"，直到稳定
+     * 2. 从初始图样逐个移除最密集点，排名依次递减
+     * 3. 从初始图样逐个填充最大空洞，排名依次递增
+     */
+    private int[] generateRankMatrix() {
+        int total = SIZE * SIZE;
+
+        // 环形（平铺）高斯核
+        double[] kernel = new double[total];
+        for (int dy = 0; dy < SIZE; dy++) {
+            for (int dx = 0; dx < SIZE; dx++) {
+                int ddx = Math.min(dx, SIZE - dx);
+                int ddy = Math.min(dy, SIZE - dy);
+                kernel[dy * SIZE + dx] = Math.exp(-(ddx * ddx + ddy * ddy) / (2 * SIGMA * SIGMA));
+            }
+        }
+
+        boolean[] pattern = new boolean[total];
+        double[] energy = new double[total];
+        Random random = new Random(SEED);
+        int ones = total / 10;
+        int placed = 0;
+        while (placed < ones) {
+            int p = random.nextInt(total);
+            if (!pattern[p]) {
+                toggle(pattern, energy, kernel, p, true);
+                placed++;
+            }
+        }
+
+        // 1. 松弛初始图样（正常几十轮内收敛，上限只是兜底）
+        for (int i = 0; i < total; i++) {
+            int cluster = tightestCluster(pattern, energy);
+            toggle(pattern, energy, kernel, cluster, false);
+            int voidIndex = largestVoid(pattern, energy);
+            toggle(pattern, energy, kernel, voidIndex, true);
+            if (voidIndex == cluster) {
+                break;
+            }
+        }
+
+        int[] rank = new int[total];
+        boolean[] prototype = pattern.clone();
+        double[] prototypeEnergy = energy.clone();
+
+        // 2. 移除最密集点
+        for (int r = ones - 1; r >= 0; r--) {
+            int cluster = tightestCluster(pattern, energy);
+            toggle(pattern, energy, kernel, cluster, false);
+            rank[cluster] = r;
+        }
+
+        // 3. 填充最大空洞
+        pattern = prototype;
+        energy = prototypeEnergy;
+        for (int r = ones; r < total; r++) {
+            int voidIndex = largestVoid(pattern, energy);
+            toggle(pattern, energy, kernel, voidIndex, true);
+            rank[voidIndex] = r;
+        }
+        return rank;
+    }
+
+    private void toggle(boolean[] pattern, double[] energy, double[] kernel, int index, boolean set) {
+        pattern[index] = set;
+        double sign = set ? 1 : -1;
+        int px = index & MASK;
+        int py = index / SIZE;
+        for (int y = 0; y < SIZE; y++) {
+            int kernelRow = ((y - py) & MASK) * SIZE;
+            int row = y * SIZE;
+            for (int x = 0; x < SIZE; x++) {
+                energy[row + x] += sign * kernel[kernelRow + ((x - px) & MASK)];
+            }
+        }
+    }
+
+    private int tightestCluster(boolean[] pattern, double[] energy) {
+        int best = -1;
+        for (int i = 0; i < pattern.length; i++) {
+            if (pattern[i] && (best < 0 || energy[i] > energy[best])) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private int largestVoid(boolean[] pattern, double[] energy) {
+        int best = -1;
+        for (int i = 0; i < pattern.length; i++) {
+            if (!pattern[i] && (best < 0 || energy[i] < energy[best])) {
+                best = i;
+            }
+        }
+        return best;
+    }
+}
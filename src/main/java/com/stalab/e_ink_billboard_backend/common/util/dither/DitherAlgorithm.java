@@ -0,0 +1,25 @@
+package com.stalab.e_ink_billboard_backend.common.util.dither;
+
+import com.stalab.e_ink_billboard_backend.common.enums.DitherType;
+
+/**
+ * 抖动算法 SPI
+ * 实现类注册为 Spring Bean 后会被 ImageUtils 自动收集，按 {@link #type()} 选择。
+ * 彩色调色板量化还需要算法的参数：有序抖动实现 {@link OrderedDither}，误差扩散实现 {@link ErrorDiffusionDither}
+ */
+public interface DitherAlgorithm {
+
+    /**
+     * 算法类型（每种类型只允许一个实现）
+     */
+    DitherType type();
+
+    /**
+     * 将灰度像素就地量化为纯黑白
+     *
+     * @param pixels 灰度像素，行优先排列，取值 0-255；处理后只包含 0 或 255
+     * @param width  图像宽度
+     * @param height 图像高度
+     */
+    void dither(int[] pixels, int width, int height);
+}
@@ -0,0 +1,13 @@
+package com.stalab.e_ink_billboard_backend.common.util.dither;
+
+/**
+ * 误差扩散抖动：量化误差按扩散核分给尚未处理的邻居
+ * 彩色调色板量化时按同一扩散核在 Lab 空间扩散
+ */
+public interface ErrorDiffusionDither extends DitherAlgorithm {
+
+    /**
+     * 扩散核，每项为 {dx, dy, 权重}
+     */
+    float[][] diffusionKernel();
+}
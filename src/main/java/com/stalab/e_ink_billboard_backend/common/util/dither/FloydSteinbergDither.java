@@ -0,0 +1,65 @@
+package com.stalab.e_ink_billboard_backend.common.util.dither;
+
+import com.stalab.e_ink_billboard_backend.common.enums.DitherType;
+import org.springframework.stereotype.Component;
+
+/**
+ * Floyd-Steinberg 误差扩散
+ * 误差按 7/16、3/16、5/16、1/16 扩散到右、左下、正下、右下四个像素
+ */
+@Component
+public class FloydSteinbergDither implements ErrorDiffusionDither {
+
+    // 扩散核 {dx, dy, 权重}（彩色量化使用，与下方灰度实现一致）
+    private static final float[][] KERNEL = {
+            {1, 0, 7f / 16},
+            {-1, 1, 3f / 16}, {0, 1, 5f / 16}, {1, 1, 1f / 16}
+    };
+
+    @Override
+    public DitherType type() {
+        return DitherType.FLOYD_STEINBERG;
+    }
+
+    @Override
+    public void dither(int[] pixels, int width, int height) {
+        // 开始遍历 (从左到右，从上到下)
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            int nextRow = row + width;
+            for (int x = 0; x < width; x++) {
+                int oldPixel = pixels[row + x];
+
+                // 1. 阈值量化: 超过128变白(255)，否则变黑(0)
+                int newPixel = oldPixel < 128 ? 0 : 255;
+                pixels[row + x] = newPixel;
+
+                // 2. 计算误差
+                int quantError = oldPixel - newPixel;
+
+                // 3. 扩散误差 (四个方向)
+                if (x + 1 < width) {
+                    pixels[row + x + 1] = clamp(pixels[row + x + 1] + (int) (quantError * 7.0 / 16));
+                }
+                if (y + 1 < height) {
+                    if (x - 1 >= 0) {
+                        pixels[nextRow + x - 1] = clamp(pixels[nextRow + x - 1] + (int) (quantError * 3.0 / 16));
+                    }
+                    pixels[nextRow + x] = clamp(pixels[nextRow + x] + (int) (quantError * 5.0 / 16));
+                    if (x + 1 < width) {
+                        pixels[nextRow + x + 1] = clamp(pixels[nextRow + x + 1] + (int) (quantError * 1.0 / 16));
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public float[][] diffusionKernel() {
+        return KERNEL;
+    }
+
+    private int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+}
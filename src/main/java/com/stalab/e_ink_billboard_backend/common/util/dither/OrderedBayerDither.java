@@ -0,0 +1,58 @@
+package com.stalab.e_ink_billboard_backend.common.util.dither;
+
+import com.stalab.e_ink_billboard_backend.common.enums.DitherType;
+import org.springframework.stereotype.Component;
+
+/**
+ * 8x8 Bayer 有序抖动
+ * 每个像素只和固定阈值矩阵比较，像素之间没有依赖：
+ * 可以任意并行，且同一画面在相邻视频帧里输出完全一致（不会闪烁）
+ */
+@Component
+public class OrderedBayerDither implements OrderedDither {
+
+    private static final int[][] BAYER_8X8 = {
+            {0, 32, 8, 40, 2, 34, 10, 42},
+            {48, 16, 56, 24, 50, 18, 58, 26},
+            {12, 44, 4, 36, 14, 46, 6, 38},
+            {60, 28, 52, 20, 62, 30, 54, 22},
+            {3, 35, 11, 43, 1, 33, 9, 41},
+            {51, 19, 59, 27, 49, 17, 57, 25},
+            {15, 47, 7, 39, 13, 45, 5, 37},
+            {63, 31, 55, 23, 61, 29, 53, 21}
+    };
+
+    /**
+     * 预先换算成 0-255 的阈值，避免逐像素做浮点运算
+     */
+    private static final int[] THRESHOLDS = new int[64];
+
+    static {
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                THRESHOLDS[y * 8 + x] = (BAYER_8X8[y][x] * 2 + 1) * 256 / 128;
+            }
+        }
+    }
+
+    @Override
+    public DitherType type() {
+        return DitherType.BAYER;
+    }
+
+    @Override
+    public void dither(int[] pixels, int width, int height) {
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            int thresholdRow = (y & 7) * 8;
+            for (int x = 0; x < width; x++) {
+                pixels[row + x] = pixels[row + x] < THRESHOLDS[thresholdRow + (x & 7)] ? 0 : 255;
+            }
+        }
+    }
+
+    @Override
+    public int threshold(int x, int y) {
+        return THRESHOLDS[(y & 7) * 8 + (x & 7)];
+    }
+}
@@ -0,0 +1,13 @@
+package com.stalab.e_ink_billboard_backend.common.util.dither;
+
+/**
+ * 有序（阈值）抖动：每个像素只和固定阈值矩阵比较，像素之间无依赖
+ * 彩色调色板量化时按阈值偏移亮度
+ */
+public interface OrderedDither extends DitherAlgorithm {
+
+    /**
+     * (x, y) 处的阈值（0-255），矩阵按图像平铺
+     */
+    int threshold(int x, int y);
+}
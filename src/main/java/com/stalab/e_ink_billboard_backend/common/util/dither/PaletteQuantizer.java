@@ -0,0 +1,208 @@
+package com.stalab.e_ink_billboard_backend.common.util.dither;
+
+import com.stalab.e_ink_billboard_backend.common.enums.PanelPalette;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 彩色调色板量化（BWR / 7色 ACeP 等）
+ * 在 CIELAB 感知色彩空间中做抖动：颜色距离更接近人眼感受，误差也按 Lab 分量扩散。
+ * 最近颜色通过预计算的 Lab 网格查找表获得，逐像素只需一次数组访问
+ */
+@Component
+public class PaletteQuantizer {
+
+    // Lab 查找表每个分量的网格数（64^3 = 256KB / 调色板）
+    private static final int GRID = 64;
+
+    // D65 参考白
+    private static final float XN = 0.95047f;
+    private static final float YN = 1.0f;
+    private static final float ZN = 1.08883f;
+
+    /**
+     * sRGB 分量(0-255) -> 线性亮度
+     */
+    private static final float[] SRGB_TO_LINEAR = new float[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            double c = i / 255.0;
+            SRGB_TO_LINEAR[i] = (float) (c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4));
+        }
+    }
+
+    /**
+     * 每个调色板的 Lab 网格 -> 最近颜色索引，首次使用时生成
+     */
+    private final Map<PanelPalette, byte[]> lookupTables = new ConcurrentHashMap<>();
+
+    /**
+     * 将 RGB 像素量化为调色板颜色索引
+     *
+     * @param rgb       像素 0xRRGGBB，行优先排列
+     * @param algorithm 抖动算法：误差扩散类按其扩散核在 Lab 空间扩散；有序类按阈值偏移亮度
+     * @return 调色板颜色索引（与 rgb 等长）
+     */
+    public int[] quantize(int[] rgb, int width, int height, PanelPalette palette, DitherAlgorithm algorithm) {
+        int size = width * height;
+        float[] l = new float[size];
+        float[] a = new float[size];
+        float[] b = new float[size];
+        float[] lab = new float[3];
+        for (int i = 0; i < size; i++) {
+            toLab(rgb[i], lab);
+            l[i] = lab[0];
+            a[i] = lab[1];
+            b[i] = lab[2];
+        }
+
+        byte[] lut = lookupTables.computeIfAbsent(palette, PaletteQuantizer::buildLookupTable);
+        float[][] paletteLab = paletteLab(palette);
+        int[] indices = new int[size];
+        if (algorithm instanceof OrderedDither ordered) {
+            quantizeOrdered(l, a, b, width, height, lut, lightnessSpread(paletteLab), ordered, indices);
+        } else if (algorithm instanceof ErrorDiffusionDither diffusion) {
+            quantizeDiffusion(l, a, b, width, height, lut, paletteLab, diffusion.diffusionKernel(), indices);
+        } else {
+            throw new IllegalArgumentException("抖动算法不支持彩色量化: " + algorithm.type());
+        }
+        return indices;
+    }
+
+    /**
+     * 有序抖动：按阈值矩阵偏移亮度后直接查表，像素之间无依赖，帧间稳定
+     * 偏移幅度取调色板相邻亮度的最大间隔（黑白屏即 0-100 全幅，与灰度有序抖动等价）
+     */
+    private void quantizeOrdered(float[] l, float[] a, float[] b, int width, int height, byte[] lut,
+                                 float spread, OrderedDither algorithm, int[] indices) {
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                int i = row + x;
+                float bias = ((algorithm.threshold(x, y) + 0.5f) / 256f - 0.5f) * spread;
+                indices[i] = lookup(lut, l[i] - bias, a[i], b[i]);
+            }
+        }
+    }
+
+    /**
+     * 误差扩散：查表得到最近颜色，Lab 三个分量的误差按扩散核分给尚未处理的邻居
+     */
+    private void quantizeDiffusion(float[] l, float[] a, float[] b, int width, int height, byte[] lut,
+                                   float[][] paletteLab, float[][] kernel, int[] indices) {
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                int i = row + x;
+                int index = lookup(lut, l[i], a[i], b[i]);
+                indices[i] = index;
+
+                float errL = l[i] - paletteLab[index][0];
+                float errA = a[i] - paletteLab[index][1];
+                float errB = b[i] - paletteLab[index][2];
+
+                for (float[] k : kernel) {
+                    int nx = x + (int) k[0];
+                    int ny = y + (int) k[1];
+                    if (nx >= 0 && nx < width && ny < height) {
+                        int n = ny * width + nx;
+                        // 限制在 Lab 有效范围内，避免调色板覆盖不到的颜色让误差无限累积
+                        l[n] = clamp(l[n] + errL * k[2], 0, 100);
+                        a[n] = clamp(a[n] + errA * k[2], -128, 127);
+                        b[n] = clamp(b[n] + errB * k[2], -128, 127);
+                    }
+                }
+            }
+        }
+    }
+
+    private static int lookup(byte[] lut, float l, float a, float b) {
+        return lut[gridIndex(l, 0, 100) * GRID * GRID + gridIndex(a, -128, 127) * GRID + gridIndex(b, -128, 127)];
+    }
+
+    private static int gridIndex(float value, float min, float max) {
+        int index = (int) ((value - min) * (GRID - 1) / (max - min) + 0.5f);
+        return Math.max(0, Math.min(GRID - 1, index));
+    }
+
+    /**
+     * 对 Lab 网格的每个格点求调色板中的最近颜色（CIE76 色差）
+     */
+    private static byte[] buildLookupTable(PanelPalette palette) {
+        float[][] colors = paletteLab(palette);
+        byte[] lut = new byte[GRID * GRID * GRID];
+        for (int li = 0; li < GRID; li++) {
+            float l = li * 100f / (GRID - 1);
+            for (int ai = 0; ai < GRID; ai++) {
+                float a = -128 + ai * 255f / (GRID - 1);
+                for (int bi = 0; bi < GRID; bi++) {
+                    float b = -128 + bi * 255f / (GRID - 1);
+                    int best = 0;
+                    float bestDistance = Float.MAX_VALUE;
+                    for (int c = 0; c < colors.length; c++) {
+                        float dl = l - colors[c][0];
+                        float da = a - colors[c][1];
+                        float db = b - colors[c][2];
+                        float distance = dl * dl + da * da + db * db;
+                        if (distance < bestDistance) {
+                            bestDistance = distance;
+                            best = c;
+                        }
+                    }
+                    lut[(li * GRID + ai) * GRID + bi] = (byte) best;
+                }
+            }
+        }
+        return lut;
+    }
+
+    private static float[][] paletteLab(PanelPalette palette) {
+        float[][] colors = new float[palette.size()][3];
+        for (int i = 0; i < palette.size(); i++) {
+            toLab(palette.getColor(i), colors[i]);
+        }
+        return colors;
+    }
+
+    private static float lightnessSpread(float[][] paletteLab) {
+        float[] lightness = new float[paletteLab.length];
+        for (int i = 0; i < paletteLab.length; i++) {
+            lightness[i] = paletteLab[i][0];
+        }
+        Arrays.sort(lightness);
+        float spread = 0;
+        for (int i = 1; i < lightness.length; i++) {
+            spread = Math.max(spread, lightness[i] - lightness[i - 1]);
+        }
+        return spread;
+    }
+
+    /**
+     * sRGB(0xRRGGBB) -> CIELAB
+     */
+    private static void toLab(int rgb, float[] out) {
+        float r = SRGB_TO_LINEAR[(rgb >> 16) & 0xFF];
+        float g = SRGB_TO_LINEAR[(rgb >> 8) & 0xFF];
+        float b = SRGB_TO_LINEAR[rgb & 0xFF];
+
+        float fx = labF((0.4124564f * r + 0.3575761f * g + 0.1804375f * b) / XN);
+        float fy = labF((0.2126729f * r + 0.7151522f * g + 0.0721750f * b) / YN);
+        float fz = labF((0.0193339f * r + 0.1191920f * g + 0.9503041f * b) / ZN);
+
+        out[0] = 116 * fy - 16;
+        out[1] = 500 * (fx - fy);
+        out[2] = 200 * (fy - fz);
+    }
+
+    private static float labF(float t) {
+        return t > 216f / 24389 ? (float) Math.cbrt(t) : (24389f / 27 * t + 16) / 116;
+    }
+
+    private static float clamp(float value, float min, float max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,138 @@
+package com.stalab.e_ink_billboard_backend.common.util.evc;
+
+import java.io.IOException;
+
+/**
+ * EVC（E-ink Video Container）格式定义
+ * <pre>
+ * 文件头 24 字节（小端）：
+ *   0  magic      "EVC"（3 字节）
+ *   3  u8  version    当前为 1
+ *   4  u16 width      帧缓冲宽度
+ *   6  u16 height     帧缓冲高度
+ *   8  u8  bitDepth   每像素位深（1/2/4）
+ *   9  u8  fps        播放帧率
+ *   10 u16 keyInterval 关键帧间隔（帧）
+ *   12 u32 frameCount 帧数
+ *   16 u32 frameBytes 解码后单帧字节数（每行按字节对齐，与原始 BIN 的一帧相同）
+ *   20 u32 reserved   保留，写 0
+ * 之后依次为每帧：u8 type + u32 payloadLength + payload
+ *   KEY    payload = RLE(帧)
+ *   DELTA  payload = RLE(帧 XOR 上一帧)
+ *   REPEAT 与上一帧完全相同，无 payload
+ * RLE（PackBits 变体）：控制字节 c < 128 时后跟 c+1 个原样字节；c >= 128 时后跟 1 个字节，重复 c-125 次（3-130）
+ * </pre>
+ */
+public final class EvcFormat {
+
+    public static final byte[] MAGIC = {'E', 'V', 'C'};
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 24;
+    public static final int FRAME_HEADER_SIZE = 5;
+
+    public static final int FRAME_KEY = 0;
+    public static final int FRAME_DELTA = 1;
+    public static final int FRAME_REPEAT = 2;
+
+    private static final int MAX_LITERAL = 128;
+    private static final int MIN_RUN = 3;
+    private static final int MAX_RUN = 130;
+
+    private EvcFormat() {
+    }
+
+    /**
+     * RLE 编码结果的最大长度（全是原样字节时每 128 字节多 1 个控制字节）
+     */
+    public static int maxEncodedSize(int length) {
+        return length + (length + MAX_LITERAL - 1) / MAX_LITERAL;
+    }
+
+    /**
+     * RLE 编码
+     *
+     * @param dst 容量不小于 maxEncodedSize(length)
+     * @return 编码后的字节数
+     */
+    public static int encode(byte[] src, int length, byte[] dst) {
+        int in = 0;
+        int out = 0;
+        while (in < length) {
+            int run = 1;
+            while (in + run < length && run < MAX_RUN && src[in + run] == src[in]) {
+                run++;
+            }
+            if (run >= MIN_RUN) {
+                dst[out++] = (byte) (128 + run - MIN_RUN);
+                dst[out++] = src[in];
+                in += run;
+                continue;
+            }
+
+            // 原样字节：直到出现至少 3 个相同字节或达到 128 个
+            int start = in;
+            int literal = 0;
+            while (in < length && literal < MAX_LITERAL) {
+                if (in + 2 < length && src[in] == src[in + 1] && src[in] == src[in + 2]) {
+                    break;
+                }
+                in++;
+                literal++;
+            }
+            dst[out++] = (byte) (literal - 1);
+            System.arraycopy(src, start, dst, out, literal);
+            out += literal;
+        }
+        return out;
+    }
+
+    /**
+     * RLE 解码，结果必须正好填满 dst
+     *
+     * @param xor true 时解码结果与 dst 原内容异或（差分帧直接叠加到上一帧上，不需要额外缓冲）
+     */
+    public static void decode(byte[] src, int length, byte[] dst, boolean xor) throws IOException {
+        int in = 0;
+        int out = 0;
+        while (in < length) {
+            int c = src[in++] & 0xFF;
+            if (c < 128) {
+                int literal = c + 1;
+                if (in + literal > length || out + literal > dst.length) {
+                    throw new IOException("EVC 数据损坏：原样段越界");
+                }
+                if (xor) {
+                    for (int i = 0; i < literal; i++) {
+                        dst[out++] ^= src[in++];
+                    }
+                } else {
+                    System.arraycopy(src, in, dst, out, literal);
+                    in += literal;
+                    out += literal;
+                }
+            } else {
+                int run = c - 128 + MIN_RUN;
+                if (in >= length || out + run > dst.length) {
+                    throw new IOException("EVC 数据损坏：重复段越界");
+                }
+                byte value = src[in++];
+                if (xor) {
+                    // 差分中大段的 0 表示像素未变化，直接跳过
+                    if (value != 0) {
+                        for (int i = 0; i < run; i++) {
+                            dst[out + i] ^= value;
+                        }
+                    }
+                    out += run;
+                } else {
+                    for (int i = 0; i < run; i++) {
+                        dst[out++] = value;
+                    }
+                }
+            }
+        }
+        if (out != dst.length) {
+            throw new IOException("EVC 数据损坏：帧长度不符");
+        }
+    }
+}
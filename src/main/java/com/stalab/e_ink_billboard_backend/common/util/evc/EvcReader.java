@@ -0,0 +1,112 @@
+package com.stalab.e_ink_billboard_backend.common.util.evc;
+
+import lombok.Getter;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * EVC 参考解码器：顺序读出每一帧的原始帧缓冲（与 BIN 一帧的布局相同）
+ * 设备端固件按同样的逻辑实现，只需保留上一帧一块缓冲
+ */
+public class EvcReader implements Closeable {
+
+    private final DataInputStream in;
+    @Getter
+    private final int width;
+    @Getter
+    private final int height;
+    @Getter
+    private final int bitDepth;
+    @Getter
+    private final int fps;
+    @Getter
+    private final int keyInterval;
+    @Getter
+    private final int frameCount;
+    @Getter
+    private final int frameBytes;
+
+    private final byte[] frame;
+    private final byte[] payload;
+    private int framesRead;
+
+    public EvcReader(InputStream input) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(input, 64 * 1024));
+        byte[] raw = new byte[EvcFormat.HEADER_SIZE];
+        try {
+            in.readFully(raw);
+        } catch (EOFException e) {
+            throw new IOException("不是有效的 EVC 文件：文件头不完整");
+        }
+        ByteBuffer header = ByteBuffer.wrap(raw).order(ByteOrder.LITTLE_ENDIAN);
+        byte[] magic = new byte[EvcFormat.MAGIC.length];
+        header.get(magic);
+        if (!Arrays.equals(magic, EvcFormat.MAGIC)) {
+            throw new IOException("不是有效的 EVC 文件：magic 不匹配");
+        }
+        int version = header.get() & 0xFF;
+        if (version != EvcFormat.VERSION) {
+            throw new IOException("不支持的 EVC 版本: " + version);
+        }
+        this.width = header.getShort() & 0xFFFF;
+        this.height = header.getShort() & 0xFFFF;
+        this.bitDepth = header.get() & 0xFF;
+        this.fps = header.get() & 0xFF;
+        this.keyInterval = header.getShort() & 0xFFFF;
+        this.frameCount = header.getInt();
+        this.frameBytes = header.getInt();
+        if (frameBytes != (width * bitDepth + 7) / 8 * height) {
+            throw new IOException("EVC 文件头损坏：帧大小与分辨率不符");
+        }
+        this.frame = new byte[frameBytes];
+        this.payload = new byte[EvcFormat.maxEncodedSize(frameBytes)];
+    }
+
+    /**
+     * 读取下一帧
+     *
+     * @return 帧缓冲（内部复用，调用方需在读取下一帧前用完或自行拷贝），读完时返回 null
+     */
+    public byte[] nextFrame() throws IOException {
+        if (framesRead >= frameCount) {
+            return null;
+        }
+        int type = in.readUnsignedByte();
+        int length = Integer.reverseBytes(in.readInt());
+        if (length < 0 || length > payload.length) {
+            throw new IOException("EVC 数据损坏：帧长度异常 " + length);
+        }
+        in.readFully(payload, 0, length);
+
+        switch (type) {
+            case EvcFormat.FRAME_KEY -> EvcFormat.decode(payload, length, frame, false);
+            case EvcFormat.FRAME_DELTA -> {
+                if (framesRead == 0) {
+                    throw new IOException("EVC 数据损坏：首帧不是关键帧");
+                }
+                EvcFormat.decode(payload, length, frame, true);
+            }
+            case EvcFormat.FRAME_REPEAT -> {
+                if (framesRead == 0) {
+                    throw new IOException("EVC 数据损坏：首帧不是关键帧");
+                }
+            }
+            default -> throw new IOException("EVC 数据损坏：未知帧类型 " + type);
+        }
+        framesRead++;
+        return frame;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
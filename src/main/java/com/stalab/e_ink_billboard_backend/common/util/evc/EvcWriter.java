@@ -0,0 +1,144 @@
+package com.stalab.e_ink_billboard_backend.common.util.evc;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+
+/**
+ * EVC 编码器：逐帧写入原始帧（与 BIN 一帧的布局相同），自动选择 关键帧 / 差分帧 / 重复帧
+ * 帧数在 close 时回写到文件头，因此直接写文件
+ */
+public class EvcWriter implements Closeable {
+
+    private final RandomAccessFile file;
+    private final OutputStream out;
+    private final int width;
+    private final int height;
+    private final int bitDepth;
+    private final int fps;
+    private final int keyInterval;
+    private final int frameBytes;
+
+    private final byte[] previous;
+    private final byte[] delta;
+    private final byte[] encoded;
+    private final byte[] keyEncoded;
+    private int frameCount;
+    private long rawBytes;
+    private long encodedBytes;
+
+    public EvcWriter(File target, int width, int height, int bitDepth, int fps, int keyInterval) throws IOException {
+        this.file = new RandomAccessFile(target, "rw");
+        this.file.setLength(0);
+        this.out = new BufferedOutputStream(Channels.newOutputStream(file.getChannel()), 64 * 1024);
+        this.width = width;
+        this.height = height;
+        this.bitDepth = bitDepth;
+        this.fps = fps;
+        this.keyInterval = Math.max(1, keyInterval);
+        this.frameBytes = (width * bitDepth + 7) / 8 * height;
+        this.previous = new byte[frameBytes];
+        this.delta = new byte[frameBytes];
+        this.encoded = new byte[EvcFormat.maxEncodedSize(frameBytes)];
+        this.keyEncoded = new byte[EvcFormat.maxEncodedSize(frameBytes)];
+        // 先写占位文件头，close 时回填帧数
+        out.write(header(0));
+    }
+
+    public int getFrameBytes() {
+        return frameBytes;
+    }
+
+    /**
+     * 写入一帧
+     * 到达关键帧间隔时写关键帧；否则写与上一帧的 XOR 差分，差分压缩后反而更大时（场景切换）改写关键帧
+     */
+    public void writeFrame(byte[] frame) throws IOException {
+        if (frame.length != frameBytes) {
+            throw new IllegalArgumentException("帧大小不符: expected=" + frameBytes + ", actual=" + frame.length);
+        }
+
+        boolean key = frameCount % keyInterval == 0;
+        if (!key) {
+            boolean same = true;
+            for (int i = 0; i < frameBytes; i++) {
+                delta[i] = (byte) (frame[i] ^ previous[i]);
+                same &= delta[i] == 0;
+            }
+            if (same) {
+                writeRecord(EvcFormat.FRAME_REPEAT, encoded, 0);
+            } else {
+                int deltaLength = EvcFormat.encode(delta, frameBytes, encoded);
+                if (deltaLength > frameBytes / 2) {
+                    int keyLength = EvcFormat.encode(frame, frameBytes, keyEncoded);
+                    if (keyLength < deltaLength) {
+                        writeRecord(EvcFormat.FRAME_KEY, keyEncoded, keyLength);
+                    } else {
+                        writeRecord(EvcFormat.FRAME_DELTA, encoded, deltaLength);
+                    }
+                } else {
+                    writeRecord(EvcFormat.FRAME_DELTA, encoded, deltaLength);
+                }
+            }
+        } else {
+            writeRecord(EvcFormat.FRAME_KEY, keyEncoded, EvcFormat.encode(frame, frameBytes, keyEncoded));
+        }
+
+        System.arraycopy(frame, 0, previous, 0, frameBytes);
+        frameCount++;
+        rawBytes += frameBytes;
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * 压缩率（编码后 / 原始），未写入帧时为 1
+     */
+    public double getRatio() {
+        return rawBytes == 0 ? 1 : (double) (encodedBytes + EvcFormat.HEADER_SIZE) / rawBytes;
+    }
+
+    private void writeRecord(int type, byte[] payload, int length) throws IOException {
+        out.write(type);
+        out.write(length & 0xFF);
+        out.write((length >>> 8) & 0xFF);
+        out.write((length >>> 16) & 0xFF);
+        out.write((length >>> 24) & 0xFF);
+        out.write(payload, 0, length);
+        encodedBytes += EvcFormat.FRAME_HEADER_SIZE + length;
+    }
+
+    private byte[] header(int frames) {
+        ByteBuffer buffer = ByteBuffer.allocate(EvcFormat.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(EvcFormat.MAGIC);
+        buffer.put((byte) EvcFormat.VERSION);
+        buffer.putShort((short) width);
+        buffer.putShort((short) height);
+        buffer.put((byte) bitDepth);
+        buffer.put((byte) fps);
+        buffer.putShort((short) keyInterval);
+        buffer.putInt(frames);
+        buffer.putInt(frameBytes);
+        buffer.putInt(0);
+        return buffer.array();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            out.flush();
+            file.seek(0);
+            file.write(header(frameCount));
+        } finally {
+            file.close();
+        }
+    }
+}
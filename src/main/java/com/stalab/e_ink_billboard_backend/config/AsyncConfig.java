@@ -1,28 +1,122 @@
 package com.stalab.e_ink_billboard_backend.config;
 
+import com.stalab.e_ink_billboard_backend.service.media.MediaJobScheduler;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ThreadPoolExecutor;
 
 @Configuration
 public class AsyncConfig {
 
+    /**
+     * 视频转码任务的执行线程，由 videoJobScheduler 控制同时执行的任务数
+     * 每个视频的逐帧渲染还会用到 videoFrameExecutor，默认取 CPU 核数的一半
+     */
     @Bean("videoExecutor")
-    public ThreadPoolTaskExecutor videoExecutor() {
+    public ThreadPoolTaskExecutor videoExecutor(@Value("${media.jobs.video.workers:0}") int workers) {
+        return jobExecutor(workers > 0 ? workers : Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+                "Video-Process-");
+    }
+
+    /**
+     * 图片 审核 -> 抖动 -> 上传 任务的执行线程，由 imageJobScheduler 控制同时执行的任务数
+     * 缩放本身在 fork-join 池里按行并行，这里主要等待微信审核和 MinIO，默认取 CPU 核数
+     */
+    @Bean("imageExecutor")
+    public ThreadPoolTaskExecutor imageExecutor(@Value("${media.jobs.image.workers:0}") int workers) {
+        return jobExecutor(workers > 0 ? workers : Math.max(2, Runtime.getRuntime().availableProcessors()),
+                "Image-Process-");
+    }
+
+    @Bean("videoJobScheduler")
+    public MediaJobScheduler videoJobScheduler(@Qualifier("videoExecutor") ThreadPoolTaskExecutor executor,
+                                               @Value("${media.jobs.video.queue-capacity:50}") int queueCapacity,
+                                               @Value("${media.jobs.video.per-user-limit:3}") int perUserLimit) {
+        return new MediaJobScheduler("video", executor, executor.getMaxPoolSize(), queueCapacity, perUserLimit);
+    }
+
+    @Bean("imageJobScheduler")
+    public MediaJobScheduler imageJobScheduler(@Qualifier("imageExecutor") ThreadPoolTaskExecutor executor,
+                                               @Value("${media.jobs.image.queue-capacity:200}") int queueCapacity,
+                                               @Value("${media.jobs.image.per-user-limit:10}") int perUserLimit) {
+        return new MediaJobScheduler("image", executor, executor.getMaxPoolSize(), queueCapacity, perUserLimit);
+    }
+
+    /**
+     * 媒体任务执行线程池：排队、优先级和拒绝都由 MediaJobScheduler 负责，
+     * 这里固定线程数；调度器同时提交的任务不超过线程数，小队列只用于吸收线程刚结束任务、还没归还的瞬间
+     */
+    private static ThreadPoolTaskExecutor jobExecutor(int workers, String threadNamePrefix) {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        // 核心线程数：根据你的CPU核数设置，比如 4核CPU 就设 4
-        executor.setCorePoolSize(4);
-        // 最大线程数：突发流量时的最大线程
-        executor.setMaxPoolSize(8);
-        // 队列大小：允许多少个视频排队，超过了就拒绝
-        executor.setQueueCapacity(100);
-        // 线程名称前缀
-        executor.setThreadNamePrefix("Video-Process-");
-        // 拒绝策略：队列满了之后由调用者线程执行（防止丢任务）
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(workers);
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 视频逐帧渲染（缩放 + 抖动 + 打包）的工作线程池，所有视频任务共用
+     * 线程数默认等于 CPU 核数；队列满时由解码线程自己渲染，天然形成背压
+     */
+    @Bean("videoFrameExecutor")
+    public ThreadPoolTaskExecutor videoFrameExecutor(@Value("${media.processing.frame-workers:0}") int frameWorkers) {
+        int workers = frameWorkers > 0 ? frameWorkers : Runtime.getRuntime().availableProcessors();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(workers * 4);
+        executor.setThreadNamePrefix("Video-Frame-");
         executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
         executor.initialize();
         return executor;
     }
+
+    /**
+     * 微信内容审核请求线程池（视频抽样帧并发送审），所有视频共用，限制同时发往微信的请求数
+     * 线程基本都在等网络，队列满时由提交审核的线程自己发请求
+     */
+    @Bean("auditExecutor")
+    public ThreadPoolTaskExecutor auditExecutor(@Value("${wechat.audit.concurrency:8}") int concurrency) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(concurrency);
+        executor.setMaxPoolSize(concurrency);
+        executor.setQueueCapacity(concurrency * 4);
+        executor.setThreadNamePrefix("Audit-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * MinIO 批量删除等需要逐个读取结果的存储操作，线程基本都在等网络
+     * 队列满时由提交线程自己执行
+     */
+    @Bean("storageExecutor")
+    public ThreadPoolTaskExecutor storageExecutor(@Value("${minio.async.threads:4}") int threads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(threads * 64);
+        executor.setThreadNamePrefix("Storage-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 图片缩放/灰度的 fork-join 线程池（按行带拆分，CPU 密集）
+     * 并行度默认等于 CPU 核数，应用关闭时自动 shutdown
+     */
+    @Bean("imageProcessingPool")
+    public ForkJoinPool imageProcessingPool(@Value("${media.processing.parallelism:0}") int parallelism) {
+        return new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
 }
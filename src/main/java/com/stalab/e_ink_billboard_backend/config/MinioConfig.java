@@ -1,5 +1,6 @@
 package com.stalab.e_ink_billboard_backend.config;
 
+import io.minio.MinioAsyncClient;
 import io.minio.MinioClient;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -22,15 +23,28 @@ public class MinioConfig {
 
     @Bean
     public MinioClient minioClient() {
+        return MinioClient.builder()
+                .endpoint(connectEndpoint())
+                .credentials(accessKey, secretKey)
+                .build();
+    }
+
+    /**
+     * 异步客户端：请求由 HTTP 客户端的线程发送，返回 CompletableFuture，调用线程不等待网络
+     */
+    @Bean
+    public MinioAsyncClient minioAsyncClient() {
+        return MinioAsyncClient.builder()
+                .endpoint(connectEndpoint())
+                .credentials(accessKey, secretKey)
+                .build();
+    }
+
+    private String connectEndpoint() {
         // 优先使用内部地址连接 MinIO（用于容器间通信）
         // 如果没有配置内部地址，则使用外部地址
-        String connectEndpoint = internalEndpoint != null && !internalEndpoint.isEmpty()
+        return internalEndpoint != null && !internalEndpoint.isEmpty()
                 ? internalEndpoint
                 : endpoint;
-
-        return MinioClient.builder()
-                .endpoint(connectEndpoint)
-                .credentials(accessKey, secretKey)
-                .build();
     }
 }
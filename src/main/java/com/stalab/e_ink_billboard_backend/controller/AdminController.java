@@ -10,12 +10,19 @@ import com.stalab.e_ink_billboard_backend.mapper.po.User;
 import com.stalab.e_ink_billboard_backend.model.dto.AuditResultDTO;
 import com.stalab.e_ink_billboard_backend.model.vo.AnnouncementVO;
 import com.stalab.e_ink_billboard_backend.model.vo.AuditItemVO;
+import com.stalab.e_ink_billboard_backend.model.vo.AuditStatsVO;
+import com.stalab.e_ink_billboard_backend.model.vo.MediaJobStatsVO;
 import com.stalab.e_ink_billboard_backend.model.vo.PageResult;
 import com.stalab.e_ink_billboard_backend.model.vo.StatsVO;
+import com.stalab.e_ink_billboard_backend.model.vo.StorageStatsVO;
 import com.stalab.e_ink_billboard_backend.service.admin.AdminService;
 import com.stalab.e_ink_billboard_backend.service.admin.AnnouncementService;
+import com.stalab.e_ink_billboard_backend.service.media.AuditRetryService;
+import com.stalab.e_ink_billboard_backend.service.media.MediaJobScheduler;
+import com.stalab.e_ink_billboard_backend.service.storage.AssetCacheService;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -32,11 +39,22 @@ public class AdminController {
     private final AdminService adminService;
     private final AnnouncementService announcementService;
     private final JwtUtils jwtUtils;
+    private final MediaJobScheduler videoJobScheduler;
+    private final MediaJobScheduler imageJobScheduler;
+    private final AuditRetryService auditRetryService;
+    private final AssetCacheService assetCacheService;
 
-    public AdminController(AdminService adminService, AnnouncementService announcementService, JwtUtils jwtUtils) {
+    public AdminController(AdminService adminService, AnnouncementService announcementService, JwtUtils jwtUtils,
+                           @Qualifier("videoJobScheduler") MediaJobScheduler videoJobScheduler,
+                           @Qualifier("imageJobScheduler") MediaJobScheduler imageJobScheduler,
+                           AuditRetryService auditRetryService, AssetCacheService assetCacheService) {
         this.adminService = adminService;
         this.announcementService = announcementService;
         this.jwtUtils = jwtUtils;
+        this.videoJobScheduler = videoJobScheduler;
+        this.imageJobScheduler = imageJobScheduler;
+        this.auditRetryService = auditRetryService;
+        this.assetCacheService = assetCacheService;
     }
 
     /**
@@ -61,6 +79,84 @@ public class AdminController {
                 .build();
     }
 
+    /**
+     * 媒体处理队列指标（排队数、等待/执行耗时、拒绝数）
+     * GET /api/admin/media/jobs
+     */
+    @GetMapping("/media/jobs")
+    public Response<List<MediaJobStatsVO>> getMediaJobStats(@RequestHeader("Authorization") String token) {
+        if (!jwtUtils.validateToken(token)) {
+            return Response.<List<MediaJobStatsVO>>builder()
+                    .code(401)
+                    .info("Token 无效")
+                    .build();
+        }
+        if (!UserRole.ADMIN.getCode().equals(jwtUtils.getRole(token))) {
+            return Response.<List<MediaJobStatsVO>>builder()
+                    .code(403)
+                    .info("无权执行此操作，需要管理员权限")
+                    .build();
+        }
+
+        return Response.<List<MediaJobStatsVO>>builder()
+                .code(200)
+                .info("查询成功")
+                .data(List.of(videoJobScheduler.stats(), imageJobScheduler.stats()))
+                .build();
+    }
+
+    /**
+     * 自动内容审核指标（熔断器状态、接口耗时分位数、待自动重审数量）
+     * GET /api/admin/audit/stats
+     */
+    @GetMapping("/audit/stats")
+    public Response<AuditStatsVO> getAuditStats(@RequestHeader("Authorization") String token) {
+        if (!jwtUtils.validateToken(token)) {
+            return Response.<AuditStatsVO>builder()
+                    .code(401)
+                    .info("Token 无效")
+                    .build();
+        }
+        if (!UserRole.ADMIN.getCode().equals(jwtUtils.getRole(token))) {
+            return Response.<AuditStatsVO>builder()
+                    .code(403)
+                    .info("无权执行此操作，需要管理员权限")
+                    .build();
+        }
+
+        return Response.<AuditStatsVO>builder()
+                .code(200)
+                .info("查询成功")
+                .data(auditRetryService.stats())
+                .build();
+    }
+
+    /**
+     * 对象存储指标（Presigned URL 缓存、本机内容缓存命中率）
+     * GET /api/admin/storage/stats
+     */
+    @GetMapping("/storage/stats")
+    public Response<StorageStatsVO> getStorageStats(@RequestHeader("Authorization") String token) {
+        if (!jwtUtils.validateToken(token)) {
+            return Response.<StorageStatsVO>builder()
+                    .code(401)
+                    .info("Token 无效")
+                    .build();
+        }
+        if (!UserRole.ADMIN.getCode().equals(jwtUtils.getRole(token))) {
+            return Response.<StorageStatsVO>builder()
+                    .code(403)
+                    .info("无权执行此操作，需要管理员权限")
+                    .build();
+        }
+
+        return Response.<StorageStatsVO>builder()
+                .code(200)
+                .info("查询成功")
+                .data(assetCacheService.storageStats())
+                .build();
+    }
+
     /**
      * 获取审核列表（支持状态和类型筛选）
      * GET /api/admin/audit/list
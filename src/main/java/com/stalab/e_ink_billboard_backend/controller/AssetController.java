@@ -0,0 +1,141 @@
+package com.stalab.e_ink_billboard_backend.controller;
+
+import com.stalab.e_ink_billboard_backend.common.exception.BusinessException;
+import com.stalab.e_ink_billboard_backend.service.storage.AssetCacheService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 设备下载处理后的内容（抖动 PNG / BIN）
+ * 链接由 AssetCacheService.getDownloadUrl 签发并通过 MQTT 下发，设备不带 Token，靠签名鉴权
+ */
+@RestController
+@RequestMapping("/api/asset")
+public class AssetController {
+
+    /**
+     * Tomcat sendfile：由连接器在 Servlet 返回后直接把文件写入 socket
+     */
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * 小于该大小时直接写出，sendfile 的额外调度开销不划算（与 Tomcat DefaultServlet 一致）
+     */
+    private static final long SENDFILE_MIN_BYTES = 48 * 1024;
+
+    /**
+     * 交给 sendfile 的文件在 Servlet 返回后才由连接器打开，期间继续钉住，避免被缓存淘汰删除（秒）
+     * 文件打开后即使被删除也能读完
+     */
+    private static final long SENDFILE_HOLD_SECONDS = 60;
+
+    private final AssetCacheService assetCacheService;
+
+    public AssetController(AssetCacheService assetCacheService) {
+        this.assetCacheService = assetCacheService;
+    }
+
+    /**
+     * 下载内容，支持 ETag（If-None-Match）和单段 Range
+     * GET /api/asset?key=&expires=&sign=
+     */
+    @GetMapping
+    public void download(@RequestParam String key,
+                         @RequestParam long expires,
+                         @RequestParam String sign,
+                         HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
+        AssetCacheService.CachedAsset asset;
+        try {
+            asset = assetCacheService.resolve(key, expires, sign);
+        } catch (BusinessException e) {
+            response.sendError(e.getCode(), e.getMessage());
+            return;
+        }
+        try (asset) {
+            send(asset, key, request, response);
+        }
+    }
+
+    private void send(AssetCacheService.CachedAsset asset, String key, HttpServletRequest request,
+                      HttpServletResponse response) throws IOException {
+        String etag = AssetCacheService.etag(asset.getPath());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.maxAge(1, TimeUnit.HOURS).getHeaderValue());
+        if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+            return;
+        }
+
+        long length = asset.getSize();
+        long start = 0;
+        long end = length - 1;
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null) {
+            try {
+                List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+                // 多段 Range 设备用不到，按完整内容返回
+                if (ranges.size() == 1) {
+                    start = ranges.get(0).getRangeStart(length);
+                    end = ranges.get(0).getRangeEnd(length);
+                    if (start >= length || end < start) {
+                        throw new IllegalArgumentException("Range 超出文件大小");
+                    }
+                    response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+                }
+            } catch (IllegalArgumentException e) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+        }
+
+        long count = end - start + 1;
+        response.setContentType(MediaTypeFactory.getMediaType(key)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+        response.setContentLengthLong(count);
+
+        if (count >= SENDFILE_MIN_BYTES && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // 文件内容由内核从页缓存直接拷到 socket，不经过 JVM 堆
+            asset.holdAfterClose(SENDFILE_HOLD_SECONDS);
+            request.setAttribute(SENDFILE_FILENAME, asset.getPath().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(asset.getPath(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position <= end) {
+                long written = channel.transferTo(position, end + 1 - position, out);
+                if (written <= 0) {
+                    break;
+                }
+                position += written;
+            }
+        }
+    }
+}
@@ -154,6 +154,13 @@ public class DeviceController {
             device.setMqttTopic(deviceDTO.getMqttTopic());
             device.setLocation(deviceDTO.getLocation());
             device.setDescription(deviceDTO.getDescription());
+            device.setPanelWidth(deviceDTO.getPanelWidth());
+            device.setPanelHeight(deviceDTO.getPanelHeight());
+            device.setPanelBitDepth(deviceDTO.getPanelBitDepth());
+            device.setPanelPalette(deviceDTO.getPanelPalette());
+            device.setPanelRotation(deviceDTO.getPanelRotation());
+            device.setDitherType(deviceDTO.getDitherType());
+            device.setVideoCodec(deviceDTO.getVideoCodec());
 
             Device savedDevice = deviceService.addDevice(device);
             DeviceVO deviceVO = deviceService.getDeviceById(savedDevice.getId());
@@ -205,6 +212,13 @@ public class DeviceController {
             device.setMqttTopic(deviceDTO.getMqttTopic());
             device.setLocation(deviceDTO.getLocation());
             device.setDescription(deviceDTO.getDescription());
+            device.setPanelWidth(deviceDTO.getPanelWidth());
+            device.setPanelHeight(deviceDTO.getPanelHeight());
+            device.setPanelBitDepth(deviceDTO.getPanelBitDepth());
+            device.setPanelPalette(deviceDTO.getPanelPalette());
+            device.setPanelRotation(deviceDTO.getPanelRotation());
+            device.setDitherType(deviceDTO.getDitherType());
+            device.setVideoCodec(deviceDTO.getVideoCodec());
 
             deviceService.updateDevice(device);
 
@@ -2,8 +2,12 @@ package com.stalab.e_ink_billboard_backend.controller;
 
 import com.stalab.e_ink_billboard_backend.common.Response;
 import com.stalab.e_ink_billboard_backend.common.enums.AuditStatus;
+import com.stalab.e_ink_billboard_backend.common.enums.DitherType;
+import com.stalab.e_ink_billboard_backend.common.enums.ProcessingStatus;
 import com.stalab.e_ink_billboard_backend.common.enums.UserRole;
+import com.stalab.e_ink_billboard_backend.common.exception.BusinessException;
 import com.stalab.e_ink_billboard_backend.common.util.JwtUtils;
+import com.stalab.e_ink_billboard_backend.mapper.po.Image;
 import com.stalab.e_ink_billboard_backend.model.vo.ImageUploadVO;
 import com.stalab.e_ink_billboard_backend.model.vo.ImageVO;
 import com.stalab.e_ink_billboard_backend.model.vo.PageResult;
@@ -12,7 +16,9 @@ import org.apache.commons.lang3.StringUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/image")
@@ -29,11 +35,12 @@ public class ImageController {
     /**
      * 图片上传接口
      * header: Authorization: Bearer xxx
-     * body: file (binary)
+     * body: file (binary), dither (可选: FLOYD_STEINBERG/ATKINSON/BAYER/BLUE_NOISE)
      * 返回：包含图片ID和URL的对象
      */
     @PostMapping("/upload")
     public Response<ImageUploadVO> upload(@RequestParam("file") MultipartFile file,
+                                          @RequestParam(value = "dither", required = false) String ditherStr,
                                           @RequestHeader("Authorization") String token) {
         // 1. 校验 Token
         if (!jwtUtils.validateToken(token)) {
@@ -54,7 +61,9 @@ public class ImageController {
                     .build();
         }
 
-        ImageUploadVO result = imageService.uploadAndProcess(file, userId);
+        DitherType ditherType = DitherType.parse(ditherStr);
+
+        ImageUploadVO result = imageService.uploadAndProcess(file, userId, ditherType);
 
         // 返回图片ID和URL
         return Response.<ImageUploadVO>builder()
@@ -64,6 +73,36 @@ public class ImageController {
                 .build();
     }
 
+    /**
+     * 轮询接口：查询处理状态
+     */
+    @GetMapping("/status/{id}")
+    public Response<Map<String, Object>> checkStatus(@PathVariable Long id) {
+        Image image;
+        try {
+            image = imageService.getImageStatus(id);
+        } catch (BusinessException e) {
+            return Response.<Map<String, Object>>builder()
+                    .code(e.getCode())
+                    .info(e.getMessage())
+                    .build();
+        }
+
+        Map<String, Object> data = new HashMap<>();
+        // PROCESSING, SUCCESS, FAILED（旧数据没有处理状态，视为 SUCCESS）
+        data.put("status", image.getProcessingStatus() == null ? ProcessingStatus.SUCCESS : image.getProcessingStatus());
+        data.put("processedUrl", image.getProcessedUrl());
+        data.put("auditStatus", image.getAuditStatus());
+        data.put("auditReason", image.getAuditReason());
+        data.put("failReason", image.getFailReason());
+
+        return Response.<Map<String, Object>>builder()
+                .code(200)
+                .info("成功")
+                .data(data)
+                .build();
+    }
+
     /**
      * 删除图片接口
      * header: Authorization: Bearer xxx
@@ -1,10 +1,13 @@
 package com.stalab.e_ink_billboard_backend.controller;
 
 import com.stalab.e_ink_billboard_backend.common.Response;
+import com.stalab.e_ink_billboard_backend.common.enums.PushStatus;
+import com.stalab.e_ink_billboard_backend.common.exception.MediaJobRejectedException;
 import com.stalab.e_ink_billboard_backend.common.util.JwtUtils;
 import com.stalab.e_ink_billboard_backend.model.dto.PushBatchDTO;
 import com.stalab.e_ink_billboard_backend.model.dto.PushImageDTO;
 import com.stalab.e_ink_billboard_backend.model.dto.PushVideoDTO;
+import com.stalab.e_ink_billboard_backend.model.vo.BatchPushResultVO;
 import com.stalab.e_ink_billboard_backend.model.vo.ContentPushVO;
 import com.stalab.e_ink_billboard_backend.model.vo.PageResult;
 import com.stalab.e_ink_billboard_backend.service.push.PushService;
@@ -18,6 +21,8 @@ import org.springframework.web.bind.annotation.*;
 @RequestMapping("/api/push")
 public class PushController {
 
+    private static final String RENDERING_INFO = "推送成功，正在按设备屏幕参数处理内容，处理完成后自动下发";
+
     private final PushService pushService;
     private final JwtUtils jwtUtils;
 
@@ -47,11 +52,14 @@ public class PushController {
 
         // 3. 执行推送
         try {
-            pushService.pushImage(dto.getDeviceId(), dto.getImageId(), userId, userRole, dto.getVerificationCode());
+            PushStatus status = pushService.pushImage(dto.getDeviceId(), dto.getImageId(), userId, userRole, dto.getVerificationCode());
             return Response.<Void>builder()
                     .code(200)
-                    .info("推送成功")
+                    .info(status == PushStatus.RENDERING ? RENDERING_INFO : "推送成功")
                     .build();
+        } catch (MediaJobRejectedException e) {
+            // 处理队列繁忙：交给全局异常处理返回 429 + Retry-After
+            throw e;
         } catch (Exception e) {
             return Response.<Void>builder()
                     .code(400)
@@ -81,11 +89,14 @@ public class PushController {
 
         // 3. 执行推送
         try {
-            pushService.pushVideo(dto.getDeviceId(), dto.getVideoId(), userId, userRole, dto.getVerificationCode());
+            PushStatus status = pushService.pushVideo(dto.getDeviceId(), dto.getVideoId(), userId, userRole, dto.getVerificationCode());
             return Response.<Void>builder()
                     .code(200)
-                    .info("推送成功")
+                    .info(status == PushStatus.RENDERING ? RENDERING_INFO : "推送成功")
                     .build();
+        } catch (MediaJobRejectedException e) {
+            // 处理队列繁忙：交给全局异常处理返回 429 + Retry-After
+            throw e;
         } catch (Exception e) {
             return Response.<Void>builder()
                     .code(400)
@@ -99,11 +110,11 @@ public class PushController {
      * POST /api/push/batch
      */
     @PostMapping("/batch")
-    public Response<Void> pushBatch(@Valid @RequestBody PushBatchDTO dto,
-                                     @RequestHeader("Authorization") String token) {
+    public Response<BatchPushResultVO> pushBatch(@Valid @RequestBody PushBatchDTO dto,
+                                                  @RequestHeader("Authorization") String token) {
         // 1. 校验Token
         if (!jwtUtils.validateToken(token)) {
-            return Response.<Void>builder()
+            return Response.<BatchPushResultVO>builder()
                     .code(401)
                     .info("Token 无效")
                     .build();
@@ -118,13 +129,14 @@ public class PushController {
             // 批量推送暂不支持验证码，因为逻辑比较复杂（一次消耗一个还是？）
             // 假设批量推送只有管理员或特定用户能用，或者暂时不加验证码限制（或默认不传）
             // 如果需要，可以在DTO里加verificationCode并传下去
-            pushService.pushBatch(dto.getDeviceIds(), dto.getContentId(), dto.getContentType(), userId, userRole);
-            return Response.<Void>builder()
+            BatchPushResultVO result = pushService.pushBatch(dto.getDeviceIds(), dto.getContentId(), dto.getContentType(), userId, userRole);
+            return Response.<BatchPushResultVO>builder()
                     .code(200)
                     .info("批量推送成功")
+                    .data(result)
                     .build();
         } catch (Exception e) {
-            return Response.<Void>builder()
+            return Response.<BatchPushResultVO>builder()
                     .code(400)
                     .info(e.getMessage())
                     .build();
@@ -1,6 +1,7 @@
 package com.stalab.e_ink_billboard_backend.controller;
 
 import com.stalab.e_ink_billboard_backend.common.Response;
+import com.stalab.e_ink_billboard_backend.common.enums.DitherType;
 import com.stalab.e_ink_billboard_backend.common.enums.UserRole;
 import com.stalab.e_ink_billboard_backend.common.util.JwtUtils;
 import com.stalab.e_ink_billboard_backend.mapper.VideoMapper;
@@ -33,9 +34,11 @@ public class VideoController {
 
     /**
      * 上传接口：返回 VideoID
+     * body: file (binary), dither (可选: FLOYD_STEINBERG/ATKINSON/BAYER/BLUE_NOISE)
      */
     @PostMapping("/upload")
     public Response<Long> upload(@RequestParam("file") MultipartFile file,
+                                 @RequestParam(value = "dither", required = false) String ditherStr,
                                  @RequestHeader("Authorization") String token) {
         // 1. 校验 Token
         if (!jwtUtils.validateToken(token)) {
@@ -47,7 +50,9 @@ public class VideoController {
 
         Long userId = jwtUtils.getUserId(token);
 
-        Long videoId = videoService.initUpload(file, userId);
+        DitherType ditherType = DitherType.parse(ditherStr);
+
+        Long videoId = videoService.initUpload(file, userId, ditherType);
 
         return Response.<Long>builder()
                 .code(200)
@@ -0,0 +1,32 @@
+package com.stalab.e_ink_billboard_backend.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.stalab.e_ink_billboard_backend.mapper.po.MediaJob;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
+
+@Mapper
+public interface MediaJobMapper extends BaseMapper<MediaJob> {
+
+    /**
+     * 认领任务：等待超过 pendingGraceSeconds 的 PENDING 任务，以及租约已过期的 RUNNING 任务（实例宕机留下的）
+     * FOR UPDATE SKIP LOCKED 保证多个实例同时认领时互不阻塞、不会拿到同一个任务
+     * 这是一条写语句，需要刷新一级缓存
+     */
+    @Options(flushCache = Options.FlushCachePolicy.TRUE)
+    @Select("UPDATE sys_media_job SET status = 'RUNNING', owner = #{owner}, attempts = attempts + 1, " +
+            "lease_until = NOW() + make_interval(secs => #{leaseSeconds}), update_time = NOW() " +
+            "WHERE id IN (SELECT id FROM sys_media_job " +
+            "  WHERE job_type = #{jobType} AND attempts < #{maxAttempts} " +
+            "  AND ((status = 'PENDING' AND create_time < NOW() - make_interval(secs => #{pendingGraceSeconds})) " +
+            "    OR (status = 'RUNNING' AND lease_until < NOW())) " +
+            "  ORDER BY priority, id LIMIT #{limit} FOR UPDATE SKIP LOCKED) " +
+            "RETURNING *")
+    List<MediaJob> claim(@Param("jobType") String jobType, @Param("owner") String owner,
+                         @Param("leaseSeconds") int leaseSeconds, @Param("pendingGraceSeconds") int pendingGraceSeconds,
+                         @Param("maxAttempts") int maxAttempts, @Param("limit") int limit);
+}
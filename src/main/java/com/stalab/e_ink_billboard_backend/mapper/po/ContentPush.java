@@ -36,7 +36,7 @@ public class ContentPush {
     private ContentType contentType;
 
     /**
-     * 推送状态：PENDING-待发送, SENT-已发送, SUCCESS-成功, FAILED-失败
+     * 推送状态：RENDERING-等待渲染, PENDING-待发送, SENT-已发送, SUCCESS-成功, FAILED-失败
      */
     private PushStatus pushStatus;
 
@@ -61,7 +61,7 @@ public class ContentPush {
     private String errorMessage;
 
     /**
-     * 下载URL（Presigned URL，用于记录）
+     * 下载URL（Presigned URL，用于记录；等待渲染时为空）
      */
     private String downloadUrl;
 
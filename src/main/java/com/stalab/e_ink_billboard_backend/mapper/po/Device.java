@@ -5,6 +5,9 @@ import com.baomidou.mybatisplus.annotation.TableId;
 import com.baomidou.mybatisplus.annotation.TableName;
 import com.stalab.e_ink_billboard_backend.common.enums.ContentType;
 import com.stalab.e_ink_billboard_backend.common.enums.DeviceStatus;
+import com.stalab.e_ink_billboard_backend.common.enums.DitherType;
+import com.stalab.e_ink_billboard_backend.common.enums.PanelPalette;
+import com.stalab.e_ink_billboard_backend.common.enums.VideoCodec;
 import lombok.Data;
 
 import java.time.LocalDateTime;
@@ -65,6 +68,41 @@ public class Device {
      */
     private String description;
 
+    /**
+     * 面板宽度（像素，为空时使用默认面板 media.panel.width）
+     */
+    private Integer panelWidth;
+
+    /**
+     * 面板高度（像素，为空时使用默认面板 media.panel.height）
+     */
+    private Integer panelHeight;
+
+    /**
+     * 每像素位深（1/2/4，为空时使用调色板的原生位深）
+     */
+    private Integer panelBitDepth;
+
+    /**
+     * 调色板：BW-黑白, BWR-黑白红, ACEP_7-7色
+     */
+    private PanelPalette panelPalette;
+
+    /**
+     * 安装旋转角度（顺时针 0/90/180/270）
+     */
+    private Integer panelRotation;
+
+    /**
+     * 抖动算法（为空时沿用内容上传时选用的算法）
+     */
+    private DitherType ditherType;
+
+    /**
+     * 视频下发格式（为空时为 RAW）
+     */
+    private VideoCodec videoCodec;
+
     /**
      * 创建时间
      */
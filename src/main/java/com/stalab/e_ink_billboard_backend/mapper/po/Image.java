@@ -4,6 +4,8 @@ import com.baomidou.mybatisplus.annotation.IdType;
 import com.baomidou.mybatisplus.annotation.TableId;
 import com.baomidou.mybatisplus.annotation.TableName;
 import com.stalab.e_ink_billboard_backend.common.enums.AuditStatus;
+import com.stalab.e_ink_billboard_backend.common.enums.DitherType;
+import com.stalab.e_ink_billboard_backend.common.enums.ProcessingStatus;
 import lombok.Data;
 import java.time.LocalDateTime;
 
@@ -20,8 +22,13 @@ public class Image {
 
     private String originalUrl;  // 原图 (给管理员审核看)
     private String processedUrl; // 结果图 (给墨水屏下载用)
+    private String processedMd5; // 结果图 MD5（设备校验下载内容）
+    private Long processedSize;  // 结果图大小
 
     private String md5;          // 防重校验码
+    private String sha256;       // 内容寻址键（秒传查找）
+
+    private DitherType ditherType; // 生成结果图使用的抖动算法
 
     /**
      * 审核状态
@@ -29,5 +36,11 @@ public class Image {
     private AuditStatus auditStatus;
     private String auditReason;
 
+    /**
+     * 处理状态（为空的旧数据视为 SUCCESS）
+     */
+    private ProcessingStatus processingStatus;
+    private String failReason;
+
     private LocalDateTime createTime;
 }
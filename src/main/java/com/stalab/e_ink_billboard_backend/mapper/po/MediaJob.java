@@ -0,0 +1,34 @@
+package com.stalab.e_ink_billboard_backend.mapper.po;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 持久化的媒体处理任务
+ * 原文件已上传到 MinIO，任务只记录内容ID；实例认领后在租约期内处理，租约过期未续期视为实例已宕机，可被其他实例重新认领
+ */
+@Data
+@TableName("sys_media_job")
+public class MediaJob {
+
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    private String jobType;    // VIDEO
+    private Long contentId;    // 对应 sys_video.id
+    private Long userId;
+    private Integer priority;  // 0 管理员上传, 1 游客上传（数值小的先处理）
+
+    private String status;     // PENDING, RUNNING, DONE, FAILED
+    private Integer attempts;  // 已认领次数
+    private String owner;      // 认领实例
+    private LocalDateTime leaseUntil;
+    private String lastError;
+
+    private LocalDateTime createTime;
+    private LocalDateTime updateTime;
+}
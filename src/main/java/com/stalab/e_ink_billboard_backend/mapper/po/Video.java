@@ -3,6 +3,7 @@ package com.stalab.e_ink_billboard_backend.mapper.po;
 import com.baomidou.mybatisplus.annotation.IdType;
 import com.baomidou.mybatisplus.annotation.TableId;
 import com.baomidou.mybatisplus.annotation.TableName;
+import com.stalab.e_ink_billboard_backend.common.enums.DitherType;
 import lombok.Data;
 import java.time.LocalDateTime;
 
@@ -16,13 +17,18 @@ public class Video {
     private Long userId;
     private String fileName;
     private Long fileSize; // 原视频大小
+    private String sha256; // 原视频内容哈希（秒传查找）
 
     private String originalUrl;  // 原视频 (MP4)
     private String processedUrl; // 处理后的 (BIN)
+    private String processedMd5; // BIN 的 MD5（设备校验下载内容）
+    private Long processedSize;  // BIN 大小
 
     private Integer duration;    // 时长 (秒，可选)
     private Integer frameCount;  // 总帧数 (可选)
 
+    private DitherType ditherType; // 抖动算法（为空的历史数据按默认算法处理）
+
     private String auditStatus;  // PENDING, PASSED, REJECTED
 
     private String processingStatus; // PROCESSING, SUCCESS, FAILED
@@ -0,0 +1,28 @@
+package com.stalab.e_ink_billboard_backend.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 下发文件的分块校验清单
+ * 设备每下载完一块校验一次，断线后从最后一个校验通过的块继续（Range: bytes={块数 * chunkSize}-）
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChunkManifest {
+    /**
+     * 块大小（字节），最后一块可能不足
+     */
+    private Integer chunkSize;
+
+    /**
+     * 每块的 CRC32（8 位小写十六进制），按顺序排列
+     */
+    private List<String> chunks;
+}
@@ -1,10 +1,15 @@
 package com.stalab.e_ink_billboard_backend.model.dto;
 
+import com.stalab.e_ink_billboard_backend.common.enums.DitherType;
+import com.stalab.e_ink_billboard_backend.common.enums.PanelPalette;
+import com.stalab.e_ink_billboard_backend.common.enums.VideoCodec;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 
@@ -51,4 +56,43 @@ public class DeviceDTO {
      * 设备描述（可选）
      */
     private String description;
+
+    /**
+     * 面板宽度（可选，像素）
+     */
+    @Min(value = 8, message = "面板宽度不能小于8")
+    @Max(value = 4096, message = "面板宽度不能超过4096")
+    private Integer panelWidth;
+
+    /**
+     * 面板高度（可选，像素）
+     */
+    @Min(value = 8, message = "面板高度不能小于8")
+    @Max(value = 4096, message = "面板高度不能超过4096")
+    private Integer panelHeight;
+
+    /**
+     * 每像素位深（可选，1/2/4）
+     */
+    private Integer panelBitDepth;
+
+    /**
+     * 调色板（可选）：BW, BWR, ACEP_7
+     */
+    private PanelPalette panelPalette;
+
+    /**
+     * 安装旋转角度（可选，顺时针 0/90/180/270）
+     */
+    private Integer panelRotation;
+
+    /**
+     * 抖动算法（可选）：FLOYD_STEINBERG, ATKINSON, BAYER, BLUE_NOISE
+     */
+    private DitherType ditherType;
+
+    /**
+     * 视频下发格式（可选）：RAW, EVC
+     */
+    private VideoCodec videoCodec;
 }
@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 /**
  * MQTT命令消息（后端 → ESP32）
  * 用于推送图片或视频到设备
@@ -26,7 +28,7 @@ public class MqttCommandMessage {
     private Long contentId;
 
     /**
-     * 下载URL（Presigned URL）
+     * 下载URL（Presigned URL），cached 为 true 时不下发
      */
     private String url;
 
@@ -40,6 +42,21 @@ public class MqttCommandMessage {
      */
     private String md5;
 
+    /**
+     * 分块大小（字节），文件不超过一块时为空
+     */
+    private Integer chunkSize;
+
+    /**
+     * 每块的 CRC32（8 位小写十六进制）；设备逐块校验，断线后用 Range 从最后一个校验通过的块继续下载
+     */
+    private List<String> chunks;
+
+    /**
+     * 设备心跳上报的缓存清单中已有该文件（按 md5）：直接显示本地缓存，不下载；普通命令不下发该字段
+     */
+    private Boolean cached;
+
     /**
      * 时间戳
      */
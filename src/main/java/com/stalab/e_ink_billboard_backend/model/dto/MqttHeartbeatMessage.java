@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 /**
  * MQTT心跳消息（ESP32 → 后端）
  * 用于上报设备在线状态和当前显示内容
@@ -45,6 +47,11 @@ public class MqttHeartbeatMessage {
      */
     private Integer signal;
 
+    /**
+     * 本地已缓存文件的 MD5 列表（可选）；上报时整体替换后端记录的清单，不上报时保持不变
+     */
+    private List<String> inventory;
+
     /**
      * 时间戳
      */
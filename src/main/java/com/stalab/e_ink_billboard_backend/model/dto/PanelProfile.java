@@ -0,0 +1,81 @@
+package com.stalab.e_ink_billboard_backend.model.dto;
+
+import com.stalab.e_ink_billboard_backend.common.enums.DitherType;
+import com.stalab.e_ink_billboard_backend.common.enums.PanelPalette;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 墨水屏面板参数（渲染目标）
+ * 同一内容按不同面板参数渲染出不同的结果图/BIN，cacheKey 作为变体的存储键
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PanelProfile {
+    /**
+     * 帧缓冲宽度（像素，屏幕驱动扫描方向）
+     */
+    private Integer width;
+
+    /**
+     * 帧缓冲高度（像素）
+     */
+    private Integer height;
+
+    /**
+     * 每像素位深（1 / 2 / 4，不小于调色板的原生位深）
+     */
+    private Integer bitDepth;
+
+    /**
+     * 调色板
+     */
+    private PanelPalette palette;
+
+    /**
+     * 安装旋转角度（顺时针 0 / 90 / 180 / 270）
+     * 内容按该角度顺时针旋转后写入帧缓冲
+     */
+    private Integer rotation;
+
+    /**
+     * 抖动算法
+     */
+    private DitherType ditherType;
+
+    /**
+     * 内容画面宽度（旋转 90/270 时与帧缓冲宽高互换）
+     */
+    public int contentWidth() {
+        return isQuarterTurn() ? height : width;
+    }
+
+    /**
+     * 内容画面高度
+     */
+    public int contentHeight() {
+        return isQuarterTurn() ? width : height;
+    }
+
+    /**
+     * 单帧打包后的字节数（每行按字节对齐）
+     */
+    public int frameBytes() {
+        return (width * bitDepth + 7) / 8 * height;
+    }
+
+    /**
+     * 变体缓存键，如 400x300-BW1-r0-FLOYD_STEINBERG
+     */
+    public String cacheKey() {
+        return width + "x" + height + "-" + palette.name() + bitDepth + "-r" + rotation + "-" + ditherType.name();
+    }
+
+    private boolean isQuarterTurn() {
+        return rotation == 90 || rotation == 270;
+    }
+}
@@ -0,0 +1,31 @@
+package com.stalab.e_ink_billboard_backend.model.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * 按设备面板参数解析出的下发资源
+ */
+@Data
+@Builder
+public class RenderedAsset {
+    /**
+     * 永久URL（发送时再生成Presigned URL）
+     */
+    private String url;
+
+    /**
+     * 文件大小（字节），处理时未记录大小的历史内容为空
+     */
+    private Long size;
+
+    /**
+     * 文件 MD5，处理时未记录的历史内容为空
+     */
+    private String md5;
+
+    /**
+     * 是否为按设备面板参数单独渲染的变体
+     */
+    private boolean variant;
+}
@@ -0,0 +1,21 @@
+package com.stalab.e_ink_billboard_backend.model.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * MinIO 中对象的基本信息
+ */
+@Data
+@Builder
+public class StoredObject {
+    /**
+     * 对象大小（字节）
+     */
+    private Long size;
+
+    /**
+     * 上传时记录在元数据中的内容 MD5，未记录时为空
+     */
+    private String md5;
+}
@@ -4,19 +4,23 @@ import lombok.Builder;
 import lombok.Data;
 
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
 import java.util.List;
 
 /**
- * 视频处理结果 DTO
+ * 视频处理结果 DTO（BIN 已写入调用方提供的输出流）
  */
 @Data
 @Builder
 public class VideoProcessResult {
     /**
-     * 处理后的 BIN 文件流
+     * BIN 中的帧数
      */
-    private ByteArrayInputStream binStream;
+    private Integer frameCount;
+
+    /**
+     * 视频时长（秒），无法获取时为 null
+     */
+    private Integer duration;
 
     /**
      * 用于审核的采样帧列表
@@ -0,0 +1,70 @@
+package com.stalab.e_ink_billboard_backend.model.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 内容审核接口运行指标
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuditStatsVO {
+    /**
+     * 熔断器状态：CLOSED / OPEN / HALF_OPEN
+     */
+    private String state;
+
+    /**
+     * 最近一个统计窗口内的失败率（0-1，含慢调用）
+     */
+    private Double failureRate;
+
+    /**
+     * 累计调用微信接口的次数
+     */
+    private Long calls;
+
+    /**
+     * 累计失败次数（超时、网络异常、接口报错）
+     */
+    private Long failures;
+
+    /**
+     * 累计因熔断未调用接口、直接返回不可用的次数
+     */
+    private Long shortCircuited;
+
+    /**
+     * 累计熔断打开次数
+     */
+    private Long opened;
+
+    /**
+     * 最近调用耗时中位数（毫秒）
+     */
+    private Long p50Ms;
+
+    /**
+     * 最近调用耗时 P95（毫秒）
+     */
+    private Long p95Ms;
+
+    /**
+     * 最近调用耗时 P99（毫秒）
+     */
+    private Long p99Ms;
+
+    /**
+     * 等待自动重审的图片数
+     */
+    private Long pendingImages;
+
+    /**
+     * 等待自动重审的视频数
+     */
+    private Long pendingVideos;
+}
@@ -0,0 +1,42 @@
+package com.stalab.e_ink_billboard_backend.model.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 批量推送结果VO
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchPushResultVO {
+    /**
+     * 已保存推送记录的设备（含等待渲染的设备）
+     */
+    private List<Long> pushedDeviceIds;
+
+    /**
+     * 其中下发资源正在按设备面板渲染的设备，渲染完成后自动下发
+     */
+    private List<Long> renderingDeviceIds;
+
+    /**
+     * 处理队列繁忙被跳过的设备（没有保存推送记录）
+     */
+    private List<Long> skippedDeviceIds;
+
+    /**
+     * 建议多少秒后对跳过的设备重新推送，没有跳过的设备时为空
+     */
+    private Long retryAfterSeconds;
+
+    /**
+     * 推送失败的设备
+     */
+    private List<Long> failedDeviceIds;
+}
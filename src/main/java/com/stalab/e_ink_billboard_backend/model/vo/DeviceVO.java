@@ -2,6 +2,9 @@ package com.stalab.e_ink_billboard_backend.model.vo;
 
 import com.stalab.e_ink_billboard_backend.common.enums.ContentType;
 import com.stalab.e_ink_billboard_backend.common.enums.DeviceStatus;
+import com.stalab.e_ink_billboard_backend.common.enums.DitherType;
+import com.stalab.e_ink_billboard_backend.common.enums.PanelPalette;
+import com.stalab.e_ink_billboard_backend.common.enums.VideoCodec;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -72,6 +75,41 @@ public class DeviceVO {
      */
     private String description;
 
+    /**
+     * 面板宽度（为空表示使用默认面板，下同）
+     */
+    private Integer panelWidth;
+
+    /**
+     * 面板高度
+     */
+    private Integer panelHeight;
+
+    /**
+     * 每像素位深
+     */
+    private Integer panelBitDepth;
+
+    /**
+     * 调色板
+     */
+    private PanelPalette panelPalette;
+
+    /**
+     * 安装旋转角度
+     */
+    private Integer panelRotation;
+
+    /**
+     * 设备指定的抖动算法（为空表示沿用内容的抖动算法）
+     */
+    private DitherType ditherType;
+
+    /**
+     * 视频下发格式（为空表示 RAW）
+     */
+    private VideoCodec videoCodec;
+
     /**
      * 创建时间
      */
@@ -1,6 +1,7 @@
 package com.stalab.e_ink_billboard_backend.model.vo;
 
 import com.stalab.e_ink_billboard_backend.common.enums.AuditStatus;
+import com.stalab.e_ink_billboard_backend.common.enums.ProcessingStatus;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -20,10 +21,15 @@ public class ImageUploadVO {
     private Long id;
 
     /**
-     * 处理后图片URL
+     * 处理后图片URL（异步处理完成前为空，秒传时直接返回）
      */
     private String url;
 
+    /**
+     * 处理状态：PROCESSING（处理中，通过 /api/image/status/{id} 轮询）、SUCCESS
+     */
+    private ProcessingStatus processingStatus;
+
     /**
      * 审核状态
      */
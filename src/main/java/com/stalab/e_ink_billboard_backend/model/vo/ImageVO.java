@@ -1,6 +1,8 @@
 package com.stalab.e_ink_billboard_backend.model.vo;
 
 import com.stalab.e_ink_billboard_backend.common.enums.AuditStatus;
+import com.stalab.e_ink_billboard_backend.common.enums.DitherType;
+import com.stalab.e_ink_billboard_backend.common.enums.ProcessingStatus;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -49,6 +51,11 @@ public class ImageVO {
      */
     private String processedUrl;
 
+    /**
+     * 抖动算法
+     */
+    private DitherType ditherType;
+
     /**
      * 审核状态
      */
@@ -59,6 +66,16 @@ public class ImageVO {
      */
     private String auditReason;
 
+    /**
+     * 处理状态：PROCESSING, SUCCESS, FAILED
+     */
+    private ProcessingStatus processingStatus;
+
+    /**
+     * 处理失败原因
+     */
+    private String failReason;
+
     /**
      * 上传者昵称
      */
@@ -0,0 +1,80 @@
+package com.stalab.e_ink_billboard_backend.model.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 媒体处理队列运行指标
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MediaJobStatsVO {
+    /**
+     * 队列名称：video / image
+     */
+    private String name;
+
+    /**
+     * 工作线程数
+     */
+    private Integer workers;
+
+    /**
+     * 正在执行的任务数
+     */
+    private Integer running;
+
+    /**
+     * 排队中的高优先级任务数（管理员上传）
+     */
+    private Integer queuedHigh;
+
+    /**
+     * 排队中的普通任务数（游客上传）
+     */
+    private Integer queuedNormal;
+
+    /**
+     * 排队上限（含已受理、等待事务提交的任务）
+     */
+    private Integer queueCapacity;
+
+    /**
+     * 累计入队任务数
+     */
+    private Long submitted;
+
+    /**
+     * 累计执行完成的任务数
+     */
+    private Long completed;
+
+    /**
+     * 累计执行时抛出异常的任务数
+     */
+    private Long failed;
+
+    /**
+     * 累计因队列已满被拒绝的请求数
+     */
+    private Long rejected;
+
+    /**
+     * 平均排队耗时（毫秒）
+     */
+    private Long avgWaitMs;
+
+    /**
+     * 最长排队耗时（毫秒）
+     */
+    private Long maxWaitMs;
+
+    /**
+     * 平均执行耗时（毫秒）
+     */
+    private Long avgRunMs;
+}
@@ -0,0 +1,70 @@
+package com.stalab.e_ink_billboard_backend.model.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 对象存储运行指标
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StorageStatsVO {
+    /**
+     * 当前缓存的 Presigned URL 数
+     */
+    private Integer presignedUrlCached;
+
+    /**
+     * 累计复用缓存 URL 的次数
+     */
+    private Long presignedUrlHits;
+
+    /**
+     * 累计重新签名的次数
+     */
+    private Long presignedUrlMisses;
+
+    /**
+     * 命中率（0-1）
+     */
+    private Double presignedUrlHitRate;
+
+    /**
+     * 是否启用本机内容缓存（media.asset-cache.public-base-url 已配置）
+     */
+    private Boolean assetCacheEnabled;
+
+    /**
+     * 本机缓存的文件数
+     */
+    private Integer assetCacheFiles;
+
+    /**
+     * 本机缓存占用的磁盘空间（字节）
+     */
+    private Long assetCacheBytes;
+
+    /**
+     * 累计从本机缓存读取的次数
+     */
+    private Long assetCacheHits;
+
+    /**
+     * 累计未命中、从 MinIO 取回的次数
+     */
+    private Long assetCacheMisses;
+
+    /**
+     * 累计因容量不足淘汰的文件数
+     */
+    private Long assetCacheEvictions;
+
+    /**
+     * 本机缓存命中率（0-1）
+     */
+    private Double assetCacheHitRate;
+}
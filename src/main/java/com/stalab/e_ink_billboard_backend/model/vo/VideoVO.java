@@ -1,5 +1,6 @@
 package com.stalab.e_ink_billboard_backend.model.vo;
 
+import com.stalab.e_ink_billboard_backend.common.enums.DitherType;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -58,6 +59,11 @@ public class VideoVO {
      */
     private Integer frameCount;
 
+    /**
+     * 抖动算法
+     */
+    private DitherType ditherType;
+
     /**
      * 审核状态
      */
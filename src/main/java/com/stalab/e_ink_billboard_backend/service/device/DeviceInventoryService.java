@@ -0,0 +1,116 @@
+package com.stalab.e_ink_billboard_backend.service.device;
+
+import cn.hutool.core.util.StrUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * 设备本地缓存清单
+ * <p>
+ * 设备在心跳中上报本地已缓存文件的 MD5（inventory），按设备编码存为 Redis Set；
+ * 下发播放命令时，设备已缓存同一 MD5 的文件就只发“显示缓存内容”，不再生成下载链接。
+ * 未上报过清单的设备（旧固件）始终按完整命令下发
+ */
+@Slf4j
+@Service
+public class DeviceInventoryService {
+
+    private static final String KEY_PREFIX = "device:inventory:";
+    private static final Pattern MD5_PATTERN = Pattern.compile("[0-9a-f]{32}");
+
+    /**
+     * 整体替换清单（DEL + SADD + EXPIRE 在一个脚本里执行），
+     * 避免并发的 holds() 在删除和写入之间读到空清单
+     * ARGV[1] 为有效期（秒），其余为 MD5；没有 MD5 时只删除
+     */
+    private static final RedisScript<Long> REPLACE_INVENTORY = new DefaultRedisScript<>(
+            "redis.call('del', KEYS[1]) "
+                    + "if #ARGV > 1 then "
+                    + "redis.call('sadd', KEYS[1], unpack(ARGV, 2)) "
+                    + "redis.call('expire', KEYS[1], ARGV[1]) "
+                    + "end "
+                    + "return #ARGV - 1",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    /**
+     * 清单有效期（小时），期间设备未再上报则清单作废，恢复完整下发
+     */
+    @Value("${play-queue.device-cache.ttl-hours:24}")
+    private long ttlHours;
+
+    /**
+     * 每台设备最多记录的文件数，超出部分忽略
+     */
+    @Value("${play-queue.device-cache.max-entries:256}")
+    private int maxEntries;
+
+    public DeviceInventoryService(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * 用心跳上报的清单整体替换（空列表表示设备没有缓存），失败只记日志
+     */
+    public void update(String deviceCode, List<String> inventory) {
+        if (StrUtil.isBlank(deviceCode) || inventory == null) {
+            return;
+        }
+        List<String> md5s = inventory.stream()
+                .filter(StrUtil::isNotBlank)
+                .map(md5 -> md5.trim().toLowerCase(Locale.ROOT))
+                .filter(md5 -> MD5_PATTERN.matcher(md5).matches())
+                .distinct()
+                .limit(maxEntries)
+                .toList();
+        Object[] args = new Object[md5s.size() + 1];
+        args[0] = String.valueOf(ttlHours * 3600);
+        for (int i = 0; i < md5s.size(); i++) {
+            args[i + 1] = md5s.get(i);
+        }
+        try {
+            redisTemplate.execute(REPLACE_INVENTORY, List.of(KEY_PREFIX + deviceCode), args);
+            log.debug("更新设备缓存清单: deviceCode={}, files={}", deviceCode, md5s.size());
+        } catch (Exception e) {
+            log.warn("更新设备缓存清单失败: deviceCode={}", deviceCode, e);
+        }
+    }
+
+    /**
+     * 设备是否已缓存该文件；没有 MD5（历史内容）或读取失败时按未缓存处理
+     */
+    public boolean holds(String deviceCode, String md5) {
+        if (StrUtil.isBlank(deviceCode) || StrUtil.isBlank(md5)) {
+            return false;
+        }
+        try {
+            return Boolean.TRUE.equals(redisTemplate.opsForSet().isMember(KEY_PREFIX + deviceCode, md5));
+        } catch (Exception e) {
+            log.warn("读取设备缓存清单失败，按完整命令下发: deviceCode={}", deviceCode, e);
+            return false;
+        }
+    }
+
+    /**
+     * 设备报告缓存中已没有该文件（CACHE_MISS），从清单中移除，下次按完整命令下发
+     */
+    public void forget(String deviceCode, String md5) {
+        if (StrUtil.isBlank(deviceCode) || StrUtil.isBlank(md5)) {
+            return;
+        }
+        try {
+            redisTemplate.opsForSet().remove(KEY_PREFIX + deviceCode, md5);
+        } catch (Exception e) {
+            log.warn("移除设备缓存清单项失败: deviceCode={}", deviceCode, e);
+        }
+    }
+}
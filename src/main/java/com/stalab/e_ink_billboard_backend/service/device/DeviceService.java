@@ -1,8 +1,10 @@
 package com.stalab.e_ink_billboard_backend.service.device;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.stalab.e_ink_billboard_backend.common.enums.ContentType;
 import com.stalab.e_ink_billboard_backend.common.enums.DeviceStatus;
+import com.stalab.e_ink_billboard_backend.common.enums.PanelPalette;
 import com.stalab.e_ink_billboard_backend.common.enums.UserRole;
 import com.stalab.e_ink_billboard_backend.common.exception.BusinessException;
 import com.stalab.e_ink_billboard_backend.mapper.DeviceMapper;
@@ -60,21 +62,24 @@ public class DeviceService {
             throw new BusinessException("设备编码已存在: " + device.getDeviceCode());
         }
 
-        // 2. 自动生成MQTT主题（如果未提供）
+        // 2. 校验面板参数
+        validatePanel(device.getPanelPalette(), device.getPanelBitDepth(), device.getPanelRotation());
+
+        // 3. 自动生成MQTT主题（如果未提供）
         if (device.getMqttTopic() == null || device.getMqttTopic().isEmpty()) {
             device.setMqttTopic("device/" + device.getDeviceCode() + "/cmd");
         }
 
-        // 3. 设置默认状态
+        // 4. 设置默认状态
         if (device.getStatus() == null) {
             device.setStatus(DeviceStatus.OFFLINE);
         }
 
-        // 4. 设置创建时间
+        // 5. 设置创建时间
         device.setCreateTime(LocalDateTime.now());
         device.setUpdateTime(LocalDateTime.now());
 
-        // 5. 保存设备
+        // 6. 保存设备
         deviceMapper.insert(device);
         log.info("成功添加设备: deviceId={}, deviceCode={}", device.getId(), device.getDeviceCode());
 
@@ -125,10 +130,26 @@ public class DeviceService {
             device.setMqttTopic("device/" + device.getDeviceCode() + "/cmd");
         }
 
-        // 更新更新时间
-        device.setUpdateTime(LocalDateTime.now());
-
-        deviceMapper.updateById(device);
+        // 校验面板参数（面板参数整体替换，不与原值合并）
+        validatePanel(device.getPanelPalette(), device.getPanelBitDepth(), device.getPanelRotation());
+
+        // 基本信息只更新传入的项；面板参数显式写入，传空表示恢复默认面板（media.panel.*），
+        // updateById 会跳过空值，清不掉已设置的面板参数
+        deviceMapper.update(null, new LambdaUpdateWrapper<Device>()
+                .set(device.getDeviceName() != null, Device::getDeviceName, device.getDeviceName())
+                .set(device.getDeviceCode() != null, Device::getDeviceCode, device.getDeviceCode())
+                .set(device.getMqttTopic() != null, Device::getMqttTopic, device.getMqttTopic())
+                .set(device.getLocation() != null, Device::getLocation, device.getLocation())
+                .set(device.getDescription() != null, Device::getDescription, device.getDescription())
+                .set(Device::getPanelWidth, device.getPanelWidth())
+                .set(Device::getPanelHeight, device.getPanelHeight())
+                .set(Device::getPanelBitDepth, device.getPanelBitDepth())
+                .set(Device::getPanelPalette, device.getPanelPalette())
+                .set(Device::getPanelRotation, device.getPanelRotation())
+                .set(Device::getDitherType, device.getDitherType())
+                .set(Device::getVideoCodec, device.getVideoCodec())
+                .set(Device::getUpdateTime, LocalDateTime.now())
+                .eq(Device::getId, device.getId()));
         log.info("成功更新设备: deviceId={}", device.getId());
     }
 
@@ -277,6 +298,25 @@ public class DeviceService {
         log.info("下发配网指令: deviceId={}, ssid={}", deviceId, ssid);
     }
 
+    /**
+     * 校验面板参数
+     * 位深只能是 1/2/4（PNG 索引色与 BIN 打包都按字节内整除），且要能容纳调色板的全部颜色
+     */
+    private void validatePanel(PanelPalette palette, Integer bitDepth, Integer rotation) {
+        if (bitDepth != null) {
+            if (bitDepth != 1 && bitDepth != 2 && bitDepth != 4) {
+                throw new BusinessException("面板位深只支持 1/2/4");
+            }
+            int minBits = (palette != null ? palette : PanelPalette.BW).getBitsPerPixel();
+            if (bitDepth < minBits) {
+                throw new BusinessException("面板位深不足以表示调色板颜色，至少需要 " + minBits + " 位");
+            }
+        }
+        if (rotation != null && rotation != 0 && rotation != 90 && rotation != 180 && rotation != 270) {
+            throw new BusinessException("面板旋转角度只支持 0/90/180/270");
+        }
+    }
+
     /**
      * 将Device实体转换为DeviceVO
      */
@@ -292,6 +332,13 @@ public class DeviceService {
                 .currentContentType(device.getCurrentContentType())
                 .location(device.getLocation())
                 .description(device.getDescription())
+                .panelWidth(device.getPanelWidth())
+                .panelHeight(device.getPanelHeight())
+                .panelBitDepth(device.getPanelBitDepth())
+                .panelPalette(device.getPanelPalette())
+                .panelRotation(device.getPanelRotation())
+                .ditherType(device.getDitherType())
+                .videoCodec(device.getVideoCodec())
                 .createTime(device.getCreateTime());
 
         // 如果当前有播放内容，查询内容详细信息
@@ -0,0 +1,220 @@
+package com.stalab.e_ink_billboard_backend.service.media;
+
+import cn.hutool.core.io.FileUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.stalab.e_ink_billboard_backend.common.enums.AuditStatus;
+import com.stalab.e_ink_billboard_backend.common.enums.AuditVerdict;
+import com.stalab.e_ink_billboard_backend.common.enums.ProcessingStatus;
+import com.stalab.e_ink_billboard_backend.common.util.VideoUtils;
+import com.stalab.e_ink_billboard_backend.mapper.ImageMapper;
+import com.stalab.e_ink_billboard_backend.mapper.VideoMapper;
+import com.stalab.e_ink_billboard_backend.mapper.po.Image;
+import com.stalab.e_ink_billboard_backend.mapper.po.Video;
+import com.stalab.e_ink_billboard_backend.model.vo.AuditStatsVO;
+import com.stalab.e_ink_billboard_backend.service.storage.MinioService;
+import com.stalab.e_ink_billboard_backend.service.storage.SpooledUpload;
+import com.stalab.e_ink_billboard_backend.service.wx.AuditCircuitBreaker;
+import com.stalab.e_ink_billboard_backend.service.wx.WeChatContentSecurityService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * 内容审核自动重审
+ * 审核服务不可用（超时、报错、熔断中）时，图片/视频保持 PENDING 并记下 RETRY_REASON；
+ * 这里定时从 MinIO 取回原文件重新送审，熔断器打开期间不重审；
+ * 原文件取回失败的项改记 UNREADABLE_REASON，留给人工复审
+ */
+@Slf4j
+@Service
+public class AuditRetryService {
+
+    /**
+     * 等待自动重审的标记（图片记在 audit_reason，视频记在 fail_reason）
+     */
+    public static final String RETRY_REASON = "自动审核服务暂不可用，等待自动重审";
+
+    /**
+     * 微信判定违规的图片转人工复审
+     */
+    public static final String REJECTED_REASON = "微信自动审核未通过，等待人工复审";
+
+    /**
+     * 原文件取回或抽帧失败，不再自动重审（否则每轮都排在最前面，挤占后面的待重审项），转人工复审
+     */
+    public static final String UNREADABLE_REASON = "原文件读取失败，无法自动重审，等待人工复审";
+
+    private static final int VIDEO_SAMPLE_FRAMES = 5;
+
+    private final ImageMapper imageMapper;
+    private final VideoMapper videoMapper;
+    private final MinioService minioService;
+    private final VideoUtils videoUtils;
+    private final WeChatContentSecurityService weChatContentSecurityService;
+    private final AuditCircuitBreaker circuitBreaker;
+
+    /**
+     * 每轮最多重审的图片/视频数
+     */
+    @Value("${wechat.audit.retry.batch-size:20}")
+    private int batchSize;
+
+    public AuditRetryService(ImageMapper imageMapper, VideoMapper videoMapper, MinioService minioService,
+                             VideoUtils videoUtils, WeChatContentSecurityService weChatContentSecurityService,
+                             AuditCircuitBreaker circuitBreaker) {
+        this.imageMapper = imageMapper;
+        this.videoMapper = videoMapper;
+        this.minioService = minioService;
+        this.videoUtils = videoUtils;
+        this.weChatContentSecurityService = weChatContentSecurityService;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * 定时重审；某一项仍然不可用时本轮停止，等下一轮
+     * 多实例同时重审同一项时只会多调用一次接口，结果按 PENDING 条件更新，不会互相覆盖
+     */
+    @Scheduled(fixedDelayString = "${wechat.audit.retry.interval-seconds:60}000")
+    public void retryPending() {
+        if (circuitBreaker.state() == AuditCircuitBreaker.State.OPEN) {
+            return;
+        }
+        try {
+            if (retryImages()) {
+                retryVideos();
+            }
+        } catch (Exception e) {
+            log.error("自动重审失败，等待下次调度", e);
+        }
+    }
+
+    /**
+     * 审核指标 + 待重审数量
+     */
+    public AuditStatsVO stats() {
+        AuditStatsVO stats = circuitBreaker.stats();
+        stats.setPendingImages(imageMapper.selectCount(pendingImages()));
+        stats.setPendingVideos(videoMapper.selectCount(pendingVideos()));
+        return stats;
+    }
+
+    /**
+     * @return 审核服务是否可用（本轮是否继续）
+     */
+    private boolean retryImages() {
+        List<Image> images = imageMapper.selectList(pendingImages()
+                .orderByAsc(Image::getId)
+                .last("LIMIT " + batchSize));
+        for (Image image : images) {
+            File source = null;
+            AuditVerdict verdict;
+            try {
+                source = download(image.getOriginalUrl(), image.getFileName());
+                verdict = weChatContentSecurityService.checkImage(source);
+            } catch (Exception e) {
+                log.error("重审图片时读取原图失败，转人工复审 ImageID: {}", image.getId(), e);
+                imageMapper.update(null, new LambdaUpdateWrapper<Image>()
+                        .set(Image::getAuditReason, UNREADABLE_REASON)
+                        .eq(Image::getId, image.getId())
+                        .eq(Image::getAuditStatus, AuditStatus.PENDING)
+                        .eq(Image::getAuditReason, RETRY_REASON));
+                continue;
+            } finally {
+                if (source != null) {
+                    FileUtil.del(source);
+                }
+            }
+            if (verdict == AuditVerdict.UNAVAILABLE) {
+                return false;
+            }
+            log.info("图片自动重审完成 ImageID: {}, 结论: {}", image.getId(), verdict);
+            imageMapper.update(null, new LambdaUpdateWrapper<Image>()
+                    .set(verdict == AuditVerdict.APPROVED, Image::getAuditStatus, AuditStatus.APPROVED)
+                    .set(Image::getAuditReason, verdict == AuditVerdict.APPROVED ? null : REJECTED_REASON)
+                    .eq(Image::getId, image.getId())
+                    .eq(Image::getAuditStatus, AuditStatus.PENDING)
+                    .eq(Image::getAuditReason, RETRY_REASON));
+        }
+        return true;
+    }
+
+    private void retryVideos() {
+        List<Video> videos = videoMapper.selectList(pendingVideos()
+                .orderByAsc(Video::getId)
+                .last("LIMIT " + batchSize));
+        for (Video video : videos) {
+            File source = null;
+            AuditVerdict verdict;
+            try {
+                source = download(video.getOriginalUrl(), video.getFileName());
+                verdict = weChatContentSecurityService.checkImages(videoUtils.sampleFrames(source, VIDEO_SAMPLE_FRAMES));
+            } catch (Exception e) {
+                log.error("重审视频时抽帧失败，转人工复审 VideoID: {}", video.getId(), e);
+                videoMapper.update(null, new LambdaUpdateWrapper<Video>()
+                        .set(Video::getFailReason, UNREADABLE_REASON)
+                        .eq(Video::getId, video.getId())
+                        .eq(Video::getAuditStatus, AuditStatus.PENDING.name())
+                        .eq(Video::getFailReason, RETRY_REASON));
+                continue;
+            } finally {
+                if (source != null) {
+                    FileUtil.del(source);
+                }
+            }
+            if (verdict == AuditVerdict.UNAVAILABLE) {
+                return;
+            }
+            log.info("视频自动重审完成 VideoID: {}, 结论: {}", video.getId(), verdict);
+            LambdaUpdateWrapper<Video> update = new LambdaUpdateWrapper<Video>()
+                    .eq(Video::getId, video.getId())
+                    .eq(Video::getAuditStatus, AuditStatus.PENDING.name())
+                    .eq(Video::getFailReason, RETRY_REASON);
+            if (verdict == AuditVerdict.APPROVED) {
+                update.set(Video::getAuditStatus, AuditStatus.APPROVED.name())
+                        .set(Video::getFailReason, null);
+            } else {
+                // 与转码时审核不通过的处理一致
+                update.set(Video::getAuditStatus, AuditStatus.REJECTED.name())
+                        .set(Video::getProcessingStatus, ProcessingStatus.FAILED.name())
+                        .set(Video::getFailReason, "视频包含违规内容，审核未通过");
+            }
+            videoMapper.update(null, update);
+        }
+    }
+
+    /**
+     * 原图由处理任务异步上传，处理成功后才能从 MinIO 取回
+     */
+    private static LambdaQueryWrapper<Image> pendingImages() {
+        return new LambdaQueryWrapper<Image>()
+                .eq(Image::getAuditStatus, AuditStatus.PENDING)
+                .eq(Image::getProcessingStatus, ProcessingStatus.SUCCESS)
+                .eq(Image::getAuditReason, RETRY_REASON);
+    }
+
+    private static LambdaQueryWrapper<Video> pendingVideos() {
+        return new LambdaQueryWrapper<Video>()
+                .eq(Video::getAuditStatus, AuditStatus.PENDING.name())
+                .eq(Video::getProcessingStatus, ProcessingStatus.SUCCESS.name())
+                .eq(Video::getFailReason, RETRY_REASON);
+    }
+
+    private File download(String url, String fileName) throws Exception {
+        File file = File.createTempFile("audit_retry_", SpooledUpload.tempSuffix(fileName));
+        try (InputStream in = minioService.download(url)) {
+            Files.copy(in, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (Exception e) {
+            FileUtil.del(file);
+            throw e;
+        }
+        return file;
+    }
+}
@@ -0,0 +1,194 @@
+package com.stalab.e_ink_billboard_backend.service.media;
+
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.stalab.e_ink_billboard_backend.common.enums.DitherType;
+import com.stalab.e_ink_billboard_backend.common.enums.ProcessingStatus;
+import com.stalab.e_ink_billboard_backend.common.util.ImageUtils;
+import com.stalab.e_ink_billboard_backend.common.util.VideoUtils;
+import com.stalab.e_ink_billboard_backend.mapper.ImageMapper;
+import com.stalab.e_ink_billboard_backend.mapper.VideoMapper;
+import com.stalab.e_ink_billboard_backend.mapper.po.Image;
+import com.stalab.e_ink_billboard_backend.mapper.po.Video;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 内容寻址秒传
+ * 以 SHA-256 + 抖动算法定位已处理成功的图片/视频，上传时在审核、存储、转码之前查找。
+ * Redis 缓存 内容哈希 -> 记录ID，命中时只需一次主键查询；未命中再走 sha256 索引查库并回填缓存
+ */
+@Slf4j
+@Service
+public class ContentDedupeService {
+
+    /**
+     * 秒传命中待审核或未通过的内容时记录的审核原因（图片记在 audit_reason，视频记在 fail_reason），
+     * 管理员审核列表据此区分秒传记录和新上传
+     */
+    public static final String DUPLICATE_PENDING_REASON = "与待审核或未通过的内容相同，等待人工复审";
+
+    private static final String IMAGE_KEY_PREFIX = "media:dedupe:image:";
+    private static final String VIDEO_KEY_PREFIX = "media:dedupe:video:";
+
+    private final ImageMapper imageMapper;
+    private final VideoMapper videoMapper;
+    private final ImageUtils imageUtils;
+    private final VideoUtils videoUtils;
+
+    @Resource
+    private RedisTemplate<String, Object> redisTemplate;
+
+    /**
+     * 缓存有效期（小时），默认 7 天
+     */
+    @Value("${media.dedupe.cache-ttl-hours:168}")
+    private long cacheTtlHours;
+
+    public ContentDedupeService(ImageMapper imageMapper, VideoMapper videoMapper,
+                                ImageUtils imageUtils, VideoUtils videoUtils) {
+        this.imageMapper = imageMapper;
+        this.videoMapper = videoMapper;
+        this.imageUtils = imageUtils;
+        this.videoUtils = videoUtils;
+    }
+
+    /**
+     * 查找内容相同、抖动算法相同且已处理成功的图片
+     *
+     * @return 可复用的图片记录，不存在返回 null
+     */
+    public Image findImage(String sha256, DitherType ditherType) {
+        String key = imageKey(sha256, ditherType);
+        Long cachedId = getCachedId(key);
+        if (cachedId != null) {
+            Image image = imageMapper.selectById(cachedId);
+            if (isReusable(image, sha256, ditherType)) {
+                return image;
+            }
+            // 记录已删除或状态变化，缓存失效
+            evict(key);
+        }
+
+        Image image = imageMapper.selectOne(new LambdaQueryWrapper<Image>()
+                .eq(Image::getSha256, sha256)
+                // dither_type 为空的历史数据按默认算法生成
+                .and(w -> w.eq(Image::getDitherType, ditherType)
+                        .or(ditherType == imageUtils.resolveImageDither(null), o -> o.isNull(Image::getDitherType)))
+                .isNotNull(Image::getProcessedUrl)
+                .and(w -> w.eq(Image::getProcessingStatus, ProcessingStatus.SUCCESS)
+                        .or().isNull(Image::getProcessingStatus))
+                .orderByAsc(Image::getId)
+                .last("LIMIT 1"));
+        if (image != null) {
+            cacheId(key, image.getId());
+        }
+        return image;
+    }
+
+    /**
+     * 查找内容相同、抖动算法相同且已处理成功的视频
+     *
+     * @return 可复用的视频记录，不存在返回 null
+     */
+    public Video findVideo(String sha256, DitherType ditherType) {
+        String key = videoKey(sha256, ditherType);
+        Long cachedId = getCachedId(key);
+        if (cachedId != null) {
+            Video video = videoMapper.selectById(cachedId);
+            if (isReusable(video, sha256, ditherType)) {
+                return video;
+            }
+            evict(key);
+        }
+
+        Video video = videoMapper.selectOne(new LambdaQueryWrapper<Video>()
+                .eq(Video::getSha256, sha256)
+                .and(w -> w.eq(Video::getDitherType, ditherType)
+                        .or(ditherType == videoUtils.resolveVideoDither(null), o -> o.isNull(Video::getDitherType)))
+                .eq(Video::getProcessingStatus, ProcessingStatus.SUCCESS.name())
+                .isNotNull(Video::getProcessedUrl)
+                .orderByAsc(Video::getId)
+                .last("LIMIT 1"));
+        if (video != null) {
+            cacheId(key, video.getId());
+        }
+        return video;
+    }
+
+    /**
+     * 图片处理成功后登记，后续相同内容的上传直接命中缓存
+     */
+    public void rememberImage(Image image) {
+        if (StrUtil.isNotBlank(image.getSha256())) {
+            cacheId(imageKey(image.getSha256(), imageUtils.resolveImageDither(image.getDitherType())), image.getId());
+        }
+    }
+
+    /**
+     * 视频处理成功后登记
+     */
+    public void rememberVideo(Video video) {
+        if (StrUtil.isNotBlank(video.getSha256())) {
+            cacheId(videoKey(video.getSha256(), videoUtils.resolveVideoDither(video.getDitherType())), video.getId());
+        }
+    }
+
+    private boolean isReusable(Image image, String sha256, DitherType ditherType) {
+        return image != null
+                && sha256.equals(image.getSha256())
+                && imageUtils.resolveImageDither(image.getDitherType()) == ditherType
+                && StrUtil.isNotBlank(image.getProcessedUrl())
+                && (image.getProcessingStatus() == null || image.getProcessingStatus() == ProcessingStatus.SUCCESS);
+    }
+
+    private boolean isReusable(Video video, String sha256, DitherType ditherType) {
+        return video != null
+                && sha256.equals(video.getSha256())
+                && videoUtils.resolveVideoDither(video.getDitherType()) == ditherType
+                && StrUtil.isNotBlank(video.getProcessedUrl())
+                && ProcessingStatus.SUCCESS.name().equals(video.getProcessingStatus());
+    }
+
+    private static String imageKey(String sha256, DitherType ditherType) {
+        return IMAGE_KEY_PREFIX + sha256 + ":" + ditherType.name();
+    }
+
+    private static String videoKey(String sha256, DitherType ditherType) {
+        return VIDEO_KEY_PREFIX + sha256 + ":" + ditherType.name();
+    }
+
+    /**
+     * Redis 不可用时只记录日志，退化为直接查库
+     */
+    private Long getCachedId(String key) {
+        try {
+            Object value = redisTemplate.opsForValue().get(key);
+            return value == null ? null : Long.parseLong(value.toString());
+        } catch (Exception e) {
+            log.warn("读取秒传缓存失败，改为查库: key={}", key, e);
+            return null;
+        }
+    }
+
+    private void cacheId(String key, Long id) {
+        try {
+            redisTemplate.opsForValue().set(key, id.toString(), cacheTtlHours, TimeUnit.HOURS);
+        } catch (Exception e) {
+            log.warn("写入秒传缓存失败: key={}", key, e);
+        }
+    }
+
+    private void evict(String key) {
+        try {
+            redisTemplate.delete(key);
+        } catch (Exception e) {
+            log.warn("清除秒传缓存失败: key={}", key, e);
+        }
+    }
+}
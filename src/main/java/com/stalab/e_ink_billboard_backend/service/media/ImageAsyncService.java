@@ -0,0 +1,172 @@
+package com.stalab.e_ink_billboard_backend.service.media;
+
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.stalab.e_ink_billboard_backend.common.enums.AuditStatus;
+import com.stalab.e_ink_billboard_backend.common.enums.AuditVerdict;
+import com.stalab.e_ink_billboard_backend.common.enums.ProcessingStatus;
+import com.stalab.e_ink_billboard_backend.common.util.ImageUtils;
+import com.stalab.e_ink_billboard_backend.mapper.ImageMapper;
+import com.stalab.e_ink_billboard_backend.mapper.po.Image;
+import com.stalab.e_ink_billboard_backend.service.storage.MinioService;
+import com.stalab.e_ink_billboard_backend.service.storage.SpooledUpload;
+import com.stalab.e_ink_billboard_backend.service.wx.WeChatContentSecurityService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * 异步处理图片：上传原图（异步）+ 内容审核 -> 抖动 -> 上传结果图
+ * 上传接口只负责落库（PROCESSING），原图上传、耗时的审核与算法处理都在这里完成，
+ * 期间不占用数据库连接
+ */
+@Slf4j
+@Service
+public class ImageAsyncService {
+
+    private final ImageMapper imageMapper;
+    private final MinioService minioService;
+    private final ImageUtils imageUtils;
+    private final WeChatContentSecurityService weChatContentSecurityService;
+    private final ContentDedupeService contentDedupeService;
+
+    public ImageAsyncService(ImageMapper imageMapper, MinioService minioService, ImageUtils imageUtils,
+                             WeChatContentSecurityService weChatContentSecurityService,
+                             ContentDedupeService contentDedupeService) {
+        this.imageMapper = imageMapper;
+        this.minioService = minioService;
+        this.imageUtils = imageUtils;
+        this.weChatContentSecurityService = weChatContentSecurityService;
+        this.contentDedupeService = contentDedupeService;
+    }
+
+    /**
+     * 处理图片
+     * 原图在后台上传，同时审核状态为 PENDING 时做微信内容审核；还没有结果图时再抖动并上传（秒传的记录只需审核）
+     *
+     * 由 imageJobScheduler 在 imageExecutor 线程上执行
+     *
+     * @param upload 已缓冲的原图，处理结束后由本方法关闭
+     */
+    public void processImageAsync(Long imageId, SpooledUpload upload) {
+        try (upload) {
+            processImage(imageId, upload);
+        }
+    }
+
+    private void processImage(Long imageId, SpooledUpload upload) {
+        Image currentImage = imageMapper.selectById(imageId);
+        if (currentImage == null) {
+            log.error("图片不存在 ImageID: {}", imageId);
+            return;
+        }
+
+        Image updateEntity = new Image();
+        updateEntity.setId(imageId);
+
+        // 0. 原图异步上传，与审核、抖动、结果图上传同时进行
+        CompletableFuture<String> originalUpload = minioService.uploadAsync(upload,
+                minioService.extractObjectName(currentImage.getOriginalUrl()));
+        String processedUrl = null;
+        try {
+            // 1. 内容审核 (如果当前状态是 PENDING，说明是游客上传，需要审核)
+            if (currentImage.getAuditStatus() == AuditStatus.PENDING) {
+                auditImage(imageId, upload);
+            }
+
+            // 2. 算法处理 + 上传结果图
+            if (StrUtil.isBlank(currentImage.getProcessedUrl())) {
+                ByteArrayInputStream ditheredStream;
+                try (InputStream in = upload.openStream()) {
+                    ditheredStream = imageUtils.processImage(in, currentImage.getDitherType());
+                }
+                long processedSize = ditheredStream.available();
+                // 上传时顺带计算结果图 MD5，下发给设备校验
+                MessageDigest md5 = MessageDigest.getInstance("MD5");
+                processedUrl = minioService.uploadStream(new DigestInputStream(ditheredStream, md5), processedSize,
+                        minioService.generateFileName("dithered.png"),
+                        "image/png");
+                updateEntity.setProcessedUrl(processedUrl);
+                updateEntity.setProcessedMd5(HexUtil.encodeHexStr(md5.digest()));
+                updateEntity.setProcessedSize(processedSize);
+            }
+
+            // 3. 原图也上传完成后才算成功
+            await(originalUpload);
+            updateEntity.setProcessingStatus(ProcessingStatus.SUCCESS);
+            imageMapper.updateById(updateEntity);
+            log.info("图片处理成功 ImageID: {}", imageId);
+
+            // 4. 登记到秒传缓存，相同内容再次上传时直接复用
+            contentDedupeService.rememberImage(currentImage);
+
+        } catch (Throwable e) {
+            log.error("图片异步处理失败 ImageID: {}", imageId, e);
+            // 上传缓冲在返回后关闭，先等原图上传结束（成功与否都保留原图地址，与之前失败时一致）
+            originalUpload.handle((url, ex) -> null).join();
+            if (processedUrl != null) {
+                minioService.deleteAfterCommit(List.of(processedUrl));
+                updateEntity.setProcessedUrl(null);
+            }
+            // 5. 更新失败状态
+            updateEntity.setProcessingStatus(ProcessingStatus.FAILED);
+            updateEntity.setFailReason(StrUtil.maxLength(e.getMessage(), 200));
+            imageMapper.updateById(updateEntity);
+        }
+    }
+
+    /**
+     * 等待异步上传完成，失败时抛出原本的异常而不是 CompletionException
+     */
+    private static String await(CompletableFuture<String> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    /**
+     * 微信内容审核：通过则直接 APPROVED，不通过则保持 PENDING 等待人工复审；
+     * 审核服务不可用（超时、报错、熔断中）时保持 PENDING，由 AuditRetryService 稍后自动重审
+     */
+    private void auditImage(Long imageId, SpooledUpload upload) {
+        log.info("开始对图片进行内容审核 ImageID: {}", imageId);
+        Image auditEntity = new Image();
+        AuditVerdict verdict;
+        try {
+            verdict = weChatContentSecurityService.checkImage(upload.getFile());
+        } catch (IOException e) {
+            // 本机缓冲读不到时，重审会从 MinIO 取回原图
+            log.error("读取上传缓冲失败 ImageID: {}", imageId, e);
+            verdict = AuditVerdict.UNAVAILABLE;
+        }
+        switch (verdict) {
+            case APPROVED -> {
+                log.info("图片内容审核通过 ImageID: {}", imageId);
+                auditEntity.setAuditStatus(AuditStatus.APPROVED);
+            }
+            case REJECTED -> {
+                log.warn("图片审核不通过，转入人工复审 ImageID: {}", imageId);
+                auditEntity.setAuditReason(AuditRetryService.REJECTED_REASON);
+            }
+            default -> {
+                // 审核服务不可用时不影响图片处理，稍后自动重审
+                log.warn("图片内容审核服务不可用，稍后自动重审 ImageID: {}", imageId);
+                auditEntity.setAuditReason(AuditRetryService.RETRY_REASON);
+            }
+        }
+        imageMapper.update(auditEntity, new LambdaUpdateWrapper<Image>()
+                .eq(Image::getId, imageId)
+                .eq(Image::getAuditStatus, AuditStatus.PENDING));
+    }
+}
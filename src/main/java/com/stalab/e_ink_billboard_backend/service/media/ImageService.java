@@ -1,11 +1,13 @@
 package com.stalab.e_ink_billboard_backend.service.media;
 
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.crypto.SecureUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.baomidou.mybatisplus.core.toolkit.support.SFunction;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.stalab.e_ink_billboard_backend.common.enums.AuditStatus;
+import com.stalab.e_ink_billboard_backend.common.enums.DitherType;
+import com.stalab.e_ink_billboard_backend.common.enums.ProcessingStatus;
 import com.stalab.e_ink_billboard_backend.common.enums.UserRole;
 import com.stalab.e_ink_billboard_backend.common.exception.BusinessException;
 import com.stalab.e_ink_billboard_backend.common.util.ImageUtils;
@@ -17,20 +19,21 @@ import com.stalab.e_ink_billboard_backend.model.vo.ImageUploadVO;
 import com.stalab.e_ink_billboard_backend.model.vo.ImageVO;
 import com.stalab.e_ink_billboard_backend.model.vo.PageResult;
 import com.stalab.e_ink_billboard_backend.service.storage.MinioService;
-import com.stalab.e_ink_billboard_backend.service.wx.WeChatContentSecurityService;
+import com.stalab.e_ink_billboard_backend.service.storage.SpooledUpload;
+import com.stalab.e_ink_billboard_backend.service.storage.UploadIngestService;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -42,7 +45,10 @@ public class ImageService {
     private final UserMapper userMapper;
     private final MinioService minioService;
     private final ImageUtils imageUtils;
-    private final WeChatContentSecurityService weChatContentSecurityService;
+    private final ImageAsyncService imageAsyncService;
+    private final UploadIngestService uploadIngestService;
+    private final ContentDedupeService contentDedupeService;
+    private final MediaJobScheduler imageJobScheduler;
 
     @Value("${upload.daily-limit.image:20}")
     private int imageDailyLimit;
@@ -50,110 +56,151 @@ public class ImageService {
     @Resource
     private RedisTemplate<String, Object> redisTemplate;
 
-    public ImageService(ImageMapper imageMapper, UserMapper userMapper, MinioService minioService, ImageUtils imageUtils, WeChatContentSecurityService weChatContentSecurityService) {
+    public ImageService(ImageMapper imageMapper, UserMapper userMapper, MinioService minioService, ImageUtils imageUtils, ImageAsyncService imageAsyncService,
+                        UploadIngestService uploadIngestService, ContentDedupeService contentDedupeService,
+                        @Qualifier("imageJobScheduler") MediaJobScheduler imageJobScheduler) {
         this.imageMapper = imageMapper;
         this.userMapper = userMapper;
         this.minioService = minioService;
         this.imageUtils = imageUtils;
-        this.weChatContentSecurityService = weChatContentSecurityService;
+        this.imageAsyncService = imageAsyncService;
+        this.uploadIngestService = uploadIngestService;
+        this.contentDedupeService = contentDedupeService;
+        this.imageJobScheduler = imageJobScheduler;
     }
 
-    @Transactional(rollbackFor = Exception.class)
-    public ImageUploadVO uploadAndProcess(MultipartFile file, Long userId) {
+    /**
+     * 上传图片并启动异步处理
+     * 同步阶段只做秒传判断和落库（PROCESSING），立即返回；
+     * 秒传命中时直接复用已有结果图和审核结论，不再审核和处理；
+     * 原图上传、内容审核、抖动和结果图上传交给 ImageAsyncService，前端通过 /api/image/status/{id} 轮询
+     *
+     * @param ditherType 抖动算法（可选，为空使用默认算法）
+     */
+    public ImageUploadVO uploadAndProcess(MultipartFile file, Long userId, DitherType ditherType) {
         // 获取用户信息
         User user = userMapper.selectById(userId);
         if (user == null) {
             throw new BusinessException("用户不存在");
         }
 
+        // 游客上传需要先经过微信内容审核（异步进行），审核通过前保持 PENDING
         boolean isAdmin = UserRole.ADMIN.getCode().equals(user.getRole());
-        AuditStatus initialStatus = AuditStatus.APPROVED;
-        String auditReason = null;
-
-        // ★★★ 核心审核逻辑：如果是游客，必须先通过微信内容审核 ★★★
-        if (!isAdmin) {
-            log.info("游客上传图片，开始进行内容审核... UserId: {}", userId);
-            boolean safe = weChatContentSecurityService.checkImage(file);
-            if (!safe) {
-                log.warn("图片审核不通过，转入人工复审 UserId: {}", userId);
-                initialStatus = AuditStatus.PENDING;
-                auditReason = "微信自动审核未通过，等待人工复审";
-            } else {
-                log.info("图片内容审核通过");
-                initialStatus = AuditStatus.APPROVED;
-            }
-        }
+        AuditStatus initialStatus = isAdmin ? AuditStatus.APPROVED : AuditStatus.PENDING;
 
-        try {
-            // 1. 计算 MD5 实现秒传
-            String md5 = SecureUtil.md5(file.getInputStream());
-            Image existImage = imageMapper.selectOne(new LambdaQueryWrapper<Image>()
-                    .eq(Image::getMd5, md5)
-                    .last("LIMIT 1"));
+        DitherType dither = imageUtils.resolveImageDither(ditherType);
+
+        // 先在处理队列占位：队列已满时直接返回 429，不再读取和上传文件
+        MediaJobScheduler.Reservation reservation = imageJobScheduler.reserve(userId,
+                isAdmin ? MediaJobScheduler.Priority.HIGH : MediaJobScheduler.Priority.NORMAL);
 
+        // 1. 只读取一次上传文件：同时算出 MD5 / SHA-256，内容缓冲到内存/临时文件供后续各阶段复用
+        SpooledUpload upload;
+        try {
+            upload = uploadIngestService.ingest(file);
+        } catch (RuntimeException e) {
+            reservation.cancel();
+            throw e;
+        }
+        boolean handedOff = false;
+        try {
+            // 2. 内容寻址秒传：在审核、存储、抖动之前按 SHA-256 查找（同一张图换了抖动算法，结果图不同，不能复用）
+            Image existImage = contentDedupeService.findImage(upload.getSha256(), dither);
             if (existImage != null) {
-                log.info("图片秒传触发: {}", md5);
+                log.info("图片秒传触发: sha256={}, 复用 ImageID: {}", upload.getSha256(), existImage.getId());
                 // 0. 检查并增加用户配额（在确认文件存在后执行）
                 checkAndIncrementQuota(user);
-                // 秒传也视为审核通过（因为上面已经检查过或者是管理员，或者引用了已存在的图）
-                // 注意：如果旧图是REJECTED，但这次通过了审核（或者这次是管理员），新记录应该是APPROVED
-                // 但如果这次没通过审核（WeChat Failed），则应该是PENDING
-                Image savedImage = saveImageRecord(userId, file, existImage.getOriginalUrl(), existImage.getProcessedUrl(), md5, initialStatus, auditReason);
-                return ImageUploadVO.builder()
-                        .id(savedImage.getId())
-                        .url(existImage.getOriginalUrl())
-                        .auditStatus(initialStatus)
-                        .auditMessage(initialStatus == AuditStatus.PENDING ?
-                                "图片正在审核中，审核通过后才能使用" : "上传成功")
-                        .build();
+                // 内容完全相同，直接沿用已有记录的审核结论：已通过则无需再调微信审核；
+                // 已有记录待审核或被驳回时，本次上传同样转人工复审
+                AuditStatus auditStatus = initialStatus;
+                String auditReason = null;
+                if (!isAdmin) {
+                    if (existImage.getAuditStatus() == AuditStatus.APPROVED) {
+                        auditStatus = AuditStatus.APPROVED;
+                    } else {
+                        auditReason = ContentDedupeService.DUPLICATE_PENDING_REASON;
+                    }
+                }
+                Image savedImage = saveImageRecord(userId, upload, existImage.getOriginalUrl(), existImage,
+                        dither, auditStatus, auditReason, ProcessingStatus.SUCCESS);
+                return buildUploadVO(savedImage);
             }
 
             // 0. 检查并增加用户配额（在实际上传前执行）
             checkAndIncrementQuota(user);
 
-            // 2. 上传原图 (Color)
-            String originalUrl = minioService.upload(file);
+            // 3. 原图 (Color) 先分配 object 名称，由处理任务异步上传，与审核、抖动、结果图上传并行
+            String originalUrl = minioService.getObjectUrl(minioService.generateFileName(upload.getOriginalFilename()));
 
-            // 3. 算法处理 (Color -> Dithered BW)
-            ByteArrayInputStream ditheredStream = imageUtils.processImage(file.getInputStream());
+            // 4. 预先保存数据库记录 (状态: PROCESSING)
+            Image savedImage = saveImageRecord(userId, upload, originalUrl, null, dither, initialStatus, null, ProcessingStatus.PROCESSING);
 
-            // 4. 上传处理图 (BW)
-            String processedUrl = minioService.uploadStream(ditheredStream,
-                    "dithered_" + System.currentTimeMillis() + ".png",
-                    "image/png");
+            // 5. ★★★ 提交处理任务（上传原图 + 审核 + 抖动 + 上传结果图），缓冲的原图交给任务关闭 ★★★
+            Long imageId = savedImage.getId();
+            reservation.submit("image-" + imageId, () -> imageAsyncService.processImageAsync(imageId, upload), upload::close);
+            handedOff = true;
 
-            // 5. 保存数据库
-            Image savedImage = saveImageRecord(userId, file, originalUrl, processedUrl, md5, initialStatus, auditReason);
+            return buildUploadVO(savedImage);
 
-            return ImageUploadVO.builder()
-                    .id(savedImage.getId())
-                    .url(processedUrl)
-                    .auditStatus(initialStatus)
-                    .auditMessage(initialStatus == AuditStatus.PENDING ?
-                            "图片正在审核中，审核通过后才能使用" : "上传成功")
-                    .build();
+        } finally {
+            if (!handedOff) {
+                upload.close();
+                reservation.cancel();
+            }
+        }
+    }
 
-        } catch (IOException e) {
-            log.error("图片处理流异常", e);
-            throw new BusinessException("图片解析失败");
+    /**
+     * 查询图片处理状态（轮询用）
+     */
+    public Image getImageStatus(Long imageId) {
+        Image image = imageMapper.selectById(imageId);
+        if (image == null) {
+            throw new BusinessException(404, "图片不存在");
         }
+        return image;
+    }
+
+    private ImageUploadVO buildUploadVO(Image image) {
+        String message;
+        if (image.getProcessingStatus() == ProcessingStatus.PROCESSING) {
+            message = image.getAuditStatus() == AuditStatus.PENDING ?
+                    "图片处理中，审核通过后才能使用" : "图片处理中";
+        } else {
+            message = "上传成功";
+        }
+        return ImageUploadVO.builder()
+                .id(image.getId())
+                .url(image.getProcessedUrl())
+                .processingStatus(image.getProcessingStatus())
+                .auditStatus(image.getAuditStatus())
+                .auditMessage(message)
+                .build();
     }
 
     /**
      * 保存图片记录
      *
+     * @param processed 秒传时复用其结果图，为空时结果图由处理任务生成
      * @return 保存后的Image对象（包含ID）
      */
-    private Image saveImageRecord(Long userId, MultipartFile file, String originalUrl, String processedUrl, String md5, AuditStatus status, String auditReason) {
+    private Image saveImageRecord(Long userId, SpooledUpload upload, String originalUrl, Image processed, DitherType ditherType, AuditStatus status, String auditReason, ProcessingStatus processingStatus) {
         Image image = new Image();
         image.setUserId(userId);
-        image.setFileName(file.getOriginalFilename());
-        image.setFileSize(file.getSize());
+        image.setFileName(upload.getOriginalFilename());
+        image.setFileSize(upload.getSize());
         image.setOriginalUrl(originalUrl);
-        image.setProcessedUrl(processedUrl); // 这里的图给ESP32用
-        image.setMd5(md5);
+        if (processed != null) {
+            image.setProcessedUrl(processed.getProcessedUrl()); // 这里的图给ESP32用
+            image.setProcessedMd5(processed.getProcessedMd5());
+            image.setProcessedSize(processed.getProcessedSize());
+        }
+        image.setMd5(upload.getMd5());
+        image.setSha256(upload.getSha256());
+        image.setDitherType(ditherType);
         image.setAuditStatus(status); // 使用传入的状态
         image.setAuditReason(auditReason);
+        image.setProcessingStatus(processingStatus);
 
         imageMapper.insert(image);
         return image; // 返回保存后的对象，包含自动生成的ID
@@ -179,24 +226,31 @@ public class ImageService {
             throw new BusinessException("无权删除此图片");
         }
 
-        // 3. 删除MinIO中的文件
-        try {
-            if (StrUtil.isNotBlank(image.getOriginalUrl())) {
-                minioService.delete(image.getOriginalUrl());
-            }
-            if (StrUtil.isNotBlank(image.getProcessedUrl())) {
-                minioService.delete(image.getProcessedUrl());
-            }
-        } catch (Exception e) {
-            log.error("删除MinIO文件失败，继续删除数据库记录", e);
-            // 即使MinIO删除失败，也继续删除数据库记录
+        // 3. 删除MinIO中的文件（秒传的记录共用同一份文件，仍被其他记录引用时保留）
+        // 事务提交后一次批量删除，不占用请求线程；MinIO删除失败不影响删除数据库记录
+        List<String> urls = new ArrayList<>(2);
+        if (StrUtil.isNotBlank(image.getOriginalUrl()) && !isShared(Image::getOriginalUrl, image.getOriginalUrl(), imageId)) {
+            urls.add(image.getOriginalUrl());
+        }
+        if (StrUtil.isNotBlank(image.getProcessedUrl()) && !isShared(Image::getProcessedUrl, image.getProcessedUrl(), imageId)) {
+            urls.add(image.getProcessedUrl());
         }
+        minioService.deleteAfterCommit(urls);
 
         // 4. 删除数据库记录
         imageMapper.deleteById(imageId);
         log.info("成功删除图片: imageId={}, userId={}", imageId, userId);
     }
 
+    /**
+     * 文件是否还被其他图片记录引用
+     */
+    private boolean isShared(SFunction<Image, String> column, String url, Long excludeId) {
+        return imageMapper.selectCount(new LambdaQueryWrapper<Image>()
+                .eq(column, url)
+                .ne(Image::getId, excludeId)) > 0;
+    }
+
     /**
      * 查询图片列表（分页）
      * 支持复杂筛选和排序
@@ -326,8 +380,11 @@ public class ImageService {
                 .fileSize(image.getFileSize())
                 .originalUrl(image.getOriginalUrl())
                 .processedUrl(image.getProcessedUrl())
+                .ditherType(image.getDitherType())
                 .auditStatus(image.getAuditStatus())
                 .auditReason(image.getAuditReason())
+                .processingStatus(image.getProcessingStatus() == null ? ProcessingStatus.SUCCESS : image.getProcessingStatus())
+                .failReason(image.getFailReason())
                 .createTime(image.getCreateTime())
                 .build();
     }
@@ -0,0 +1,400 @@
+package com.stalab.e_ink_billboard_backend.service.media;
+
+import com.stalab.e_ink_billboard_backend.common.exception.MediaJobRejectedException;
+import com.stalab.e_ink_billboard_backend.model.vo.MediaJobStatsVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 媒体处理任务调度器（视频转码、图片审核处理各一个实例，见 AsyncConfig）
+ * <ul>
+ *   <li>优先级：管理员上传（HIGH）总是先于游客上传（NORMAL）出队</li>
+ *   <li>公平性：同一优先级内按用户轮转出队，一个用户连续上传多个文件不会挡住其他用户</li>
+ *   <li>准入：上传前先 {@link #reserve} 占位，队列或该用户的排队数已满时抛出 429 + Retry-After，
+ *       不再由请求线程自己执行（原来的 CallerRunsPolicy 会让 HTTP 线程转码整段视频）</li>
+ *   <li>在事务中提交的任务在事务提交后才入队，异步任务一定能查到刚插入的记录；事务回滚时丢弃
+ *       （不依赖事务数据的任务用 {@link Reservation#submitNow} 立即入队）</li>
+ * </ul>
+ * 同时执行的任务数不超过 workers，执行线程来自传入的线程池
+ */
+@Slf4j
+public class MediaJobScheduler {
+
+    /**
+     * 任务优先级
+     */
+    public enum Priority {
+        /**
+         * 管理员上传
+         */
+        HIGH,
+        /**
+         * 游客上传
+         */
+        NORMAL
+    }
+
+    /**
+     * 还没有执行记录时，按每个任务 30 秒估算重试间隔
+     */
+    private static final long DEFAULT_RUN_MILLIS = 30_000;
+    private static final long MIN_RETRY_AFTER_SECONDS = 5;
+    private static final long MAX_RETRY_AFTER_SECONDS = 600;
+
+    private final String name;
+    private final Executor executor;
+    private final int workers;
+    private final int queueCapacity;
+    private final int perUserLimit;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Priority, FairQueue> queues = new EnumMap<>(Priority.class);
+    /**
+     * 每个用户已占位（含排队中）的任务数
+     */
+    private final Map<Long, Integer> pendingByUser = new HashMap<>();
+    /**
+     * 已占位（含排队中）的任务数
+     */
+    private int pending;
+    private int running;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder started = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder runNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param executor      执行线程池，可同时执行的任务数不小于 workers
+     * @param workers       同时执行的任务数
+     * @param queueCapacity 占位（含排队中）任务数上限
+     * @param perUserLimit  每个用户占位任务数上限
+     */
+    public MediaJobScheduler(String name, Executor executor, int workers, int queueCapacity, int perUserLimit) {
+        this.name = name;
+        this.executor = executor;
+        this.workers = workers;
+        this.queueCapacity = queueCapacity;
+        this.perUserLimit = perUserLimit;
+        for (Priority priority : Priority.values()) {
+            queues.put(priority, new FairQueue());
+        }
+    }
+
+    /**
+     * 为即将提交的任务占位，占位成功后必须 submit 或 cancel
+     *
+     * @throws MediaJobRejectedException 队列已满或该用户排队的任务过多
+     */
+    public Reservation reserve(Long userId, Priority priority) {
+        lock.lock();
+        try {
+            int userPending = pendingByUser.getOrDefault(userId, 0);
+            if (pending >= queueCapacity || userPending >= perUserLimit) {
+                rejected.increment();
+                long retryAfter = estimateRetryAfterSeconds();
+                log.warn("媒体处理队列已满，拒绝任务: queue={}, userId={}, pending={}, userPending={}, retryAfter={}s",
+                        name, userId, pending, userPending, retryAfter);
+                throw new MediaJobRejectedException(pending >= queueCapacity
+                        ? "处理队列繁忙，请稍后再试"
+                        : "您还有文件正在排队处理，请稍后再试", retryAfter);
+            }
+            pending++;
+            pendingByUser.put(userId, userPending + 1);
+            return new Reservation(userId, priority);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 空闲名额：还能立即开始执行的任务数（已占位、排队中的任务也占名额）
+     */
+    public int idleSlots() {
+        lock.lock();
+        try {
+            return Math.max(0, workers - pending);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 当前运行指标
+     */
+    public MediaJobStatsVO stats() {
+        int queuedHigh;
+        int queuedNormal;
+        int runningNow;
+        lock.lock();
+        try {
+            queuedHigh = queues.get(Priority.HIGH).size;
+            queuedNormal = queues.get(Priority.NORMAL).size;
+            runningNow = running;
+        } finally {
+            lock.unlock();
+        }
+        long startedCount = started.sum();
+        long finished = completed.sum() + failed.sum();
+        return MediaJobStatsVO.builder()
+                .name(name)
+                .workers(workers)
+                .running(runningNow)
+                .queuedHigh(queuedHigh)
+                .queuedNormal(queuedNormal)
+                .queueCapacity(queueCapacity)
+                .submitted(submitted.sum())
+                .completed(completed.sum())
+                .failed(failed.sum())
+                .rejected(rejected.sum())
+                .avgWaitMs(startedCount == 0 ? 0 : waitNanos.sum() / startedCount / 1_000_000)
+                .maxWaitMs(maxWaitNanos.get() / 1_000_000)
+                .avgRunMs(finished == 0 ? 0 : runNanos.sum() / finished / 1_000_000)
+                .build();
+    }
+
+    /**
+     * 预计多久后有空位：排在前面的任务数 / 工作线程数 x 平均执行耗时
+     * 调用方需持有 lock
+     */
+    private long estimateRetryAfterSeconds() {
+        long finished = completed.sum() + failed.sum();
+        long avgRunMillis = finished == 0 ? DEFAULT_RUN_MILLIS : runNanos.sum() / finished / 1_000_000;
+        long rounds = (pending - running + workers - 1) / workers + 1;
+        long seconds = rounds * avgRunMillis / 1000;
+        return Math.max(MIN_RETRY_AFTER_SECONDS, Math.min(MAX_RETRY_AFTER_SECONDS, seconds));
+    }
+
+    private void enqueue(Job job) {
+        lock.lock();
+        try {
+            queues.get(job.priority).add(job);
+            submitted.increment();
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(Long userId) {
+        lock.lock();
+        try {
+            releaseLocked(userId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void releaseLocked(Long userId) {
+        pending--;
+        pendingByUser.computeIfPresent(userId, (k, v) -> v > 1 ? v - 1 : null);
+    }
+
+    /**
+     * 有空闲名额时把队首任务交给线程池，调用方需持有 lock
+     */
+    private void dispatch() {
+        while (running < workers) {
+            Job job = poll();
+            if (job == null) {
+                return;
+            }
+            running++;
+            try {
+                executor.execute(() -> runJobs(job));
+            } catch (RuntimeException e) {
+                // 线程池已关闭（应用停止中），任务直接丢弃
+                running--;
+                releaseLocked(job.userId);
+                log.error("媒体处理任务无法执行，已丢弃: queue={}, job={}", name, job.name, e);
+                job.onDiscard.run();
+            }
+        }
+    }
+
+    /**
+     * 按优先级出队，同一优先级内按用户轮转，调用方需持有 lock
+     */
+    private Job poll() {
+        for (Priority priority : Priority.values()) {
+            Job job = queues.get(priority).poll();
+            if (job != null) {
+                return job;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 执行任务，结束后在同一线程上继续取下一个任务，直到队列为空
+     */
+    private void runJobs(Job first) {
+        Job job = first;
+        while (job != null) {
+            long startNanos = System.nanoTime();
+            long wait = startNanos - job.enqueuedNanos;
+            started.increment();
+            waitNanos.add(wait);
+            maxWaitNanos.accumulate(wait);
+            try {
+                job.task.run();
+                completed.increment();
+            } catch (Throwable e) {
+                failed.increment();
+                log.error("媒体处理任务执行失败: queue={}, job={}", name, job.name, e);
+            } finally {
+                runNanos.add(System.nanoTime() - startNanos);
+                log.debug("媒体处理任务结束: queue={}, job={}, 排队={}ms, 执行={}ms", name, job.name,
+                        wait / 1_000_000, (System.nanoTime() - startNanos) / 1_000_000);
+            }
+
+            lock.lock();
+            try {
+                releaseLocked(job.userId);
+                job = poll();
+                if (job == null) {
+                    running--;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 任务占位
+     */
+    public final class Reservation {
+        private final Long userId;
+        private final Priority priority;
+        private boolean done;
+
+        private Reservation(Long userId, Priority priority) {
+            this.userId = userId;
+            this.priority = priority;
+        }
+
+        /**
+         * 提交任务；当前线程在事务中时，事务提交后才入队，回滚则丢弃任务并执行 onDiscard
+         *
+         * @param jobName   任务名，用于日志
+         * @param onDiscard 任务被丢弃（不会执行）时的清理，例如关闭交给任务的上传缓冲
+         */
+        public void submit(String jobName, Runnable task, Runnable onDiscard) {
+            if (done) {
+                throw new IllegalStateException("任务占位已使用");
+            }
+            done = true;
+            Job job = new Job(jobName, userId, priority, task, onDiscard);
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                job.enqueuedNanos = System.nanoTime();
+                enqueue(job);
+                return;
+            }
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        job.enqueuedNanos = System.nanoTime();
+                        enqueue(job);
+                    } else {
+                        release(userId);
+                        log.info("事务未提交，丢弃媒体处理任务: queue={}, job={}", name, jobName);
+                        job.onDiscard.run();
+                    }
+                }
+            });
+        }
+
+        /**
+         * 立即提交任务，不等待当前事务提交，事务回滚也照常执行
+         * 用于不依赖事务中写入数据的任务（例如按面板参数渲染内容变体）
+         *
+         * @param onDiscard 任务被丢弃（应用停止中，不会执行）时的清理
+         */
+        public void submitNow(String jobName, Runnable task, Runnable onDiscard) {
+            if (done) {
+                throw new IllegalStateException("任务占位已使用");
+            }
+            done = true;
+            Job job = new Job(jobName, userId, priority, task, onDiscard);
+            job.enqueuedNanos = System.nanoTime();
+            enqueue(job);
+        }
+
+        /**
+         * 不再提交任务时释放占位（重复调用或已提交后调用无效果）
+         */
+        public void cancel() {
+            if (!done) {
+                done = true;
+                release(userId);
+            }
+        }
+    }
+
+    private static final class Job {
+        private final String name;
+        private final Long userId;
+        private final Priority priority;
+        private final Runnable task;
+        private final Runnable onDiscard;
+        private long enqueuedNanos;
+
+        private Job(String name, Long userId, Priority priority, Runnable task, Runnable onDiscard) {
+            this.name = name;
+            this.userId = userId;
+            this.priority = priority;
+            this.task = task;
+            this.onDiscard = onDiscard;
+        }
+    }
+
+    /**
+     * 按用户轮转的队列：每个用户一个子队列，轮到的用户出队一个任务后排到末尾
+     */
+    private static final class FairQueue {
+        private final Map<Long, Deque<Job>> byUser = new HashMap<>();
+        private final Deque<Long> turns = new ArrayDeque<>();
+        private int size;
+
+        void add(Job job) {
+            byUser.computeIfAbsent(job.userId, k -> {
+                turns.addLast(k);
+                return new ArrayDeque<>();
+            }).addLast(job);
+            size++;
+        }
+
+        Job poll() {
+            Long userId = turns.pollFirst();
+            if (userId == null) {
+                return null;
+            }
+            Deque<Job> jobs = byUser.get(userId);
+            Job job = jobs.pollFirst();
+            if (jobs.isEmpty()) {
+                byUser.remove(userId);
+            } else {
+                turns.addLast(userId);
+            }
+            size--;
+            return job;
+        }
+    }
+}
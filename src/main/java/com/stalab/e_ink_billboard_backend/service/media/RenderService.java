@@ -0,0 +1,334 @@
+package com.stalab.e_ink_billboard_backend.service.media;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.SecureUtil;
+import com.stalab.e_ink_billboard_backend.common.enums.DitherType;
+import com.stalab.e_ink_billboard_backend.common.enums.VideoCodec;
+import com.stalab.e_ink_billboard_backend.common.exception.BusinessException;
+import com.stalab.e_ink_billboard_backend.common.exception.MediaJobRejectedException;
+import com.stalab.e_ink_billboard_backend.common.util.ImageUtils;
+import com.stalab.e_ink_billboard_backend.common.util.VideoUtils;
+import com.stalab.e_ink_billboard_backend.mapper.po.Device;
+import com.stalab.e_ink_billboard_backend.mapper.po.Image;
+import com.stalab.e_ink_billboard_backend.mapper.po.Video;
+import com.stalab.e_ink_billboard_backend.model.dto.PanelProfile;
+import com.stalab.e_ink_billboard_backend.model.dto.RenderedAsset;
+import com.stalab.e_ink_billboard_backend.model.dto.StoredObject;
+import com.stalab.e_ink_billboard_backend.service.storage.ChunkManifestService;
+import com.stalab.e_ink_billboard_backend.service.storage.MinioService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 按设备面板参数渲染内容变体
+ * 上传时只生成默认面板的结果，其他面板的变体在首次推送时懒生成，
+ * 以 rendered/{内容哈希}/{面板参数}.png|.bin 为键存入 MinIO，相同内容 + 相同面板只渲染一次
+ * 渲染（下载原文件、解码、转码）交给图片/视频处理队列在后台执行，不占用推送请求线程和数据库事务；
+ * 变体还没有渲染好时返回渲染完成时才完成的 CompletableFuture，由推送服务在渲染完成后再下发
+ */
+@Slf4j
+@Service
+public class RenderService {
+
+    private static final String RENDERED_PREFIX = "rendered/";
+
+    // 已确认存在的变体数量上限（超过后淘汰最久未用的，避免无限增长）
+    private static final int MAX_KNOWN_VARIANTS = 10000;
+
+    private final MinioService minioService;
+    private final ImageUtils imageUtils;
+    private final VideoUtils videoUtils;
+    private final ChunkManifestService chunkManifestService;
+    private final MediaJobScheduler imageJobScheduler;
+    private final MediaJobScheduler videoJobScheduler;
+
+    /**
+     * 已确认存在的变体：object名称 -> 大小和 MD5（省去重复 statObject），按访问顺序淘汰（LRU）
+     */
+    private final Map<String, StoredObject> knownVariants = Collections.synchronizedMap(
+            new LinkedHashMap<>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, StoredObject> eldest) {
+                    return size() > MAX_KNOWN_VARIANTS;
+                }
+            });
+
+    /**
+     * 已提交、还没有渲染完的变体 -> 渲染结果（同一变体的并发推送只提交一次渲染任务，共用同一个结果）
+     */
+    private final Map<String, CompletableFuture<RenderedAsset>> rendering = new ConcurrentHashMap<>();
+
+    public RenderService(MinioService minioService, ImageUtils imageUtils, VideoUtils videoUtils,
+                         ChunkManifestService chunkManifestService,
+                         @Qualifier("imageJobScheduler") MediaJobScheduler imageJobScheduler,
+                         @Qualifier("videoJobScheduler") MediaJobScheduler videoJobScheduler) {
+        this.minioService = minioService;
+        this.imageUtils = imageUtils;
+        this.videoUtils = videoUtils;
+        this.chunkManifestService = chunkManifestService;
+        this.imageJobScheduler = imageJobScheduler;
+        this.videoJobScheduler = videoJobScheduler;
+    }
+
+    /**
+     * 设备的面板参数（未配置的项取默认面板）
+     *
+     * @param contentDither 内容上传时选用的抖动算法，设备配置了抖动算法时以设备为准
+     */
+    public PanelProfile resolveProfile(Device device, DitherType contentDither) {
+        PanelProfile profile = imageUtils.defaultProfile(
+                device.getDitherType() != null ? device.getDitherType() : contentDither);
+        if (device.getPanelWidth() != null) {
+            profile.setWidth(device.getPanelWidth());
+        }
+        if (device.getPanelHeight() != null) {
+            profile.setHeight(device.getPanelHeight());
+        }
+        if (device.getPanelPalette() != null) {
+            profile.setPalette(device.getPanelPalette());
+            profile.setBitDepth(device.getPanelPalette().getBitsPerPixel());
+        }
+        if (device.getPanelBitDepth() != null) {
+            profile.setBitDepth(device.getPanelBitDepth());
+        }
+        if (device.getPanelRotation() != null) {
+            profile.setRotation(device.getPanelRotation());
+        }
+        return profile;
+    }
+
+    /**
+     * 解析图片在指定设备上的下发资源
+     * 变体不存在时提交到图片处理队列渲染，返回的结果在渲染完成时完成（渲染失败时异常完成）
+     *
+     * @param userId  推送人，渲染任务按推送人排队
+     * @param isAdmin 管理员推送时渲染任务优先执行
+     * @throws MediaJobRejectedException 处理队列已满或该用户排队的任务过多
+     */
+    public CompletableFuture<RenderedAsset> resolveImage(Image image, Device device, Long userId, boolean isAdmin) {
+        DitherType contentDither = imageUtils.resolveImageDither(image.getDitherType());
+        PanelProfile profile = resolveProfile(device, contentDither);
+        if (profile.equals(imageUtils.defaultProfile(contentDither))) {
+            return CompletableFuture.completedFuture(RenderedAsset.builder()
+                    .url(image.getProcessedUrl())
+                    .size(image.getProcessedSize())
+                    .md5(image.getProcessedMd5())
+                    .build());
+        }
+
+        String sourceKey = StrUtil.isNotBlank(image.getMd5()) ? image.getMd5() : objectBaseName(image.getOriginalUrl());
+        String objectName = RENDERED_PREFIX + sourceKey + "/" + profile.cacheKey() + ".png";
+        RenderedAsset asset = findVariant(objectName);
+        if (asset != null) {
+            return CompletableFuture.completedFuture(asset);
+        }
+        return submitRender(objectName, imageJobScheduler, userId, isAdmin, () ->
+                renderVariant(objectName, "image/png", target -> {
+                    try (InputStream original = minioService.download(image.getOriginalUrl())) {
+                        Files.copy(imageUtils.processImage(original, profile), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }));
+    }
+
+    /**
+     * 解析视频在指定设备上的下发资源
+     * 设备支持 EVC 时，在对应面板的原始 BIN 基础上再编码一份 EVC 变体（只读 BIN，不需要重新解码视频）
+     * 变体不存在时提交到视频处理队列转码（EVC 设备在同一个任务里先转码 BIN 再编码 EVC），
+     * 返回的结果在转码完成时完成（转码失败时异常完成）
+     *
+     * @param userId  推送人，渲染任务按推送人排队
+     * @param isAdmin 管理员推送时渲染任务优先执行
+     * @throws MediaJobRejectedException 处理队列已满或该用户排队的任务过多
+     */
+    public CompletableFuture<RenderedAsset> resolveVideo(Video video, Device device, Long userId, boolean isAdmin) {
+        DitherType contentDither = videoUtils.resolveVideoDither(video.getDitherType());
+        PanelProfile profile = resolveProfile(device, contentDither);
+        String variantBase = RENDERED_PREFIX + objectBaseName(video.getOriginalUrl()) + "/" + profile.cacheKey();
+        String rawName = variantBase + ".bin";
+        String evcName = variantBase + ".evc";
+        boolean defaultProfile = profile.equals(imageUtils.defaultProfile(contentDither));
+        boolean evc = device.getVideoCodec() == VideoCodec.EVC;
+
+        RenderedAsset raw;
+        if (defaultProfile) {
+            raw = RenderedAsset.builder()
+                    .url(video.getProcessedUrl())
+                    .size(video.getProcessedSize())
+                    .md5(video.getProcessedMd5())
+                    .build();
+        } else {
+            raw = findVariant(rawName);
+        }
+        if (!evc && raw != null) {
+            return CompletableFuture.completedFuture(raw);
+        }
+        if (evc) {
+            RenderedAsset encoded = findVariant(evcName);
+            if (encoded != null) {
+                return CompletableFuture.completedFuture(encoded);
+            }
+        }
+
+        return submitRender(evc ? evcName : rawName, videoJobScheduler, userId, isAdmin, () -> {
+            RenderedAsset bin = raw;
+            if (bin == null) {
+                bin = renderVariant(rawName, "application/octet-stream", target -> {
+                    // 原视频先落到临时文件再转码，FFmpeg 可直接 seek，BIN 逐帧写入目标文件
+                    File source = File.createTempFile("render_src_", "." + StrUtil.blankToDefault(FileUtil.extName(video.getOriginalUrl()), "mp4"));
+                    try {
+                        try (InputStream original = minioService.download(video.getOriginalUrl())) {
+                            Files.copy(original, source.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                        }
+                        try (OutputStream binOut = new BufferedOutputStream(Files.newOutputStream(target.toPath()))) {
+                            videoUtils.processVideo(source, profile, binOut);
+                        }
+                    } finally {
+                        FileUtil.del(source);
+                    }
+                });
+            }
+            if (!evc) {
+                return bin;
+            }
+            String binUrl = bin.getUrl();
+            return renderVariant(evcName, "application/octet-stream", target -> {
+                try (InputStream rawBin = minioService.download(binUrl)) {
+                    videoUtils.encodeEvc(rawBin, profile, target);
+                }
+            });
+        });
+    }
+
+    /**
+     * 已存在的变体，不存在时返回 null
+     */
+    private RenderedAsset findVariant(String objectName) {
+        StoredObject stored = knownVariants.get(objectName);
+        if (stored == null) {
+            stored = minioService.statObject(objectName);
+            if (stored == null) {
+                return null;
+            }
+            rememberVariant(objectName, stored);
+        }
+        return toAsset(objectName, stored);
+    }
+
+    /**
+     * 提交渲染任务；同一变体已在渲染中时不重复提交，返回进行中的结果
+     * 任务立即入队，不随推送事务回滚（变体与推送记录无关，渲染好的变体之后的推送都能用）
+     * 完成前先移出 rendering：结果完成后再解析的推送直接命中 knownVariants，失败后的推送重新提交
+     *
+     * @throws MediaJobRejectedException 处理队列已满或该用户排队的任务过多
+     */
+    private CompletableFuture<RenderedAsset> submitRender(String objectName, MediaJobScheduler scheduler, Long userId,
+                                                          boolean isAdmin, Supplier<RenderedAsset> task) {
+        CompletableFuture<RenderedAsset> result = new CompletableFuture<>();
+        CompletableFuture<RenderedAsset> inFlight = rendering.putIfAbsent(objectName, result);
+        if (inFlight != null) {
+            return inFlight;
+        }
+        try {
+            MediaJobScheduler.Reservation reservation = scheduler.reserve(userId,
+                    isAdmin ? MediaJobScheduler.Priority.HIGH : MediaJobScheduler.Priority.NORMAL);
+            reservation.submitNow("render-" + objectName, () -> {
+                RenderedAsset asset;
+                try {
+                    asset = task.get();
+                } catch (RuntimeException e) {
+                    rendering.remove(objectName, result);
+                    result.completeExceptionally(e);
+                    throw e;
+                }
+                rendering.remove(objectName, result);
+                result.complete(asset);
+            }, () -> {
+                rendering.remove(objectName, result);
+                result.completeExceptionally(new BusinessException(500, "渲染任务已取消"));
+            });
+        } catch (RuntimeException e) {
+            rendering.remove(objectName, result);
+            throw e;
+        }
+        return result;
+    }
+
+    /**
+     * 渲染到临时文件并上传（在处理队列的线程上执行）
+     */
+    private RenderedAsset renderVariant(String objectName, String contentType, VariantRenderer renderer) {
+        File target = null;
+        try {
+            long start = System.currentTimeMillis();
+            target = File.createTempFile("render_", "." + FileUtil.extName(objectName));
+            renderer.render(target);
+            // MD5 随对象元数据保存，其他实例或重启后 statObject 也能取到
+            StoredObject rendered = StoredObject.builder()
+                    .size(target.length())
+                    .md5(SecureUtil.md5(target))
+                    .build();
+            minioService.uploadFile(target, objectName, contentType, rendered.getMd5());
+            chunkManifestService.remember(objectName, target);
+            rememberVariant(objectName, rendered);
+            log.info("渲染面板变体完成: objectName={}, size={}, cost={}ms",
+                    objectName, rendered.getSize(), System.currentTimeMillis() - start);
+            return toAsset(objectName, rendered);
+        } catch (BusinessException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("渲染面板变体失败: objectName={}", objectName, e);
+            throw new BusinessException(500, "内容渲染失败: " + e.getMessage());
+        } finally {
+            if (target != null) {
+                FileUtil.del(target);
+            }
+        }
+    }
+
+    private void rememberVariant(String objectName, StoredObject stored) {
+        knownVariants.put(objectName, stored);
+    }
+
+    private RenderedAsset toAsset(String objectName, StoredObject stored) {
+        return RenderedAsset.builder()
+                .url(minioService.getObjectUrl(objectName))
+                .size(stored.getSize())
+                .md5(stored.getMd5())
+                .variant(true)
+                .build();
+    }
+
+    /**
+     * 原始文件的 object 名称（去掉扩展名），上传时为 uuid，可唯一标识内容
+     */
+    private String objectBaseName(String url) {
+        String objectName = minioService.extractObjectName(url);
+        if (StrUtil.isBlank(objectName)) {
+            throw new BusinessException(500, "无法解析原始文件地址");
+        }
+        return FileUtil.mainName(objectName);
+    }
+
+    /**
+     * 把变体渲染到给定的临时文件
+     */
+    @FunctionalInterface
+    private interface VariantRenderer {
+        void render(File target) throws Exception;
+    }
+}
@@ -1,21 +1,33 @@
 package com.stalab.e_ink_billboard_backend.service.media;
 
 
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.HexUtil;
 import com.stalab.e_ink_billboard_backend.common.enums.AuditStatus;
+import com.stalab.e_ink_billboard_backend.common.enums.AuditVerdict;
+import com.stalab.e_ink_billboard_backend.common.enums.DitherType;
 import com.stalab.e_ink_billboard_backend.common.enums.ProcessingStatus;
 import com.stalab.e_ink_billboard_backend.common.util.VideoUtils;
 import com.stalab.e_ink_billboard_backend.mapper.VideoMapper;
 import com.stalab.e_ink_billboard_backend.mapper.po.Video;
 import com.stalab.e_ink_billboard_backend.model.dto.VideoProcessResult;
+import com.stalab.e_ink_billboard_backend.service.storage.ChunkManifestService;
 import com.stalab.e_ink_billboard_backend.service.storage.MinioService;
+import com.stalab.e_ink_billboard_backend.service.storage.SpooledUpload;
 import com.stalab.e_ink_billboard_backend.service.wx.WeChatContentSecurityService;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 import java.util.List;
 
 /**
@@ -33,16 +45,82 @@ public class VideoAsyncService {
     private final MinioService minioService;
     private final VideoUtils videoUtils;
     private final WeChatContentSecurityService weChatContentSecurityService;
+    private final ContentDedupeService contentDedupeService;
+    private final ChunkManifestService chunkManifestService;
 
-    public VideoAsyncService(VideoMapper videoMapper, MinioService minioService, VideoUtils videoUtils, WeChatContentSecurityService weChatContentSecurityService) {
+    public VideoAsyncService(VideoMapper videoMapper, MinioService minioService, VideoUtils videoUtils,
+                             WeChatContentSecurityService weChatContentSecurityService, ContentDedupeService contentDedupeService,
+                             ChunkManifestService chunkManifestService) {
         this.videoMapper = videoMapper;
         this.minioService = minioService;
         this.videoUtils = videoUtils;
         this.weChatContentSecurityService = weChatContentSecurityService;
+        this.contentDedupeService = contentDedupeService;
+        this.chunkManifestService = chunkManifestService;
     }
 
-    @Async("videoExecutor") // 使用我们配置的线程池
-    public void processVideoAsync(Long videoId, byte[] videoData) {
+    /**
+     * 由 VideoJobService 认领任务后交给 videoJobScheduler，在 videoExecutor 线程上执行
+     *
+     * @param upload 已缓冲的原视频，处理结束后由本方法关闭
+     */
+    public void processVideoAsync(Long videoId, SpooledUpload upload, DitherType ditherType) {
+        try (upload) {
+            processVideo(videoId, upload.getFile(), ditherType);
+        } catch (IOException e) {
+            log.error("读取上传缓冲失败 VideoID: {}", videoId, e);
+            markFailed(videoId, "读取原视频失败");
+        }
+    }
+
+    /**
+     * 处理已上传到 MinIO 的视频：实例重启后恢复、或由其他实例接手时，原视频不在本机缓冲中，先下载到临时文件
+     * 视频已不是 PROCESSING（已处理完或已删除）时直接跳过
+     */
+    public void processStoredVideo(Long videoId) {
+        Video video = videoMapper.selectById(videoId);
+        if (video == null || !ProcessingStatus.PROCESSING.name().equals(video.getProcessingStatus())) {
+            log.info("视频无需处理，跳过 VideoID: {}", videoId);
+            return;
+        }
+
+        File source = null;
+        try {
+            source = File.createTempFile("video_src_", SpooledUpload.tempSuffix(video.getFileName()));
+            try (InputStream in = minioService.download(video.getOriginalUrl())) {
+                Files.copy(in, source.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            DitherType ditherType = video.getDitherType();
+            processVideo(videoId, source, ditherType);
+        } catch (Exception e) {
+            log.error("下载原视频失败 VideoID: {}", videoId, e);
+            markFailed(videoId, "读取原视频失败");
+        } finally {
+            if (source != null) {
+                FileUtil.del(source);
+            }
+        }
+    }
+
+    /**
+     * 视频审核不通过：标记 REJECTED，处理状态置为失败
+     */
+    private void rejectVideo(Video updateEntity) {
+        updateEntity.setAuditStatus(AuditStatus.REJECTED.name());
+        updateEntity.setProcessingStatus(ProcessingStatus.FAILED.name());
+        updateEntity.setFailReason("视频包含违规内容，审核未通过");
+        videoMapper.updateById(updateEntity);
+    }
+
+    private void markFailed(Long videoId, String reason) {
+        Video updateEntity = new Video();
+        updateEntity.setId(videoId);
+        updateEntity.setProcessingStatus(ProcessingStatus.FAILED.name());
+        updateEntity.setFailReason(reason);
+        videoMapper.updateById(updateEntity);
+    }
+
+    private void processVideo(Long videoId, File source, DitherType ditherType) {
         log.info("开始异步处理视频 VideoID: {}", videoId);
 
         // 查询视频当前状态 (判断是否需要审核)
@@ -54,53 +132,72 @@ public class VideoAsyncService {
 
         Video updateEntity = new Video();
         updateEntity.setId(videoId);
+        File binFile = null;
 
         try {
-            // 1. 转码处理 (耗时操作)
-            InputStream inputStream = new ByteArrayInputStream(videoData);
-            // 修改为返回 Result 对象
-            VideoProcessResult result = videoUtils.processVideo(inputStream);
+            // 1. 转码处理 (耗时操作)：逐帧写入临时 BIN 文件，不在内存中累积整段视频；写入时顺带计算 MD5
+            binFile = File.createTempFile("video_bin_", ".bin");
+            VideoProcessResult result;
+            MessageDigest md5 = MessageDigest.getInstance("MD5");
+            try (OutputStream binOut = new BufferedOutputStream(
+                    new DigestOutputStream(Files.newOutputStream(binFile.toPath()), md5))) {
+                result = videoUtils.processVideo(source, ditherType, binOut);
+            }
 
             // 2. 内容审核 (如果当前状态是 PENDING，说明是游客上传，需要审核)
             if (AuditStatus.PENDING.name().equals(currentVideo.getAuditStatus())) {
                 log.info("开始对视频进行内容审核 VideoID: {}", videoId);
+                // 抽样帧并发送审，任意一帧违规立即终止
                 List<BufferedImage> samples = result.getSampleFrames();
-                if (samples != null && !samples.isEmpty()) {
-                    for (BufferedImage frame : samples) {
-                        boolean safe = weChatContentSecurityService.checkImage(frame);
-                        if (!safe) {
-                            // 审核不通过
-                            log.warn("视频审核未通过 VideoID: {}", videoId);
-                            updateEntity.setAuditStatus(AuditStatus.REJECTED.name());
-                            updateEntity.setProcessingStatus(ProcessingStatus.FAILED.name());
-                            updateEntity.setFailReason("视频包含违规内容，审核未通过");
-                            videoMapper.updateById(updateEntity);
-                            return; // 终止后续流程
-                        }
-                    }
+                AuditVerdict verdict = samples == null || samples.isEmpty()
+                        ? AuditVerdict.APPROVED : weChatContentSecurityService.checkImages(samples);
+                if (verdict == AuditVerdict.REJECTED) {
+                    // 审核不通过
+                    log.warn("视频审核未通过 VideoID: {}", videoId);
+                    rejectVideo(updateEntity);
+                    return; // 终止后续流程
+                }
+                if (verdict == AuditVerdict.UNAVAILABLE) {
+                    // 审核服务不可用：照常完成转码，审核状态保持 PENDING，由 AuditRetryService 稍后自动重审
+                    log.warn("视频内容审核服务不可用，稍后自动重审 VideoID: {}", videoId);
+                    updateEntity.setFailReason(AuditRetryService.RETRY_REASON);
+                } else {
+                    // 审核通过
+                    log.info("视频审核通过 VideoID: {}", videoId);
+                    updateEntity.setAuditStatus(AuditStatus.APPROVED.name());
                 }
-                // 审核通过
-                log.info("视频审核通过 VideoID: {}", videoId);
-                updateEntity.setAuditStatus(AuditStatus.APPROVED.name());
             }
 
-            // 3. 上传 BIN
-            String binFileName = "processed_" + System.currentTimeMillis() + ".bin";
-            String processedUrl = minioService.uploadStream(result.getBinStream(), binFileName, "application/octet-stream");
+            // 3. 上传 BIN（UUID 命名：分块清单和本地缓存按对象名缓存且不失效，对象名不能重复）
+            String binFileName = minioService.generateFileName("processed.bin");
+            String processedUrl = minioService.uploadFile(binFile, binFileName, "application/octet-stream");
+            // BIN 还在本地，顺便算好分块校验清单，下发时不必再从 MinIO 读一遍
+            chunkManifestService.remember(binFileName, binFile);
 
             // 4. 更新成功状态
             updateEntity.setProcessedUrl(processedUrl);
+            updateEntity.setProcessedMd5(HexUtil.encodeHexStr(md5.digest()));
+            updateEntity.setProcessedSize(binFile.length());
+            updateEntity.setFrameCount(result.getFrameCount());
+            updateEntity.setDuration(result.getDuration());
             updateEntity.setProcessingStatus(ProcessingStatus.SUCCESS.name());
             videoMapper.updateById(updateEntity);
 
             log.info("视频处理成功 VideoID: {}", videoId);
 
+            // 登记到秒传缓存，相同内容再次上传时直接复用
+            contentDedupeService.rememberVideo(currentVideo);
+
         } catch (Throwable e) {
             log.error("视频异步处理失败 VideoID: {}", videoId, e);
             // 5. 更新失败状态
             updateEntity.setProcessingStatus(ProcessingStatus.FAILED.name());
             updateEntity.setFailReason(e.getMessage());
             videoMapper.updateById(updateEntity);
+        } finally {
+            if (binFile != null) {
+                FileUtil.del(binFile);
+            }
         }
     }
 }
@@ -0,0 +1,353 @@
+package com.stalab.e_ink_billboard_backend.service.media;
+
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.stalab.e_ink_billboard_backend.common.enums.DitherType;
+import com.stalab.e_ink_billboard_backend.common.enums.MediaJobStatus;
+import com.stalab.e_ink_billboard_backend.common.enums.ProcessingStatus;
+import com.stalab.e_ink_billboard_backend.common.exception.MediaJobRejectedException;
+import com.stalab.e_ink_billboard_backend.mapper.MediaJobMapper;
+import com.stalab.e_ink_billboard_backend.mapper.VideoMapper;
+import com.stalab.e_ink_billboard_backend.mapper.po.MediaJob;
+import com.stalab.e_ink_billboard_backend.mapper.po.Video;
+import com.stalab.e_ink_billboard_backend.service.storage.SpooledUpload;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 持久化的视频转码队列
+ * 上传时在同一事务中写入 sys_media_job（原视频已在 MinIO），JVM 重启后任务不会丢失：
+ * <ul>
+ *   <li>上传实例在事务提交后按 ID 认领，直接用本机缓冲的原视频处理（常规路径，不需要再下载）</li>
+ *   <li>各实例定时认领 等待超过宽限期的 PENDING 任务 和 租约过期的 RUNNING 任务，从 MinIO 下载原视频处理，
+ *       多个后端实例以此分担转码；认领使用 FOR UPDATE SKIP LOCKED，互不阻塞</li>
+ *   <li>执行中的任务由本服务独占的续租线程定时续租，不受其他 @Scheduled 任务阻塞；实例宕机后租约过期，由其他实例接手</li>
+ *   <li>启动时释放本实例上次未完成的任务，并为没有任务记录的 PROCESSING 视频（升级前的数据）补建任务</li>
+ *   <li>认领次数达到上限仍未完成的任务标记为 FAILED，视频同时标记为处理失败</li>
+ * </ul>
+ */
+@Slf4j
+@Service
+public class VideoJobService implements DisposableBean {
+
+    private static final String JOB_TYPE = "VIDEO";
+
+    /**
+     * 续租语句，租约时长作为参数绑定
+     */
+    private static final String LEASE_SQL = "lease_until = NOW() + make_interval(secs => {0})";
+
+    private final MediaJobMapper mediaJobMapper;
+    private final VideoMapper videoMapper;
+    private final VideoAsyncService videoAsyncService;
+    private final MediaJobScheduler videoJobScheduler;
+
+    /**
+     * 本实例标识（认领任务时写入 owner），需要在重启后保持不变，才能在启动时认出自己上次未完成的任务
+     */
+    private final String instanceId;
+
+    /**
+     * 本实例正在执行的任务ID，轮询时统一续租
+     */
+    private final Set<Long> activeJobs = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 续租专用线程：Spring 默认的调度线程与审核重试、token 刷新、播放调度共用，
+     * 其中任何一个卡住都会让租约过期、任务被其他实例重复认领
+     */
+    private final ScheduledExecutorService leaseRenewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Video-Lease-Renewer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 租约时长（秒），需明显大于续租间隔
+     */
+    @Value("${media.jobs.video.lease-seconds:120}")
+    private int leaseSeconds;
+
+    /**
+     * 续租间隔（秒），需明显小于租约时长
+     */
+    @Value("${media.jobs.video.lease-renew-interval-seconds:30}")
+    private int leaseRenewIntervalSeconds;
+
+    /**
+     * PENDING 任务在这段时间内留给上传实例处理，超过后其他实例才会认领（秒）
+     */
+    @Value("${media.jobs.video.pending-grace-seconds:30}")
+    private int pendingGraceSeconds;
+
+    /**
+     * 最多认领次数，超过后放弃
+     */
+    @Value("${media.jobs.video.max-attempts:3}")
+    private int maxAttempts;
+
+    public VideoJobService(MediaJobMapper mediaJobMapper, VideoMapper videoMapper, VideoAsyncService videoAsyncService,
+                           @Qualifier("videoJobScheduler") MediaJobScheduler videoJobScheduler,
+                           @Value("${media.jobs.instance-id:}") String instanceId,
+                           @Value("${server.port:8080}") int serverPort) {
+        this.mediaJobMapper = mediaJobMapper;
+        this.videoMapper = videoMapper;
+        this.videoAsyncService = videoAsyncService;
+        this.videoJobScheduler = videoJobScheduler;
+        this.instanceId = StrUtil.isNotBlank(instanceId) ? instanceId : defaultInstanceId(serverPort);
+        log.info("视频处理任务实例标识: {}", this.instanceId);
+    }
+
+    /**
+     * 登记转码任务（在上传事务中调用，与视频记录一起提交）
+     */
+    public MediaJob createJob(Video video, MediaJobScheduler.Priority priority) {
+        MediaJob job = new MediaJob();
+        job.setJobType(JOB_TYPE);
+        job.setContentId(video.getId());
+        job.setUserId(video.getUserId());
+        job.setPriority(priority.ordinal());
+        job.setStatus(MediaJobStatus.PENDING.name());
+        job.setAttempts(0);
+        mediaJobMapper.insert(job);
+        return job;
+    }
+
+    /**
+     * 本实例直接处理刚上传的视频：事务提交后入队，轮到时按 ID 认领，原视频用本机缓冲
+     * 排队期间如果已被其他空闲实例认领，则放弃本地处理
+     *
+     * @param upload 缓冲的原视频，由任务（或任务被丢弃时）关闭
+     */
+    public void submitLocal(MediaJobScheduler.Reservation reservation, MediaJob job, SpooledUpload upload,
+                            DitherType ditherType) {
+        Long jobId = job.getId();
+        Long videoId = job.getContentId();
+        reservation.submit("video-" + videoId, () -> {
+            if (!claimById(jobId)) {
+                log.info("视频处理任务已被其他实例认领，跳过本地处理 VideoID: {}", videoId);
+                upload.close();
+                return;
+            }
+            runJob(jobId, () -> videoAsyncService.processVideoAsync(videoId, upload, ditherType));
+        }, upload::close);
+    }
+
+    /**
+     * 定时轮询：放弃多次中断的任务 -> 按空闲名额认领任务（续租由 leaseRenewer 单独执行）
+     */
+    @Scheduled(fixedDelayString = "${media.jobs.video.poll-interval-seconds:10}000")
+    public void poll() {
+        try {
+            failExhaustedJobs();
+            claimAndRun();
+        } catch (Exception e) {
+            log.error("轮询视频处理任务失败，等待下次调度", e);
+        }
+    }
+
+    /**
+     * 启动恢复：释放本实例上次未完成的任务，为缺少任务记录的 PROCESSING 视频补建任务，然后开始定时续租
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverOnStartup() {
+        leaseRenewer.scheduleWithFixedDelay(this::renewLeases,
+                leaseRenewIntervalSeconds, leaseRenewIntervalSeconds, TimeUnit.SECONDS);
+        try {
+            int released = mediaJobMapper.update(null, new LambdaUpdateWrapper<MediaJob>()
+                    .set(MediaJob::getStatus, MediaJobStatus.PENDING.name())
+                    .set(MediaJob::getOwner, null)
+                    .set(MediaJob::getLeaseUntil, null)
+                    .setSql("update_time = NOW()")
+                    .eq(MediaJob::getJobType, JOB_TYPE)
+                    .eq(MediaJob::getOwner, instanceId)
+                    .eq(MediaJob::getStatus, MediaJobStatus.RUNNING.name()));
+            if (released > 0) {
+                log.warn("释放上次运行未完成的视频处理任务: {} 个", released);
+            }
+
+            List<Video> orphans = videoMapper.selectList(new LambdaQueryWrapper<Video>()
+                    .eq(Video::getProcessingStatus, ProcessingStatus.PROCESSING.name())
+                    .isNotNull(Video::getOriginalUrl)
+                    .notInSql(Video::getId, "SELECT content_id FROM sys_media_job WHERE job_type = '" + JOB_TYPE + "'"));
+            for (Video video : orphans) {
+                try {
+                    createJob(video, MediaJobScheduler.Priority.NORMAL);
+                    log.warn("为处理中断的视频补建处理任务 VideoID: {}", video.getId());
+                } catch (DuplicateKeyException e) {
+                    // 其他实例同时启动，已经补建
+                }
+            }
+        } catch (Exception e) {
+            log.error("恢复视频处理任务失败", e);
+        }
+    }
+
+    private boolean claimById(Long jobId) {
+        return mediaJobMapper.update(null, new LambdaUpdateWrapper<MediaJob>()
+                .set(MediaJob::getStatus, MediaJobStatus.RUNNING.name())
+                .set(MediaJob::getOwner, instanceId)
+                .setSql("attempts = attempts + 1")
+                .setSql(LEASE_SQL, leaseSeconds)
+                .setSql("update_time = NOW()")
+                .eq(MediaJob::getId, jobId)
+                .eq(MediaJob::getStatus, MediaJobStatus.PENDING.name())) > 0;
+    }
+
+    private void claimAndRun() {
+        int idle = videoJobScheduler.idleSlots();
+        if (idle <= 0) {
+            return;
+        }
+        List<MediaJob> jobs = mediaJobMapper.claim(JOB_TYPE, instanceId, leaseSeconds, pendingGraceSeconds, maxAttempts, idle);
+        for (MediaJob job : jobs) {
+            Long videoId = job.getContentId();
+            log.info("认领视频处理任务 VideoID: {}, 第 {} 次", videoId, job.getAttempts());
+            MediaJobScheduler.Reservation reservation;
+            try {
+                reservation = videoJobScheduler.reserve(job.getUserId(), MediaJobScheduler.Priority.values()[job.getPriority()]);
+            } catch (MediaJobRejectedException e) {
+                // 该用户本地排队已满，交还给其他实例或下次轮询
+                unclaim(job.getId());
+                continue;
+            }
+            reservation.submit("video-" + videoId,
+                    () -> runJob(job.getId(), () -> videoAsyncService.processStoredVideo(videoId)),
+                    () -> unclaim(job.getId()));
+        }
+    }
+
+    /**
+     * 执行已认领的任务，结束后标记 DONE（成功或失败已由视频处理写回 sys_video）
+     * 执行抛出异常时交还任务，等待重新认领
+     */
+    private void runJob(Long jobId, Runnable work) {
+        activeJobs.add(jobId);
+        try {
+            work.run();
+            finish(jobId);
+        } catch (RuntimeException e) {
+            log.error("视频处理任务执行异常，交还任务等待重试 JobID: {}", jobId, e);
+            release(jobId, e.getMessage());
+        } finally {
+            activeJobs.remove(jobId);
+        }
+    }
+
+    private void finish(Long jobId) {
+        int updated = mediaJobMapper.update(null, new LambdaUpdateWrapper<MediaJob>()
+                .set(MediaJob::getStatus, MediaJobStatus.DONE.name())
+                .set(MediaJob::getLeaseUntil, null)
+                .setSql("update_time = NOW()")
+                .eq(MediaJob::getId, jobId)
+                .eq(MediaJob::getOwner, instanceId));
+        if (updated == 0) {
+            log.warn("视频处理任务租约已被其他实例接管 JobID: {}", jobId);
+        }
+    }
+
+    private void release(Long jobId, String error) {
+        mediaJobMapper.update(null, new LambdaUpdateWrapper<MediaJob>()
+                .set(MediaJob::getStatus, MediaJobStatus.PENDING.name())
+                .set(MediaJob::getOwner, null)
+                .set(MediaJob::getLeaseUntil, null)
+                .set(MediaJob::getLastError, StrUtil.maxLength(error, 250))
+                .setSql("update_time = NOW()")
+                .eq(MediaJob::getId, jobId)
+                .eq(MediaJob::getOwner, instanceId));
+    }
+
+    /**
+     * 认领后没有开始执行，交还任务且不计入认领次数
+     */
+    private void unclaim(Long jobId) {
+        mediaJobMapper.update(null, new LambdaUpdateWrapper<MediaJob>()
+                .set(MediaJob::getStatus, MediaJobStatus.PENDING.name())
+                .set(MediaJob::getOwner, null)
+                .set(MediaJob::getLeaseUntil, null)
+                .setSql("attempts = attempts - 1")
+                .setSql("update_time = NOW()")
+                .eq(MediaJob::getId, jobId)
+                .eq(MediaJob::getOwner, instanceId));
+    }
+
+    /**
+     * 续租本实例正在执行的任务；异常只记日志，不能让定时任务终止
+     */
+    void renewLeases() {
+        if (activeJobs.isEmpty()) {
+            return;
+        }
+        List<Long> ids = List.copyOf(activeJobs);
+        try {
+            int renewed = mediaJobMapper.update(null, new LambdaUpdateWrapper<MediaJob>()
+                    .setSql(LEASE_SQL, leaseSeconds)
+                    .setSql("update_time = NOW()")
+                    .in(MediaJob::getId, ids)
+                    .eq(MediaJob::getOwner, instanceId)
+                    .eq(MediaJob::getStatus, MediaJobStatus.RUNNING.name()));
+            if (renewed < ids.size()) {
+                log.warn("部分视频处理任务续租失败（租约已过期被接管）: 续租 {}/{}", renewed, ids.size());
+            }
+        } catch (Exception e) {
+            log.error("视频处理任务续租失败，等待下次续租", e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        leaseRenewer.shutdownNow();
+    }
+
+    /**
+     * 认领次数已达上限、且没有实例在处理的任务：放弃，并把视频标记为处理失败
+     */
+    private void failExhaustedJobs() {
+        List<MediaJob> exhausted = mediaJobMapper.selectList(new LambdaQueryWrapper<MediaJob>()
+                .eq(MediaJob::getJobType, JOB_TYPE)
+                .ge(MediaJob::getAttempts, maxAttempts)
+                .and(w -> w.eq(MediaJob::getStatus, MediaJobStatus.PENDING.name())
+                        .or(o -> o.eq(MediaJob::getStatus, MediaJobStatus.RUNNING.name()).apply("lease_until < NOW()"))));
+        for (MediaJob job : exhausted) {
+            int updated = mediaJobMapper.update(null, new LambdaUpdateWrapper<MediaJob>()
+                    .set(MediaJob::getStatus, MediaJobStatus.FAILED.name())
+                    .setSql("update_time = NOW()")
+                    .eq(MediaJob::getId, job.getId())
+                    .eq(MediaJob::getStatus, job.getStatus())
+                    .eq(MediaJob::getAttempts, job.getAttempts()));
+            if (updated == 0) {
+                continue;
+            }
+            log.error("视频处理多次中断，放弃处理 VideoID: {}, 认领次数: {}", job.getContentId(), job.getAttempts());
+            videoMapper.update(null, new LambdaUpdateWrapper<Video>()
+                    .set(Video::getProcessingStatus, ProcessingStatus.FAILED.name())
+                    .set(Video::getFailReason, "视频处理多次中断，请重新上传")
+                    .eq(Video::getId, job.getContentId())
+                    .eq(Video::getProcessingStatus, ProcessingStatus.PROCESSING.name()));
+        }
+    }
+
+    private static String defaultInstanceId(int serverPort) {
+        try {
+            return InetAddress.getLocalHost().getHostName() + ":" + serverPort;
+        } catch (Exception e) {
+            return "localhost:" + serverPort;
+        }
+    }
+}
@@ -3,20 +3,27 @@ package com.stalab.e_ink_billboard_backend.service.media;
 import cn.hutool.core.util.StrUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.baomidou.mybatisplus.core.toolkit.support.SFunction;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.stalab.e_ink_billboard_backend.common.enums.AuditStatus;
+import com.stalab.e_ink_billboard_backend.common.enums.DitherType;
 import com.stalab.e_ink_billboard_backend.common.enums.ProcessingStatus;
 import com.stalab.e_ink_billboard_backend.common.enums.UserRole;
 import com.stalab.e_ink_billboard_backend.common.exception.BusinessException;
+import com.stalab.e_ink_billboard_backend.common.util.VideoUtils;
 import com.stalab.e_ink_billboard_backend.mapper.UserMapper;
 import com.stalab.e_ink_billboard_backend.mapper.VideoMapper;
+import com.stalab.e_ink_billboard_backend.mapper.po.MediaJob;
 import com.stalab.e_ink_billboard_backend.mapper.po.User;
 import com.stalab.e_ink_billboard_backend.mapper.po.Video;
 import com.stalab.e_ink_billboard_backend.model.vo.PageResult;
 import com.stalab.e_ink_billboard_backend.model.vo.VideoVO;
 import com.stalab.e_ink_billboard_backend.service.storage.MinioService;
+import com.stalab.e_ink_billboard_backend.service.storage.SpooledUpload;
+import com.stalab.e_ink_billboard_backend.service.storage.UploadIngestService;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
@@ -26,6 +33,7 @@ import org.springframework.web.multipart.MultipartFile;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -41,7 +49,15 @@ public class VideoService {
 
     private final MinioService minioService;
 
-    private final VideoAsyncService videoAsyncService;
+    private final VideoJobService videoJobService;
+
+    private final VideoUtils videoUtils;
+
+    private final UploadIngestService uploadIngestService;
+
+    private final ContentDedupeService contentDedupeService;
+
+    private final MediaJobScheduler videoJobScheduler;
 
     @Value("${upload.daily-limit.video:5}")
     private int videoDailyLimit;
@@ -49,17 +65,28 @@ public class VideoService {
     @Resource
     private RedisTemplate<String, Object> redisTemplate;
 
-    public VideoService(VideoMapper videoMapper, UserMapper userMapper, MinioService minioService, VideoAsyncService videoAsyncService) {
+    public VideoService(VideoMapper videoMapper, UserMapper userMapper, MinioService minioService, VideoJobService videoJobService, VideoUtils videoUtils,
+                        UploadIngestService uploadIngestService, ContentDedupeService contentDedupeService,
+                        @Qualifier("videoJobScheduler") MediaJobScheduler videoJobScheduler) {
         this.videoMapper = videoMapper;
         this.userMapper = userMapper;
         this.minioService = minioService;
-        this.videoAsyncService = videoAsyncService;
+        this.videoJobService = videoJobService;
+        this.videoUtils = videoUtils;
+        this.uploadIngestService = uploadIngestService;
+        this.contentDedupeService = contentDedupeService;
+        this.videoJobScheduler = videoJobScheduler;
     }
 
     // ================= 阶段一：同步上传 (极速返回) =================
 
+    /**
+     * 上传视频并启动异步转码
+     *
+     * @param ditherType 抖动算法（可选，为空使用默认算法）
+     */
     @Transactional(rollbackFor = Exception.class)
-    public Long initUpload(MultipartFile file, Long userId) {
+    public Long initUpload(MultipartFile file, Long userId, DitherType ditherType) {
         // 1. 基础校验
         if (file.isEmpty()) throw new BusinessException("文件为空");
         if (file.getSize() > 50 * 1024 * 1024) throw new BusinessException("视频超过50MB");
@@ -70,41 +97,90 @@ public class VideoService {
             throw new BusinessException("用户不存在");
         }
 
-        String originalFileName = file.getOriginalFilename();
+        boolean isAdmin = UserRole.ADMIN.getCode().equals(user.getRole());
+        DitherType dither = videoUtils.resolveVideoDither(ditherType);
 
+        // 先在转码队列占位：队列已满时直接返回 429，不再读取和上传文件
+        MediaJobScheduler.Priority priority = isAdmin ? MediaJobScheduler.Priority.HIGH : MediaJobScheduler.Priority.NORMAL;
+        MediaJobScheduler.Reservation reservation = videoJobScheduler.reserve(userId, priority);
+
+        // 只读取一次上传文件，缓冲到内存/临时文件，上传原视频和异步转码都复用这一份
+        SpooledUpload upload;
+        try {
+            upload = uploadIngestService.ingest(file);
+        } catch (RuntimeException e) {
+            reservation.cancel();
+            throw e;
+        }
+        boolean handedOff = false;
         try {
+            // 内容寻址秒传：相同内容 + 相同抖动算法已转码成功时，直接复用原视频和 BIN，跳过审核和转码
+            Video existVideo = contentDedupeService.findVideo(upload.getSha256(), dither);
+            if (existVideo != null) {
+                log.info("视频秒传触发: sha256={}, 复用 VideoID: {}", upload.getSha256(), existVideo.getId());
+                checkAndIncrementQuota(user);
+                Video video = buildVideoRecord(userId, upload, existVideo.getOriginalUrl(), dither);
+                video.setProcessedUrl(existVideo.getProcessedUrl());
+                video.setProcessedMd5(existVideo.getProcessedMd5());
+                video.setProcessedSize(existVideo.getProcessedSize());
+                video.setDuration(existVideo.getDuration());
+                video.setFrameCount(existVideo.getFrameCount());
+                video.setProcessingStatus(ProcessingStatus.SUCCESS.name());
+                // 内容完全相同，沿用已有记录的审核结论（待审核的仍需人工复审，与图片一致记下原因）
+                if (isAdmin || AuditStatus.APPROVED.name().equals(existVideo.getAuditStatus())) {
+                    video.setAuditStatus(AuditStatus.APPROVED.name());
+                } else {
+                    video.setAuditStatus(AuditStatus.PENDING.name());
+                    video.setFailReason(ContentDedupeService.DUPLICATE_PENDING_REASON);
+                }
+                videoMapper.insert(video);
+                return video.getId();
+            }
+
             // 0. 检查并增加用户配额（在实际上传前执行）
             checkAndIncrementQuota(user);
 
-            // 2. 上传原视频 (必须同步做，否则文件流会关闭)
-            String originalUrl = minioService.upload(file);
+            // 2. 上传原视频
+            String originalUrl = minioService.upload(upload);
 
             // 3. 预先保存数据库记录 (状态: PROCESSING)
-            Video video = new Video();
-            video.setUserId(userId);
-            video.setFileName(originalFileName);
-            video.setFileSize(file.getSize());
-            video.setOriginalUrl(originalUrl);
+            Video video = buildVideoRecord(userId, upload, originalUrl, dither);
             video.setProcessingStatus(ProcessingStatus.PROCESSING.name()); // <--- 标记为处理中
 
             // 审核状态初始化
-            video.setAuditStatus(UserRole.ADMIN.getCode().equals(user.getRole()) ? AuditStatus.APPROVED.name() : AuditStatus.PENDING.name());
+            video.setAuditStatus(isAdmin ? AuditStatus.APPROVED.name() : AuditStatus.PENDING.name());
 
             videoMapper.insert(video);
 
-            // 4. ★★★ 启动异步处理 ★★★
-            byte[] videoBytes = file.getBytes();
-
-            videoAsyncService.processVideoAsync(video.getId(), videoBytes);
+            // 4. ★★★ 登记持久化转码任务（与视频记录同一事务），事务提交后由本实例用缓冲的原视频处理 ★★★
+            MediaJob job = videoJobService.createJob(video, priority);
+            videoJobService.submitLocal(reservation, job, upload, dither);
+            handedOff = true;
 
             return video.getId(); // 立刻返回 ID 给前端
 
         } catch (Exception e) {
             log.error("初始化上传失败", e);
             throw new BusinessException("上传失败");
+        } finally {
+            if (!handedOff) {
+                upload.close();
+                reservation.cancel();
+            }
         }
     }
 
+    private Video buildVideoRecord(Long userId, SpooledUpload upload, String originalUrl, DitherType dither) {
+        Video video = new Video();
+        video.setUserId(userId);
+        video.setFileName(upload.getOriginalFilename());
+        video.setFileSize(upload.getSize());
+        video.setSha256(upload.getSha256());
+        video.setOriginalUrl(originalUrl);
+        video.setDitherType(dither);
+        return video;
+    }
+
     /**
      * 删除视频
      * @param videoId 视频ID
@@ -124,24 +200,31 @@ public class VideoService {
             throw new BusinessException("无权删除此视频");
         }
 
-        // 3. 删除MinIO中的文件
-        try {
-            if (StrUtil.isNotBlank(video.getOriginalUrl())) {
-                minioService.delete(video.getOriginalUrl());
-            }
-            if (StrUtil.isNotBlank(video.getProcessedUrl())) {
-                minioService.delete(video.getProcessedUrl());
-            }
-        } catch (Exception e) {
-            log.error("删除MinIO文件失败，继续删除数据库记录", e);
-            // 即使MinIO删除失败，也继续删除数据库记录
+        // 3. 删除MinIO中的文件（秒传的记录共用同一份文件，仍被其他记录引用时保留）
+        // 事务提交后一次批量删除，不占用请求线程；MinIO删除失败不影响删除数据库记录
+        List<String> urls = new ArrayList<>(2);
+        if (StrUtil.isNotBlank(video.getOriginalUrl()) && !isShared(Video::getOriginalUrl, video.getOriginalUrl(), videoId)) {
+            urls.add(video.getOriginalUrl());
+        }
+        if (StrUtil.isNotBlank(video.getProcessedUrl()) && !isShared(Video::getProcessedUrl, video.getProcessedUrl(), videoId)) {
+            urls.add(video.getProcessedUrl());
         }
+        minioService.deleteAfterCommit(urls);
 
         // 4. 删除数据库记录
         videoMapper.deleteById(videoId);
         log.info("成功删除视频: videoId={}, userId={}", videoId, userId);
     }
 
+    /**
+     * 文件是否还被其他视频记录引用
+     */
+    private boolean isShared(SFunction<Video, String> column, String url, Long excludeId) {
+        return videoMapper.selectCount(new LambdaQueryWrapper<Video>()
+                .eq(column, url)
+                .ne(Video::getId, excludeId)) > 0;
+    }
+
     /**
      * 查询视频列表（分页）
      * @param current 当前页码（从1开始）
@@ -210,6 +293,7 @@ public class VideoService {
                 .processedUrl(video.getProcessedUrl())
                 .duration(video.getDuration())
                 .frameCount(video.getFrameCount())
+                .ditherType(video.getDitherType())
                 .auditStatus(video.getAuditStatus())
                 .processingStatus(video.getProcessingStatus())
                 .failReason(video.getFailReason())
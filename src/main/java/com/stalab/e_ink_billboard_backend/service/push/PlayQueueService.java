@@ -9,15 +9,19 @@ import com.stalab.e_ink_billboard_backend.mapper.DeviceMapper;
 import com.stalab.e_ink_billboard_backend.mapper.ImageMapper;
 import com.stalab.e_ink_billboard_backend.mapper.UserMapper;
 import com.stalab.e_ink_billboard_backend.mapper.VideoMapper;
+import com.stalab.e_ink_billboard_backend.mapper.po.ContentPush;
 import com.stalab.e_ink_billboard_backend.mapper.po.Device;
 import com.stalab.e_ink_billboard_backend.mapper.po.Image;
 import com.stalab.e_ink_billboard_backend.mapper.po.User;
 import com.stalab.e_ink_billboard_backend.mapper.po.Video;
+import com.stalab.e_ink_billboard_backend.model.dto.ChunkManifest;
 import com.stalab.e_ink_billboard_backend.model.dto.MqttCommandMessage;
 import com.stalab.e_ink_billboard_backend.model.vo.QueueItemVO;
+import com.stalab.e_ink_billboard_backend.service.device.DeviceInventoryService;
 import com.stalab.e_ink_billboard_backend.service.device.DeviceService;
 import com.stalab.e_ink_billboard_backend.service.mqtt.MqttService;
-import com.stalab.e_ink_billboard_backend.service.storage.MinioService;
+import com.stalab.e_ink_billboard_backend.service.storage.AssetCacheService;
+import com.stalab.e_ink_billboard_backend.service.storage.ChunkManifestService;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
@@ -62,7 +66,15 @@ public class PlayQueueService {
 
     @Autowired
     @Lazy
-    private MinioService minioService;
+    private AssetCacheService assetCacheService;
+
+    @Autowired
+    @Lazy
+    private ChunkManifestService chunkManifestService;
+
+    @Autowired
+    @Lazy
+    private DeviceInventoryService deviceInventoryService;
 
     @Autowired
     @Lazy
@@ -288,6 +300,47 @@ public class PlayQueueService {
         return visitorPlayDuration; // 游客内容，默认2分钟
     }
 
+    /**
+     * 构造播放命令（立即播放和定时切换共用）
+     * 设备已缓存同一文件时只下发“显示缓存内容”，不生成下载链接和分块清单
+     *
+     * @param device 设备
+     * @param push 推送记录
+     * @param item 队列项
+     * @return MQTT 播放命令
+     */
+    public MqttCommandMessage buildPlayCommand(Device device, ContentPush push, QueueItem item) {
+        boolean cached = deviceInventoryService.holds(device.getDeviceCode(), push.getMd5());
+        String downloadUrl = null;
+        ChunkManifest manifest = null;
+        if (!cached) {
+            // 重新生成下载链接（Presigned URL 或本机缓存链接，可能已过期）
+            // 注意：push.getDownloadUrl()存储的是原始URL，需要重新生成Presigned URL
+            try {
+                downloadUrl = assetCacheService.getDownloadUrl(push.getDownloadUrl());
+            } catch (Exception e) {
+                log.error("生成Presigned URL失败，使用原始URL: pushId={}", push.getId(), e);
+                downloadUrl = push.getDownloadUrl();
+            }
+
+            // 分块校验清单：设备逐块校验，断线后从最后一个校验通过的块继续下载
+            manifest = chunkManifestService.get(push.getDownloadUrl());
+        }
+
+        return MqttCommandMessage.builder()
+                .type(item.getContentType() == ContentType.IMAGE ? "IMAGE" : "VIDEO")
+                .contentId(item.getContentId())
+                .url(downloadUrl)
+                .size(push.getFileSize())
+                .md5(push.getMd5())
+                .chunkSize(manifest != null ? manifest.getChunkSize() : null)
+                .chunks(manifest != null ? manifest.getChunks() : null)
+                .cached(cached ? Boolean.TRUE : null)
+                .timestamp(System.currentTimeMillis())
+                .messageId(push.getMqttMessageId())
+                .build();
+    }
+
     /**
      * 立即发送播放命令（用于立即播放场景）
      *
@@ -320,32 +373,14 @@ public class PlayQueueService {
                     deviceId, device.getDeviceCode(), device.getMqttTopic(), item.getContentId());
 
             // 查询推送记录获取下载URL等信息
-            com.stalab.e_ink_billboard_backend.mapper.po.ContentPush push =
-                    contentPushMapper.selectById(item.getPushId());
+            ContentPush push = contentPushMapper.selectById(item.getPushId());
             if (push == null) {
                 log.error("推送记录不存在: pushId={}", item.getPushId());
                 return;
             }
 
-            // 重新生成Presigned URL（可能已过期）
-            String downloadUrl;
-            try {
-                downloadUrl = minioService.getDownloadUrl(push.getDownloadUrl());
-            } catch (Exception e) {
-                log.error("生成Presigned URL失败，使用原始URL: pushId={}", item.getPushId(), e);
-                downloadUrl = push.getDownloadUrl();
-            }
-
-            // 构造MQTT消息
-            MqttCommandMessage mqttMessage = MqttCommandMessage.builder()
-                    .type(item.getContentType() == ContentType.IMAGE ? "IMAGE" : "VIDEO")
-                    .contentId(item.getContentId())
-                    .url(downloadUrl)
-                    .size(push.getFileSize())
-                    .md5(push.getMd5())
-                    .timestamp(System.currentTimeMillis())
-                    .messageId(push.getMqttMessageId())
-                    .build();
+            MqttCommandMessage mqttMessage = buildPlayCommand(device, push, item);
+            boolean cached = Boolean.TRUE.equals(mqttMessage.getCached());
 
             // 发送MQTT消息
             log.info("发送MQTT消息到主题: {}, 消息内容: {}", device.getMqttTopic(), JSONUtil.toJsonStr(mqttMessage));
@@ -360,8 +395,8 @@ public class PlayQueueService {
                 incrementVisitorCount(item.getUserId(), item.getContentId());
             }
 
-            log.info("立即发送播放命令完成: deviceId={}, deviceCode={}, mqttTopic={}, contentId={}, contentType={}",
-                    deviceId, device.getDeviceCode(), device.getMqttTopic(), item.getContentId(), item.getContentType());
+            log.info("立即发送播放命令完成: deviceId={}, deviceCode={}, mqttTopic={}, contentId={}, contentType={}, cached={}",
+                    deviceId, device.getDeviceCode(), device.getMqttTopic(), item.getContentId(), item.getContentType(), cached);
         } catch (Exception e) {
             log.error("立即发送播放命令失败: deviceId={}, contentId={}", deviceId, item.getContentId(), e);
         }
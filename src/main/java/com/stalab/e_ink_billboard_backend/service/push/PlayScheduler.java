@@ -1,7 +1,6 @@
 package com.stalab.e_ink_billboard_backend.service.push;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.stalab.e_ink_billboard_backend.common.enums.ContentType;
 import com.stalab.e_ink_billboard_backend.common.enums.DeviceStatus;
 import com.stalab.e_ink_billboard_backend.mapper.ContentPushMapper;
 import com.stalab.e_ink_billboard_backend.mapper.DeviceMapper;
@@ -12,7 +11,6 @@ import com.stalab.e_ink_billboard_backend.model.dto.MqttCommandMessage;
 import com.stalab.e_ink_billboard_backend.service.device.DeviceService;
 import com.stalab.e_ink_billboard_backend.service.mqtt.MqttService;
 import com.stalab.e_ink_billboard_backend.service.push.PlayQueueService.QueueItem;
-import com.stalab.e_ink_billboard_backend.service.storage.MinioService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -38,9 +36,6 @@ public class PlayScheduler {
     @Autowired
     private MqttService mqttService;
 
-    @Autowired
-    private MinioService minioService;
-
     @Autowired
     private ContentPushMapper contentPushMapper;
 
@@ -125,27 +120,8 @@ public class PlayScheduler {
                 return;
             }
 
-            // 重新生成Presigned URL（可能已过期）
-            // 注意：push.getDownloadUrl()存储的是原始URL，需要重新生成Presigned URL
-            String downloadUrl;
-            try {
-                // 尝试从原始URL生成新的Presigned URL
-                downloadUrl = minioService.getDownloadUrl(push.getDownloadUrl());
-            } catch (Exception e) {
-                log.error("生成Presigned URL失败，使用原始URL: pushId={}", item.getPushId(), e);
-                downloadUrl = push.getDownloadUrl();
-            }
-
-            // 构造MQTT消息
-            MqttCommandMessage mqttMessage = MqttCommandMessage.builder()
-                    .type(item.getContentType() == ContentType.IMAGE ? "IMAGE" : "VIDEO")
-                    .contentId(item.getContentId())
-                    .url(downloadUrl)
-                    .size(push.getFileSize())
-                    .md5(push.getMd5())
-                    .timestamp(System.currentTimeMillis())
-                    .messageId(push.getMqttMessageId())
-                    .build();
+            MqttCommandMessage mqttMessage = playQueueService.buildPlayCommand(device, push, item);
+            boolean cached = Boolean.TRUE.equals(mqttMessage.getCached());
 
             // 发送MQTT消息
             mqttService.publish(device.getMqttTopic(), mqttMessage);
@@ -159,8 +135,8 @@ public class PlayScheduler {
                 playQueueService.incrementVisitorCount(item.getUserId(), item.getContentId());
             }
 
-            log.info("发送播放命令: deviceId={}, contentId={}, contentType={}",
-                    device.getId(), item.getContentId(), item.getContentType());
+            log.info("发送播放命令: deviceId={}, contentId={}, contentType={}, cached={}",
+                    device.getId(), item.getContentId(), item.getContentType(), cached);
         } catch (Exception e) {
             log.error("发送播放命令失败: deviceId={}, contentId={}", device.getId(), item.getContentId(), e);
         }
@@ -2,26 +2,38 @@ package com.stalab.e_ink_billboard_backend.service.push;
 
 import cn.hutool.core.lang.UUID;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.stalab.e_ink_billboard_backend.common.enums.*;
 import com.stalab.e_ink_billboard_backend.common.exception.BusinessException;
+import com.stalab.e_ink_billboard_backend.common.exception.MediaJobRejectedException;
 import com.stalab.e_ink_billboard_backend.mapper.*;
 import com.stalab.e_ink_billboard_backend.mapper.po.ContentPush;
 import com.stalab.e_ink_billboard_backend.mapper.po.Device;
 import com.stalab.e_ink_billboard_backend.mapper.po.Image;
 import com.stalab.e_ink_billboard_backend.mapper.po.User;
 import com.stalab.e_ink_billboard_backend.mapper.po.Video;
+import com.stalab.e_ink_billboard_backend.model.dto.RenderedAsset;
+import com.stalab.e_ink_billboard_backend.model.vo.BatchPushResultVO;
 import com.stalab.e_ink_billboard_backend.model.vo.ContentPushVO;
 import com.stalab.e_ink_billboard_backend.model.vo.PageResult;
+import com.stalab.e_ink_billboard_backend.service.device.DeviceInventoryService;
 import com.stalab.e_ink_billboard_backend.service.device.DeviceService;
+import com.stalab.e_ink_billboard_backend.service.media.RenderService;
 import com.stalab.e_ink_billboard_backend.service.wx.VerificationService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 /**
@@ -31,6 +43,17 @@ import java.util.stream.Collectors;
 @Service
 public class PushService {
 
+    /**
+     * 设备状态上报的错误码：“显示缓存内容”命令指定的文件已不在本地缓存中
+     */
+    private static final String CACHE_MISS = "CACHE_MISS";
+
+    private static final String RENDER_FAILED = "内容渲染失败";
+    private static final String CONTENT_GONE = "设备或内容已删除";
+
+    // 每轮最多恢复的等待渲染推送数
+    private static final int RESUME_BATCH_SIZE = 50;
+
     private final DeviceMapper deviceMapper;
     private final ImageMapper imageMapper;
     private final VideoMapper videoMapper;
@@ -39,10 +62,19 @@ public class PushService {
     private final PlayQueueService playQueueService;
     private final DeviceService deviceService;
     private final VerificationService verificationService;
+    private final RenderService renderService;
+    private final DeviceInventoryService deviceInventoryService;
+
+    /**
+     * 等待渲染超过该时长（秒）的推送由恢复任务重新解析下发资源
+     */
+    @Value("${media.render.resume-after-seconds:600}")
+    private long resumeAfterSeconds;
 
     public PushService(DeviceMapper deviceMapper, ImageMapper imageMapper, VideoMapper videoMapper,
                        ContentPushMapper contentPushMapper, UserMapper userMapper,
-                       PlayQueueService playQueueService, DeviceService deviceService, VerificationService verificationService) {
+                       PlayQueueService playQueueService, DeviceService deviceService, VerificationService verificationService,
+                       RenderService renderService, DeviceInventoryService deviceInventoryService) {
         this.deviceMapper = deviceMapper;
         this.imageMapper = imageMapper;
         this.videoMapper = videoMapper;
@@ -51,6 +83,8 @@ public class PushService {
         this.playQueueService = playQueueService;
         this.deviceService = deviceService;
         this.verificationService = verificationService;
+        this.renderService = renderService;
+        this.deviceInventoryService = deviceInventoryService;
     }
 
     /**
@@ -61,9 +95,10 @@ public class PushService {
      * @param userId           用户ID
      * @param userRole         用户角色
      * @param verificationCode 验证码（可选）
+     * @return 推送记录状态：RENDERING 表示下发资源正在按设备面板渲染，完成后自动加入播放队列
      */
     @Transactional(rollbackFor = Exception.class)
-    public void pushImage(Long deviceId, Long imageId, Long userId, String userRole, String verificationCode) {
+    public PushStatus pushImage(Long deviceId, Long imageId, Long userId, String userRole, String verificationCode) {
         // 1. 验证设备存在
         Device device = deviceMapper.selectById(deviceId);
         if (device == null) {
@@ -80,6 +115,9 @@ public class PushService {
         if (image == null) {
             throw new BusinessException("图片不存在");
         }
+        if (image.getProcessingStatus() != null && image.getProcessingStatus() != ProcessingStatus.SUCCESS) {
+            throw new BusinessException("图片处理未完成，无法推送");
+        }
 
         // 4. 权限检查
         boolean isAdmin = UserRole.ADMIN.getCode().equals(userRole);
@@ -91,17 +129,6 @@ public class PushService {
             if (image.getAuditStatus() != AuditStatus.APPROVED) {
                 throw new BusinessException("图片未审核通过，无法推送");
             }
-
-            // 5. 检查游客每日播放限额
-            if (!playQueueService.checkVisitorQuota(userId)) {
-                int todayCount = playQueueService.getVisitorTodayCount(userId);
-                throw new BusinessException(String.format("今日播放次数已达上限（%d/%d），请明天再试",
-                        todayCount, playQueueService.getVisitorDailyLimit()));
-            }
-
-            // ★★★ 6. 检查免费配额或验证码 ★★★
-            checkQuotaOrVerification(userId, verificationCode);
-
         } else {
             // 管理员只能推送已审核通过的内容
             if (image.getAuditStatus() != AuditStatus.APPROVED) {
@@ -109,35 +136,28 @@ public class PushService {
             }
         }
 
-        // 7. 保存推送记录（存储永久URL，发送时再生成Presigned URL）
-        String messageId = UUID.fastUUID().toString(true);
-        ContentPush pushRecord = new ContentPush();
-        pushRecord.setDeviceId(deviceId);
-        pushRecord.setContentId(imageId);
-        pushRecord.setContentType(ContentType.IMAGE);
-        pushRecord.setPushStatus(PushStatus.PENDING); // 改为PENDING，等待队列播放
-        pushRecord.setMqttMessageId(messageId);
-        pushRecord.setPushTime(LocalDateTime.now());
-        pushRecord.setUserId(userId);
-        // 存储永久URL，而不是Presigned URL（Presigned URL会在发送时动态生成）
-        pushRecord.setDownloadUrl(image.getProcessedUrl());
-        pushRecord.setFileSize(image.getFileSize());
-        pushRecord.setMd5(image.getMd5());
-        pushRecord.setCreateTime(LocalDateTime.now());
-        pushRecord.setUpdateTime(LocalDateTime.now());
-        contentPushMapper.insert(pushRecord);
+        // 5. 按设备面板参数解析下发资源：非默认面板首次推送时提交后台渲染，不等待渲染完成；
+        //    处理队列已满时返回 429，放在扣减配额/消耗验证码之前，客户端重试时不会重复扣减
+        CompletableFuture<RenderedAsset> asset = renderService.resolveImage(image, device, userId, isAdmin);
 
-        // 8. 添加到播放队列
-        boolean immediatePlay = playQueueService.addToQueue(deviceId, imageId, ContentType.IMAGE, userId, pushRecord.getId(), isAdmin);
+        if (!isAdmin) {
+            // 6. 检查游客每日播放限额
+            if (!playQueueService.checkVisitorQuota(userId)) {
+                int todayCount = playQueueService.getVisitorTodayCount(userId);
+                throw new BusinessException(String.format("今日播放次数已达上限（%d/%d），请明天再试",
+                        todayCount, playQueueService.getVisitorDailyLimit()));
+            }
 
-        if (immediatePlay) {
-            // 如果立即播放，更新状态为SENT
-            pushRecord.setPushStatus(PushStatus.SENT);
-            contentPushMapper.updateById(pushRecord);
+            // ★★★ 7. 检查免费配额或验证码 ★★★
+            checkQuotaOrVerification(userId, verificationCode);
         }
 
-        log.info("图片已添加到播放队列: deviceId={}, imageId={}, userId={}, pushId={}, isAdmin={}, immediatePlay={}",
-                deviceId, imageId, userId, pushRecord.getId(), isAdmin, immediatePlay);
+        // 8. 保存推送记录并添加到播放队列（下发资源还在渲染时，渲染完成后再加入播放队列）
+        ContentPush pushRecord = savePush(deviceId, imageId, ContentType.IMAGE, userId, isAdmin, asset, image.getFileSize());
+
+        log.info("图片推送已受理: deviceId={}, imageId={}, userId={}, pushId={}, isAdmin={}, status={}",
+                deviceId, imageId, userId, pushRecord.getId(), isAdmin, pushRecord.getPushStatus());
+        return pushRecord.getPushStatus();
     }
 
     /**
@@ -148,9 +168,10 @@ public class PushService {
      * @param userId           用户ID
      * @param userRole         用户角色
      * @param verificationCode 验证码（可选）
+     * @return 推送记录状态：RENDERING 表示下发资源正在按设备面板转码，完成后自动加入播放队列
      */
     @Transactional(rollbackFor = Exception.class)
-    public void pushVideo(Long deviceId, Long videoId, Long userId, String userRole, String verificationCode) {
+    public PushStatus pushVideo(Long deviceId, Long videoId, Long userId, String userRole, String verificationCode) {
         // 1. 验证设备存在
         Device device = deviceMapper.selectById(deviceId);
         if (device == null) {
@@ -182,53 +203,205 @@ public class PushService {
             if (!AuditStatus.APPROVED.name().equals(video.getAuditStatus())) {
                 throw new BusinessException("视频未审核通过，无法推送");
             }
+        } else {
+            // 管理员只能推送已审核通过的内容
+            if (!AuditStatus.APPROVED.name().equals(video.getAuditStatus())) {
+                throw new BusinessException("视频未审核通过，无法推送");
+            }
+        }
 
-            // 6. 检查游客每日播放限额
+        // 6. 按设备面板参数解析下发资源：非默认面板首次推送时提交后台转码，不等待转码完成；
+        //    处理队列已满时返回 429，放在扣减配额/消耗验证码之前，客户端重试时不会重复扣减
+        CompletableFuture<RenderedAsset> asset = renderService.resolveVideo(video, device, userId, isAdmin);
+
+        if (!isAdmin) {
+            // 7. 检查游客每日播放限额
             if (!playQueueService.checkVisitorQuota(userId)) {
                 int todayCount = playQueueService.getVisitorTodayCount(userId);
                 throw new BusinessException(String.format("今日播放次数已达上限（%d/%d），请明天再试",
                         todayCount, playQueueService.getVisitorDailyLimit()));
             }
 
-            // ★★★ 7. 检查免费配额或验证码 ★★★
+            // ★★★ 8. 检查免费配额或验证码 ★★★
             checkQuotaOrVerification(userId, verificationCode);
-
-        } else {
-            // 管理员只能推送已审核通过的内容
-            if (!AuditStatus.APPROVED.name().equals(video.getAuditStatus())) {
-                throw new BusinessException("视频未审核通过，无法推送");
-            }
         }
 
-        // 8. 保存推送记录（存储永久URL，发送时再生成Presigned URL）
-        String messageId = UUID.fastUUID().toString(true);
+        // 9. 保存推送记录并添加到播放队列（下发资源还在转码时，转码完成后再加入播放队列）
+        ContentPush pushRecord = savePush(deviceId, videoId, ContentType.VIDEO, userId, isAdmin, asset, video.getFileSize());
+
+        log.info("视频推送已受理: deviceId={}, videoId={}, userId={}, pushId={}, isAdmin={}, status={}",
+                deviceId, videoId, userId, pushRecord.getId(), isAdmin, pushRecord.getPushStatus());
+        return pushRecord.getPushStatus();
+    }
+
+    /**
+     * 保存推送记录（存储永久URL，发送时再生成Presigned URL）并添加到播放队列
+     * 下发资源还在渲染时记录为 RENDERING、不带下载地址，事务提交后等渲染完成再由 deliverRendered 下发
+     *
+     * @param fallbackSize 历史内容未记录处理结果大小时退回原文件大小
+     */
+    private ContentPush savePush(Long deviceId, Long contentId, ContentType contentType, Long userId, boolean isAdmin,
+                                 CompletableFuture<RenderedAsset> asset, Long fallbackSize) {
+        boolean ready = asset.isDone() && !asset.isCompletedExceptionally();
         ContentPush pushRecord = new ContentPush();
         pushRecord.setDeviceId(deviceId);
-        pushRecord.setContentId(videoId);
-        pushRecord.setContentType(ContentType.VIDEO);
-        pushRecord.setPushStatus(PushStatus.PENDING); // 改为PENDING，等待队列播放
-        pushRecord.setMqttMessageId(messageId);
+        pushRecord.setContentId(contentId);
+        pushRecord.setContentType(contentType);
+        pushRecord.setPushStatus(ready ? PushStatus.PENDING : PushStatus.RENDERING); // PENDING 等待队列播放
+        pushRecord.setMqttMessageId(UUID.fastUUID().toString(true));
         pushRecord.setPushTime(LocalDateTime.now());
         pushRecord.setUserId(userId);
-        // 存储永久URL，而不是Presigned URL（Presigned URL会在发送时动态生成）
-        pushRecord.setDownloadUrl(video.getProcessedUrl());
-        pushRecord.setFileSize(video.getFileSize());
-        pushRecord.setMd5(null);
+        if (ready) {
+            RenderedAsset rendered = asset.join();
+            // 大小和 MD5 都是设备实际下载的文件的（不是原文件的）
+            pushRecord.setDownloadUrl(rendered.getUrl());
+            pushRecord.setFileSize(rendered.getSize() != null ? rendered.getSize() : fallbackSize);
+            pushRecord.setMd5(rendered.getMd5());
+        }
         pushRecord.setCreateTime(LocalDateTime.now());
         pushRecord.setUpdateTime(LocalDateTime.now());
         contentPushMapper.insert(pushRecord);
 
-        // 9. 添加到播放队列
-        boolean immediatePlay = playQueueService.addToQueue(deviceId, videoId, ContentType.VIDEO, userId, pushRecord.getId(), isAdmin);
+        if (!ready) {
+            Long pushId = pushRecord.getId();
+            afterCommit(() -> asset.whenComplete((rendered, error) -> deliverRendered(pushId, rendered, error)));
+            return pushRecord;
+        }
 
+        boolean immediatePlay = playQueueService.addToQueue(deviceId, contentId, contentType, userId, pushRecord.getId(), isAdmin);
         if (immediatePlay) {
             // 如果立即播放，更新状态为SENT
             pushRecord.setPushStatus(PushStatus.SENT);
             contentPushMapper.updateById(pushRecord);
         }
+        return pushRecord;
+    }
+
+    /**
+     * 下发资源渲染完成（在处理队列的线程上回调）：填入下载地址并添加到播放队列；渲染失败时推送记录置为 FAILED
+     * 只处理仍为 RENDERING 的记录，同一推送被多次回调（恢复任务重新挂上回调）时不会重复入队
+     */
+    void deliverRendered(Long pushId, RenderedAsset asset, Throwable error) {
+        try {
+            if (error != null) {
+                log.warn("推送内容渲染失败: pushId={}, reason={}", pushId, error.getMessage());
+                failRendering(pushId, RENDER_FAILED);
+                return;
+            }
+            int updated = contentPushMapper.update(null, new LambdaUpdateWrapper<ContentPush>()
+                    .set(ContentPush::getPushStatus, PushStatus.PENDING)
+                    .set(ContentPush::getDownloadUrl, asset.getUrl())
+                    .set(ContentPush::getFileSize, asset.getSize())
+                    .set(ContentPush::getMd5, asset.getMd5())
+                    .set(ContentPush::getUpdateTime, LocalDateTime.now())
+                    .eq(ContentPush::getId, pushId)
+                    .eq(ContentPush::getPushStatus, PushStatus.RENDERING));
+            if (updated == 0) {
+                return;
+            }
+            ContentPush push = contentPushMapper.selectById(pushId);
+            boolean isAdmin = isAdmin(push.getUserId());
+            boolean immediatePlay = playQueueService.addToQueue(push.getDeviceId(), push.getContentId(),
+                    push.getContentType(), push.getUserId(), pushId, isAdmin);
+            if (immediatePlay) {
+                contentPushMapper.update(null, new LambdaUpdateWrapper<ContentPush>()
+                        .set(ContentPush::getPushStatus, PushStatus.SENT)
+                        .set(ContentPush::getUpdateTime, LocalDateTime.now())
+                        .eq(ContentPush::getId, pushId)
+                        .eq(ContentPush::getPushStatus, PushStatus.PENDING));
+            }
+            log.info("渲染完成，推送已添加到播放队列: pushId={}, deviceId={}, contentId={}, immediatePlay={}",
+                    pushId, push.getDeviceId(), push.getContentId(), immediatePlay);
+        } catch (Exception e) {
+            log.error("渲染完成后下发推送失败: pushId={}", pushId, e);
+        }
+    }
+
+    /**
+     * 恢复等待渲染的推送：实例重启后内存中的渲染任务和完成回调都已丢失，
+     * 超过 resume-after-seconds 仍为 RENDERING 的推送重新解析下发资源（变体已渲染好时直接下发，否则重新提交渲染）
+     * 多实例同时恢复同一推送时最多重复渲染一次，按 RENDERING 条件更新，不会重复入队
+     */
+    @Scheduled(fixedDelayString = "${media.render.resume-interval-seconds:60}000")
+    public void resumeRenderingPushes() {
+        List<ContentPush> stale;
+        try {
+            stale = contentPushMapper.selectList(new LambdaQueryWrapper<ContentPush>()
+                    .eq(ContentPush::getPushStatus, PushStatus.RENDERING)
+                    .lt(ContentPush::getUpdateTime, LocalDateTime.now().minusSeconds(resumeAfterSeconds))
+                    .orderByAsc(ContentPush::getId)
+                    .last("LIMIT " + RESUME_BATCH_SIZE));
+        } catch (Exception e) {
+            log.error("查询等待渲染的推送失败，等待下次调度", e);
+            return;
+        }
+        for (ContentPush push : stale) {
+            try {
+                CompletableFuture<RenderedAsset> asset = resolveAsset(push);
+                if (asset == null) {
+                    failRendering(push.getId(), CONTENT_GONE);
+                    continue;
+                }
+                // 刷新更新时间：渲染仍在进行时，下一轮不再重复恢复
+                contentPushMapper.update(null, new LambdaUpdateWrapper<ContentPush>()
+                        .set(ContentPush::getUpdateTime, LocalDateTime.now())
+                        .eq(ContentPush::getId, push.getId())
+                        .eq(ContentPush::getPushStatus, PushStatus.RENDERING));
+                Long pushId = push.getId();
+                asset.whenComplete((rendered, error) -> deliverRendered(pushId, rendered, error));
+            } catch (MediaJobRejectedException e) {
+                log.info("处理队列繁忙，稍后恢复等待渲染的推送: pushId={}", push.getId());
+            } catch (Exception e) {
+                log.error("恢复等待渲染的推送失败: pushId={}", push.getId(), e);
+            }
+        }
+    }
+
+    /**
+     * 重新解析推送的下发资源，设备或内容已删除时返回 null
+     */
+    private CompletableFuture<RenderedAsset> resolveAsset(ContentPush push) {
+        Device device = deviceMapper.selectById(push.getDeviceId());
+        if (device == null) {
+            return null;
+        }
+        boolean isAdmin = isAdmin(push.getUserId());
+        if (push.getContentType() == ContentType.IMAGE) {
+            Image image = imageMapper.selectById(push.getContentId());
+            return image == null ? null : renderService.resolveImage(image, device, push.getUserId(), isAdmin);
+        }
+        Video video = videoMapper.selectById(push.getContentId());
+        return video == null ? null : renderService.resolveVideo(video, device, push.getUserId(), isAdmin);
+    }
 
-        log.info("视频已添加到播放队列: deviceId={}, videoId={}, userId={}, pushId={}, isAdmin={}, immediatePlay={}",
-                deviceId, videoId, userId, pushRecord.getId(), isAdmin, immediatePlay);
+    private void failRendering(Long pushId, String reason) {
+        contentPushMapper.update(null, new LambdaUpdateWrapper<ContentPush>()
+                .set(ContentPush::getPushStatus, PushStatus.FAILED)
+                .set(ContentPush::getErrorMessage, reason)
+                .set(ContentPush::getUpdateTime, LocalDateTime.now())
+                .eq(ContentPush::getId, pushId)
+                .eq(ContentPush::getPushStatus, PushStatus.RENDERING));
+    }
+
+    private boolean isAdmin(Long userId) {
+        User user = userId == null ? null : userMapper.selectById(userId);
+        return user != null && UserRole.ADMIN.getCode().equals(user.getRole());
+    }
+
+    /**
+     * 事务提交后执行（没有事务时立即执行），事务回滚时推送记录不存在，不再下发
+     */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
     }
 
     /**
@@ -273,18 +446,26 @@ public class PushService {
 
     /**
      * 批量推送到多个设备
+     * 下发资源正在按设备面板渲染的设备照常推送，渲染完成后自动下发；处理队列已满时跳过该设备，在结果中返回
      *
      * @param deviceIds   设备ID列表
      * @param contentId   内容ID
      * @param contentType 内容类型
      * @param userId      用户ID
      * @param userRole    用户角色
+     * @return 各设备的推送结果
      */
     @Transactional(rollbackFor = Exception.class)
-    public void pushBatch(List<Long> deviceIds, Long contentId, ContentType contentType, Long userId, String userRole) {
+    public BatchPushResultVO pushBatch(List<Long> deviceIds, Long contentId, ContentType contentType, Long userId, String userRole) {
         // 批量推送目前简化处理，不进行验证码校验（假设是管理员功能）
+        List<Long> pushedDeviceIds = new ArrayList<>();
+        List<Long> renderingDeviceIds = new ArrayList<>();
+        List<Long> skippedDeviceIds = new ArrayList<>();
+        List<Long> failedDeviceIds = new ArrayList<>();
+        long retryAfterSeconds = 0;
         for (Long deviceId : deviceIds) {
             try {
+                PushStatus status;
                 if (contentType == ContentType.IMAGE) {
                     // 内部调用，为了避免重复校验验证码（而且这里没传验证码），如果是游客批量推送，可能需要额外逻辑
                     // 这里直接调用pushImage，但传入null验证码。如果游客没次数会失败。
@@ -292,20 +473,38 @@ public class PushService {
                     if (!UserRole.ADMIN.getCode().equals(userRole)) {
                         throw new BusinessException("只有管理员可以使用批量推送");
                     }
-                    pushImage(deviceId, contentId, userId, userRole, null);
+                    status = pushImage(deviceId, contentId, userId, userRole, null);
                 } else if (contentType == ContentType.VIDEO) {
                     if (!UserRole.ADMIN.getCode().equals(userRole)) {
                         throw new BusinessException("只有管理员可以使用批量推送");
                     }
-                    pushVideo(deviceId, contentId, userId, userRole, null);
+                    status = pushVideo(deviceId, contentId, userId, userRole, null);
                 } else {
                     throw new BusinessException("不支持的内容类型: " + contentType);
                 }
+                pushedDeviceIds.add(deviceId);
+                if (status == PushStatus.RENDERING) {
+                    renderingDeviceIds.add(deviceId);
+                }
+            } catch (MediaJobRejectedException e) {
+                // 处理队列已满：没有保存推送记录，按 Retry-After 对这些设备重新推送
+                log.warn("批量推送跳过设备: deviceId={}, contentId={}, contentType={}, reason={}",
+                        deviceId, contentId, contentType, e.getMessage());
+                skippedDeviceIds.add(deviceId);
+                retryAfterSeconds = Math.max(retryAfterSeconds, e.getRetryAfterSeconds());
             } catch (Exception e) {
                 log.error("批量推送失败: deviceId={}, contentId={}, contentType={}", deviceId, contentId, contentType, e);
+                failedDeviceIds.add(deviceId);
                 // 继续推送其他设备，不中断
             }
         }
+        return BatchPushResultVO.builder()
+                .pushedDeviceIds(pushedDeviceIds)
+                .renderingDeviceIds(renderingDeviceIds)
+                .skippedDeviceIds(skippedDeviceIds)
+                .retryAfterSeconds(skippedDeviceIds.isEmpty() ? null : retryAfterSeconds)
+                .failedDeviceIds(failedDeviceIds)
+                .build();
     }
 
     /**
@@ -417,6 +616,12 @@ public class PushService {
             pushRecord.setUpdateTime(LocalDateTime.now());
             contentPushMapper.updateById(pushRecord);
 
+            // 设备收到“显示缓存内容”但本地已没有该文件：从清单中移除，下次播放按完整命令下发
+            if (newStatus == PushStatus.FAILED && CACHE_MISS.equals(statusMessage.getError())) {
+                deviceInventoryService.forget(deviceCode, pushRecord.getMd5());
+                log.info("设备缓存中已无该文件: deviceCode={}, contentId={}", deviceCode, pushRecord.getContentId());
+            }
+
             // 3. 如果成功，更新设备的当前显示内容
             if (newStatus == PushStatus.SUCCESS) {
                 Device device = deviceMapper.selectOne(
@@ -485,7 +690,10 @@ public class PushService {
                 }
             }
 
-            // 3. 可以在这里记录电池电量和信号强度等信息（如果数据库有字段）
+            // 3. 设备上报了本地缓存清单时更新，之后缓存中已有的内容只下发“显示缓存内容”
+            deviceInventoryService.update(deviceCode, heartbeatMessage.getInventory());
+
+            // 4. 可以在这里记录电池电量和信号强度等信息（如果数据库有字段）
             // 目前Device实体没有这些字段，暂时不处理
 
         } catch (Exception e) {
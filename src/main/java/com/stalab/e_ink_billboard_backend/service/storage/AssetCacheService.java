@@ -0,0 +1,369 @@
+package com.stalab.e_ink_billboard_backend.service.storage;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.SecureUtil;
+import com.stalab.e_ink_billboard_backend.common.exception.BusinessException;
+import com.stalab.e_ink_billboard_backend.model.vo.StorageStatsVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.InputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 处理后内容（抖动 PNG / BIN）的本机磁盘缓存
+ * <p>
+ * 配置了 public-base-url 时，下发给设备的链接指向本服务的 /api/asset（带签名和有效期），
+ * 同一内容推送给大量设备时只从 MinIO 取一次，之后都从本机磁盘读取；未配置时仍下发 MinIO 的 Presigned URL。
+ * 缓存按最近访问淘汰（LRU），总大小不超过 max-size-mb；object 名称不变则内容不变，缓存不需要失效。
+ * 正在下载的文件由 {@link CachedAsset} 钉住，淘汰时跳过，直到请求结束（sendfile 再多保留一段时间）
+ */
+@Slf4j
+@Service
+public class AssetCacheService {
+
+    /**
+     * 签名有效期按该粒度（秒）向上取整，同一时间窗内签出的链接相同，便于设备端和代理缓存
+     */
+    private static final long EXPIRY_STEP_SECONDS = 600;
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final MinioService minioService;
+
+    /**
+     * 设备访问本服务的地址（如 http://192.168.1.10:8083），为空时不启用本机缓存
+     */
+    @Value("${media.asset-cache.public-base-url:}")
+    private String publicBaseUrl;
+
+    @Value("${media.asset-cache.dir:${java.io.tmpdir}/eink-asset-cache}")
+    private String cacheDir;
+
+    @Value("${media.asset-cache.max-size-mb:2048}")
+    private long maxSizeMb;
+
+    /**
+     * 链接有效期与 Presigned URL 一致
+     */
+    @Value("${minio.presigned-url-expiry-hours:2}")
+    private int expiryHours;
+
+    @Value("${jwt.secret}")
+    private String signSecret;
+
+    /**
+     * 缓存文件名 -> 缓存项，按访问顺序排列（最久未访问的在最前）；读写（包括钉住计数）都持有 this 锁
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+    private boolean loaded;
+
+    /**
+     * 正在从 MinIO 下载的文件（同一文件的并发未命中只下载一次）
+     */
+    private final Map<String, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public AssetCacheService(MinioService minioService) {
+        this.minioService = minioService;
+    }
+
+    public boolean isEnabled() {
+        return StrUtil.isNotBlank(publicBaseUrl);
+    }
+
+    /**
+     * 获取设备下载链接：启用本机缓存时签发 /api/asset 链接，否则返回 MinIO 的下载链接
+     *
+     * @param storedUrl 数据库中存储的URL（可能是永久URL或object名称）
+     */
+    public String getDownloadUrl(String storedUrl) {
+        if (!isEnabled()) {
+            return minioService.getDownloadUrl(storedUrl);
+        }
+        if (StrUtil.isBlank(storedUrl)) {
+            throw new BusinessException(400, "文件URL为空");
+        }
+        String objectName = minioService.extractObjectName(storedUrl);
+        if (StrUtil.isBlank(objectName)) {
+            objectName = storedUrl;
+        }
+        long expires = System.currentTimeMillis() / 1000 + TimeUnit.HOURS.toSeconds(expiryHours);
+        expires = (expires + EXPIRY_STEP_SECONDS - 1) / EXPIRY_STEP_SECONDS * EXPIRY_STEP_SECONDS;
+        return StrUtil.removeSuffix(publicBaseUrl, "/") + "/api/asset?key="
+                + URLEncoder.encode(objectName, StandardCharsets.UTF_8)
+                + "&expires=" + expires + "&sign=" + sign(objectName, expires);
+    }
+
+    /**
+     * 校验下载链接并取得本机缓存文件，未命中时先从 MinIO 下载到缓存
+     * 返回的文件在 close 之前不会被淘汰，调用方必须关闭
+     *
+     * @throws BusinessException 404=未启用, 403=签名无效或已过期, 500=MinIO 读取失败
+     */
+    public CachedAsset resolve(String objectName, long expires, String sign) {
+        if (!isEnabled()) {
+            throw new BusinessException(404, "未启用本机内容缓存");
+        }
+        if (expires < System.currentTimeMillis() / 1000 || sign == null
+                || !MessageDigest.isEqual(sign(objectName, expires).getBytes(StandardCharsets.UTF_8),
+                sign.getBytes(StandardCharsets.UTF_8))) {
+            throw new BusinessException(403, "下载链接无效或已过期");
+        }
+        return get(objectName);
+    }
+
+    /**
+     * 缓存的文件名在 object 名称不变时不变，可直接作为 ETag
+     */
+    public static String etag(Path path) {
+        return "\"" + FileUtil.mainName(path.getFileName().toString()) + "\"";
+    }
+
+    /**
+     * 在 MinioService 的指标上补充本机缓存的指标
+     */
+    public StorageStatsVO storageStats() {
+        StorageStatsVO stats = minioService.storageStats();
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        stats.setAssetCacheEnabled(isEnabled());
+        synchronized (this) {
+            stats.setAssetCacheFiles(entries.size());
+            stats.setAssetCacheBytes(totalBytes);
+        }
+        stats.setAssetCacheHits(hitCount);
+        stats.setAssetCacheMisses(missCount);
+        stats.setAssetCacheEvictions(evictions.sum());
+        stats.setAssetCacheHitRate(hitCount + missCount == 0 ? 0 : (double) hitCount / (hitCount + missCount));
+        return stats;
+    }
+
+    private CachedAsset get(String objectName) {
+        Path dir = directory();
+        String fileName = SecureUtil.sha256(objectName) + suffix(objectName);
+        Path path = dir.resolve(fileName);
+        CachedAsset cached = acquire(fileName, path);
+        if (cached != null) {
+            if (Files.exists(path)) {
+                hits.increment();
+                return cached;
+            }
+            // 文件被外部删除，重新下载
+            cached.close();
+        }
+
+        CompletableFuture<Path> mine = new CompletableFuture<>();
+        CompletableFuture<Path> running = inFlight.putIfAbsent(fileName, mine);
+        if (running != null) {
+            // 等其他请求取回，本次不访问 MinIO，按命中计
+            try {
+                running.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+            cached = acquire(fileName, path);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+            // 刚取回就被淘汰（缓存容量过小），重新走一遍
+            return get(objectName);
+        }
+
+        misses.increment();
+        Path temp = dir.resolve(fileName + "." + IdUtil.fastSimpleUUID() + TEMP_SUFFIX);
+        try {
+            long start = System.currentTimeMillis();
+            // 面板变体的 object 名称带目录，按完整 URL 解析
+            try (InputStream in = minioService.download(minioService.getObjectUrl(objectName))) {
+                Files.copy(in, temp);
+            }
+            // 大小取自临时文件：移动之后文件随时可能被其他请求的淘汰删除
+            long size = Files.size(temp);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            cached = add(fileName, path, size);
+            log.info("内容缓存到本机: objectName={}, size={}, cost={}ms", objectName, size, System.currentTimeMillis() - start);
+            mine.complete(path);
+            return cached;
+        } catch (BusinessException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } catch (Exception e) {
+            log.error("内容缓存到本机失败: objectName={}", objectName, e);
+            BusinessException failure = new BusinessException(500, "存储服务异常");
+            mine.completeExceptionally(failure);
+            throw failure;
+        } finally {
+            FileUtil.del(temp.toFile());
+            inFlight.remove(fileName, mine);
+        }
+    }
+
+    /**
+     * 标记为最近访问并钉住
+     *
+     * @return 不在缓存中时返回 null
+     */
+    private synchronized CachedAsset acquire(String fileName, Path path) {
+        Entry entry = entries.get(fileName);
+        if (entry == null) {
+            return null;
+        }
+        entry.pins++;
+        return new CachedAsset(entry, path);
+    }
+
+    /**
+     * 登记新缓存的文件（同时钉住），超过容量时从最久未访问的开始删除；被钉住的文件跳过，
+     * 因此总大小可能暂时超过上限，之后新增文件时再淘汰
+     */
+    private synchronized CachedAsset add(String fileName, Path path, long size) {
+        Entry entry = new Entry(size);
+        entry.pins++;
+        Entry previous = entries.put(fileName, entry);
+        totalBytes += size - (previous == null ? 0 : previous.size);
+        long maxBytes = maxSizeMb * 1024 * 1024;
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            if (eldest.getValue().isPinned(now)) {
+                continue;
+            }
+            FileUtil.del(Paths.get(cacheDir, eldest.getKey()).toFile());
+            totalBytes -= eldest.getValue().size;
+            it.remove();
+            evictions.increment();
+        }
+        return new CachedAsset(entry, path);
+    }
+
+    /**
+     * 缓存目录；首次使用时登记重启前留下的文件（按修改时间近似访问顺序），清理未下载完的临时文件
+     */
+    private synchronized Path directory() {
+        Path dir = Paths.get(cacheDir);
+        if (loaded) {
+            return dir;
+        }
+        FileUtil.mkdir(dir.toFile());
+        File[] files = dir.toFile().listFiles();
+        if (files != null) {
+            Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+            for (File file : files) {
+                if (file.getName().endsWith(TEMP_SUFFIX)) {
+                    FileUtil.del(file);
+                } else if (file.isFile()) {
+                    entries.put(file.getName(), new Entry(file.length()));
+                    totalBytes += file.length();
+                }
+            }
+        }
+        loaded = true;
+        log.info("本机内容缓存目录: {}, 已有 {} 个文件, {} MB", dir, entries.size(), totalBytes / 1024 / 1024);
+        return dir;
+    }
+
+    private String sign(String objectName, long expires) {
+        return SecureUtil.hmacSha256(signSecret).digestHex(objectName + "\n" + expires);
+    }
+
+    private static String suffix(String objectName) {
+        String ext = FileUtil.extName(objectName);
+        return StrUtil.isBlank(ext) ? "" : "." + ext;
+    }
+
+    /**
+     * 缓存项；pins 和 holdUntil 只在持有 AssetCacheService 锁时读写
+     */
+    private static final class Entry {
+        private final long size;
+
+        /**
+         * 正在使用该文件的请求数
+         */
+        private int pins;
+
+        /**
+         * 请求结束后继续保留到该时间（毫秒），供 Servlet 返回后才打开文件的 sendfile 使用
+         */
+        private long holdUntil;
+
+        private Entry(long size) {
+            this.size = size;
+        }
+
+        private boolean isPinned(long now) {
+            return pins > 0 || holdUntil > now;
+        }
+    }
+
+    /**
+     * 钉住的缓存文件：close 之前不会被淘汰，大小取自登记时的记录，不用再读文件
+     */
+    public final class CachedAsset implements AutoCloseable {
+
+        private final Entry entry;
+        private final Path path;
+        private boolean closed;
+
+        private CachedAsset(Entry entry, Path path) {
+            this.entry = entry;
+            this.path = path;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public long getSize() {
+            return entry.size;
+        }
+
+        /**
+         * close 之后继续保留一段时间（交给 sendfile 时，文件在 Servlet 返回后才由连接器打开）
+         */
+        public void holdAfterClose(long seconds) {
+            synchronized (AssetCacheService.this) {
+                entry.holdUntil = Math.max(entry.holdUntil, System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(seconds));
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized (AssetCacheService.this) {
+                if (!closed) {
+                    closed = true;
+                    entry.pins--;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.stalab.e_ink_billboard_backend.service.storage;
+
+import cn.hutool.core.util.StrUtil;
+import com.stalab.e_ink_billboard_backend.model.dto.ChunkManifest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * 下发文件的分块校验清单（按块 CRC32），随播放命令下发，设备据此断点续传
+ * <p>
+ * object 名称不变则内容不变，清单按 object 名称存 Redis：转码、渲染变体时就地计算；
+ * 其他文件（如抖动 PNG、旧数据）首次下发时从 MinIO 读取一遍计算。
+ * 不超过一块的小文件不需要清单
+ */
+@Slf4j
+@Service
+public class ChunkManifestService {
+
+    private static final String KEY_PREFIX = "asset:chunks:";
+    /**
+     * 小文件的占位值，避免每次下发都重新读取
+     */
+    private static final String SINGLE_CHUNK = "-";
+
+    private final MinioService minioService;
+    private final StringRedisTemplate redisTemplate;
+
+    /**
+     * 块大小（KB），需与设备端的下载缓冲相匹配
+     */
+    @Value("${media.download.chunk-size-kb:256}")
+    private int chunkSizeKb;
+
+    /**
+     * 清单在 Redis 中的有效期（天）
+     */
+    @Value("${media.download.manifest-ttl-days:30}")
+    private long ttlDays;
+
+    public ChunkManifestService(MinioService minioService, StringRedisTemplate redisTemplate) {
+        this.minioService = minioService;
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * 在已有本地文件时登记清单（上传到 MinIO 之后调用），失败只记日志
+     */
+    public void remember(String objectName, File file) {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file.toPath()))) {
+            save(objectName, compute(in));
+        } catch (Exception e) {
+            log.warn("计算分块校验清单失败: objectName={}", objectName, e);
+        }
+    }
+
+    /**
+     * 获取文件的分块校验清单，Redis 中没有时从 MinIO 读取计算
+     *
+     * @param storedUrl 数据库中存储的URL（可能是永久URL或object名称）
+     * @return 清单；文件不超过一块或计算失败时返回 null（设备整文件下载）
+     */
+    public ChunkManifest get(String storedUrl) {
+        String objectName = minioService.extractObjectName(storedUrl);
+        if (StrUtil.isBlank(objectName)) {
+            return null;
+        }
+        int chunkSize = chunkSize();
+        try {
+            String cached = redisTemplate.opsForValue().get(KEY_PREFIX + objectName);
+            if (SINGLE_CHUNK.equals(cached)) {
+                return null;
+            }
+            // 块大小配置改变后旧清单作废，重新计算
+            String prefix = chunkSize + ":";
+            if (cached != null && cached.startsWith(prefix)) {
+                return toManifest(Arrays.asList(cached.substring(prefix.length()).split(",")), chunkSize);
+            }
+        } catch (Exception e) {
+            log.warn("读取分块校验清单失败: objectName={}", objectName, e);
+        }
+        try (InputStream in = minioService.download(storedUrl)) {
+            List<String> chunks = compute(in);
+            save(objectName, chunks);
+            return toManifest(chunks, chunkSize);
+        } catch (Exception e) {
+            log.warn("计算分块校验清单失败，按整文件下发: objectName={}", objectName, e);
+            return null;
+        }
+    }
+
+    private List<String> compute(InputStream in) throws IOException {
+        int chunkSize = chunkSize();
+        List<String> chunks = new ArrayList<>();
+        byte[] buffer = new byte[64 * 1024];
+        CRC32 crc = new CRC32();
+        int inChunk = 0;
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            int offset = 0;
+            while (offset < n) {
+                int len = Math.min(n - offset, chunkSize - inChunk);
+                crc.update(buffer, offset, len);
+                offset += len;
+                inChunk += len;
+                if (inChunk == chunkSize) {
+                    chunks.add(toHex(crc.getValue()));
+                    crc.reset();
+                    inChunk = 0;
+                }
+            }
+        }
+        if (inChunk > 0) {
+            chunks.add(toHex(crc.getValue()));
+        }
+        return chunks;
+    }
+
+    /**
+     * 存为 "块大小:crc,crc,..."
+     */
+    private void save(String objectName, List<String> chunks) {
+        String value = chunks.size() <= 1 ? SINGLE_CHUNK : chunkSize() + ":" + String.join(",", chunks);
+        try {
+            redisTemplate.opsForValue().set(KEY_PREFIX + objectName, value, ttlDays, TimeUnit.DAYS);
+        } catch (Exception e) {
+            log.warn("保存分块校验清单失败: objectName={}", objectName, e);
+        }
+    }
+
+    private static ChunkManifest toManifest(List<String> chunks, int chunkSize) {
+        if (chunks.size() <= 1) {
+            return null;
+        }
+        return ChunkManifest.builder()
+                .chunkSize(chunkSize)
+                .chunks(chunks)
+                .build();
+    }
+
+    private int chunkSize() {
+        return Math.max(1, chunkSizeKb) * 1024;
+    }
+
+    private static String toHex(long crc) {
+        return String.format("%08x", crc);
+    }
+}
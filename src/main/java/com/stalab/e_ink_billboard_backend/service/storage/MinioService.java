@@ -1,29 +1,65 @@
 package com.stalab.e_ink_billboard_backend.service.storage;
 
 import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IoUtil;
 import cn.hutool.core.lang.UUID;
 import cn.hutool.core.util.StrUtil;
 import com.stalab.e_ink_billboard_backend.common.exception.BusinessException;
+import com.stalab.e_ink_billboard_backend.model.dto.StoredObject;
+import com.stalab.e_ink_billboard_backend.model.vo.StorageStatsVO;
+import io.minio.GetObjectArgs;
 import io.minio.GetPresignedObjectUrlArgs;
+import io.minio.MinioAsyncClient;
 import io.minio.MinioClient;
 import io.minio.PutObjectArgs;
-import io.minio.RemoveObjectArgs;
+import io.minio.RemoveObjectsArgs;
+import io.minio.Result;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import io.minio.UploadObjectArgs;
+import io.minio.errors.ErrorResponseException;
 import io.minio.http.Method;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.io.File;
 import java.io.InputStream;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 @Slf4j
 @Service
 public class MinioService {
 
 
-    private final MinioClient minioClient;
+    /**
+     * S3 允许的最小分片
+     */
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+    private static final long MAX_FILE_PART_SIZE = 64L * 1024 * 1024;
+    private static final int FILE_PARTS = 8;
 
+    /**
+     * 对象元数据中记录内容 MD5 的键（x-amz-meta-md5）
+     */
+    private static final String MD5_METADATA = "md5";
+
+    private final MinioClient minioClient;
+    private final MinioAsyncClient minioAsyncClient;
+    private final ThreadPoolTaskExecutor storageExecutor;
 
 
     @Value("${minio.bucket-name:eink-images}")
@@ -48,35 +84,144 @@ public class MinioService {
     @Value("${minio.presigned-url-expiry-hours:2}")
     private int presignedUrlExpiryHours;
 
-    public MinioService(MinioClient minioClient) {
+    /**
+     * 缓存的 Presigned URL 剩余有效期不足该时间（分钟）时重新签名，保证设备拿到链接后有足够时间下载
+     */
+    @Value("${minio.presigned-url-reuse-margin-minutes:30}")
+    private int presignedUrlReuseMarginMinutes;
+
+    /**
+     * Presigned URL 缓存条目上限
+     */
+    @Value("${minio.presigned-url-cache-size:10000}")
+    private int presignedUrlCacheSize;
+
+    /**
+     * object名称 -> 已签名的 URL；同一内容推送给大量设备时只签名一次
+     */
+    private final Map<String, PresignedUrl> presignedUrls = new ConcurrentHashMap<>();
+    private final LongAdder presignedUrlHits = new LongAdder();
+    private final LongAdder presignedUrlMisses = new LongAdder();
+
+    public MinioService(MinioClient minioClient, MinioAsyncClient minioAsyncClient,
+                        @Qualifier("storageExecutor") ThreadPoolTaskExecutor storageExecutor) {
         this.minioClient = minioClient;
+        this.minioAsyncClient = minioAsyncClient;
+        this.storageExecutor = storageExecutor;
     }
     /**
-     * 上传 MultipartFile (用户上传的原图)
+     * 上传已缓冲的用户上传文件 (原图/原视频)
+     * 大小已知，直接按实际大小上传，不需要 MinIO 按分片缓冲未知长度的流；已落盘的大文件直接按文件分片读取
      */
-    public String upload(MultipartFile file) {
-        String fileName = generateFileName(file.getOriginalFilename());
+    public String upload(SpooledUpload upload) {
+        String fileName = generateFileName(upload.getOriginalFilename());
         try {
-            return uploadStream(file.getInputStream(), fileName, file.getContentType());
+            if (upload.isInMemory()) {
+                try (InputStream stream = upload.openStream()) {
+                    putStream(fileName, stream, upload.getSize(), upload.getContentType());
+                }
+            } else {
+                putFile(fileName, upload.getFile(), upload.getContentType(), null);
+            }
+            return getObjectUrl(fileName);
         } catch (Exception e) {
-            log.error("原图上传失败", e);
+            log.error("原文件上传失败: {}", fileName, e);
             throw new BusinessException(500,"文件上传失败");
         }
     }
 
     /**
-     * 上传 InputStream (算法处理后的抖动图)
+     * 异步上传已缓冲的用户上传文件，当前线程不等待网络，可以同时做审核、抖动等其他工作
+     * object 名称由调用方先用 generateFileName 分配，URL 在上传完成前就能落库
+     * 上传完成前不能关闭 upload
+     *
+     * @return 完成时为文件URL；失败时以 BusinessException 结束
+     */
+    public CompletableFuture<String> uploadAsync(SpooledUpload upload, String objectName) {
+        CompletableFuture<?> future;
+        try {
+            if (upload.isInMemory()) {
+                InputStream stream = upload.openStream();
+                future = minioAsyncClient.putObject(PutObjectArgs.builder()
+                                .bucket(bucketName)
+                                .object(objectName)
+                                .stream(stream, upload.getSize(), -1)
+                                .contentType(upload.getContentType())
+                                .build())
+                        .whenComplete((response, e) -> IoUtil.close(stream));
+            } else {
+                File file = upload.getFile();
+                future = minioAsyncClient.uploadObject(UploadObjectArgs.builder()
+                        .bucket(bucketName)
+                        .object(objectName)
+                        .filename(file.getAbsolutePath(), filePartSize(file.length()))
+                        .contentType(upload.getContentType())
+                        .build());
+            }
+        } catch (Exception e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        return future.handle((response, e) -> {
+            if (e != null) {
+                log.error("原文件上传失败: {}", objectName, e);
+                throw new BusinessException(500, "文件上传失败");
+            }
+            return getObjectUrl(objectName);
+        });
+    }
+
+    /**
+     * 上传本地文件 (视频转码生成的 BIN 等大文件)
+     * MinIO 客户端按文件随机读取每个分片，不会把分片缓冲在堆内存里
+     * @return 文件URL
+     */
+    public String uploadFile(File file, String objectName, String contentType) {
+        return uploadFile(file, objectName, contentType, null);
+    }
+
+    /**
+     * 上传本地文件，并把内容 MD5 记在对象元数据里（statObject 时取回）
+     * @param md5 为空时不记录
+     * @return 文件URL
+     */
+    public String uploadFile(File file, String objectName, String contentType, String md5) {
+        try {
+            putFile(objectName, file, contentType, md5);
+            return getObjectUrl(objectName);
+        } catch (Exception e) {
+            log.error("MinIO上传异常: {}", objectName, e);
+            throw new BusinessException(500,"存储服务异常");
+        }
+    }
+
+    /**
+     * 上传已知大小的 InputStream (算法处理后的抖动图)
+     * 小于一个分片的对象一次 PUT 完成，MinIO 只按实际大小缓冲
+     */
+    public String uploadStream(InputStream stream, long size, String fileName, String contentType) {
+        try {
+            putStream(fileName, stream, size, contentType);
+            return getObjectUrl(fileName);
+        } catch (Exception e) {
+            log.error("MinIO上传异常: {}", fileName, e);
+            throw new BusinessException(500,"存储服务异常");
+        }
+    }
+
+    /**
+     * 上传未知大小的 InputStream
+     * MinIO 每个分片都要先缓冲在堆内存里，这里用允许的最小分片（5MB）；大小已知时请用带 size 的重载
      */
     public String uploadStream(InputStream stream, String fileName, String contentType) {
         try {
             minioClient.putObject(PutObjectArgs.builder()
                     .bucket(bucketName)
                     .object(fileName)
-                    .stream(stream, -1, 10485760) // -1表示未知大小, 10M分片
+                    .stream(stream, -1, MIN_PART_SIZE) // -1表示未知大小
                     .contentType(contentType)
                     .build());
 
-            return endpoint + "/" + bucketName + "/" + fileName;
+            return getObjectUrl(fileName);
         } catch (Exception e) {
             log.error("MinIO上传异常: {}", fileName, e);
             throw new BusinessException(500,"存储服务异常");
@@ -84,39 +229,155 @@ public class MinioService {
     }
 
     /**
-     * 删除文件
-     * @param url MinIO文件URL (格式: http://endpoint/bucket-name/object-name)
+     * 流式上传：每个分片缓冲在堆内存中
+     * 大小已知时由 MinIO 取能容纳该大小的最小分片（从 5MB 起），小对象一次 PUT，只按实际大小缓冲
      */
-    public void delete(String url) {
-        if (StrUtil.isBlank(url)) {
-            log.warn("删除文件URL为空，跳过");
-            return;
+    private void putStream(String objectName, InputStream stream, long size, String contentType) throws Exception {
+        minioClient.putObject(PutObjectArgs.builder()
+                .bucket(bucketName)
+                .object(objectName)
+                .stream(stream, size, -1)
+                .contentType(contentType)
+                .build());
+    }
+
+    /**
+     * 文件上传：分片从文件随机读取，不占堆内存，分片可以更大以减少请求数
+     */
+    private void putFile(String objectName, File file, String contentType, String md5) throws Exception {
+        UploadObjectArgs.Builder args = UploadObjectArgs.builder()
+                .bucket(bucketName)
+                .object(objectName)
+                .filename(file.getAbsolutePath(), filePartSize(file.length()))
+                .contentType(contentType);
+        if (StrUtil.isNotBlank(md5)) {
+            args.userMetadata(Map.of(MD5_METADATA, md5));
         }
+        minioClient.uploadObject(args.build());
+    }
 
+    /**
+     * 文件分片大小：约 FILE_PARTS 个分片，按 MB 取整，限制在 [5MB, 64MB]
+     * 单个分片就能装下的文件一次 PUT 完成
+     */
+    private static long filePartSize(long size) {
+        long mb = 1024 * 1024;
+        long part = (size / FILE_PARTS + mb - 1) / mb * mb;
+        return Math.max(MIN_PART_SIZE, Math.min(MAX_FILE_PART_SIZE, part));
+    }
+
+    /**
+     * 查询对象大小和上传时记录的 MD5
+     * @return 对象不存在时返回 null；上传时未记录 MD5 的对象 md5 为空
+     */
+    public StoredObject statObject(String objectName) {
         try {
-            // 从URL中提取object名称
-            // URL格式: http://endpoint/bucket-name/object-name
-            String objectName = extractObjectName(url);
-            if (StrUtil.isBlank(objectName)) {
-                log.warn("无法从URL中提取object名称: {}", url);
-                return;
+            StatObjectResponse stat = minioClient.statObject(StatObjectArgs.builder()
+                    .bucket(bucketName)
+                    .object(objectName)
+                    .build());
+            return StoredObject.builder()
+                    .size(stat.size())
+                    .md5(stat.userMetadata().get(MD5_METADATA))
+                    .build();
+        } catch (ErrorResponseException e) {
+            if ("NoSuchKey".equals(e.errorResponse().code())) {
+                return null;
             }
+            log.error("MinIO查询对象异常: {}", objectName, e);
+            throw new BusinessException(500, "存储服务异常");
+        } catch (Exception e) {
+            log.error("MinIO查询对象异常: {}", objectName, e);
+            throw new BusinessException(500, "存储服务异常");
+        }
+    }
 
-            minioClient.removeObject(RemoveObjectArgs.builder()
+    /**
+     * 下载文件（调用方负责关闭流）
+     * @param url MinIO文件URL或object名称
+     */
+    public InputStream download(String url) {
+        String objectName = extractObjectName(url);
+        if (StrUtil.isBlank(objectName)) {
+            throw new BusinessException(400, "无法解析文件地址");
+        }
+        try {
+            return minioClient.getObject(GetObjectArgs.builder()
                     .bucket(bucketName)
                     .object(objectName)
                     .build());
-
-            log.info("成功删除MinIO文件: {}", objectName);
         } catch (Exception e) {
-            log.error("删除MinIO文件失败: {}", url, e);
-            // 不抛出异常，允许继续执行（文件可能已被删除或不存在）
+            log.error("MinIO下载异常: {}", objectName, e);
+            throw new BusinessException(500, "存储服务异常");
         }
     }
 
+    /**
+     * object名称 -> 永久URL（与 uploadStream 返回值格式一致）
+     */
+    public String getObjectUrl(String objectName) {
+        return endpoint + "/" + bucketName + "/" + objectName;
+    }
+
+    /**
+     * 批量删除文件：当前线程在事务中时等事务提交后再删，回滚则保留文件；不等待删除完成
+     * @param urls MinIO文件URL，空值和无法解析的忽略
+     */
+    public void deleteAfterCommit(Collection<String> urls) {
+        List<String> objectNames = urls.stream()
+                .filter(StrUtil::isNotBlank)
+                .map(this::extractObjectName)
+                .filter(StrUtil::isNotBlank)
+                .distinct()
+                .toList();
+        if (objectNames.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            deleteAsync(objectNames);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    deleteAsync(objectNames);
+                }
+            }
+        });
+    }
+
+    /**
+     * 一次 DeleteObjects 请求删除多个 object（S3 单次最多 1000 个，MinIO 客户端自动分批）
+     * 删除结果需要逐个读取才会真正发出请求，放在 storageExecutor 上执行；失败只记日志（文件可能已被删除）
+     */
+    public CompletableFuture<Void> deleteAsync(List<String> objectNames) {
+        objectNames.forEach(presignedUrls::remove);
+        return CompletableFuture.runAsync(() -> {
+            Iterable<Result<DeleteError>> results = minioAsyncClient.removeObjects(RemoveObjectsArgs.builder()
+                    .bucket(bucketName)
+                    .objects(objectNames.stream().map(DeleteObject::new).toList())
+                    .build());
+            int failed = 0;
+            for (Result<DeleteError> result : results) {
+                failed++;
+                try {
+                    DeleteError error = result.get();
+                    log.error("删除MinIO文件失败: {}, {}", error.objectName(), error.message());
+                } catch (Exception e) {
+                    log.error("删除MinIO文件失败: {}", objectNames, e);
+                }
+            }
+            if (failed == 0) {
+                log.info("成功删除MinIO文件: {}", objectNames);
+            }
+        }, storageExecutor);
+    }
+
     /**
      * 获取文件的下载URL（用于推送到ESP32）
      * 如果配置了使用Presigned URL，则动态生成；否则返回永久URL
+     * 同一 object 的 Presigned URL 在剩余有效期不少于 reuse-margin 时直接复用，不重复签名
      *
      * @param storedUrl 数据库中存储的URL（可能是永久URL或object名称）
      * @return 可用于下载的URL
@@ -138,8 +399,18 @@ public class MinioService {
             objectName = storedUrl;
         }
 
+        long now = System.currentTimeMillis();
+        long marginMillis = Math.min(TimeUnit.MINUTES.toMillis(presignedUrlReuseMarginMinutes),
+                TimeUnit.HOURS.toMillis(presignedUrlExpiryHours) / 2);
+        PresignedUrl cached = presignedUrls.get(objectName);
+        if (cached != null && cached.expiresAt - now >= marginMillis) {
+            presignedUrlHits.increment();
+            return cached.url;
+        }
+        presignedUrlMisses.increment();
+
         try {
-            return minioClient.getPresignedObjectUrl(
+            String url = minioClient.getPresignedObjectUrl(
                     GetPresignedObjectUrlArgs.builder()
                             .method(Method.GET)
                             .bucket(bucketName)
@@ -147,12 +418,56 @@ public class MinioService {
                             .expiry(presignedUrlExpiryHours, TimeUnit.HOURS)
                             .build()
             );
+            if (presignedUrls.size() >= presignedUrlCacheSize) {
+                prunePresignedUrls(now + marginMillis);
+            }
+            presignedUrls.put(objectName, new PresignedUrl(url, now + TimeUnit.HOURS.toMillis(presignedUrlExpiryHours)));
+            return url;
         } catch (Exception e) {
             log.error("生成Presigned URL失败: objectName={}", objectName, e);
             throw new BusinessException(500, "生成下载链接失败");
         }
     }
 
+    /**
+     * Presigned URL 缓存命中情况
+     */
+    public StorageStatsVO storageStats() {
+        long hits = presignedUrlHits.sum();
+        long misses = presignedUrlMisses.sum();
+        return StorageStatsVO.builder()
+                .presignedUrlCached(presignedUrls.size())
+                .presignedUrlHits(hits)
+                .presignedUrlMisses(misses)
+                .presignedUrlHitRate(hits + misses == 0 ? 0 : (double) hits / (hits + misses))
+                .build();
+    }
+
+    /**
+     * 缓存满时先清掉不能再复用的条目，仍然超过上限则清掉最早过期的一半
+     */
+    private void prunePresignedUrls(long reusableUntil) {
+        presignedUrls.values().removeIf(cached -> cached.expiresAt < reusableUntil);
+        if (presignedUrls.size() >= presignedUrlCacheSize) {
+            presignedUrls.entrySet().stream()
+                    .sorted(Comparator.comparingLong(entry -> entry.getValue().expiresAt))
+                    .limit(presignedUrls.size() / 2 + 1)
+                    .map(Map.Entry::getKey)
+                    .toList()
+                    .forEach(presignedUrls::remove);
+        }
+    }
+
+    private static final class PresignedUrl {
+        private final String url;
+        private final long expiresAt;
+
+        private PresignedUrl(String url, long expiresAt) {
+            this.url = url;
+            this.expiresAt = expiresAt;
+        }
+    }
+
     /**
      * 从MinIO URL中提取object名称
      * @param url MinIO文件URL（可能是永久URL或Presigned URL）
@@ -198,7 +513,7 @@ public class MinioService {
     }
 
     // 生成唯一文件名: uuid.png
-    private String generateFileName(String originalName) {
+    public String generateFileName(String originalName) {
         String suffix = FileUtil.getSuffix(originalName);
         return UUID.fastUUID().toString(true) + "." + (StrUtil.isBlank(suffix) ? "png" : suffix);
     }
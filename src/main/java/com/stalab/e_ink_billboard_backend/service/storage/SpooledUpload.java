@@ -0,0 +1,94 @@
+package com.stalab.e_ink_billboard_backend.service.storage;
+
+import cn.hutool.core.io.FileUtil;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+/**
+ * 已缓冲的上传文件（由 UploadIngestService 一次读取生成）
+ * 小文件保存在堆内存，大文件落到临时文件；MD5、SHA-256 与大小在读取时同步算出。
+ * 后续的秒传判断、内容审核、存储上传和算法处理都从这里重复读取，不再读 MultipartFile。
+ * 持有者负责 close（删除临时文件），交给异步任务后由异步任务关闭
+ */
+@Slf4j
+@Getter
+public class SpooledUpload implements AutoCloseable {
+
+    private final String originalFilename;
+    private final String contentType;
+    private final long size;
+    private final String md5;
+    private final String sha256;
+
+    /**
+     * 内存中的内容（落盘时为 null）
+     */
+    private final byte[] data;
+
+    /**
+     * 临时文件（内存模式下首次调用 getFile 时才生成）
+     */
+    private File file;
+
+    SpooledUpload(String originalFilename, String contentType, long size, String md5, String sha256,
+                  byte[] data, File file) {
+        this.originalFilename = originalFilename;
+        this.contentType = contentType;
+        this.size = size;
+        this.md5 = md5;
+        this.sha256 = sha256;
+        this.data = data;
+        this.file = file;
+    }
+
+    public boolean isInMemory() {
+        return data != null;
+    }
+
+    /**
+     * 打开一个新的读取流（可多次调用，调用方负责关闭）
+     */
+    public InputStream openStream() throws IOException {
+        if (data != null) {
+            return new ByteArrayInputStream(data);
+        }
+        return Files.newInputStream(file.toPath());
+    }
+
+    /**
+     * 以文件形式访问内容（如微信审核接口需要上传文件）
+     * 内存模式下首次调用时写出一次临时文件，之后复用，close 时一并删除
+     */
+    public synchronized File getFile() throws IOException {
+        if (file == null) {
+            File temp = File.createTempFile("upload_", tempSuffix(originalFilename));
+            FileUtil.writeBytes(data, temp);
+            file = temp;
+        }
+        return file;
+    }
+
+    /**
+     * 临时文件后缀沿用原文件扩展名，便于按扩展名识别格式的下游（审核接口、FFmpeg）
+     */
+    public static String tempSuffix(String originalFilename) {
+        String ext = FileUtil.extName(originalFilename);
+        return ext != null && ext.matches("[A-Za-z0-9]{1,10}") ? "." + ext : ".tmp";
+    }
+
+    @Override
+    public synchronized void close() {
+        if (file != null) {
+            if (!FileUtil.del(file)) {
+                log.warn("删除上传临时文件失败: {}", file);
+            }
+            file = null;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.stalab.e_ink_billboard_backend.service.storage;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.HexUtil;
+import com.stalab.e_ink_billboard_backend.common.exception.BusinessException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 上传文件接收：只读取一次 MultipartFile，边读边算 MD5 / SHA-256，内容缓冲到内存或临时文件
+ */
+@Slf4j
+@Service
+public class UploadIngestService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 不超过该大小的文件保存在内存中，超过则落盘（KB）
+     */
+    @Value("${upload.ingest.memory-threshold-kb:2048}")
+    private int memoryThresholdKb;
+
+    /**
+     * 读取上传文件
+     * 不超过阈值的文件读入内存；更大的文件容器已经落盘，直接 transferTo 到临时文件（通常只是重命名），
+     * 再读一遍算摘要，不再经过内存缓冲重新写一份。
+     * 最终字节数必须与 MultipartFile 声明的大小一致，否则视为上传不完整
+     */
+    public SpooledUpload ingest(MultipartFile file) {
+        long threshold = memoryThresholdKb * 1024L;
+        MessageDigest md5Digest = digest("MD5");
+        MessageDigest sha256Digest = digest("SHA-256");
+        byte[] content = null;
+        File spoolFile = null;
+        long total;
+
+        try {
+            if (file.getSize() <= threshold) {
+                ByteArrayOutputStream memory = new ByteArrayOutputStream((int) file.getSize());
+                try (InputStream in = file.getInputStream()) {
+                    total = digestCopy(in, memory, md5Digest, sha256Digest);
+                }
+                content = memory.toByteArray();
+            } else {
+                spoolFile = File.createTempFile("upload_", SpooledUpload.tempSuffix(file.getOriginalFilename()));
+                file.transferTo(spoolFile);
+                try (InputStream in = Files.newInputStream(spoolFile.toPath())) {
+                    total = digestCopy(in, OutputStream.nullOutputStream(), md5Digest, sha256Digest);
+                }
+            }
+        } catch (IOException e) {
+            FileUtil.del(spoolFile);
+            log.error("读取上传文件失败: {}", file.getOriginalFilename(), e);
+            throw new BusinessException(500, "文件读取失败");
+        }
+
+        if (total != file.getSize()) {
+            FileUtil.del(spoolFile);
+            log.warn("上传文件大小不一致: 声明={}, 实际读取={}", file.getSize(), total);
+            throw new BusinessException(400, "上传文件不完整，请重新上传");
+        }
+
+        String md5 = HexUtil.encodeHexStr(md5Digest.digest());
+        String sha256 = HexUtil.encodeHexStr(sha256Digest.digest());
+        log.debug("上传文件接收完成: name={}, size={}, sha256={}, inMemory={}",
+                file.getOriginalFilename(), total, sha256, spoolFile == null);
+        return new SpooledUpload(file.getOriginalFilename(), file.getContentType(), total, md5, sha256,
+                content, spoolFile);
+    }
+
+    private static long digestCopy(InputStream in, OutputStream out, MessageDigest... digests) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long total = 0;
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            for (MessageDigest digest : digests) {
+                digest.update(buffer, 0, n);
+            }
+            out.write(buffer, 0, n);
+            total += n;
+        }
+        return total;
+    }
+
+    private static MessageDigest digest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
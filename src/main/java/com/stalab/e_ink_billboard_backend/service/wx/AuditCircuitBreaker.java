@@ -0,0 +1,202 @@
+package com.stalab.e_ink_billboard_backend.service.wx;
+
+import com.stalab.e_ink_billboard_backend.model.vo.AuditStatsVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 微信内容审核接口熔断器
+ * <ul>
+ *   <li>CLOSED：正常调用，统计最近 window-size 次调用的失败率（超时、报错、慢调用都算失败）</li>
+ *   <li>OPEN：失败率达到阈值后打开，open-seconds 内不再调用接口，直接返回“不可用”，由后台稍后重审</li>
+ *   <li>HALF_OPEN：打开期满后放行 half-open-calls 次试探调用，全部成功则关闭，任一失败重新打开</li>
+ * </ul>
+ * 同时记录最近调用的耗时，用于输出延迟分位数
+ */
+@Slf4j
+@Component
+public class AuditCircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    /**
+     * 保留最近多少次调用的耗时用于计算分位数
+     */
+    private static final int LATENCY_SAMPLES = 1024;
+
+    @Value("${wechat.audit.breaker.window-size:20}")
+    private int windowSize;
+
+    /**
+     * 窗口内调用次数不足时不计算失败率，避免偶发一两次失败就熔断
+     */
+    @Value("${wechat.audit.breaker.min-calls:10}")
+    private int minCalls;
+
+    @Value("${wechat.audit.breaker.failure-rate-threshold:0.5}")
+    private double failureRateThreshold;
+
+    /**
+     * 超过该耗时（毫秒）的调用即使成功也按失败统计
+     */
+    @Value("${wechat.audit.breaker.slow-call-ms:3000}")
+    private long slowCallMillis;
+
+    @Value("${wechat.audit.breaker.open-seconds:30}")
+    private long openSeconds;
+
+    @Value("${wechat.audit.breaker.half-open-calls:3}")
+    private int halfOpenCalls;
+
+    private State state = State.CLOSED;
+    private boolean[] window;
+    private int windowPos;
+    private int windowCount;
+    private int windowFailures;
+    private long openUntil;
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private int latencyPos;
+    private int latencyCount;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder shortCircuited = new LongAdder();
+    private final LongAdder opened = new LongAdder();
+
+    /**
+     * 调用前申请放行
+     *
+     * @return false=熔断中，不要调用接口
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN && System.currentTimeMillis() >= openUntil) {
+            state = State.HALF_OPEN;
+            halfOpenPermits = halfOpenCalls;
+            halfOpenSuccesses = 0;
+            log.info("审核接口熔断期满，放行试探调用");
+        }
+        if (state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.HALF_OPEN && halfOpenPermits > 0) {
+            halfOpenPermits--;
+            return true;
+        }
+        shortCircuited.increment();
+        return false;
+    }
+
+    /**
+     * 记录一次放行后的调用结果
+     *
+     * @param success 接口给出了明确结论（合规/违规）
+     */
+    public synchronized void record(boolean success, long elapsedMillis) {
+        calls.increment();
+        latencies[latencyPos] = elapsedMillis;
+        latencyPos = (latencyPos + 1) % LATENCY_SAMPLES;
+        latencyCount = Math.min(latencyCount + 1, LATENCY_SAMPLES);
+
+        boolean failed = !success || elapsedMillis > slowCallMillis;
+        if (failed) {
+            failures.increment();
+        }
+        switch (state) {
+            case HALF_OPEN -> {
+                if (failed) {
+                    open("试探调用失败");
+                } else if (++halfOpenSuccesses >= halfOpenCalls) {
+                    state = State.CLOSED;
+                    resetWindow();
+                    log.info("审核接口恢复，熔断关闭");
+                }
+            }
+            case CLOSED -> {
+                if (window == null || window.length != windowSize) {
+                    resetWindow();
+                }
+                if (windowCount == windowSize && window[windowPos]) {
+                    windowFailures--;
+                }
+                window[windowPos] = failed;
+                windowPos = (windowPos + 1) % windowSize;
+                windowCount = Math.min(windowCount + 1, windowSize);
+                if (failed) {
+                    windowFailures++;
+                }
+                if (windowCount >= minCalls && (double) windowFailures / windowCount >= failureRateThreshold) {
+                    open("失败率 " + windowFailures + "/" + windowCount);
+                }
+            }
+            default -> {
+                // OPEN 状态下不会放行新调用，这里是打开前已在途的调用，不影响状态
+            }
+        }
+    }
+
+    public synchronized State state() {
+        return state == State.OPEN && System.currentTimeMillis() >= openUntil ? State.HALF_OPEN : state;
+    }
+
+    /**
+     * 当前运行指标（不含待重审数量）
+     */
+    public AuditStatsVO stats() {
+        long[] recent;
+        State current;
+        double failureRate;
+        synchronized (this) {
+            recent = Arrays.copyOf(latencies, latencyCount);
+            current = state();
+            failureRate = windowCount == 0 ? 0 : (double) windowFailures / windowCount;
+        }
+        Arrays.sort(recent);
+        return AuditStatsVO.builder()
+                .state(current.name())
+                .failureRate(failureRate)
+                .calls(calls.sum())
+                .failures(failures.sum())
+                .shortCircuited(shortCircuited.sum())
+                .opened(opened.sum())
+                .p50Ms(percentile(recent, 0.50))
+                .p95Ms(percentile(recent, 0.95))
+                .p99Ms(percentile(recent, 0.99))
+                .build();
+    }
+
+    /**
+     * 调用方需持有锁
+     */
+    private void open(String reason) {
+        state = State.OPEN;
+        openUntil = System.currentTimeMillis() + openSeconds * 1000;
+        opened.increment();
+        resetWindow();
+        log.warn("审核接口熔断打开 {} 秒: {}", openSeconds, reason);
+    }
+
+    private void resetWindow() {
+        window = new boolean[windowSize];
+        windowPos = 0;
+        windowCount = 0;
+        windowFailures = 0;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)];
+    }
+}
@@ -0,0 +1,141 @@
+package com.stalab.e_ink_billboard_backend.service.wx;
+
+import com.stalab.e_ink_billboard_backend.common.util.PerceptualHash;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 内容审核结果缓存，按感知哈希查找相同或近似的图片，命中时复用之前的审核结论，不再调用微信接口
+ * <p>
+ * 近似查找用多索引哈希：64 位哈希切成 4 段 16 位，每段一个 Redis Set（段值 -> 完整哈希）。
+ * 汉明距离不超过 3 的两个哈希至少有一段完全相同（抽屉原理），所以只需取 4 个桶的成员逐个比较距离，
+ * 查找开销取决于桶的大小而不是缓存的图片总数
+ */
+@Slf4j
+@Service
+public class AuditVerdictCache {
+
+    private static final String VERDICT_KEY_PREFIX = "audit:phash:verdict:";
+    private static final String INDEX_KEY_PREFIX = "audit:phash:idx:";
+    private static final int CHUNKS = 4;
+    private static final int CHUNK_BITS = Long.SIZE / CHUNKS;
+    private static final String SAFE = "1";
+    private static final String RISKY = "0";
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Value("${wechat.audit.cache.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 视为同一张图片的最大汉明距离，超过 CHUNKS - 1 时按 CHUNKS - 1 处理（多索引只保证这个范围内不漏）
+     */
+    @Value("${wechat.audit.cache.max-distance:3}")
+    private int maxDistance;
+
+    /**
+     * 审核结论有效期（小时），默认 30 天
+     */
+    @Value("${wechat.audit.cache.ttl-hours:720}")
+    private long ttlHours;
+
+    public AuditVerdictCache(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * 查找相同或近似图片的审核结论，有多个时取距离最近的
+     *
+     * @return true=合规, false=违规, null=未命中（或 Redis 不可用）
+     */
+    public Boolean lookup(long hash) {
+        if (!enabled) {
+            return null;
+        }
+        try {
+            Set<String> candidates = new LinkedHashSet<>();
+            candidates.add(toHex(hash));
+            for (int i = 0; i < CHUNKS; i++) {
+                Set<String> members = redisTemplate.opsForSet().members(indexKey(i, hash));
+                if (members != null) {
+                    candidates.addAll(members);
+                }
+            }
+            int limit = Math.min(maxDistance, CHUNKS - 1);
+            List<String> near = new ArrayList<>();
+            for (String candidate : candidates) {
+                if (PerceptualHash.distance(hash, Long.parseUnsignedLong(candidate, 16)) <= limit) {
+                    near.add(candidate);
+                }
+            }
+            near.sort(Comparator.comparingInt(c -> PerceptualHash.distance(hash, Long.parseUnsignedLong(c, 16))));
+
+            List<String> verdicts = redisTemplate.opsForValue().multiGet(near.stream().map(AuditVerdictCache::verdictKey).toList());
+            for (int i = 0; i < near.size(); i++) {
+                String verdict = verdicts == null ? null : verdicts.get(i);
+                if (verdict != null) {
+                    log.debug("审核缓存命中: hash={}, matched={}", toHex(hash), near.get(i));
+                    return SAFE.equals(verdict);
+                }
+                // 结论已过期，顺手从索引中移除
+                evictIndex(Long.parseUnsignedLong(near.get(i), 16));
+            }
+            return null;
+        } catch (Exception e) {
+            log.warn("读取审核缓存失败，改为调用审核接口: hash={}", toHex(hash), e);
+            return null;
+        }
+    }
+
+    /**
+     * 记录审核结论
+     *
+     * @param safe true=合规, false=违规
+     */
+    public void put(long hash, boolean safe) {
+        if (!enabled) {
+            return;
+        }
+        String hex = toHex(hash);
+        try {
+            redisTemplate.opsForValue().set(verdictKey(hex), safe ? SAFE : RISKY, ttlHours, TimeUnit.HOURS);
+            for (int i = 0; i < CHUNKS; i++) {
+                String key = indexKey(i, hash);
+                redisTemplate.opsForSet().add(key, hex);
+                // 索引比结论多保留一天，结论过期后的成员在查找时清理
+                redisTemplate.expire(key, ttlHours + 24, TimeUnit.HOURS);
+            }
+        } catch (Exception e) {
+            log.warn("写入审核缓存失败: hash={}", hex, e);
+        }
+    }
+
+    private void evictIndex(long hash) {
+        String hex = toHex(hash);
+        for (int i = 0; i < CHUNKS; i++) {
+            redisTemplate.opsForSet().remove(indexKey(i, hash), hex);
+        }
+    }
+
+    private static String indexKey(int chunk, long hash) {
+        long value = (hash >>> (chunk * CHUNK_BITS)) & ((1L << CHUNK_BITS) - 1);
+        return INDEX_KEY_PREFIX + chunk + ":" + Long.toHexString(value);
+    }
+
+    private static String verdictKey(String hex) {
+        return VERDICT_KEY_PREFIX + hex;
+    }
+
+    private static String toHex(long hash) {
+        return String.format("%016x", hash);
+    }
+}
@@ -0,0 +1,243 @@
+package com.stalab.e_ink_billboard_backend.service.wx;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.http.HttpRequest;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.stalab.e_ink_billboard_backend.common.exception.BusinessException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 微信小程序 AccessToken 管理
+ * <ul>
+ *   <li>读取：请求线程只读 volatile 快照，不加锁，不等待刷新</li>
+ *   <li>刷新：后台定时检查，距过期不足 refresh-ahead-seconds 时提前刷新</li>
+ *   <li>多实例共享：token 存在 Redis，只有拿到分布式锁的实例调用 cgi-bin/token，
+ *       其他实例直接读 Redis（各实例各自刷新会让彼此的 token 提前失效）</li>
+ * </ul>
+ * 只有启动后从未拿到过 token（或 token 已完全过期）时，请求线程才会同步加载一次
+ */
+@Slf4j
+@Service
+public class WeChatAccessTokenManager {
+
+    private static final String TOKEN_KEY = "wechat:access_token";
+    private static final String LOCK_KEY = "wechat:access_token:lock";
+    private static final long LOCK_SECONDS = 30;
+
+    /**
+     * 值未被其他实例改写时才删除（释放锁、清除失效 token）
+     */
+    private static final RedisScript<Long> COMPARE_AND_DELETE = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final ReentrantLock coldLoadLock = new ReentrantLock();
+    private final String lockOwner = IdUtil.fastSimpleUUID();
+
+    @Value("${wechat.appid}")
+    private String appId;
+
+    @Value("${wechat.secret}")
+    private String secret;
+
+    @Value("${wechat.api-base-url:https://api.weixin.qq.com}")
+    private String apiBaseUrl;
+
+    /**
+     * 距过期不足该时间（秒）时提前刷新
+     */
+    @Value("${wechat.token.refresh-ahead-seconds:600}")
+    private long refreshAheadSeconds;
+
+    /**
+     * 刷新请求超时时间（毫秒）
+     */
+    @Value("${wechat.token.timeout-ms:5000}")
+    private int timeoutMs;
+
+    private volatile Token current;
+
+    public WeChatAccessTokenManager(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * 获取当前 AccessToken
+     *
+     * @throws BusinessException 拿不到可用的 token
+     */
+    public String getAccessToken() {
+        Token token = current;
+        if (token != null && token.isValid()) {
+            return token.value;
+        }
+        // 冷启动或后台刷新长时间失败：同一时刻只有一个线程去加载，其余线程等它的结果
+        coldLoadLock.lock();
+        try {
+            token = current;
+            if (token == null || !token.isValid()) {
+                refresh(true);
+                token = current;
+            }
+        } finally {
+            coldLoadLock.unlock();
+        }
+        if (token == null || !token.isValid()) {
+            throw new BusinessException("系统内部错误: 获取鉴权凭证失败");
+        }
+        return token.value;
+    }
+
+    /**
+     * 微信返回 token 失效（40001/42001）时调用，丢弃该 token，后台尽快重新获取
+     */
+    public void invalidate(String accessToken) {
+        Token token = current;
+        if (token != null && token.value.equals(accessToken)) {
+            log.warn("微信 AccessToken 已失效，等待刷新");
+            current = null;
+            try {
+                redisTemplate.execute(COMPARE_AND_DELETE, List.of(TOKEN_KEY), token.serialize());
+            } catch (Exception e) {
+                log.warn("清除共享 AccessToken 失败", e);
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (StrUtil.isNotBlank(appId)) {
+            refresh(false);
+        }
+    }
+
+    /**
+     * 后台定时检查，即将过期时提前刷新
+     */
+    @Scheduled(fixedDelayString = "${wechat.token.check-interval-seconds:60}000")
+    public void refreshIfNeeded() {
+        Token token = current;
+        if (StrUtil.isBlank(appId)
+                || token != null && token.expiresAt - System.currentTimeMillis() > refreshAheadSeconds * 1000) {
+            return;
+        }
+        refresh(false);
+    }
+
+    /**
+     * 先看 Redis 中是否已有其他实例刷新好的 token；没有时抢锁调用微信接口
+     *
+     * @param waitForLock 拿不到锁时是否等待持锁实例写入 Redis（只在冷加载时等待）
+     */
+    private void refresh(boolean waitForLock) {
+        try {
+            if (adoptShared()) {
+                return;
+            }
+            long deadline = System.currentTimeMillis() + LOCK_SECONDS * 1000;
+            while (!Boolean.TRUE.equals(redisTemplate.opsForValue()
+                    .setIfAbsent(LOCK_KEY, lockOwner, LOCK_SECONDS, TimeUnit.SECONDS))) {
+                if (!waitForLock || System.currentTimeMillis() > deadline) {
+                    return;
+                }
+                Thread.sleep(200);
+                if (adoptShared()) {
+                    return;
+                }
+            }
+            try {
+                // 拿锁期间其他实例可能刚刷新完
+                if (!adoptShared()) {
+                    Token token = fetch();
+                    redisTemplate.opsForValue().set(TOKEN_KEY, token.serialize(),
+                            token.expiresAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                    current = token;
+                }
+            } finally {
+                redisTemplate.execute(COMPARE_AND_DELETE, List.of(LOCK_KEY), lockOwner);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (DataAccessException e) {
+            // Redis 不可用时退化为本实例自己刷新
+            log.error("读写共享 AccessToken 失败，改为本地刷新", e);
+            try {
+                current = fetch();
+            } catch (Exception ex) {
+                log.error("获取微信 AccessToken 失败", ex);
+            }
+        } catch (Exception e) {
+            log.error("获取微信 AccessToken 失败，等待下次刷新", e);
+        }
+    }
+
+    /**
+     * Redis 中的 token 仍有效且比本地新时采用
+     *
+     * @return 采用后不需要再刷新
+     */
+    private boolean adoptShared() {
+        String shared = redisTemplate.opsForValue().get(TOKEN_KEY);
+        if (shared == null) {
+            return false;
+        }
+        int sep = shared.indexOf(':');
+        Token token = new Token(shared.substring(sep + 1), Long.parseLong(shared.substring(0, sep)));
+        Token local = current;
+        if (token.isValid() && (local == null || token.expiresAt > local.expiresAt)) {
+            current = token;
+            log.info("采用共享的微信 AccessToken");
+        }
+        return token.expiresAt - System.currentTimeMillis() > refreshAheadSeconds * 1000;
+    }
+
+    private Token fetch() {
+        String url = apiBaseUrl + "/cgi-bin/token?grant_type=client_credential&appid=" + appId + "&secret=" + secret;
+        String response = HttpRequest.get(url).timeout(timeoutMs).execute().body();
+        JSONObject json = JSONUtil.parseObj(response);
+
+        if (json.containsKey("errcode") && json.getInt("errcode") != 0) {
+            log.error("获取微信 AccessToken 失败: {}", response);
+            throw new BusinessException("系统内部错误: 获取鉴权凭证失败");
+        }
+
+        int expiresIn = json.getInt("expires_in");
+        log.info("刷新微信 AccessToken 成功");
+        // 提前 5 分钟过期，防止临界点问题
+        return new Token(json.getStr("access_token"), System.currentTimeMillis() + (expiresIn - 300) * 1000L);
+    }
+
+    private static final class Token {
+        private final String value;
+        private final long expiresAt;
+
+        private Token(String value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        String serialize() {
+            return expiresAt + ":" + value;
+        }
+
+        boolean isValid() {
+            return StrUtil.isNotBlank(value) && System.currentTimeMillis() < expiresAt;
+        }
+    }
+}
@@ -1,135 +1,238 @@
 package com.stalab.e_ink_billboard_backend.service.wx;
 
 import cn.hutool.core.img.ImgUtil;
-import cn.hutool.core.io.FileUtil;
-import cn.hutool.core.util.StrUtil;
-import cn.hutool.http.HttpUtil;
+import cn.hutool.http.HttpRequest;
 import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
-import com.stalab.e_ink_billboard_backend.common.exception.BusinessException;
+import com.stalab.e_ink_billboard_backend.common.enums.AuditVerdict;
+import com.stalab.e_ink_billboard_backend.common.util.PerceptualHash;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
 
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.function.UnaryOperator;
 
 /**
  * 微信内容安全服务
  * 负责调用微信小程序内容安全接口进行图片/视频审核
+ * 接口调用经过 AuditCircuitBreaker：超时、报错或熔断中都返回 UNAVAILABLE，由调用方转入后台重审，不抛异常
  */
 @Slf4j
 @Service
 public class WeChatContentSecurityService {
 
-    @Value("${wechat.appid}")
-    private String appId;
-
-    @Value("${wechat.secret}")
-    private String secret;
-
-    private String accessToken;
-    private long tokenExpirationTime = 0;
-
     /**
-     * 获取 AccessToken
-     * 自动处理缓存和过期
+     * 违规内容的错误码
      */
-    private synchronized String getAccessToken() {
-        if (System.currentTimeMillis() < tokenExpirationTime && StrUtil.isNotBlank(accessToken)) {
-            return accessToken;
-        }
+    private static final int ERR_RISKY_CONTENT = 87014;
+    private static final int ERR_INVALID_TOKEN = 40001;
+    private static final int ERR_TOKEN_EXPIRED = 42001;
 
-        String url = "https://api.weixin.qq.com/cgi-bin/token?grant_type=client_credential&appid=" + appId + "&secret=" + secret;
-        String response = HttpUtil.get(url);
-        JSONObject json = JSONUtil.parseObj(response);
+    /**
+     * 微信接口地址，压测时可指向本地桩服务
+     */
+    @Value("${wechat.api-base-url:https://api.weixin.qq.com}")
+    private String apiBaseUrl;
 
-        if (json.containsKey("errcode") && json.getInt("errcode") != 0) {
-            log.error("获取微信 AccessToken 失败: {}", response);
-            throw new BusinessException("系统内部错误: 获取鉴权凭证失败");
-        }
+    /**
+     * 送审图片的最长边（像素），超过时先等比缩小再编码，减少上传体积
+     */
+    @Value("${wechat.audit.max-side:640}")
+    private int maxSide;
 
-        accessToken = json.getStr("access_token");
-        int expiresIn = json.getInt("expires_in");
-        // 提前 5 分钟过期，防止临界点问题
-        tokenExpirationTime = System.currentTimeMillis() + (expiresIn - 300) * 1000L;
+    /**
+     * 单次审核请求的读取超时（毫秒），接口变慢时尽快放弃，由熔断器统计
+     */
+    @Value("${wechat.audit.timeout-ms:5000}")
+    private int timeoutMs;
 
-        log.info("刷新微信 AccessToken 成功");
-        return accessToken;
+    /**
+     * 连接超时（毫秒）
+     */
+    @Value("${wechat.audit.connect-timeout-ms:2000}")
+    private int connectTimeoutMs;
+
+    private final ThreadPoolTaskExecutor auditExecutor;
+    private final AuditVerdictCache verdictCache;
+    private final WeChatAccessTokenManager tokenManager;
+    private final AuditCircuitBreaker circuitBreaker;
+
+    public WeChatContentSecurityService(@Qualifier("auditExecutor") ThreadPoolTaskExecutor auditExecutor,
+                                        AuditVerdictCache verdictCache,
+                                        WeChatAccessTokenManager tokenManager,
+                                        AuditCircuitBreaker circuitBreaker) {
+        this.auditExecutor = auditExecutor;
+        this.verdictCache = verdictCache;
+        this.tokenManager = tokenManager;
+        this.circuitBreaker = circuitBreaker;
     }
 
     /**
-     * 校验图片内容是否合规
-     * @param file 图片文件
-     * @return true=合规, false=违规
+     * 校验图片内容是否合规 (BufferedImage)
+     * 相同或近似的图片审核过时直接复用结论；否则在内存中编码为 JPEG 后送审，不落临时文件
+     * @param image 图片对象
+     * @return 审核结论，接口超时/报错/熔断中返回 UNAVAILABLE，不抛异常
      */
-    public boolean checkImage(MultipartFile file) {
-        try {
-            // 转换为临时文件 (使用 copy 而不是 transferTo，避免源文件被删除或流关闭)
-            File tempFile = File.createTempFile("wechat_check_", ".jpg");
-            FileUtil.writeFromStream(file.getInputStream(), tempFile);
-            boolean result = checkImage(tempFile);
-            FileUtil.del(tempFile); // 删除临时文件
-            return result;
-        } catch (IOException e) {
-            log.error("图片转换临时文件失败", e);
-            throw new BusinessException("图片审核前置处理失败");
+    public AuditVerdict checkImage(BufferedImage image) {
+        long hash = PerceptualHash.hash(image);
+        Boolean cached = verdictCache.lookup(hash);
+        if (cached != null) {
+            return cached ? AuditVerdict.APPROVED : AuditVerdict.REJECTED;
         }
+        AuditVerdict verdict = postImgSecCheck(media -> media.form("media", toJpeg(image), "frame.jpg"));
+        remember(hash, verdict);
+        return verdict;
     }
 
     /**
-     * 校验图片内容是否合规 (BufferedImage)
-     * @param image 图片对象
-     * @return true=合规, false=违规
+     * 批量校验图片（视频抽样帧），通过 auditExecutor 并发送审
+     * 任意一张违规立即返回 REJECTED，不再等待其余请求；没有违规但有图片未能审核时返回 UNAVAILABLE
+     * 返回时只能取消还在排队的请求：已发出的请求读取响应时不响应中断，
+     * 仍会占用 auditExecutor 线程直到接口返回或 timeoutMs 超时（结论照常写入审核缓存）
+     * @param images 图片列表
+     * @return 审核结论
      */
-    public boolean checkImage(BufferedImage image) {
+    public AuditVerdict checkImages(List<BufferedImage> images) {
+        if (images.size() == 1) {
+            return checkImage(images.get(0));
+        }
+        ExecutorCompletionService<AuditVerdict> completion = new ExecutorCompletionService<>(auditExecutor.getThreadPoolExecutor());
+        List<Future<AuditVerdict>> futures = new ArrayList<>(images.size());
+        for (BufferedImage image : images) {
+            futures.add(completion.submit(() -> checkImage(image)));
+        }
+        AuditVerdict result = AuditVerdict.APPROVED;
         try {
-            // 转换为临时文件
-            File tempFile = File.createTempFile("wechat_check_", ".jpg");
-            ImgUtil.write(image, tempFile);
-            boolean result = checkImage(tempFile);
-            FileUtil.del(tempFile);
-            return result;
-        } catch (IOException e) {
-            log.error("图片对象转换文件失败", e);
-            throw new BusinessException("图片审核前置处理失败");
+            for (int i = 0; i < futures.size(); i++) {
+                AuditVerdict verdict;
+                try {
+                    verdict = completion.take().get();
+                } catch (ExecutionException e) {
+                    log.error("抽样帧审核失败", e.getCause());
+                    verdict = AuditVerdict.UNAVAILABLE;
+                }
+                if (verdict == AuditVerdict.REJECTED) {
+                    return AuditVerdict.REJECTED;
+                }
+                if (verdict == AuditVerdict.UNAVAILABLE) {
+                    result = AuditVerdict.UNAVAILABLE;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return AuditVerdict.UNAVAILABLE;
+        } finally {
+            // 排队中的请求不再发送；已发出的请求无法中断，由读超时兜底
+            futures.forEach(f -> f.cancel(false));
         }
+        return result;
     }
 
     /**
      * 核心校验逻辑
      * 调用 security.imgSecCheck 接口
+     * 上传文件已缓冲为文件时直接传入，避免再复制一份临时文件
+     * 相同或近似的图片审核过时直接复用结论
+     * @param file 图片文件
+     * @return 审核结论，接口超时/报错/熔断中返回 UNAVAILABLE，不抛异常
      */
-    private boolean checkImage(File file) {
-        String token = getAccessToken();
-        String url = "https://api.weixin.qq.com/wxa/img_sec_check?access_token=" + token;
-
-        // 构建请求
-        Map<String, Object> paramMap = new HashMap<>();
-        paramMap.put("media", file);
+    public AuditVerdict checkImage(File file) {
+        Long hash = null;
+        try {
+            hash = PerceptualHash.hash(file);
+            Boolean cached = verdictCache.lookup(hash);
+            if (cached != null) {
+                return cached ? AuditVerdict.APPROVED : AuditVerdict.REJECTED;
+            }
+        } catch (IOException | RuntimeException e) {
+            // 本地解码不了的图片照常送审，由微信判断
+            log.warn("计算图片感知哈希失败，跳过审核缓存: {}", file.getName(), e);
+        }
+        AuditVerdict verdict = postImgSecCheck(media -> media.form("media", file));
+        if (hash != null) {
+            remember(hash, verdict);
+        }
+        return verdict;
+    }
 
+    /**
+     * 熔断器 CLOSED 时调用接口，OPEN 时直接返回 UNAVAILABLE，不占用线程等待
+     */
+    private AuditVerdict postImgSecCheck(UnaryOperator<HttpRequest> withMedia) {
+        if (!circuitBreaker.tryAcquire()) {
+            return AuditVerdict.UNAVAILABLE;
+        }
+        long start = System.currentTimeMillis();
+        AuditVerdict verdict = AuditVerdict.UNAVAILABLE;
         try {
-            String response = HttpUtil.post(url, paramMap);
+            String token = tokenManager.getAccessToken();
+            String response = withMedia.apply(HttpRequest.post(apiBaseUrl + "/wxa/img_sec_check?access_token=" + token))
+                    .setConnectionTimeout(connectTimeoutMs)
+                    .setReadTimeout(timeoutMs)
+                    .execute().body();
             JSONObject json = JSONUtil.parseObj(response);
 
             Integer errCode = json.getInt("errcode");
             if (errCode == 0) {
-                return true;
-            } else if (errCode == 87014) {
+                verdict = AuditVerdict.APPROVED;
+            } else if (errCode == ERR_RISKY_CONTENT) {
                 log.warn("图片内容违规: {}", json.getStr("errmsg"));
-                return false;
+                verdict = AuditVerdict.REJECTED;
             } else {
+                if (errCode == ERR_INVALID_TOKEN || errCode == ERR_TOKEN_EXPIRED) {
+                    tokenManager.invalidate(token);
+                }
                 log.error("微信内容安全接口调用异常: {}", response);
-                // 其他错误视为审核不通过，或者可以抛出异常
-                throw new BusinessException("内容审核服务异常: " + json.getStr("errmsg"));
             }
         } catch (Exception e) {
             log.error("调用微信审核接口失败", e);
-            throw new BusinessException("内容审核网络异常");
+        } finally {
+            circuitBreaker.record(verdict != AuditVerdict.UNAVAILABLE, System.currentTimeMillis() - start);
+        }
+        return verdict;
+    }
+
+    private void remember(long hash, AuditVerdict verdict) {
+        if (verdict != AuditVerdict.UNAVAILABLE) {
+            verdictCache.put(hash, verdict == AuditVerdict.APPROVED);
+        }
+    }
+
+    /**
+     * 最长边超过 maxSide 时等比缩小，再编码为 JPEG 字节
+     */
+    private byte[] toJpeg(BufferedImage image) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        BufferedImage target = image;
+        if (Math.max(w, h) > maxSide) {
+            double scale = (double) maxSide / Math.max(w, h);
+            int tw = Math.max(1, (int) Math.round(w * scale));
+            int th = Math.max(1, (int) Math.round(h * scale));
+            target = new BufferedImage(tw, th, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = target.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.drawImage(image, 0, 0, tw, th, null);
+            } finally {
+                g.dispose();
+            }
         }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+        ImgUtil.write(target, ImgUtil.IMAGE_TYPE_JPG, out);
+        return out.toByteArray();
     }
 }
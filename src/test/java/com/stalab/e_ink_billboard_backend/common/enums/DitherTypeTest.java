@@ -0,0 +1,46 @@
+package com.stalab.e_ink_billboard_backend.common.enums;
+
+import com.stalab.e_ink_billboard_backend.common.exception.BusinessException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DitherTypeTest {
+
+    @Test
+    void blankMeansDefault() {
+        assertNull(DitherType.parse(null));
+        assertNull(DitherType.parse(""));
+        assertNull(DitherType.parse("  "));
+    }
+
+    @Test
+    void parsesIgnoringCaseAndWhitespace() {
+        assertEquals(DitherType.BAYER, DitherType.parse("bayer"));
+        assertEquals(DitherType.BLUE_NOISE, DitherType.parse(" Blue_Noise "));
+        assertEquals(DitherType.FLOYD_STEINBERG, DitherType.parse("FLOYD_STEINBERG"));
+    }
+
+    @Test
+    void parsingDoesNotDependOnDefaultLocale() {
+        Locale previous = Locale.getDefault();
+        try {
+            // 土耳其语环境下 "i".toUpperCase() 是带点的 İ
+            Locale.setDefault(Locale.forLanguageTag("tr-TR"));
+            assertEquals(DitherType.FLOYD_STEINBERG, DitherType.parse("floyd_steinberg"));
+            assertEquals(DitherType.BLUE_NOISE, DitherType.parse("blue_noise"));
+        } finally {
+            Locale.setDefault(previous);
+        }
+    }
+
+    @Test
+    void unknownValueIsBadRequest() {
+        BusinessException e = assertThrows(BusinessException.class, () -> DitherType.parse("jarvis"));
+        assertEquals(400, e.getCode());
+    }
+}
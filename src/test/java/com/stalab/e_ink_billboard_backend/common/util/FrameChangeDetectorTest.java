@@ -0,0 +1,85 @@
+package com.stalab.e_ink_billboard_backend.common.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrameChangeDetectorTest {
+
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final int THRESHOLD = 8;
+
+    @Test
+    void firstFrameIsAlwaysRendered() {
+        assertTrue(new FrameChangeDetector(THRESHOLD).changed(gray(128), WIDTH, HEIGHT));
+    }
+
+    @Test
+    void identicalAndNoisyFramesAreSkipped() {
+        FrameChangeDetector detector = new FrameChangeDetector(THRESHOLD);
+        int[] frame = scene(0);
+        detector.changed(frame, WIDTH, HEIGHT);
+
+        assertFalse(detector.changed(frame.clone(), WIDTH, HEIGHT));
+        // ±3 的编码噪声
+        Random random = new Random(1);
+        int[] noisy = frame.clone();
+        for (int i = 0; i < noisy.length; i++) {
+            int v = Math.max(0, Math.min(255, (noisy[i] & 0xFF) + random.nextInt(7) - 3));
+            noisy[i] = (v << 16) | (v << 8) | v;
+        }
+        assertFalse(detector.changed(noisy, WIDTH, HEIGHT));
+    }
+
+    @Test
+    void smallMovingObjectTriggersRefresh() {
+        FrameChangeDetector detector = new FrameChangeDetector(THRESHOLD);
+        detector.changed(scene(0), WIDTH, HEIGHT);
+
+        // 40x40 的方块只占全帧 0.5%，全帧平均几乎不变，但所在网格变化明显
+        assertTrue(detector.changed(scene(200), WIDTH, HEIGHT));
+    }
+
+    @Test
+    void slowDriftAccumulatesAgainstLastRenderedFrame() {
+        FrameChangeDetector detector = new FrameChangeDetector(THRESHOLD);
+        assertTrue(detector.changed(gray(100), WIDTH, HEIGHT));
+        // 每帧只亮 1，与上一帧相比永远低于阈值，但与上次渲染的帧相比会累积到阈值
+        for (int step = 1; step < THRESHOLD; step++) {
+            assertFalse(detector.changed(gray(100 + step), WIDTH, HEIGHT), "step=" + step);
+        }
+        assertTrue(detector.changed(gray(100 + THRESHOLD), WIDTH, HEIGHT));
+        // 参照帧已更新
+        assertFalse(detector.changed(gray(100 + THRESHOLD + 1), WIDTH, HEIGHT));
+    }
+
+    @Test
+    void nonPositiveThresholdRendersEveryFrame() {
+        FrameChangeDetector detector = new FrameChangeDetector(0);
+        int[] frame = gray(50);
+        assertTrue(detector.changed(frame, WIDTH, HEIGHT));
+        assertTrue(detector.changed(frame, WIDTH, HEIGHT));
+    }
+
+    private static int[] gray(int value) {
+        int[] rgb = new int[WIDTH * HEIGHT];
+        Arrays.fill(rgb, (value << 16) | (value << 8) | value);
+        return rgb;
+    }
+
+    /**
+     * 灰色背景上一个 40x40 的黑色方块，方块左上角在 (x, 100)
+     */
+    private static int[] scene(int x) {
+        int[] rgb = gray(160);
+        for (int y = 100; y < 140; y++) {
+            Arrays.fill(rgb, y * WIDTH + x, y * WIDTH + x + 40, 0);
+        }
+        return rgb;
+    }
+}
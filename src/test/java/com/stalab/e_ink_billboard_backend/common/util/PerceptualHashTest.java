@@ -0,0 +1,179 @@
+package com.stalab.e_ink_billboard_backend.common.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PerceptualHashTest {
+
+    /**
+     * 与 wechat.audit.cache.max-distance 默认值一致
+     */
+    private static final int NEAR = 3;
+
+    @TempDir
+    File dir;
+
+    @Test
+    void distanceCountsDifferingBits() {
+        assertEquals(0, PerceptualHash.distance(0x1234L, 0x1234L));
+        assertEquals(1, PerceptualHash.distance(0b1000L, 0L));
+        assertEquals(64, PerceptualHash.distance(0L, -1L));
+    }
+
+    @Test
+    void nearDuplicatesStayWithinThreshold() throws IOException {
+        BufferedImage original = poster(800, 600, new Color(30, 90, 200), new Color(240, 200, 40));
+        long hash = PerceptualHash.hash(original);
+
+        assertEquals(0, PerceptualHash.distance(hash, PerceptualHash.hash(copy(original))));
+        assertNear(hash, PerceptualHash.hash(scale(original, 400, 300)), "缩小一半");
+        assertNear(hash, PerceptualHash.hash(scale(original, 1024, 768)), "放大");
+        assertNear(hash, PerceptualHash.hash(jpeg(original, 0.6f)), "JPEG 重新压缩");
+        assertNear(hash, PerceptualHash.hash(brighten(original, 12)), "整体调亮");
+    }
+
+    @Test
+    void differentImagesAreFarApart() {
+        long a = PerceptualHash.hash(poster(800, 600, new Color(30, 90, 200), new Color(240, 200, 40)));
+        long b = PerceptualHash.hash(checkerboard(800, 600));
+        long c = PerceptualHash.hash(verticalGradient(800, 600));
+
+        assertTrue(PerceptualHash.distance(a, b) > 10, "distance=" + PerceptualHash.distance(a, b));
+        assertTrue(PerceptualHash.distance(a, c) > 10, "distance=" + PerceptualHash.distance(a, c));
+        assertTrue(PerceptualHash.distance(b, c) > 10, "distance=" + PerceptualHash.distance(b, c));
+    }
+
+    @Test
+    void fileHashMatchesDecodedImage() throws IOException {
+        BufferedImage original = poster(800, 600, new Color(30, 90, 200), new Color(240, 200, 40));
+        File png = new File(dir, "poster.png");
+        ImageIO.write(original, "png", png);
+        assertEquals(PerceptualHash.hash(original), PerceptualHash.hash(png));
+
+        // 大图按比例降采样解码，结果仍然近似
+        BufferedImage large = scale(original, 3200, 2400);
+        File largePng = new File(dir, "large.png");
+        ImageIO.write(large, "png", largePng);
+        assertNear(PerceptualHash.hash(original), PerceptualHash.hash(largePng), "降采样解码");
+    }
+
+    @Test
+    void nonImageFileIsRejected() throws IOException {
+        File text = new File(dir, "a.png");
+        Files.writeString(text.toPath(), "not an image");
+        assertThrows(IOException.class, () -> PerceptualHash.hash(text));
+    }
+
+    private static void assertNear(long expected, long actual, String message) {
+        int distance = PerceptualHash.distance(expected, actual);
+        assertTrue(distance <= NEAR, message + ": distance=" + distance);
+    }
+
+    /**
+     * 背景渐变 + 几个色块和圆，接近海报类内容
+     */
+    private static BufferedImage poster(int width, int height, Color background, Color accent) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        for (int y = 0; y < height; y++) {
+            float t = (float) y / height;
+            g.setColor(new Color(
+                    (int) (background.getRed() * (1 - t) + 255 * t),
+                    (int) (background.getGreen() * (1 - t) + 255 * t),
+                    (int) (background.getBlue() * (1 - t) + 255 * t)));
+            g.drawLine(0, y, width, y);
+        }
+        g.setColor(accent);
+        g.fillOval(width / 10, height / 8, width / 3, width / 3);
+        g.setColor(Color.BLACK);
+        g.fillRect(width / 2, height / 2, width / 3, height / 6);
+        g.setColor(Color.WHITE);
+        g.fillRect(width / 2 + width / 20, height / 4, width / 4, height / 12);
+        g.dispose();
+        return image;
+    }
+
+    private static BufferedImage checkerboard(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int cell = width / 6;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, ((x / cell) + (y / cell)) % 2 == 0 ? 0x000000 : 0xFFFFFF);
+            }
+        }
+        return image;
+    }
+
+    private static BufferedImage verticalGradient(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int v = x * 255 / width;
+                image.setRGB(x, y, (v << 16) | (v << 8) | v);
+            }
+        }
+        return image;
+    }
+
+    private static BufferedImage copy(BufferedImage image) {
+        return scale(image, image.getWidth(), image.getHeight());
+    }
+
+    private static BufferedImage scale(BufferedImage image, int width, int height) {
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(image, 0, 0, width, height, null);
+        g.dispose();
+        return scaled;
+    }
+
+    private static BufferedImage brighten(BufferedImage image, int delta) {
+        BufferedImage result = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int rgb = image.getRGB(x, y);
+                int r = Math.min(255, ((rgb >> 16) & 0xFF) + delta);
+                int g = Math.min(255, ((rgb >> 8) & 0xFF) + delta);
+                int b = Math.min(255, (rgb & 0xFF) + delta);
+                result.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+        return result;
+    }
+
+    private static BufferedImage jpeg(BufferedImage image, float quality) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+}
@@ -0,0 +1,238 @@
+package com.stalab.e_ink_billboard_backend.common.util;
+
+import com.stalab.e_ink_billboard_backend.common.enums.DitherType;
+import com.stalab.e_ink_billboard_backend.common.enums.PanelPalette;
+import com.stalab.e_ink_billboard_backend.common.util.dither.AtkinsonDither;
+import com.stalab.e_ink_billboard_backend.common.util.dither.BlueNoiseDither;
+import com.stalab.e_ink_billboard_backend.common.util.dither.FloydSteinbergDither;
+import com.stalab.e_ink_billboard_backend.common.util.dither.OrderedBayerDither;
+import com.stalab.e_ink_billboard_backend.common.util.dither.PaletteQuantizer;
+import com.stalab.e_ink_billboard_backend.common.util.evc.EvcReader;
+import com.stalab.e_ink_billboard_backend.model.dto.PanelProfile;
+import com.stalab.e_ink_billboard_backend.model.dto.VideoProcessResult;
+import org.bytedeco.ffmpeg.global.avcodec;
+import org.bytedeco.ffmpeg.global.avutil;
+import org.bytedeco.javacv.FFmpegFrameRecorder;
+import org.bytedeco.javacv.Frame;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class VideoUtilsTest {
+
+    // 默认面板尺寸，测试视频与面板同尺寸，FFmpeg 不做缩放
+    private static final int WIDTH = 400;
+    private static final int HEIGHT = 300;
+    private static final int ROW_BYTES = WIDTH / 8;
+    private static final int FRAME_BYTES = ROW_BYTES * HEIGHT;
+
+    // 10fps 的测试视频按 5fps 采样，每两帧取一帧
+    private static final int SOURCE_FPS = 10;
+    private static final int SAMPLED_FRAMES = 30;
+
+    // 白色竖条宽 16 像素（2 个字节），按位置区分每一帧
+    private static final int BAR_WIDTH = 16;
+
+    @TempDir
+    Path tempDir;
+
+    private ForkJoinPool pool;
+    private ThreadPoolTaskExecutor frameExecutor;
+    private ImageUtils imageUtils;
+    private VideoUtils videoUtils;
+
+    @BeforeEach
+    void setUp() {
+        pool = new ForkJoinPool(2);
+        ImageProcessingEngine engine = new ImageProcessingEngine(pool, 2);
+        ImageUtils utils = new ImageUtils(List.of(new FloydSteinbergDither(), new AtkinsonDither(),
+                new OrderedBayerDither(), new BlueNoiseDither()), new PaletteQuantizer(), engine);
+        ReflectionTestUtils.setField(utils, "defaultImageDither", DitherType.FLOYD_STEINBERG);
+        ReflectionTestUtils.setField(utils, "defaultPanelWidth", WIDTH);
+        ReflectionTestUtils.setField(utils, "defaultPanelHeight", HEIGHT);
+        ReflectionTestUtils.setField(utils, "defaultPanelPalette", PanelPalette.BW);
+        ReflectionTestUtils.setField(utils, "defaultPanelRotation", 0);
+        // 统计实际渲染的帧数
+        imageUtils = spy(utils);
+
+        // 4 个工作线程 -> 在途窗口 8 帧，测试视频的采样帧数远大于窗口
+        frameExecutor = new ThreadPoolTaskExecutor();
+        frameExecutor.setCorePoolSize(4);
+        frameExecutor.setMaxPoolSize(4);
+        frameExecutor.setQueueCapacity(16);
+        frameExecutor.setThreadNamePrefix("Video-Frame-Test-");
+        frameExecutor.initialize();
+
+        videoUtils = new VideoUtils(imageUtils, frameExecutor);
+        ReflectionTestUtils.setField(videoUtils, "defaultVideoDither", DitherType.BAYER);
+        ReflectionTestUtils.setField(videoUtils, "evcKeyInterval", 50);
+        ReflectionTestUtils.setField(videoUtils, "sceneChangeThreshold", 8);
+        ReflectionTestUtils.setField(videoUtils, "decodeThreads", 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        frameExecutor.shutdown();
+        pool.shutdown();
+    }
+
+    @Test
+    void framesAreWrittenInVideoOrder() throws Exception {
+        File video = recordVideo();
+        ByteArrayOutputStream bin = new ByteArrayOutputStream();
+
+        VideoProcessResult result = videoUtils.processVideo(video, (DitherType) null, bin);
+
+        assertEquals(SAMPLED_FRAMES, result.getFrameCount());
+        assertEquals(SAMPLED_FRAMES * FRAME_BYTES, bin.size());
+        byte[] out = bin.toByteArray();
+        for (int i = 0; i < SAMPLED_FRAMES; i++) {
+            assertArrayEquals(expectedFrame(barPosition(i)),
+                    Arrays.copyOfRange(out, i * FRAME_BYTES, (i + 1) * FRAME_BYTES), "第 " + i + " 帧顺序或内容错误");
+        }
+    }
+
+    @Test
+    void staticFramesAreRenderedOnce() throws Exception {
+        ByteArrayOutputStream bin = new ByteArrayOutputStream();
+
+        VideoProcessResult result = videoUtils.processVideo(recordVideo(), DitherType.BLUE_NOISE, bin);
+
+        // 第 9-14 个采样帧画面相同，只渲染一次，其余 5 帧重复写出第 9 帧
+        verify(imageUtils, times(SAMPLED_FRAMES - 5)).toPanelIndices(any(int[].class), any(PanelProfile.class));
+        assertEquals(SAMPLED_FRAMES, result.getFrameCount());
+        byte[] out = bin.toByteArray();
+        byte[] held = Arrays.copyOfRange(out, 9 * FRAME_BYTES, 10 * FRAME_BYTES);
+        for (int i = 10; i < 15; i++) {
+            assertArrayEquals(held, Arrays.copyOfRange(out, i * FRAME_BYTES, (i + 1) * FRAME_BYTES));
+        }
+        assertEquals(SAMPLED_FRAMES * 2 / SOURCE_FPS, result.getDuration());
+
+        // 审核采样帧间隔至少 10 个处理帧，最多 5 张
+        assertEquals(3, result.getSampleFrames().size());
+        assertEquals(WIDTH, result.getSampleFrames().get(0).getWidth());
+    }
+
+    @Test
+    void evcDecodesBackToTheBinFrames() throws Exception {
+        ByteArrayOutputStream bin = new ByteArrayOutputStream();
+        videoUtils.processVideo(recordVideo(), DitherType.BAYER, bin);
+        byte[] raw = bin.toByteArray();
+
+        PanelProfile profile = PanelProfile.builder()
+                .width(WIDTH).height(HEIGHT).bitDepth(1).palette(PanelPalette.BW).rotation(0)
+                .ditherType(DitherType.BAYER).build();
+        File evc = tempDir.resolve("video.evc").toFile();
+        assertEquals(SAMPLED_FRAMES, videoUtils.encodeEvc(new ByteArrayInputStream(raw), profile, evc));
+
+        try (EvcReader reader = new EvcReader(new FileInputStream(evc))) {
+            for (int i = 0; i < SAMPLED_FRAMES; i++) {
+                assertArrayEquals(Arrays.copyOfRange(raw, i * FRAME_BYTES, (i + 1) * FRAME_BYTES), reader.nextFrame());
+            }
+        }
+        assertTrue(evc.length() < raw.length / 4, "静态竖条画面应大幅压缩: " + evc.length());
+    }
+
+    @Test
+    void sampleFramesSeeksAcrossTheVideo() throws Exception {
+        List<BufferedImage> samples = videoUtils.sampleFrames(recordVideo(), 4);
+
+        assertEquals(4, samples.size());
+        for (BufferedImage sample : samples) {
+            assertEquals(WIDTH, sample.getWidth());
+            assertEquals(HEIGHT, sample.getHeight());
+        }
+    }
+
+    @Test
+    void unreadableVideoFails() throws Exception {
+        File broken = tempDir.resolve("broken.mp4").toFile();
+        Files.write(broken.toPath(), new byte[1024]);
+
+        assertThrows(Exception.class,
+                () -> videoUtils.processVideo(broken, DitherType.BAYER, OutputStream.nullOutputStream()));
+    }
+
+    /**
+     * 第 i 个采样帧的竖条位置（以竖条宽度为单位），第 9-14 帧画面静止
+     */
+    private static int barPosition(int i) {
+        if (i < 10) {
+            return i;
+        }
+        return i < 15 ? 9 : i - 5;
+    }
+
+    /**
+     * 录制无损测试视频（rawvideo BGR24），每个采样帧连续两帧画面相同
+     */
+    private File recordVideo() throws Exception {
+        File file = tempDir.resolve("video.avi").toFile();
+        try (FFmpegFrameRecorder recorder = new FFmpegFrameRecorder(file, WIDTH, HEIGHT, 0)) {
+            recorder.setFormat("avi");
+            recorder.setVideoCodec(avcodec.AV_CODEC_ID_RAWVIDEO);
+            recorder.setPixelFormat(avutil.AV_PIX_FMT_BGR24);
+            recorder.setFrameRate(SOURCE_FPS);
+            recorder.start();
+            Frame frame = new Frame(WIDTH, HEIGHT, Frame.DEPTH_UBYTE, 3);
+            for (int i = 0; i < SAMPLED_FRAMES; i++) {
+                drawBar(frame, barPosition(i));
+                recorder.record(frame, avutil.AV_PIX_FMT_BGR24);
+                recorder.record(frame, avutil.AV_PIX_FMT_BGR24);
+            }
+            recorder.stop();
+        }
+        return file;
+    }
+
+    private static void drawBar(Frame frame, int position) {
+        ByteBuffer buffer = (ByteBuffer) frame.image[0];
+        int stride = frame.imageStride;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                byte value = x / BAR_WIDTH == position ? (byte) 0xFF : 0;
+                int p = y * stride + x * 3;
+                buffer.put(p, value).put(p + 1, value).put(p + 2, value);
+            }
+        }
+    }
+
+    /**
+     * 黑底白竖条：黑 -> 0，白 -> 1，纯黑纯白不受抖动影响
+     */
+    private static byte[] expectedFrame(int position) {
+        byte[] frame = new byte[FRAME_BYTES];
+        int firstByte = position * BAR_WIDTH / 8;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int b = firstByte; b < firstByte + BAR_WIDTH / 8; b++) {
+                frame[y * ROW_BYTES + b] = (byte) 0xFF;
+            }
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,153 @@
+package com.stalab.e_ink_billboard_backend.common.util.dither;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DitherAlgorithmTest {
+
+    // 默认面板尺寸
+    private static final int WIDTH = 400;
+    private static final int HEIGHT = 300;
+
+    private final List<DitherAlgorithm> algorithms = List.of(
+            new FloydSteinbergDither(), new AtkinsonDither(), new OrderedBayerDither(), new BlueNoiseDither());
+
+    @Test
+    void outputIsPureBlackAndWhite() {
+        int[] gradient = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < gradient.length; i++) {
+            gradient[i] = (i % WIDTH) * 255 / (WIDTH - 1);
+        }
+        for (DitherAlgorithm algorithm : algorithms) {
+            int[] pixels = gradient.clone();
+            algorithm.dither(pixels, WIDTH, HEIGHT);
+            assertTrue(Arrays.stream(pixels).allMatch(p -> p == 0 || p == 255), algorithm.type().name());
+        }
+    }
+
+    @Test
+    void blackAndWhiteArePreserved() {
+        for (DitherAlgorithm algorithm : algorithms) {
+            int[] black = new int[64 * 64];
+            algorithm.dither(black, 64, 64);
+            assertTrue(Arrays.stream(black).allMatch(p -> p == 0), algorithm.type() + " 黑");
+
+            int[] white = new int[64 * 64];
+            Arrays.fill(white, 255);
+            algorithm.dither(white, 64, 64);
+            assertTrue(Arrays.stream(white).allMatch(p -> p == 255), algorithm.type() + " 白");
+        }
+    }
+
+    @Test
+    void flatGreyKeepsItsAverageBrightness() {
+        int[] levels = {32, 64, 128, 192, 224};
+        for (DitherAlgorithm algorithm : algorithms) {
+            double previous = -1;
+            for (int level : levels) {
+                double white = whiteRatio(algorithm, level);
+                assertTrue(white > previous, algorithm.type() + " 亮度应随灰度单调增加, level=" + level);
+                previous = white;
+                // Atkinson 丢弃 1/4 误差，中间调以外会被推向纯黑/纯白（对比度高的来源），只检查 50% 灰
+                if (!(algorithm instanceof AtkinsonDither)) {
+                    assertEquals(level / 255.0, white, 0.03, algorithm.type() + " level=" + level);
+                }
+            }
+        }
+        assertEquals(0.5, whiteRatio(new AtkinsonDither(), 128), 0.05);
+    }
+
+    @Test
+    void orderedDitherComparesEachPixelWithItsThreshold() {
+        Random random = new Random(3);
+        int[] input = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < input.length; i++) {
+            input[i] = random.nextInt(256);
+        }
+        for (OrderedDither algorithm : List.of(new OrderedBayerDither(), new BlueNoiseDither())) {
+            int[] pixels = input.clone();
+            algorithm.dither(pixels, WIDTH, HEIGHT);
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    int expected = input[y * WIDTH + x] < algorithm.threshold(x, y) ? 0 : 255;
+                    assertEquals(expected, pixels[y * WIDTH + x], algorithm.type() + " (" + x + "," + y + ")");
+                }
+            }
+        }
+    }
+
+    @Test
+    void blueNoiseThresholdsAreEvenlyDistributed() {
+        BlueNoiseDither dither = new BlueNoiseDither();
+        int[] histogram = new int[256];
+        for (int y = 0; y < 64; y++) {
+            for (int x = 0; x < 64; x++) {
+                histogram[dither.threshold(x, y)]++;
+            }
+        }
+        // 阈值为 0 时纯黑像素会被点亮
+        assertEquals(0, histogram[0]);
+        // 4096 个排名均匀映射到 1-255，每个阈值 16 或 17 次
+        for (int t = 1; t < 256; t++) {
+            assertTrue(histogram[t] == 16 || histogram[t] == 17, "threshold " + t + ": " + histogram[t]);
+        }
+        // 64x64 平铺
+        assertEquals(dither.threshold(5, 7), dither.threshold(5 + 64, 7 + 128));
+    }
+
+    @Test
+    void diffusionKernelsConserveTheDocumentedShare() {
+        assertEquals(1.0, kernelWeight(new FloydSteinbergDither()), 1e-6);
+        // Atkinson 只扩散 6/8
+        assertEquals(0.75, kernelWeight(new AtkinsonDither()), 1e-6);
+    }
+
+    /**
+     * 单帧灰度抖动耗时（面板尺寸），结果只输出不断言
+     */
+    @Test
+    @Tag("benchmark")
+    void perFrameDitherTiming() {
+        Random random = new Random(11);
+        int[] frame = new int[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                frame[y * WIDTH + x] = Math.max(0, Math.min(255, (x + y) * 255 / (WIDTH + HEIGHT) + random.nextInt(17) - 8));
+            }
+        }
+        for (DitherAlgorithm algorithm : algorithms) {
+            for (int i = 0; i < 50; i++) {
+                algorithm.dither(frame.clone(), WIDTH, HEIGHT);
+            }
+            int rounds = 200;
+            long start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                algorithm.dither(frame.clone(), WIDTH, HEIGHT);
+            }
+            System.out.printf("dither %dx%d %-15s %.3f ms/frame%n",
+                    WIDTH, HEIGHT, algorithm.type(), (System.nanoTime() - start) / 1e6 / rounds);
+        }
+    }
+
+    private static double whiteRatio(DitherAlgorithm algorithm, int level) {
+        int[] pixels = new int[128 * 128];
+        Arrays.fill(pixels, level);
+        algorithm.dither(pixels, 128, 128);
+        return Arrays.stream(pixels).filter(p -> p == 255).count() / (double) pixels.length;
+    }
+
+    private static double kernelWeight(ErrorDiffusionDither dither) {
+        double sum = 0;
+        for (float[] k : dither.diffusionKernel()) {
+            sum += k[2];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,136 @@
+package com.stalab.e_ink_billboard_backend.common.util.dither;
+
+import com.stalab.e_ink_billboard_backend.common.enums.DitherType;
+import com.stalab.e_ink_billboard_backend.common.enums.PanelPalette;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PaletteQuantizerTest {
+
+    // 默认面板尺寸
+    private static final int WIDTH = 400;
+    private static final int HEIGHT = 300;
+
+    private final PaletteQuantizer quantizer = new PaletteQuantizer();
+
+    private final List<DitherAlgorithm> algorithms = List.of(
+            new FloydSteinbergDither(), new AtkinsonDither(), new OrderedBayerDither(), new BlueNoiseDither());
+
+    @Test
+    void paletteColorsMapToThemselves() {
+        PanelPalette palette = PanelPalette.ACEP_7;
+        for (DitherAlgorithm algorithm : algorithms) {
+            for (int c = 0; c < palette.size(); c++) {
+                int[] rgb = new int[16 * 16];
+                Arrays.fill(rgb, palette.getColor(c));
+                int[] indices = quantizer.quantize(rgb, 16, 16, palette, algorithm);
+                for (int index : indices) {
+                    assertEquals(c, index, algorithm.type() + " 把调色板颜色 " + c + " 量化成了 " + index);
+                }
+            }
+        }
+    }
+
+    @Test
+    void midGreyDithersToRoughlyHalfWhite() {
+        int[] rgb = new int[64 * 64];
+        // L* = 50 的灰
+        Arrays.fill(rgb, 0x777777);
+        for (DitherAlgorithm algorithm : algorithms) {
+            int[] indices = quantizer.quantize(rgb, 64, 64, PanelPalette.BW, algorithm);
+            long white = Arrays.stream(indices).filter(i -> i == PanelPalette.WHITE).count();
+            double ratio = (double) white / indices.length;
+            assertTrue(ratio > 0.35 && ratio < 0.65, algorithm.type() + " 白点比例 " + ratio);
+        }
+    }
+
+    @Test
+    void orderedDitherIsStableAcrossFrames() {
+        int[] frame = randomFrame(new Random(1));
+        int[] changed = frame.clone();
+        // 只改右下角一个像素，有序抖动不应影响其他任何像素
+        changed[changed.length - 1] = 0xFFFFFF - changed[changed.length - 1];
+        for (OrderedDither algorithm : List.of(new OrderedBayerDither(), new BlueNoiseDither())) {
+            int[] a = quantizer.quantize(frame, WIDTH, HEIGHT, PanelPalette.BWR, algorithm);
+            int[] b = quantizer.quantize(changed, WIDTH, HEIGHT, PanelPalette.BWR, algorithm);
+            a[a.length - 1] = 0;
+            b[b.length - 1] = 0;
+            assertArrayEquals(a, b, algorithm.type().name());
+        }
+    }
+
+    @Test
+    void algorithmWithoutQuantizationParametersIsRejected() {
+        DitherAlgorithm plain = new DitherAlgorithm() {
+            @Override
+            public DitherType type() {
+                return DitherType.FLOYD_STEINBERG;
+            }
+
+            @Override
+            public void dither(int[] pixels, int width, int height) {
+            }
+        };
+        assertThrows(IllegalArgumentException.class,
+                () -> quantizer.quantize(new int[4], 2, 2, PanelPalette.BWR, plain));
+    }
+
+    /**
+     * 单帧量化耗时（面板尺寸，每种算法 x 调色板预热后取平均），结果只输出不断言
+     */
+    @Test
+    @Tag("benchmark")
+    void perFrameQuantizeTiming() {
+        Random random = new Random(42);
+        int[][] frames = new int[8][];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = randomFrame(random);
+        }
+        int warmup = 30;
+        int rounds = 60;
+        for (PanelPalette palette : PanelPalette.values()) {
+            for (DitherAlgorithm algorithm : algorithms) {
+                for (int i = 0; i < warmup; i++) {
+                    quantizer.quantize(frames[i % frames.length], WIDTH, HEIGHT, palette, algorithm);
+                }
+                long start = System.nanoTime();
+                for (int i = 0; i < rounds; i++) {
+                    quantizer.quantize(frames[i % frames.length], WIDTH, HEIGHT, palette, algorithm);
+                }
+                double ms = (System.nanoTime() - start) / 1e6 / rounds;
+                System.out.printf("quantize %dx%d %-7s %-15s %.2f ms/frame%n",
+                        WIDTH, HEIGHT, palette, algorithm.type(), ms);
+            }
+        }
+    }
+
+    /**
+     * 平滑渐变叠加噪声，接近真实画面（纯随机像素会让误差扩散退化）
+     */
+    private static int[] randomFrame(Random random) {
+        int[] rgb = new int[WIDTH * HEIGHT];
+        int phase = random.nextInt(256);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int r = clamp((x * 255 / WIDTH + phase) % 256 + random.nextInt(17) - 8);
+                int g = clamp(y * 255 / HEIGHT + random.nextInt(17) - 8);
+                int b = clamp(((x + y) * 255 / (WIDTH + HEIGHT) + 128 - phase / 2) % 256);
+                rgb[y * WIDTH + x] = (r << 16) | (g << 8) | b;
+            }
+        }
+        return rgb;
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+}
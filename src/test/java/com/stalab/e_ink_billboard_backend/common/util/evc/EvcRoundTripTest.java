@@ -0,0 +1,199 @@
+package com.stalab.e_ink_billboard_backend.common.util.evc;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EvcRoundTripTest {
+
+    // 默认面板尺寸
+    private static final int WIDTH = 400;
+    private static final int HEIGHT = 300;
+
+    @TempDir
+    File dir;
+
+    @Test
+    void everyFrameTypeDecodesToTheOriginal() throws IOException {
+        for (int bitDepth : new int[]{1, 2, 4}) {
+            Random random = new Random(bitDepth);
+            List<byte[]> frames = new ArrayList<>();
+            int frameBytes = (WIDTH * bitDepth + 7) / 8 * HEIGHT;
+            byte[] base = smoothFrame(frameBytes, random);
+            frames.add(base);                                   // 0 关键帧
+            frames.add(base.clone());                           // 1 重复帧
+            frames.add(withSmallChange(base, random));          // 2 差分帧
+            frames.add(randomFrame(frameBytes, random));        // 3 噪声：差分和关键帧一样大，保留差分
+            frames.add(smoothFrame(frameBytes, random));        // 4 场景切换：关键帧更小，改写关键帧
+            frames.add(withSmallChange(frames.get(4), random)); // 5 到达关键帧间隔
+            frames.add(withSmallChange(frames.get(5), random)); // 6 差分帧
+
+            File file = new File(dir, "clip-" + bitDepth + ".evc");
+            try (EvcWriter writer = new EvcWriter(file, WIDTH, HEIGHT, bitDepth, 5, 5)) {
+                for (byte[] frame : frames) {
+                    writer.writeFrame(frame);
+                }
+            }
+
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            assertEquals(List.of(EvcFormat.FRAME_KEY, EvcFormat.FRAME_REPEAT, EvcFormat.FRAME_DELTA,
+                    EvcFormat.FRAME_DELTA, EvcFormat.FRAME_KEY, EvcFormat.FRAME_KEY, EvcFormat.FRAME_DELTA),
+                    frameTypes(bytes));
+
+            try (EvcReader reader = new EvcReader(new ByteArrayInputStream(bytes))) {
+                assertEquals(WIDTH, reader.getWidth());
+                assertEquals(HEIGHT, reader.getHeight());
+                assertEquals(bitDepth, reader.getBitDepth());
+                assertEquals(frames.size(), reader.getFrameCount());
+                for (int i = 0; i < frames.size(); i++) {
+                    assertArrayEquals(frames.get(i), reader.nextFrame(), "bitDepth=" + bitDepth + ", frame=" + i);
+                }
+                assertNull(reader.nextFrame());
+            }
+        }
+    }
+
+    @Test
+    void runsAndLiteralsAtEncoderLimits() throws IOException {
+        // 全 0 / 全 1 / 长度 1-300 的交替游程，覆盖游程与字面量的边界
+        byte[] frame = new byte[(WIDTH + 7) / 8 * HEIGHT];
+        int position = 0;
+        int run = 1;
+        byte value = 0;
+        while (position < frame.length) {
+            int end = Math.min(frame.length, position + run);
+            Arrays.fill(frame, position, end, value);
+            position = end;
+            run = run % 300 + 1;
+            value = (byte) (value == 0 ? 0x5A : 0);
+        }
+        byte[] encoded = new byte[EvcFormat.maxEncodedSize(frame.length)];
+        int length = EvcFormat.encode(frame, frame.length, encoded);
+        byte[] decoded = new byte[frame.length];
+        EvcFormat.decode(encoded, length, decoded, false);
+        assertArrayEquals(frame, decoded);
+    }
+
+    @Test
+    void corruptFilesAreRejected() throws IOException {
+        File file = new File(dir, "bad.evc");
+        byte[] frame = new byte[(WIDTH + 7) / 8 * HEIGHT];
+        try (EvcWriter writer = new EvcWriter(file, WIDTH, HEIGHT, 1, 5, 5)) {
+            writer.writeFrame(frame);
+        }
+        byte[] bytes = Files.readAllBytes(file.toPath());
+
+        byte[] badMagic = bytes.clone();
+        badMagic[0] = 'X';
+        assertThrows(IOException.class, () -> new EvcReader(new ByteArrayInputStream(badMagic)));
+
+        byte[] deltaFirst = bytes.clone();
+        deltaFirst[EvcFormat.HEADER_SIZE] = EvcFormat.FRAME_DELTA;
+        try (EvcReader reader = new EvcReader(new ByteArrayInputStream(deltaFirst))) {
+            assertThrows(IOException.class, reader::nextFrame);
+        }
+    }
+
+    /**
+     * 解码速度（面板尺寸 1-bit，约 10% 像素变化的差分序列，每 30 帧一个关键帧），结果只输出不断言
+     */
+    @Test
+    @Tag("benchmark")
+    void decoderThroughput() throws IOException {
+        Random random = new Random(7);
+        int frameBytes = (WIDTH + 7) / 8 * HEIGHT;
+        int frames = 600;
+        File file = new File(dir, "bench.evc");
+        byte[] frame = smoothFrame(frameBytes, random);
+        try (EvcWriter writer = new EvcWriter(file, WIDTH, HEIGHT, 1, 5, 30)) {
+            for (int i = 0; i < frames; i++) {
+                frame = withSmallChange(frame, random);
+                writer.writeFrame(frame);
+            }
+            System.out.printf("evc encode ratio %.3f%n", writer.getRatio());
+        }
+        byte[] bytes = Files.readAllBytes(file.toPath());
+
+        for (int i = 0; i < 5; i++) {
+            decodeAll(bytes);
+        }
+        int rounds = 20;
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            decodeAll(bytes);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        double framesPerSecond = frames * rounds / seconds;
+        System.out.printf("evc decode %dx%d 1-bit: %.0f frames/s, %.1f MB/s raw output%n",
+                WIDTH, HEIGHT, framesPerSecond, framesPerSecond * frameBytes / 1e6);
+        assertTrue(framesPerSecond > 0);
+    }
+
+    private static void decodeAll(byte[] bytes) throws IOException {
+        try (EvcReader reader = new EvcReader(new ByteArrayInputStream(bytes))) {
+            while (reader.nextFrame() != null) {
+                // 只解码
+            }
+        }
+    }
+
+    private static List<Integer> frameTypes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(EvcFormat.HEADER_SIZE);
+        List<Integer> types = new ArrayList<>();
+        while (buffer.hasRemaining()) {
+            types.add(buffer.get() & 0xFF);
+            int length = buffer.getInt();
+            buffer.position(buffer.position() + length);
+        }
+        return types;
+    }
+
+    /**
+     * 大块同色区域，接近抖动后的真实画面
+     */
+    private static byte[] smoothFrame(int frameBytes, Random random) {
+        byte[] frame = new byte[frameBytes];
+        int position = 0;
+        while (position < frameBytes) {
+            int end = Math.min(frameBytes, position + 1 + random.nextInt(64));
+            Arrays.fill(frame, position, end, (byte) (random.nextBoolean() ? 0 : 0xFF));
+            position = end;
+        }
+        return frame;
+    }
+
+    private static byte[] randomFrame(int frameBytes, Random random) {
+        byte[] frame = new byte[frameBytes];
+        random.nextBytes(frame);
+        return frame;
+    }
+
+    /**
+     * 随机改动约 10% 的字节
+     */
+    private static byte[] withSmallChange(byte[] frame, Random random) {
+        byte[] next = frame.clone();
+        for (int i = 0; i < next.length / 10; i++) {
+            next[random.nextInt(next.length)] ^= (byte) (1 << random.nextInt(8));
+        }
+        return next;
+    }
+}
@@ -0,0 +1,103 @@
+package com.stalab.e_ink_billboard_backend.service.device;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DeviceInventoryServiceTest {
+
+    private static final String MD5_A = "0123456789abcdef0123456789abcdef";
+    private static final String MD5_B = "fedcba9876543210fedcba9876543210";
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private SetOperations<String, String> setOperations;
+
+    private DeviceInventoryService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new DeviceInventoryService(redisTemplate);
+        ReflectionTestUtils.setField(service, "ttlHours", 24L);
+        ReflectionTestUtils.setField(service, "maxEntries", 2);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void updateReplacesInventoryInOneScript() {
+        service.update("DEV001", List.of(" " + MD5_A.toUpperCase() + " ", "not-an-md5", MD5_A, MD5_B, "", MD5_A));
+
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(redisTemplate).execute(any(RedisScript.class), eq(List.of("device:inventory:DEV001")), args.capture());
+        // 规范化为小写、去掉非法项和重复项，有效期换算成秒
+        assertArrayEquals(new Object[]{"86400", MD5_A, MD5_B}, args.getValue());
+        verify(redisTemplate, never()).delete(anyString());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void updateLimitsEntries() {
+        String md5C = "00000000000000000000000000000000";
+        service.update("DEV001", List.of(MD5_A, MD5_B, md5C));
+
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(redisTemplate).execute(any(RedisScript.class), any(List.class), args.capture());
+        assertArrayEquals(new Object[]{"86400", MD5_A, MD5_B}, args.getValue());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void emptyInventoryOnlyPassesTtl() {
+        service.update("DEV001", List.of());
+
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(redisTemplate).execute(any(RedisScript.class), eq(List.of("device:inventory:DEV001")), args.capture());
+        assertArrayEquals(new Object[]{"86400"}, args.getValue());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void missingInventoryLeavesPreviousOneUntouched() {
+        service.update("DEV001", null);
+
+        verify(redisTemplate, never()).execute(any(RedisScript.class), any(List.class), any(Object[].class));
+    }
+
+    @Test
+    void holdsChecksSetMembership() {
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+        when(setOperations.isMember("device:inventory:DEV001", MD5_A)).thenReturn(true);
+
+        assertTrue(service.holds("DEV001", MD5_A));
+        assertFalse(service.holds("DEV001", null));
+    }
+
+    @Test
+    void holdsFallsBackToFullCommandWhenRedisFails() {
+        when(redisTemplate.opsForSet()).thenThrow(new IllegalStateException("redis down"));
+
+        assertFalse(service.holds("DEV001", MD5_A));
+    }
+}
@@ -0,0 +1,107 @@
+package com.stalab.e_ink_billboard_backend.service.device;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.stalab.e_ink_billboard_backend.common.enums.DitherType;
+import com.stalab.e_ink_billboard_backend.common.enums.PanelPalette;
+import com.stalab.e_ink_billboard_backend.common.enums.VideoCodec;
+import com.stalab.e_ink_billboard_backend.common.exception.BusinessException;
+import com.stalab.e_ink_billboard_backend.mapper.DeviceMapper;
+import com.stalab.e_ink_billboard_backend.mapper.po.Device;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DeviceServiceTest {
+
+    private DeviceMapper deviceMapper;
+    private DeviceService service;
+
+    @BeforeAll
+    static void initTableInfo() {
+        // Lambda 条件构造器需要实体的表信息
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), Device.class);
+    }
+
+    @BeforeEach
+    void setUp() {
+        deviceMapper = mock(DeviceMapper.class);
+        service = new DeviceService(deviceMapper);
+
+        Device exist = new Device();
+        exist.setId(1L);
+        exist.setDeviceCode("ESP32_001");
+        exist.setPanelWidth(800);
+        exist.setPanelHeight(480);
+        exist.setPanelPalette(PanelPalette.BWR);
+        exist.setDitherType(DitherType.ATKINSON);
+        exist.setVideoCodec(VideoCodec.EVC);
+        when(deviceMapper.selectById(1L)).thenReturn(exist);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void emptyPanelFieldsResetToTheDefaultPanel() {
+        Device update = new Device();
+        update.setId(1L);
+        update.setDeviceName("大厅屏幕1");
+
+        service.updateDevice(update);
+
+        ArgumentCaptor<LambdaUpdateWrapper<Device>> wrapper = ArgumentCaptor.forClass(LambdaUpdateWrapper.class);
+        verify(deviceMapper).update(isNull(), wrapper.capture());
+        String sqlSet = wrapper.getValue().getSqlSet();
+        for (String column : new String[]{"panel_width", "panel_height", "panel_bit_depth", "panel_palette",
+                "panel_rotation", "dither_type", "video_codec"}) {
+            assertTrue(sqlSet.contains(column + "="), "面板参数应显式写入: " + column);
+        }
+        // 未传的基本信息保持原值
+        assertTrue(sqlSet.contains("device_name="), sqlSet);
+        assertFalse(sqlSet.contains("device_code="), sqlSet);
+        assertFalse(sqlSet.contains("location="), sqlSet);
+
+        Map<String, Object> params = wrapper.getValue().getParamNameValuePairs();
+        assertTrue(params.containsValue("大厅屏幕1"));
+        assertEquals(9, params.size());
+        assertEquals(7, params.values().stream().filter(v -> v == null).count());
+    }
+
+    @Test
+    void panelIsValidatedWithoutMergingOldValues() {
+        Device update = new Device();
+        update.setId(1L);
+        // 原设备是 BWR，但面板参数整体替换，按 BW 校验 1 位位深合法
+        update.setPanelBitDepth(1);
+
+        service.updateDevice(update);
+
+        update.setPanelPalette(PanelPalette.ACEP_7);
+        assertThrows(BusinessException.class, () -> service.updateDevice(update));
+        verify(deviceMapper).update(isNull(), any());
+    }
+
+    @Test
+    void missingDeviceIsRejected() {
+        Device update = new Device();
+        update.setId(2L);
+
+        assertThrows(BusinessException.class, () -> service.updateDevice(update));
+        verify(deviceMapper, never()).update(any(), any());
+    }
+}
@@ -0,0 +1,247 @@
+package com.stalab.e_ink_billboard_backend.service.media;
+
+import com.stalab.e_ink_billboard_backend.common.enums.DitherType;
+import com.stalab.e_ink_billboard_backend.common.enums.PanelPalette;
+import com.stalab.e_ink_billboard_backend.common.enums.VideoCodec;
+import com.stalab.e_ink_billboard_backend.common.exception.MediaJobRejectedException;
+import com.stalab.e_ink_billboard_backend.common.util.ImageUtils;
+import com.stalab.e_ink_billboard_backend.common.util.VideoUtils;
+import com.stalab.e_ink_billboard_backend.mapper.po.Device;
+import com.stalab.e_ink_billboard_backend.mapper.po.Image;
+import com.stalab.e_ink_billboard_backend.mapper.po.Video;
+import com.stalab.e_ink_billboard_backend.model.dto.PanelProfile;
+import com.stalab.e_ink_billboard_backend.model.dto.RenderedAsset;
+import com.stalab.e_ink_billboard_backend.model.dto.StoredObject;
+import com.stalab.e_ink_billboard_backend.service.storage.ChunkManifestService;
+import com.stalab.e_ink_billboard_backend.service.storage.MinioService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class RenderServiceTest {
+
+    private static final String ENDPOINT = "http://minio.example.com/eink-images/";
+    private static final Long USER_ID = 7L;
+
+    @Mock
+    private MinioService minioService;
+
+    @Mock
+    private ImageUtils imageUtils;
+
+    @Mock
+    private VideoUtils videoUtils;
+
+    @Mock
+    private ChunkManifestService chunkManifestService;
+
+    /**
+     * 提交给处理队列、还没有执行的任务（手动执行，模拟后台线程）
+     */
+    private final List<Runnable> queued = new ArrayList<>();
+
+    private RenderService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MediaJobScheduler imageJobs = new MediaJobScheduler("image", queued::add, 2, 10, 5);
+        MediaJobScheduler videoJobs = new MediaJobScheduler("video", queued::add, 1, 10, 5);
+        service = new RenderService(minioService, imageUtils, videoUtils, chunkManifestService, imageJobs, videoJobs);
+
+        when(imageUtils.defaultProfile(any())).thenAnswer(invocation -> PanelProfile.builder()
+                .width(400).height(300).bitDepth(1).palette(PanelPalette.BW).rotation(0)
+                .ditherType(invocation.getArgument(0)).build());
+        when(imageUtils.resolveImageDither(any())).thenReturn(DitherType.FLOYD_STEINBERG);
+        when(videoUtils.resolveVideoDither(any())).thenReturn(DitherType.BAYER);
+        when(minioService.extractObjectName(anyString()))
+                .thenAnswer(invocation -> ((String) invocation.getArgument(0)).substring(ENDPOINT.length()));
+        when(minioService.getObjectUrl(anyString())).thenAnswer(invocation -> ENDPOINT + invocation.getArgument(0));
+        when(minioService.download(anyString())).thenAnswer(invocation -> new ByteArrayInputStream(new byte[]{1, 2, 3}));
+        when(imageUtils.processImage(any(InputStream.class), any(PanelProfile.class)))
+                .thenAnswer(invocation -> new ByteArrayInputStream(new byte[]{4, 5, 6}));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void defaultPanelUsesProcessedImageWithoutRendering() {
+        Image image = image();
+
+        RenderedAsset asset = service.resolveImage(image, new Device(), USER_ID, false).join();
+
+        assertEquals(image.getProcessedUrl(), asset.getUrl());
+        assertFalse(asset.isVariant());
+        assertTrue(queued.isEmpty());
+        verify(minioService, never()).statObject(anyString());
+    }
+
+    @Test
+    void existingVariantIsReturnedWithoutRendering() {
+        when(minioService.statObject(anyString())).thenReturn(StoredObject.builder().size(3L).md5("md5").build());
+
+        RenderedAsset asset = service.resolveImage(image(), largePanel(), USER_ID, false).join();
+
+        assertTrue(asset.isVariant());
+        assertEquals("md5", asset.getMd5());
+        assertTrue(queued.isEmpty());
+    }
+
+    @Test
+    void missingVariantIsRenderedInTheBackground() throws Exception {
+        Image image = image();
+        Device device = largePanel();
+
+        // 首次推送：提交渲染任务后立即返回未完成的结果，请求线程不下载、不渲染
+        CompletableFuture<RenderedAsset> first = service.resolveImage(image, device, USER_ID, false);
+        assertFalse(first.isDone());
+        assertEquals(1, queued.size());
+        verify(minioService, never()).download(anyString());
+
+        // 渲染完成前的重复推送不重复提交，共用同一个结果
+        assertSame(first, service.resolveImage(image, device, USER_ID, false));
+        assertEquals(1, queued.size());
+
+        queued.remove(0).run();
+        String objectName = "rendered/" + image.getMd5() + "/800x480-BW1-r0-FLOYD_STEINBERG.png";
+        verify(minioService).uploadFile(any(File.class), eq(objectName), eq("image/png"), anyString());
+        assertEquals(ENDPOINT + objectName, first.join().getUrl());
+        assertEquals(3L, first.join().getSize());
+
+        // 渲染完成后直接复用，不再 statObject
+        RenderedAsset asset = service.resolveImage(image, device, USER_ID, false).join();
+        assertTrue(asset.isVariant());
+        assertEquals(3L, asset.getSize());
+        verify(minioService, times(2)).statObject(anyString());
+    }
+
+    @Test
+    void renderJobIsQueuedWithoutWaitingForTheTransaction() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        service.resolveImage(image(), largePanel(), USER_ID, true);
+
+        // 变体与推送记录无关：推送事务回滚时渲染好的变体之后的推送照样能用，任务不等事务提交
+        assertEquals(1, queued.size());
+    }
+
+    @Test
+    void failedRenderCanBeRetried() throws Exception {
+        when(imageUtils.processImage(any(InputStream.class), any(PanelProfile.class)))
+                .thenThrow(new IllegalStateException("decode failed"));
+        Image image = image();
+        Device device = largePanel();
+
+        CompletableFuture<RenderedAsset> failed = service.resolveImage(image, device, USER_ID, false);
+        // 失败由处理队列记录日志，不影响后续任务；等待中的推送收到异常结果
+        queued.remove(0).run();
+        verify(minioService, never()).uploadFile(any(File.class), anyString(), anyString(), anyString());
+        assertTrue(failed.isCompletedExceptionally());
+
+        // 失败后下次推送重新提交
+        CompletableFuture<RenderedAsset> retry = service.resolveImage(image, device, USER_ID, false);
+        assertNotSame(failed, retry);
+        assertFalse(retry.isDone());
+        assertEquals(1, queued.size());
+    }
+
+    @Test
+    void evcVariantTranscodesBinAndEncodesInOneJob() throws Exception {
+        Video video = new Video();
+        video.setOriginalUrl(ENDPOINT + "abc.mp4");
+        video.setProcessedUrl(ENDPOINT + "abc.bin");
+        Device device = largePanel();
+        device.setVideoCodec(VideoCodec.EVC);
+        doAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(2);
+            out.write(new byte[]{9, 9});
+            return null;
+        }).when(videoUtils).processVideo(any(File.class), any(PanelProfile.class), any(OutputStream.class));
+        doAnswer(invocation -> {
+            Files.write(((File) invocation.getArgument(2)).toPath(), new byte[]{7});
+            return 1;
+        }).when(videoUtils).encodeEvc(any(InputStream.class), any(PanelProfile.class), any(File.class));
+
+        CompletableFuture<RenderedAsset> pending = service.resolveVideo(video, device, USER_ID, false);
+        assertEquals(1, queued.size());
+        verify(videoUtils, never()).processVideo(any(File.class), any(PanelProfile.class), any(OutputStream.class));
+
+        queued.remove(0).run();
+        String base = "rendered/abc/800x480-BW1-r0-BAYER";
+        verify(minioService).uploadFile(any(File.class), eq(base + ".bin"), anyString(), anyString());
+        verify(minioService).uploadFile(any(File.class), eq(base + ".evc"), anyString(), anyString());
+        verify(minioService).download(ENDPOINT + base + ".bin");
+        // 等待中的推送拿到的是 EVC 变体
+        assertEquals(ENDPOINT + base + ".evc", pending.join().getUrl());
+
+        RenderedAsset asset = service.resolveVideo(video, device, USER_ID, false).join();
+        assertEquals(ENDPOINT + base + ".evc", asset.getUrl());
+        assertEquals(1L, asset.getSize());
+    }
+
+    @Test
+    void fullQueueRejectsWithoutMarkingTheVariantAsRendering() {
+        MediaJobScheduler full = new MediaJobScheduler("image", queued::add, 1, 0, 5);
+        RenderService busy = new RenderService(minioService, imageUtils, videoUtils, chunkManifestService, full, full);
+
+        MediaJobRejectedException e = assertThrows(MediaJobRejectedException.class,
+                () -> busy.resolveImage(image(), largePanel(), USER_ID, false));
+        assertEquals("处理队列繁忙，请稍后再试", e.getMessage());
+        assertThrows(MediaJobRejectedException.class, () -> busy.resolveImage(image(), largePanel(), USER_ID, false));
+        // 没有占位成功的变体不算渲染中，下次推送照常查询并提交
+        verify(minioService, times(2)).statObject(anyString());
+        assertTrue(queued.isEmpty());
+    }
+
+    private static Image image() {
+        Image image = new Image();
+        image.setMd5("0123456789abcdef0123456789abcdef");
+        image.setOriginalUrl(ENDPOINT + "original.png");
+        image.setProcessedUrl(ENDPOINT + "processed.png");
+        image.setProcessedSize(100L);
+        return image;
+    }
+
+    private static Device largePanel() {
+        Device device = new Device();
+        device.setPanelWidth(800);
+        device.setPanelHeight(480);
+        return device;
+    }
+}
@@ -0,0 +1,85 @@
+package com.stalab.e_ink_billboard_backend.service.media;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.stalab.e_ink_billboard_backend.mapper.MediaJobMapper;
+import com.stalab.e_ink_billboard_backend.mapper.VideoMapper;
+import com.stalab.e_ink_billboard_backend.mapper.po.MediaJob;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class VideoJobServiceTest {
+
+    private MediaJobMapper mediaJobMapper;
+    private VideoJobService service;
+
+    @BeforeAll
+    static void initTableInfo() {
+        // Lambda 条件构造器需要实体的表信息
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), MediaJob.class);
+    }
+
+    @BeforeEach
+    void setUp() {
+        mediaJobMapper = mock(MediaJobMapper.class);
+        service = new VideoJobService(mediaJobMapper, mock(VideoMapper.class), mock(VideoAsyncService.class),
+                mock(MediaJobScheduler.class), "test-instance", 8080);
+        ReflectionTestUtils.setField(service, "leaseSeconds", 120);
+    }
+
+    @Test
+    void nothingToRenewWithoutActiveJobs() {
+        service.renewLeases();
+
+        verifyNoInteractions(mediaJobMapper);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void leaseSecondsAreBoundAsParameter() {
+        activeJobs().add(1L);
+        when(mediaJobMapper.update(isNull(), any(LambdaUpdateWrapper.class))).thenReturn(1);
+
+        service.renewLeases();
+
+        ArgumentCaptor<LambdaUpdateWrapper<MediaJob>> wrapper = ArgumentCaptor.forClass(LambdaUpdateWrapper.class);
+        verify(mediaJobMapper).update(isNull(), wrapper.capture());
+        String sqlSet = wrapper.getValue().getSqlSet();
+        assertTrue(sqlSet.contains("make_interval(secs => #{"), sqlSet);
+        assertFalse(sqlSet.contains("120"), sqlSet);
+        assertTrue(wrapper.getValue().getParamNameValuePairs().containsValue(120));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void renewalFailureDoesNotEscape() {
+        activeJobs().add(1L);
+        when(mediaJobMapper.update(isNull(), any(LambdaUpdateWrapper.class)))
+                .thenThrow(new IllegalStateException("db down"));
+
+        // 异常逃出会让 ScheduledExecutorService 取消后续续租
+        assertDoesNotThrow(service::renewLeases);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<Long> activeJobs() {
+        return (Set<Long>) ReflectionTestUtils.getField(service, "activeJobs");
+    }
+}
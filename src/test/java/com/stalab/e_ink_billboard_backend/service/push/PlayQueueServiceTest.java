@@ -0,0 +1,108 @@
+package com.stalab.e_ink_billboard_backend.service.push;
+
+import com.stalab.e_ink_billboard_backend.common.enums.ContentType;
+import com.stalab.e_ink_billboard_backend.mapper.po.ContentPush;
+import com.stalab.e_ink_billboard_backend.mapper.po.Device;
+import com.stalab.e_ink_billboard_backend.model.dto.ChunkManifest;
+import com.stalab.e_ink_billboard_backend.model.dto.MqttCommandMessage;
+import com.stalab.e_ink_billboard_backend.service.device.DeviceInventoryService;
+import com.stalab.e_ink_billboard_backend.service.push.PlayQueueService.QueueItem;
+import com.stalab.e_ink_billboard_backend.service.storage.AssetCacheService;
+import com.stalab.e_ink_billboard_backend.service.storage.ChunkManifestService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PlayQueueServiceTest {
+
+    private static final String MD5 = "0123456789abcdef0123456789abcdef";
+    private static final String ORIGINAL_URL = "http://minio/bucket/processed/1.bin";
+
+    @Mock
+    private AssetCacheService assetCacheService;
+
+    @Mock
+    private ChunkManifestService chunkManifestService;
+
+    @Mock
+    private DeviceInventoryService deviceInventoryService;
+
+    @InjectMocks
+    private PlayQueueService playQueueService;
+
+    private Device device;
+    private ContentPush push;
+    private QueueItem item;
+
+    @BeforeEach
+    void setUp() {
+        device = new Device();
+        device.setDeviceCode("DEV001");
+
+        push = new ContentPush();
+        push.setId(7L);
+        push.setMd5(MD5);
+        push.setFileSize(1024L);
+        push.setDownloadUrl(ORIGINAL_URL);
+        push.setMqttMessageId("msg-7");
+
+        item = new QueueItem();
+        item.setContentId(42L);
+        item.setContentType(ContentType.VIDEO);
+    }
+
+    @Test
+    void cachedContentSkipsDownloadUrlAndManifest() {
+        when(deviceInventoryService.holds("DEV001", MD5)).thenReturn(true);
+
+        MqttCommandMessage message = playQueueService.buildPlayCommand(device, push, item);
+
+        assertEquals(Boolean.TRUE, message.getCached());
+        assertNull(message.getUrl());
+        assertNull(message.getChunks());
+        assertEquals(MD5, message.getMd5());
+        assertEquals("VIDEO", message.getType());
+        verifyNoInteractions(assetCacheService, chunkManifestService);
+    }
+
+    @Test
+    void uncachedContentCarriesFreshUrlAndManifest() throws Exception {
+        when(deviceInventoryService.holds("DEV001", MD5)).thenReturn(false);
+        when(assetCacheService.getDownloadUrl(ORIGINAL_URL)).thenReturn("http://signed/1.bin");
+        when(chunkManifestService.get(ORIGINAL_URL)).thenReturn(
+                ChunkManifest.builder().chunkSize(512).chunks(List.of("a", "b")).build());
+
+        MqttCommandMessage message = playQueueService.buildPlayCommand(device, push, item);
+
+        assertNull(message.getCached());
+        assertEquals("http://signed/1.bin", message.getUrl());
+        assertEquals(512, message.getChunkSize());
+        assertEquals(List.of("a", "b"), message.getChunks());
+        assertEquals("msg-7", message.getMessageId());
+    }
+
+    @Test
+    void signingFailureFallsBackToOriginalUrl() throws Exception {
+        when(deviceInventoryService.holds("DEV001", MD5)).thenReturn(false);
+        when(assetCacheService.getDownloadUrl(anyString())).thenThrow(new IllegalStateException("minio down"));
+
+        MqttCommandMessage message = playQueueService.buildPlayCommand(device, push, item);
+
+        assertEquals(ORIGINAL_URL, message.getUrl());
+        assertNull(message.getChunks());
+        verify(chunkManifestService).get(ORIGINAL_URL);
+    }
+}
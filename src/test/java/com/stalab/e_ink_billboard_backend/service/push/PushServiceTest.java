@@ -0,0 +1,300 @@
+package com.stalab.e_ink_billboard_backend.service.push;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.stalab.e_ink_billboard_backend.common.enums.AuditStatus;
+import com.stalab.e_ink_billboard_backend.common.enums.ContentType;
+import com.stalab.e_ink_billboard_backend.common.enums.DeviceStatus;
+import com.stalab.e_ink_billboard_backend.common.enums.ProcessingStatus;
+import com.stalab.e_ink_billboard_backend.common.enums.PushStatus;
+import com.stalab.e_ink_billboard_backend.common.enums.UserRole;
+import com.stalab.e_ink_billboard_backend.common.exception.BusinessException;
+import com.stalab.e_ink_billboard_backend.common.exception.MediaJobRejectedException;
+import com.stalab.e_ink_billboard_backend.mapper.ContentPushMapper;
+import com.stalab.e_ink_billboard_backend.mapper.DeviceMapper;
+import com.stalab.e_ink_billboard_backend.mapper.ImageMapper;
+import com.stalab.e_ink_billboard_backend.mapper.UserMapper;
+import com.stalab.e_ink_billboard_backend.mapper.VideoMapper;
+import com.stalab.e_ink_billboard_backend.mapper.po.ContentPush;
+import com.stalab.e_ink_billboard_backend.mapper.po.Device;
+import com.stalab.e_ink_billboard_backend.mapper.po.Image;
+import com.stalab.e_ink_billboard_backend.mapper.po.User;
+import com.stalab.e_ink_billboard_backend.model.dto.RenderedAsset;
+import com.stalab.e_ink_billboard_backend.model.vo.BatchPushResultVO;
+import com.stalab.e_ink_billboard_backend.service.device.DeviceInventoryService;
+import com.stalab.e_ink_billboard_backend.service.device.DeviceService;
+import com.stalab.e_ink_billboard_backend.service.media.RenderService;
+import com.stalab.e_ink_billboard_backend.service.wx.VerificationService;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class PushServiceTest {
+
+    private static final Long DEVICE_ID = 1L;
+    private static final Long IMAGE_ID = 2L;
+    private static final Long ADMIN_ID = 3L;
+    private static final Long PUSH_ID = 100L;
+    private static final String ADMIN = UserRole.ADMIN.getCode();
+
+    @Mock
+    private DeviceMapper deviceMapper;
+    @Mock
+    private ImageMapper imageMapper;
+    @Mock
+    private VideoMapper videoMapper;
+    @Mock
+    private ContentPushMapper contentPushMapper;
+    @Mock
+    private UserMapper userMapper;
+    @Mock
+    private PlayQueueService playQueueService;
+    @Mock
+    private DeviceService deviceService;
+    @Mock
+    private VerificationService verificationService;
+    @Mock
+    private RenderService renderService;
+    @Mock
+    private DeviceInventoryService deviceInventoryService;
+
+    private PushService service;
+
+    /**
+     * 最近一次插入的推送记录
+     */
+    private ContentPush inserted;
+
+    @BeforeAll
+    static void initTableInfo() {
+        // Lambda 条件构造器需要实体的表信息
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), ContentPush.class);
+    }
+
+    @BeforeEach
+    void setUp() {
+        service = new PushService(deviceMapper, imageMapper, videoMapper, contentPushMapper, userMapper,
+                playQueueService, deviceService, verificationService, renderService, deviceInventoryService);
+        ReflectionTestUtils.setField(service, "resumeAfterSeconds", 600L);
+
+        Device device = new Device();
+        device.setId(DEVICE_ID);
+        device.setStatus(DeviceStatus.ONLINE);
+        when(deviceMapper.selectById(anyLong())).thenAnswer(invocation -> {
+            Device d = new Device();
+            d.setId(invocation.getArgument(0));
+            d.setStatus(DeviceStatus.ONLINE);
+            return d;
+        });
+        Image image = new Image();
+        image.setId(IMAGE_ID);
+        image.setUserId(ADMIN_ID);
+        image.setProcessingStatus(ProcessingStatus.SUCCESS);
+        image.setAuditStatus(AuditStatus.APPROVED);
+        when(imageMapper.selectById(IMAGE_ID)).thenReturn(image);
+        User admin = new User();
+        admin.setId(ADMIN_ID);
+        admin.setRole(ADMIN);
+        when(userMapper.selectById(ADMIN_ID)).thenReturn(admin);
+
+        doAnswer(invocation -> {
+            inserted = invocation.getArgument(0);
+            inserted.setId(PUSH_ID);
+            return 1;
+        }).when(contentPushMapper).insert(any(ContentPush.class));
+        when(contentPushMapper.selectById(PUSH_ID)).thenAnswer(invocation -> inserted);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void readyAssetIsQueuedRightAway() {
+        when(renderService.resolveImage(any(), any(), any(), anyBoolean()))
+                .thenReturn(CompletableFuture.completedFuture(asset()));
+        when(playQueueService.addToQueue(DEVICE_ID, IMAGE_ID, ContentType.IMAGE, ADMIN_ID, PUSH_ID, true)).thenReturn(true);
+
+        assertEquals(PushStatus.SENT, service.pushImage(DEVICE_ID, IMAGE_ID, ADMIN_ID, ADMIN, null));
+
+        assertEquals("http://minio/rendered/a.png", inserted.getDownloadUrl());
+        assertEquals(3L, inserted.getFileSize());
+        verify(playQueueService).addToQueue(DEVICE_ID, IMAGE_ID, ContentType.IMAGE, ADMIN_ID, PUSH_ID, true);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void renderingPushIsQueuedOnceTheVariantIsReady() {
+        CompletableFuture<RenderedAsset> rendering = new CompletableFuture<>();
+        when(renderService.resolveImage(any(), any(), any(), anyBoolean())).thenReturn(rendering);
+        when(contentPushMapper.update(isNull(), any(Wrapper.class))).thenReturn(1);
+
+        assertEquals(PushStatus.RENDERING, service.pushImage(DEVICE_ID, IMAGE_ID, ADMIN_ID, ADMIN, null));
+
+        // 保存了等待渲染的推送记录，还没有下载地址，也没有加入播放队列
+        assertEquals(PushStatus.RENDERING, inserted.getPushStatus());
+        assertNull(inserted.getDownloadUrl());
+        verify(playQueueService, never()).addToQueue(any(), any(), any(), any(), any(), anyBoolean());
+
+        rendering.complete(asset());
+
+        ArgumentCaptor<LambdaUpdateWrapper<ContentPush>> update = ArgumentCaptor.forClass(LambdaUpdateWrapper.class);
+        verify(contentPushMapper).update(isNull(), update.capture());
+        String sqlSet = update.getValue().getSqlSet();
+        assertTrue(sqlSet.contains("download_url="), sqlSet);
+        assertTrue(update.getValue().getParamNameValuePairs().containsValue("http://minio/rendered/a.png"));
+        // 只更新仍在等待渲染的记录
+        String where = update.getValue().getSqlSegment();
+        assertTrue(where.contains("push_status ="), where);
+        assertTrue(update.getValue().getParamNameValuePairs().containsValue(PushStatus.RENDERING));
+        verify(playQueueService).addToQueue(DEVICE_ID, IMAGE_ID, ContentType.IMAGE, ADMIN_ID, PUSH_ID, true);
+    }
+
+    @Test
+    void deliveryWaitsForTheTransactionToCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        CompletableFuture<RenderedAsset> rendering = new CompletableFuture<>();
+        when(renderService.resolveImage(any(), any(), any(), anyBoolean())).thenReturn(rendering);
+        when(contentPushMapper.update(isNull(), any())).thenReturn(1);
+
+        service.pushImage(DEVICE_ID, IMAGE_ID, ADMIN_ID, ADMIN, null);
+        rendering.complete(asset());
+
+        // 事务提交前推送记录对其他连接不可见，渲染完成也不下发
+        verify(playQueueService, never()).addToQueue(any(), any(), any(), any(), any(), anyBoolean());
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        verify(playQueueService).addToQueue(DEVICE_ID, IMAGE_ID, ContentType.IMAGE, ADMIN_ID, PUSH_ID, true);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void failedRenderMarksThePushFailed() {
+        CompletableFuture<RenderedAsset> rendering = new CompletableFuture<>();
+        when(renderService.resolveImage(any(), any(), any(), anyBoolean())).thenReturn(rendering);
+
+        service.pushImage(DEVICE_ID, IMAGE_ID, ADMIN_ID, ADMIN, null);
+        rendering.completeExceptionally(new BusinessException(500, "内容渲染失败: decode"));
+
+        ArgumentCaptor<LambdaUpdateWrapper<ContentPush>> update = ArgumentCaptor.forClass(LambdaUpdateWrapper.class);
+        verify(contentPushMapper).update(isNull(), update.capture());
+        assertTrue(update.getValue().getParamNameValuePairs().containsValue(PushStatus.FAILED));
+        verify(playQueueService, never()).addToQueue(any(), any(), any(), any(), any(), anyBoolean());
+    }
+
+    @Test
+    void repeatedCallbackDoesNotQueueTwice() {
+        // 记录已不在 RENDERING（已由其他回调下发），条件更新不到任何行
+        when(contentPushMapper.update(isNull(), any())).thenReturn(0);
+
+        service.deliverRendered(PUSH_ID, asset(), null);
+
+        verify(playQueueService, never()).addToQueue(any(), any(), any(), any(), any(), anyBoolean());
+    }
+
+    @Test
+    void fullQueueRejectsBeforeConsumingQuota() {
+        User visitor = new User();
+        visitor.setId(ADMIN_ID);
+        visitor.setRole(UserRole.VISITOR.getCode());
+        visitor.setRemainingFreePushes(1);
+        when(userMapper.selectById(ADMIN_ID)).thenReturn(visitor);
+        when(playQueueService.checkVisitorQuota(ADMIN_ID)).thenReturn(true);
+        when(renderService.resolveImage(any(), any(), any(), anyBoolean()))
+                .thenThrow(new MediaJobRejectedException("处理队列繁忙，请稍后再试", 5));
+
+        assertThrows(MediaJobRejectedException.class,
+                () -> service.pushImage(DEVICE_ID, IMAGE_ID, ADMIN_ID, UserRole.VISITOR.getCode(), null));
+
+        verify(userMapper, never()).updateById(any(User.class));
+        verify(contentPushMapper, never()).insert(any(ContentPush.class));
+    }
+
+    @Test
+    void batchReportsRenderingAndSkippedDevices() {
+        when(renderService.resolveImage(any(), any(), any(), anyBoolean()))
+                .thenReturn(CompletableFuture.completedFuture(asset()))
+                .thenReturn(new CompletableFuture<>())
+                .thenThrow(new MediaJobRejectedException("处理队列繁忙，请稍后再试", 7));
+
+        BatchPushResultVO result = service.pushBatch(List.of(1L, 2L, 3L), IMAGE_ID, ContentType.IMAGE, ADMIN_ID, ADMIN);
+
+        assertEquals(List.of(1L, 2L), result.getPushedDeviceIds());
+        assertEquals(List.of(2L), result.getRenderingDeviceIds());
+        assertEquals(List.of(3L), result.getSkippedDeviceIds());
+        assertEquals(7L, result.getRetryAfterSeconds());
+        assertTrue(result.getFailedDeviceIds().isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void stalePushIsResumedAfterARestart() {
+        ContentPush stale = new ContentPush();
+        stale.setId(PUSH_ID);
+        stale.setDeviceId(DEVICE_ID);
+        stale.setContentId(IMAGE_ID);
+        stale.setContentType(ContentType.IMAGE);
+        stale.setUserId(ADMIN_ID);
+        stale.setPushStatus(PushStatus.RENDERING);
+        stale.setUpdateTime(LocalDateTime.now().minusHours(1));
+        inserted = stale;
+        when(contentPushMapper.selectList(any())).thenReturn(List.of(stale));
+        when(contentPushMapper.update(isNull(), any(Wrapper.class))).thenReturn(1);
+        CompletableFuture<RenderedAsset> rendering = new CompletableFuture<>();
+        when(renderService.resolveImage(any(), any(), eq(ADMIN_ID), eq(true))).thenReturn(rendering);
+
+        service.resumeRenderingPushes();
+        verify(playQueueService, never()).addToQueue(any(), any(), any(), any(), any(), anyBoolean());
+
+        rendering.complete(asset());
+        verify(playQueueService).addToQueue(DEVICE_ID, IMAGE_ID, ContentType.IMAGE, ADMIN_ID, PUSH_ID, true);
+        // 刷新更新时间 + 填入下载地址
+        verify(contentPushMapper, times(2)).update(isNull(), any(Wrapper.class));
+    }
+
+    private static RenderedAsset asset() {
+        return RenderedAsset.builder()
+                .url("http://minio/rendered/a.png")
+                .size(3L)
+                .md5("md5")
+                .variant(true)
+                .build();
+    }
+}
@@ -0,0 +1,120 @@
+package com.stalab.e_ink_billboard_backend.service.storage;
+
+import com.stalab.e_ink_billboard_backend.common.exception.BusinessException;
+import com.stalab.e_ink_billboard_backend.model.vo.StorageStatsVO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AssetCacheServiceTest {
+
+    // 缓存上限 1MB，每个文件 600KB：放第二个文件时必须淘汰第一个
+    private static final int FILE_SIZE = 600 * 1024;
+
+    @TempDir
+    Path cacheDir;
+
+    private AssetCacheService service;
+
+    @BeforeEach
+    void setUp() {
+        MinioService minioService = mock(MinioService.class);
+        when(minioService.getObjectUrl(anyString())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(minioService.download(anyString())).thenAnswer(invocation -> new ByteArrayInputStream(new byte[FILE_SIZE]));
+        when(minioService.storageStats()).thenReturn(StorageStatsVO.builder().build());
+
+        service = new AssetCacheService(minioService);
+        ReflectionTestUtils.setField(service, "publicBaseUrl", "http://127.0.0.1:8083");
+        ReflectionTestUtils.setField(service, "cacheDir", cacheDir.toString());
+        ReflectionTestUtils.setField(service, "maxSizeMb", 1L);
+        ReflectionTestUtils.setField(service, "expiryHours", 2);
+        ReflectionTestUtils.setField(service, "signSecret", "test-secret");
+    }
+
+    @Test
+    void unpinnedFileIsEvicted() {
+        Path first;
+        try (AssetCacheService.CachedAsset asset = open("processed/a.bin")) {
+            first = asset.getPath();
+            assertEquals(FILE_SIZE, asset.getSize());
+        }
+        try (AssetCacheService.CachedAsset ignored = open("processed/b.bin")) {
+            assertFalse(Files.exists(first));
+        }
+    }
+
+    @Test
+    void pinnedFileSurvivesEviction() {
+        Path first;
+        try (AssetCacheService.CachedAsset serving = open("processed/a.bin")) {
+            first = serving.getPath();
+            try (AssetCacheService.CachedAsset ignored = open("processed/b.bin")) {
+                assertTrue(Files.exists(first));
+            }
+        }
+        // 释放后在下一次新增时淘汰
+        try (AssetCacheService.CachedAsset ignored = open("processed/c.bin")) {
+            assertFalse(Files.exists(first));
+        }
+    }
+
+    @Test
+    void sendfileHoldKeepsFileAfterClose() {
+        Path first;
+        try (AssetCacheService.CachedAsset asset = open("processed/a.bin")) {
+            first = asset.getPath();
+            asset.holdAfterClose(60);
+        }
+        try (AssetCacheService.CachedAsset ignored = open("processed/b.bin")) {
+            assertTrue(Files.exists(first));
+        }
+    }
+
+    @Test
+    void hitReturnsSameFile() {
+        Path first;
+        try (AssetCacheService.CachedAsset asset = open("processed/a.bin")) {
+            first = asset.getPath();
+        }
+        try (AssetCacheService.CachedAsset asset = open("processed/a.bin")) {
+            assertEquals(first, asset.getPath());
+        }
+        assertEquals(1L, service.storageStats().getAssetCacheHits());
+    }
+
+    @Test
+    void badSignatureIsRejected() {
+        BusinessException e = assertThrows(BusinessException.class,
+                () -> service.resolve("processed/a.bin", System.currentTimeMillis() / 1000 + 60, "bad"));
+        assertEquals(403, e.getCode());
+    }
+
+    private AssetCacheService.CachedAsset open(String objectName) {
+        String query = URI.create(service.getDownloadUrl(objectName)).getQuery();
+        long expires = 0;
+        String sign = null;
+        for (String pair : query.split("&")) {
+            String[] kv = pair.split("=", 2);
+            if (kv[0].equals("expires")) {
+                expires = Long.parseLong(kv[1]);
+            } else if (kv[0].equals("sign")) {
+                sign = kv[1];
+            }
+        }
+        return service.resolve(objectName, expires, sign);
+    }
+}
@@ -0,0 +1,128 @@
+package com.stalab.e_ink_billboard_backend.service.storage;
+
+import com.stalab.e_ink_billboard_backend.model.dto.ChunkManifest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ChunkManifestServiceTest {
+
+    private static final int CHUNK = 1024;
+    private static final String OBJECT = "processed/a.bin";
+
+    private MinioService minioService;
+    private ValueOperations<String, String> valueOperations;
+    private ChunkManifestService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        minioService = mock(MinioService.class);
+        when(minioService.extractObjectName(OBJECT)).thenReturn(OBJECT);
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        valueOperations = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+
+        service = new ChunkManifestService(minioService, redisTemplate);
+        ReflectionTestUtils.setField(service, "chunkSizeKb", 1);
+        ReflectionTestUtils.setField(service, "ttlDays", 30L);
+    }
+
+    @Test
+    void chunkBoundaries() {
+        int[] sizes = {0, 1, CHUNK - 1, CHUNK, CHUNK + 1, 2 * CHUNK, 2 * CHUNK + 1, 70 * CHUNK + 3};
+        for (int size : sizes) {
+            byte[] content = new byte[size];
+            new Random(size).nextBytes(content);
+            when(minioService.download(OBJECT)).thenReturn(trickle(content));
+
+            ChunkManifest manifest = service.get(OBJECT);
+
+            List<String> expected = expectedChunks(content);
+            if (expected.size() <= 1) {
+                // 不超过一块的文件整文件下载
+                assertNull(manifest, "size=" + size);
+            } else {
+                assertEquals(CHUNK, manifest.getChunkSize(), "size=" + size);
+                assertEquals(expected, manifest.getChunks(), "size=" + size);
+            }
+        }
+    }
+
+    @Test
+    void cachedManifestIsUsedWithoutDownloading() {
+        when(valueOperations.get("asset:chunks:" + OBJECT)).thenReturn(CHUNK + ":0000abcd,ffff0000");
+
+        ChunkManifest manifest = service.get(OBJECT);
+
+        assertEquals(List.of("0000abcd", "ffff0000"), manifest.getChunks());
+        verify(minioService, never()).download(anyString());
+    }
+
+    @Test
+    void singleChunkMarkerSkipsDownload() {
+        when(valueOperations.get("asset:chunks:" + OBJECT)).thenReturn("-");
+
+        assertNull(service.get(OBJECT));
+        verify(minioService, never()).download(anyString());
+    }
+
+    @Test
+    void manifestForOtherChunkSizeIsRecomputed() {
+        byte[] content = new byte[3 * CHUNK];
+        new Random(1).nextBytes(content);
+        when(valueOperations.get("asset:chunks:" + OBJECT)).thenReturn("256:0000abcd,ffff0000");
+        when(minioService.download(OBJECT)).thenReturn(new ByteArrayInputStream(content));
+
+        ChunkManifest manifest = service.get(OBJECT);
+
+        List<String> expected = expectedChunks(content);
+        assertEquals(expected, manifest.getChunks());
+        verify(valueOperations).set(eq("asset:chunks:" + OBJECT), eq(CHUNK + ":" + String.join(",", expected)),
+                anyLong(), eq(TimeUnit.DAYS));
+    }
+
+    private static List<String> expectedChunks(byte[] content) {
+        List<String> chunks = new ArrayList<>();
+        for (int offset = 0; offset < content.length; offset += CHUNK) {
+            CRC32 crc = new CRC32();
+            crc.update(content, offset, Math.min(CHUNK, content.length - offset));
+            chunks.add(String.format("%08x", crc.getValue()));
+        }
+        return chunks;
+    }
+
+    /**
+     * 每次最多返回 700 字节，让块边界落在两次 read 之间
+     */
+    private static InputStream trickle(byte[] content) {
+        return new FilterInputStream(new ByteArrayInputStream(content)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 700));
+            }
+        };
+    }
+}
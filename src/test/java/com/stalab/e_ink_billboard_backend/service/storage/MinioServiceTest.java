@@ -0,0 +1,290 @@
+package com.stalab.e_ink_billboard_backend.service.storage;
+
+import com.stalab.e_ink_billboard_backend.common.exception.BusinessException;
+import com.stalab.e_ink_billboard_backend.model.dto.StoredObject;
+import com.stalab.e_ink_billboard_backend.model.vo.StorageStatsVO;
+import io.minio.GetPresignedObjectUrlArgs;
+import io.minio.MinioAsyncClient;
+import io.minio.MinioClient;
+import io.minio.PutObjectArgs;
+import io.minio.StatObjectArgs;
+import io.minio.UploadObjectArgs;
+import io.minio.errors.ErrorResponseException;
+import io.minio.messages.ErrorResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class MinioServiceTest {
+
+    private static final String ENDPOINT = "http://minio.example.com";
+    private static final String BUCKET = "eink-images";
+    private static final long MB = 1024 * 1024;
+
+    @Mock
+    private MinioClient minioClient;
+
+    @Mock
+    private MinioAsyncClient minioAsyncClient;
+
+    @TempDir
+    Path tempDir;
+
+    private ThreadPoolTaskExecutor storageExecutor;
+    private MinioService service;
+    private final AtomicInteger signed = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        storageExecutor = new ThreadPoolTaskExecutor();
+        storageExecutor.initialize();
+
+        service = new MinioService(minioClient, minioAsyncClient, storageExecutor);
+        ReflectionTestUtils.setField(service, "bucketName", BUCKET);
+        ReflectionTestUtils.setField(service, "endpoint", ENDPOINT);
+        ReflectionTestUtils.setField(service, "internalEndpoint", "http://minio:9000");
+        ReflectionTestUtils.setField(service, "usePresignedUrl", true);
+        ReflectionTestUtils.setField(service, "presignedUrlExpiryHours", 2);
+        ReflectionTestUtils.setField(service, "presignedUrlReuseMarginMinutes", 30);
+        ReflectionTestUtils.setField(service, "presignedUrlCacheSize", 10000);
+
+        when(minioClient.getPresignedObjectUrl(any(GetPresignedObjectUrlArgs.class))).thenAnswer(invocation -> {
+            GetPresignedObjectUrlArgs args = invocation.getArgument(0);
+            return ENDPOINT + "/" + BUCKET + "/" + args.object() + "?X-Amz-Signature=" + signed.incrementAndGet();
+        });
+    }
+
+    // ---------- Presigned URL 缓存 ----------
+
+    @Test
+    void presignedUrlIsReusedForTheSameObject() throws Exception {
+        String first = service.getDownloadUrl(ENDPOINT + "/" + BUCKET + "/a.bin");
+        // 同一 object 的内部地址、已签名地址、object 名称都命中同一条缓存
+        assertEquals(first, service.getDownloadUrl("http://minio:9000/" + BUCKET + "/a.bin"));
+        assertEquals(first, service.getDownloadUrl(first));
+        assertEquals(first, service.getDownloadUrl("a.bin"));
+
+        verify(minioClient, times(1)).getPresignedObjectUrl(any(GetPresignedObjectUrlArgs.class));
+        StorageStatsVO stats = service.storageStats();
+        assertEquals(1, stats.getPresignedUrlCached());
+        assertEquals(3, stats.getPresignedUrlHits());
+        assertEquals(1, stats.getPresignedUrlMisses());
+        assertEquals(0.75, stats.getPresignedUrlHitRate(), 1e-9);
+    }
+
+    @Test
+    void differentObjectsAreSignedSeparately() {
+        String a = service.getDownloadUrl("a.bin");
+        String b = service.getDownloadUrl("b.bin");
+
+        assertNotEquals(a, b);
+        assertTrue(b.startsWith(ENDPOINT + "/" + BUCKET + "/b.bin?"));
+        assertEquals(2, signed.get());
+    }
+
+    @Test
+    void deletedObjectIsEvictedFromTheCache() throws Exception {
+        when(minioAsyncClient.removeObjects(any())).thenReturn(List.of());
+        String before = service.getDownloadUrl("a.bin");
+
+        service.deleteAsync(List.of("a.bin"));
+
+        assertNotEquals(before, service.getDownloadUrl("a.bin"));
+        assertEquals(2, signed.get());
+    }
+
+    @Test
+    void fullCacheIsPruned() {
+        ReflectionTestUtils.setField(service, "presignedUrlCacheSize", 4);
+        for (int i = 0; i < 10; i++) {
+            service.getDownloadUrl("object-" + i + ".bin");
+            assertTrue(service.storageStats().getPresignedUrlCached() <= 4);
+        }
+        // 最近签名的仍可复用
+        service.getDownloadUrl("object-9.bin");
+        assertEquals(10, signed.get());
+    }
+
+    @Test
+    void publicBucketReturnsStoredUrl() throws Exception {
+        ReflectionTestUtils.setField(service, "usePresignedUrl", false);
+        String stored = ENDPOINT + "/" + BUCKET + "/a.bin";
+
+        assertEquals(stored, service.getDownloadUrl(stored));
+        verify(minioClient, never()).getPresignedObjectUrl(any(GetPresignedObjectUrlArgs.class));
+    }
+
+    @Test
+    void signingFailureIsNotCached() throws Exception {
+        when(minioClient.getPresignedObjectUrl(any(GetPresignedObjectUrlArgs.class)))
+                .thenThrow(new IllegalStateException("minio down"));
+
+        BusinessException e = assertThrows(BusinessException.class, () -> service.getDownloadUrl("a.bin"));
+        assertEquals(500, e.getCode());
+        assertEquals(0, service.storageStats().getPresignedUrlCached());
+    }
+
+    // ---------- 已知大小上传 ----------
+
+    @Test
+    void knownSizeStreamIsUploadedInOnePut() throws Exception {
+        byte[] content = new byte[300 * 1024];
+
+        String url = service.uploadStream(new ByteArrayInputStream(content), content.length, "a.bin", "application/octet-stream");
+
+        assertEquals(ENDPOINT + "/" + BUCKET + "/a.bin", url);
+        PutObjectArgs args = capturePut();
+        assertEquals(content.length, args.objectSize());
+        assertEquals(1, args.partCount());
+    }
+
+    @Test
+    void unknownSizeStreamUsesMinimumPartSize() throws Exception {
+        service.uploadStream(new ByteArrayInputStream(new byte[1024]), "a.bin", "application/octet-stream");
+
+        PutObjectArgs args = capturePut();
+        assertEquals(-1, args.objectSize());
+        assertEquals(5 * MB, args.partSize());
+    }
+
+    @Test
+    void inMemoryUploadPassesItsSize() throws Exception {
+        byte[] content = new byte[2048];
+        try (SpooledUpload upload = ingest(content, 1024)) {
+            assertTrue(upload.isInMemory());
+
+            String url = service.upload(upload);
+
+            assertTrue(url.startsWith(ENDPOINT + "/" + BUCKET + "/") && url.endsWith(".png"));
+        }
+        PutObjectArgs args = capturePut();
+        assertEquals(content.length, args.objectSize());
+        assertEquals(1, args.partCount());
+        verify(minioClient, never()).uploadObject(any(UploadObjectArgs.class));
+    }
+
+    @Test
+    void spooledUploadIsUploadedByPath() throws Exception {
+        byte[] content = new byte[4096];
+        try (SpooledUpload upload = ingest(content, 1)) {
+            assertFalse(upload.isInMemory());
+
+            service.upload(upload);
+
+            UploadObjectArgs args = captureUpload();
+            assertEquals(upload.getFile().getAbsolutePath(), args.filename());
+            assertEquals(content.length, args.objectSize());
+        }
+        verify(minioClient, never()).putObject(any(PutObjectArgs.class));
+    }
+
+    @Test
+    void filePartSizeTargetsEightPartsWithinBounds() throws Exception {
+        // 小文件：不足最小分片（5MB），一次 PUT
+        assertEquals(1, uploadSparse("small.bin", 3 * MB).partCount());
+        // 20MB / 8 = 2.5MB -> 下限 5MB
+        assertEquals(5 * MB, uploadSparse("minimum.bin", 20 * MB).partSize());
+        // 100MB / 8 = 12.5MB -> 13MB
+        UploadObjectArgs medium = uploadSparse("medium.bin", 100 * MB);
+        assertEquals(13 * MB, medium.partSize());
+        assertEquals(8, medium.partCount());
+        // 1GB / 8 = 128MB -> 上限 64MB
+        assertEquals(64 * MB, uploadSparse("large.bin", 1024 * MB).partSize());
+    }
+
+    @Test
+    void md5IsStoredInObjectMetadata() throws Exception {
+        String md5 = "0123456789abcdef0123456789abcdef";
+
+        UploadObjectArgs args = uploadSparse("video.evc", MB, md5);
+
+        assertTrue(args.userMetadata().containsValue(md5), args.userMetadata().toString());
+    }
+
+    @Test
+    void uploadFailureIsReported() throws Exception {
+        when(minioClient.putObject(any(PutObjectArgs.class))).thenThrow(new IllegalStateException("minio down"));
+
+        BusinessException e = assertThrows(BusinessException.class, () ->
+                service.uploadStream(new ByteArrayInputStream(new byte[16]), 16, "a.bin", "application/octet-stream"));
+        assertEquals(500, e.getCode());
+    }
+
+    @Test
+    void missingObjectStatsAsNull() throws Exception {
+        when(minioClient.statObject(any(StatObjectArgs.class))).thenThrow(new ErrorResponseException(
+                new ErrorResponse("NoSuchKey", "Object does not exist", BUCKET, "a.bin", "/a.bin", "req", "host"),
+                null, null));
+
+        StoredObject stored = service.statObject("a.bin");
+
+        assertNull(stored);
+    }
+
+    private SpooledUpload ingest(byte[] content, int thresholdKb) throws Exception {
+        UploadIngestService ingestService = new UploadIngestService();
+        ReflectionTestUtils.setField(ingestService, "memoryThresholdKb", thresholdKb);
+        return ingestService.ingest(new MockMultipartFile("file", "a.png", "image/png", content));
+    }
+
+    private UploadObjectArgs uploadSparse(String name, long size) throws Exception {
+        return uploadSparse(name, size, null);
+    }
+
+    /**
+     * 稀疏文件：只设置长度，不实际写入数据
+     */
+    private UploadObjectArgs uploadSparse(String name, long size, String md5) throws Exception {
+        File file = tempDir.resolve(name).toFile();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(size);
+        }
+        service.uploadFile(file, name, "application/octet-stream", md5);
+        ArgumentCaptor<UploadObjectArgs> captor = ArgumentCaptor.forClass(UploadObjectArgs.class);
+        verify(minioClient, atLeastOnce()).uploadObject(captor.capture());
+        return captor.getValue();
+    }
+
+    private PutObjectArgs capturePut() throws Exception {
+        ArgumentCaptor<PutObjectArgs> captor = ArgumentCaptor.forClass(PutObjectArgs.class);
+        verify(minioClient).putObject(captor.capture());
+        return captor.getValue();
+    }
+
+    private UploadObjectArgs captureUpload() throws Exception {
+        ArgumentCaptor<UploadObjectArgs> captor = ArgumentCaptor.forClass(UploadObjectArgs.class);
+        verify(minioClient).uploadObject(captor.capture());
+        return captor.getValue();
+    }
+}
@@ -0,0 +1,119 @@
+package com.stalab.e_ink_billboard_backend.service.storage;
+
+import cn.hutool.crypto.SecureUtil;
+import com.stalab.e_ink_billboard_backend.common.exception.BusinessException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UploadIngestServiceTest {
+
+    private static final int THRESHOLD_KB = 1;
+
+    private UploadIngestService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new UploadIngestService();
+        ReflectionTestUtils.setField(service, "memoryThresholdKb", THRESHOLD_KB);
+    }
+
+    @Test
+    void smallUploadStaysInMemory() throws Exception {
+        byte[] content = randomBytes(500);
+
+        try (SpooledUpload upload = service.ingest(multipart(content))) {
+            assertTrue(upload.isInMemory());
+            assertArrayEquals(content, upload.getData());
+            assertDigests(content, upload);
+        }
+    }
+
+    @Test
+    void uploadExactlyAtThresholdStaysInMemory() throws Exception {
+        byte[] content = randomBytes(THRESHOLD_KB * 1024);
+
+        try (SpooledUpload upload = service.ingest(multipart(content))) {
+            assertTrue(upload.isInMemory());
+            assertEquals(content.length, upload.getSize());
+            assertDigests(content, upload);
+        }
+    }
+
+    @Test
+    void largeUploadIsTransferredToDiskWithoutReadingThePart() throws Exception {
+        byte[] content = randomBytes(THRESHOLD_KB * 1024 + 1);
+        MultipartFile file = spy(multipart(content));
+
+        File spooled;
+        try (SpooledUpload upload = service.ingest(file)) {
+            assertFalse(upload.isInMemory());
+            assertNull(upload.getData());
+            spooled = upload.getFile();
+            assertTrue(spooled.getName().endsWith(".png"));
+            assertArrayEquals(content, Files.readAllBytes(spooled.toPath()));
+            try (InputStream in = upload.openStream()) {
+                assertArrayEquals(content, in.readAllBytes());
+            }
+            assertDigests(content, upload);
+        }
+        // 容器已落盘的内容直接 transferTo，不再经 getInputStream 复制
+        verify(file).transferTo(any(File.class));
+        verify(file, never()).getInputStream();
+        assertFalse(spooled.exists());
+    }
+
+    @Test
+    void truncatedUploadIsRejectedAndTempFileRemoved() throws Exception {
+        byte[] content = randomBytes(THRESHOLD_KB * 1024 + 100);
+        File[] target = new File[1];
+        MultipartFile file = mock(MultipartFile.class);
+        when(file.getOriginalFilename()).thenReturn("a.mp4");
+        when(file.getSize()).thenReturn(content.length + 10L);
+        doAnswer(invocation -> {
+            target[0] = invocation.getArgument(0);
+            Files.write(target[0].toPath(), content);
+            return null;
+        }).when(file).transferTo(any(File.class));
+
+        BusinessException e = assertThrows(BusinessException.class, () -> service.ingest(file));
+        assertEquals(400, e.getCode());
+        assertFalse(target[0].exists());
+    }
+
+    private static void assertDigests(byte[] content, SpooledUpload upload) {
+        assertEquals(SecureUtil.md5().digestHex(content), upload.getMd5());
+        assertEquals(SecureUtil.sha256().digestHex(content), upload.getSha256());
+    }
+
+    private static MockMultipartFile multipart(byte[] content) {
+        return new MockMultipartFile("file", "a.png", "image/png", content);
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,146 @@
+package com.stalab.e_ink_billboard_backend.service.wx;
+
+import com.stalab.e_ink_billboard_backend.model.vo.AuditStatsVO;
+import com.stalab.e_ink_billboard_backend.service.wx.AuditCircuitBreaker.State;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AuditCircuitBreakerTest {
+
+    private AuditCircuitBreaker breaker;
+
+    @BeforeEach
+    void setUp() {
+        breaker = new AuditCircuitBreaker();
+        ReflectionTestUtils.setField(breaker, "windowSize", 10);
+        ReflectionTestUtils.setField(breaker, "minCalls", 4);
+        ReflectionTestUtils.setField(breaker, "failureRateThreshold", 0.5);
+        ReflectionTestUtils.setField(breaker, "slowCallMillis", 1000L);
+        ReflectionTestUtils.setField(breaker, "openSeconds", 30L);
+        ReflectionTestUtils.setField(breaker, "halfOpenCalls", 2);
+    }
+
+    @Test
+    void staysClosedBelowMinimumCalls() {
+        call(false);
+        call(false);
+        call(false);
+
+        assertEquals(State.CLOSED, breaker.state());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void opensAtFailureRateAndShortCircuits() {
+        call(true);
+        call(false);
+        call(true);
+        assertEquals(State.CLOSED, breaker.state());
+        call(false);
+
+        // 2/4 达到 50% 阈值
+        assertEquals(State.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(2, breaker.stats().getShortCircuited());
+        assertEquals(1, breaker.stats().getOpened());
+    }
+
+    @Test
+    void slowSuccessCountsAsFailure() {
+        for (int i = 0; i < 4; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.record(true, 1500);
+        }
+
+        assertEquals(State.OPEN, breaker.state());
+    }
+
+    @Test
+    void oldFailuresSlideOutOfTheWindow() {
+        for (int i = 0; i < 10; i++) {
+            call(i < 6);
+        }
+        // 4/10 低于阈值
+        assertEquals(State.CLOSED, breaker.state());
+        assertEquals(0.4, breaker.stats().getFailureRate(), 1e-9);
+
+        for (int i = 0; i < 10; i++) {
+            call(true);
+        }
+        assertEquals(0.0, breaker.stats().getFailureRate(), 1e-9);
+
+        // 窗口里只有最近 10 次：再失败 5 次达到 50%
+        for (int i = 0; i < 4; i++) {
+            call(false);
+        }
+        assertEquals(State.CLOSED, breaker.state());
+        call(false);
+        assertEquals(State.OPEN, breaker.state());
+    }
+
+    @Test
+    void halfOpenClosesAfterAllProbesSucceed() {
+        ReflectionTestUtils.setField(breaker, "openSeconds", 0L);
+        openAgain();
+
+        assertEquals(State.HALF_OPEN, breaker.state());
+        halfOpenSucceeds();
+        assertEquals(State.CLOSED, breaker.state());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void halfOpenLimitsProbesAndReopensOnFailure() {
+        ReflectionTestUtils.setField(breaker, "openSeconds", 0L);
+        openAgain();
+
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        // 试探名额用完，结果回来前不再放行
+        ReflectionTestUtils.setField(breaker, "openSeconds", 30L);
+        assertFalse(breaker.tryAcquire());
+
+        breaker.record(true, 10);
+        breaker.record(false, 10);
+        assertEquals(State.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void latencyPercentiles() {
+        for (int i = 1; i <= 100; i++) {
+            breaker.record(true, i);
+        }
+
+        AuditStatsVO stats = breaker.stats();
+        assertEquals(50, stats.getP50Ms());
+        assertEquals(95, stats.getP95Ms());
+        assertEquals(99, stats.getP99Ms());
+        assertEquals(100, stats.getCalls());
+    }
+
+    private void call(boolean success) {
+        assertTrue(breaker.tryAcquire());
+        breaker.record(success, 10);
+    }
+
+    /**
+     * 连续失败直到打开
+     */
+    private void openAgain() {
+        while (breaker.state() == State.CLOSED) {
+            call(false);
+        }
+    }
+
+    private void halfOpenSucceeds() {
+        call(true);
+        call(true);
+    }
+}
@@ -0,0 +1,203 @@
+package com.stalab.e_ink_billboard_backend.service.wx;
+
+import com.stalab.e_ink_billboard_backend.common.enums.AuditVerdict;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 用本地桩服务模拟微信 img_sec_check 接口
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class WeChatContentSecurityServiceTest {
+
+    private static final String APPROVED = "{\"errcode\":0,\"errmsg\":\"ok\"}";
+    private static final String RISKY = "{\"errcode\":87014,\"errmsg\":\"risky content\"}";
+    private static final String SYSTEM_ERROR = "{\"errcode\":-1,\"errmsg\":\"system error\"}";
+
+    private static final int FRAMES = 5;
+    // 正常请求的响应耗时
+    private static final long DELAY_MS = 1000;
+
+    @Mock
+    private AuditVerdictCache verdictCache;
+
+    @Mock
+    private WeChatAccessTokenManager tokenManager;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private ThreadPoolTaskExecutor auditExecutor;
+    private WeChatContentSecurityService service;
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicInteger completed = new AtomicInteger();
+
+    /**
+     * 第 n 个请求（从 0 开始）的响应
+     */
+    private volatile IntFunction<String> responder = n -> APPROVED;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/wxa/img_sec_check", this::handle);
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+
+        auditExecutor = new ThreadPoolTaskExecutor();
+        auditExecutor.setCorePoolSize(FRAMES);
+        auditExecutor.setMaxPoolSize(FRAMES);
+        auditExecutor.setQueueCapacity(FRAMES * 4);
+        auditExecutor.setThreadNamePrefix("Audit-Test-");
+        auditExecutor.initialize();
+
+        AuditCircuitBreaker breaker = new AuditCircuitBreaker();
+        ReflectionTestUtils.setField(breaker, "windowSize", 20);
+        ReflectionTestUtils.setField(breaker, "minCalls", 10);
+        ReflectionTestUtils.setField(breaker, "failureRateThreshold", 0.5);
+        ReflectionTestUtils.setField(breaker, "slowCallMillis", 3000L);
+        ReflectionTestUtils.setField(breaker, "openSeconds", 30L);
+        ReflectionTestUtils.setField(breaker, "halfOpenCalls", 3);
+
+        when(tokenManager.getAccessToken()).thenReturn("token");
+        // Mockito 对 Boolean 默认返回 false，须显式表示未命中缓存
+        when(verdictCache.lookup(anyLong())).thenReturn(null);
+
+        service = new WeChatContentSecurityService(auditExecutor, verdictCache, tokenManager, breaker);
+        ReflectionTestUtils.setField(service, "apiBaseUrl", "http://127.0.0.1:" + server.getAddress().getPort());
+        ReflectionTestUtils.setField(service, "maxSide", 640);
+        ReflectionTestUtils.setField(service, "timeoutMs", 5000);
+        ReflectionTestUtils.setField(service, "connectTimeoutMs", 2000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+        auditExecutor.shutdown();
+    }
+
+    @Test
+    void framesAreAuditedConcurrently() {
+        assertEquals(AuditVerdict.APPROVED, service.checkImages(frames(FRAMES)));
+        assertEquals(FRAMES, requests.get());
+        assertTrue(maxInFlight.get() > 1, "抽样帧应并发送审，最大并发 " + maxInFlight.get());
+        verify(verdictCache, times(FRAMES)).put(anyLong(), eq(true));
+    }
+
+    @Test
+    void riskyFrameRejectsWithoutWaitingForTheRest() {
+        // 第一个请求立即判违规，其余请求很慢
+        responder = n -> n == 0 ? RISKY : APPROVED;
+
+        assertEquals(AuditVerdict.REJECTED, service.checkImages(frames(FRAMES)));
+        assertEquals(0, completed.get(), "违规后应立即返回，不等待其余请求");
+        verify(verdictCache).put(anyLong(), eq(false));
+    }
+
+    @Test
+    void unavailableFrameMakesTheBatchUnavailable() {
+        responder = n -> n == 2 ? SYSTEM_ERROR : APPROVED;
+
+        assertEquals(AuditVerdict.UNAVAILABLE, service.checkImages(frames(FRAMES)));
+        // 未能审核的帧不写入缓存
+        verify(verdictCache, times(FRAMES - 1)).put(anyLong(), anyBoolean());
+    }
+
+    @Test
+    void cachedVerdictSkipsTheRequest() {
+        when(verdictCache.lookup(anyLong())).thenReturn(false);
+
+        assertEquals(AuditVerdict.REJECTED, service.checkImages(frames(FRAMES)));
+        assertEquals(0, requests.get());
+        verify(verdictCache, never()).put(anyLong(), anyBoolean());
+    }
+
+    @Test
+    void invalidTokenIsInvalidated() {
+        responder = n -> "{\"errcode\":40001,\"errmsg\":\"invalid credential\"}";
+
+        assertEquals(AuditVerdict.UNAVAILABLE, service.checkImage(frames(1).get(0)));
+        verify(tokenManager).invalidate("token");
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int n = requests.getAndIncrement();
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            exchange.getRequestBody().readAllBytes();
+            String body = responder.apply(n);
+            if (!RISKY.equals(body)) {
+                Thread.sleep(DELAY_MS);
+                completed.incrementAndGet();
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    /**
+     * 每帧画面不同（感知哈希不同），大于 maxSide 以覆盖缩小编码
+     */
+    private static List<BufferedImage> frames(int count) {
+        List<BufferedImage> frames = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            BufferedImage image = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = image.createGraphics();
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, 800, 600);
+            g.setColor(Color.BLACK);
+            g.fillRect(i * 150, 0, 150, 600);
+            g.dispose();
+            frames.add(image);
+        }
+        return frames;
+    }
+}